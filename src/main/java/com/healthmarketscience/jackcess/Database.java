@@ -49,12 +49,22 @@ import com.healthmarketscience.jackcess.util.TableIterableBuilder;
  * <p>
  * Database instances (and all the related objects) are <i>not</i>
  * thread-safe.  However, separate Database instances (and their respective
- * objects) can be used by separate threads without a problem.
+ * objects) can be used by separate threads without a problem.  The one
+ * exception is a Database opened read-only ({@link
+ * DatabaseBuilder#setReadOnly}), which may be shared by multiple threads for
+ * reading, as long as each thread uses its own {@link Cursor} instances (the
+ * Table row methods which use the table's default cursor are <i>not</i>
+ * thread-safe).  A Database which is opened with the {@link
+ * ConcurrencyMode#SINGLE_WRITER} or {@link ConcurrencyMode#MULTI_WRITER}
+ * modes may additionally be written by multiple threads (see {@link
+ * DatabaseBuilder#setConcurrencyMode}).
  * <p>
- * Database instances do not implement any "transactional" support, and
- * therefore concurrent editing of the same database file by multiple Database
- * instances (or with outside programs such as MS Access) <i>will generally
- * result in database file corruption</i>.
+ * Changes made through a Database instance may be grouped into a transaction
+ * (see {@link #beginTransaction}).  However, Database instances do not
+ * coordinate with each other, and therefore concurrent editing of the same
+ * database file by multiple Database instances (or with outside programs
+ * such as MS Access) <i>will generally result in database file
+ * corruption</i>.
  *
  * @author James Ahlborn
  * @usage _general_class_
@@ -141,6 +151,14 @@ public interface Database extends Iterable<Table>, Closeable, Flushable
   public static final String DATE_TIME_TYPE_PROPERTY =
     "com.healthmarketscience.jackcess.dateTimeType";
 
+  /** (boolean) system property which can be used to disable the use of
+   *  virtual threads (when supported by the jvm) for the background and
+   *  asynchronous features.  Defaults to {@code true}.
+   * @usage _advanced_field_
+   */
+  public static final String VIRTUAL_THREADS_PROPERTY =
+    "com.healthmarketscience.jackcess.virtualThreads";
+
   /**
    * Enum which indicates which version of Access created the database.
    * @usage _general_class_
@@ -182,6 +200,33 @@ public interface Database extends Iterable<Table>, Closeable, Flushable
     }
   }
 
+  /**
+   * Enum which indicates how a Database instance may be shared between
+   * threads.
+   * @usage _intermediate_class_
+   */
+  public enum ConcurrencyMode {
+    /** The Database is not thread-safe (although a read-only Database may
+        still be shared by multiple reading threads).  This is the default
+        mode. */
+    NONE,
+    /** The Database may be shared by multiple threads, which may read
+        concurrently, while all write operations are serialized (and exclude
+        any readers while in progress).  Each thread must use its own {@link
+        Cursor} instances.  A Cursor will re-sync with any changes made by
+        other threads between its operations. */
+    SINGLE_WRITER,
+    /** Like {@link #SINGLE_WRITER}, but row writes to different tables may
+        proceed concurrently.  A row write locks the table being written and
+        any tables it may affect through enforced foreign-key relationships
+        (in table definition page order, so related writers cannot
+        deadlock).  Changes to the database structure (e.g. creating tables
+        or relationships) still exclude all other readers and writers.  If
+        the database uses a journal (see {@link DatabaseBuilder#setJournal}),
+        all writes are serialized as in {@link #SINGLE_WRITER}. */
+    MULTI_WRITER;
+  }
+
   /**
    * Returns the File underlying this Database
    */
@@ -192,6 +237,12 @@ public interface Database extends Iterable<Table>, Closeable, Flushable
    */
   public Path getPath();
 
+  /**
+   * Returns how this Database may be shared between threads.
+   * @usage _intermediate_method_
+   */
+  public ConcurrencyMode getConcurrencyMode();
+
   /**
    * @return The names of all of the user tables
    * @usage _general_method_
@@ -340,6 +391,54 @@ public interface Database extends Iterable<Table>, Closeable, Flushable
                                 String linkedTableName)
     throws IOException;
 
+  /**
+   * Creates a new database file at the given path (of the same FileFormat)
+   * containing a compacted copy of this database.  The rows of each table
+   * are written densely in primary key order and the indexes are rebuilt, so
+   * the new file contains no deleted rows or fragmented pages.  Table, column
+   * and database properties, relationships and linked tables are copied.
+   * <p>
+   * Note, saved queries are <i>not</i> copied (queries cannot currently be
+   * created) and tables with complex columns are not supported.
+   * @param target path of the new database file (any existing file will be
+   *               overwritten)
+   * @throws UnsupportedOperationException if this database contains any
+   *         complex columns
+   * @usage _intermediate_method_
+   */
+  public void compactTo(Path target) throws IOException;
+
+  /**
+   * Begins a transaction.  Until the transaction is committed (see {@link
+   * #commit}) or rolled back (see {@link #rollback}), all changes are held
+   * privately (in memory, spilling to a temp file for large transactions)
+   * and are only visible through this Database.  Only one transaction may be
+   * in progress at a time.  If the Database is shared by multiple threads,
+   * the transaction excludes all other threads until it is completed (and
+   * it must be completed by the thread which began it).  Closing the
+   * Database with a transaction in progress discards the changes.
+   * @throws IllegalStateException if a transaction is already in progress
+   * @usage _intermediate_method_
+   */
+  public void beginTransaction() throws IOException;
+
+  /**
+   * Commits the current transaction, writing all the changed pages to the
+   * database file (in page order).
+   * @throws IllegalStateException if no transaction is in progress
+   * @usage _intermediate_method_
+   */
+  public void commit() throws IOException;
+
+  /**
+   * Rolls back the current transaction, discarding all changes made since
+   * the transaction began.  Any Table and Cursor instances which were used
+   * during the transaction are no longer valid and must be re-opened.
+   * @throws IllegalStateException if no transaction is in progress
+   * @usage _intermediate_method_
+   */
+  public void rollback() throws IOException;
+
   /**
    * Flushes any current changes to the database file (and any linked
    * databases) to disk.
@@ -348,6 +447,17 @@ public interface Database extends Iterable<Table>, Closeable, Flushable
   @Override
   public void flush() throws IOException;
 
+  /**
+   * Blocks until all the write operations which have completed are durable
+   * (synced to disk) for this database (and any linked databases).  This is
+   * useful when the database uses a {@link
+   * com.healthmarketscience.jackcess.util.SyncPolicy} which syncs in the
+   * background.  Unlike {@link #flush}, this does not force journaled pages
+   * to be written to the database file.
+   * @usage _intermediate_method_
+   */
+  public void awaitDurable() throws IOException;
+
   /**
    * Close the database file (and any linked databases).  A Database
    * <b>must</b> be closed after use or changes could be lost and the Database
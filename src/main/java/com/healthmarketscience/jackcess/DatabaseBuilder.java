@@ -33,6 +33,7 @@ import com.healthmarketscience.jackcess.impl.CodecProvider;
 import com.healthmarketscience.jackcess.impl.DatabaseImpl;
 import com.healthmarketscience.jackcess.impl.PropertyMapImpl;
 import com.healthmarketscience.jackcess.util.MemFileChannel;
+import com.healthmarketscience.jackcess.util.SyncPolicy;
 
 /**
  * Builder style class for opening/creating a {@link Database}.
@@ -58,8 +59,12 @@ public class DatabaseBuilder
   private Path _mdbFile;
   /** whether or not to open existing mdb read-only */
   private boolean _readOnly;
-  /** whether or not to auto-sync writes to the filesystem */
-  private boolean _autoSync = Database.DEFAULT_AUTO_SYNC;
+  /** determines when writes are synced to the filesystem */
+  private SyncPolicy _syncPolicy;
+  /** how the Database may be shared between threads */
+  private Database.ConcurrencyMode _concurrencyMode;
+  /** whether or not to use a write-ahead journal for writes */
+  private boolean _journal;
   /** optional charset for mdbs with unspecified charsets */
   private Charset _charset;
   /** optional timezone override for interpreting dates */
@@ -114,7 +119,8 @@ public class DatabaseBuilder
 
   /**
    * Sets flag which, iff {@code true}, will force opening file in
-   * read-only mode ({@link #open} only).
+   * read-only mode ({@link #open} only).  A read-only Database may be shared
+   * by multiple reading threads (see {@link Database}).
    * @usage _general_method_
    */
   public DatabaseBuilder setReadOnly(boolean readOnly) {
@@ -134,7 +140,54 @@ public class DatabaseBuilder
    * @usage _intermediate_method_
    */
   public DatabaseBuilder setAutoSync(boolean autoSync) {
-    _autoSync = autoSync;
+    return setSyncPolicy(autoSync ? SyncPolicy.EVERY_WRITE :
+                         SyncPolicy.ON_CLOSE);
+  }
+
+  /**
+   * Sets the policy which determines when writes are synced to disk, if
+   * {@code null}, uses default (based on {@link Database#DEFAULT_AUTO_SYNC}).
+   * Policies which sync in the background (e.g. {@link
+   * com.healthmarketscience.jackcess.util.IntervalSyncPolicy})
+   * bound the writes which may be lost on failure without waiting for a sync
+   * on each write.
+   * @see SyncPolicy
+   * @usage _intermediate_method_
+   */
+  public DatabaseBuilder setSyncPolicy(SyncPolicy syncPolicy) {
+    _syncPolicy = syncPolicy;
+    return this;
+  }
+
+  /**
+   * Sets how the Database may be shared between threads, if {@code null},
+   * uses default ({@link Database.ConcurrencyMode#NONE}).
+   * @usage _intermediate_method_
+   */
+  public DatabaseBuilder setConcurrencyMode(
+      Database.ConcurrencyMode concurrencyMode) {
+    _concurrencyMode = concurrencyMode;
+    return this;
+  }
+
+  /**
+   * Sets whether or not to use a write-ahead journal for writes (disabled by
+   * default).  if {@code true}, the pages modified by each write operation
+   * are appended to a journal file (the database file name plus "-journal")
+   * which is synced when the operation completes (concurrent operations share
+   * a sync).  The pages are written to the database file periodically and
+   * when the Database is flushed or closed.  If the Database is not closed
+   * cleanly, the journal is replayed when the database file is next opened
+   * (a read-only open reads the journaled pages without replaying them).
+   * Row writes are serialized when used with {@link
+   * Database.ConcurrencyMode#MULTI_WRITER}.  This is an alternative to
+   * auto-syncing (which is ignored if the journal is enabled) which keeps the
+   * database file consistent on each write at a lower cost.  Requires a
+   * writable database file (not just a channel).
+   * @usage _intermediate_method_
+   */
+  public DatabaseBuilder setJournal(boolean journal) {
+    _journal = journal;
     return this;
   }
 
@@ -264,16 +317,18 @@ public class DatabaseBuilder
    * Opens an existingnew Database using the configured information.
    */
   public Database open() throws IOException {
-    return DatabaseImpl.open(_mdbFile, _readOnly, _channel, _autoSync, _charset,
-                             _timeZone, _codecProvider);
+    return DatabaseImpl.open(_mdbFile, _readOnly, _channel, _syncPolicy, _charset,
+                             _timeZone, _codecProvider, _concurrencyMode,
+                             _journal);
   }
 
   /**
    * Creates a new Database using the configured information.
    */
   public Database create() throws IOException {
-    Database db = DatabaseImpl.create(_fileFormat, _mdbFile, _channel, _autoSync,
-                                      _charset, _timeZone);
+    Database db = DatabaseImpl.create(_fileFormat, _mdbFile, _channel, _syncPolicy,
+                                      _charset, _timeZone, _concurrencyMode,
+                                      _journal);
     if(_dbProps != null) {
       PropertyMap props = db.getDatabaseProperties();
       props.putAll(_dbProps.values());
@@ -84,6 +84,18 @@ public interface Index
    */
   public CursorBuilder newCursor();
 
+  /**
+   * Returns statistics about the entries in this index, which can be used to
+   * estimate the selectivity of index lookups.  The statistics are computed
+   * on first access and cached until the index is next modified.  Computing
+   * them reads all the leaf pages of the index (for the exact entry and
+   * distinct counts) as well as the table rows for a sample of roughly 100
+   * evenly spaced entries (for the histogram bounds and the distinct counts
+   * of the leading columns).
+   * @usage _intermediate_method_
+   */
+  public Index.Statistics getStatistics() throws IOException;
+
   /**
    * Information about a Column in an Index
    */
@@ -97,4 +109,36 @@ public interface Index
     
     public String getName();
   }
+
+  /**
+   * Statistics about the entries in an Index.
+   * @usage _intermediate_class_
+   */
+  public interface Statistics {
+
+    /**
+     * @return the total number of entries in the index
+     */
+    public int getEntryCount();
+
+    /**
+     * Returns the number of distinct values for the first given number of
+     * columns of the index.  The count for all the index columns is exact,
+     * counts for fewer columns are estimated from a sample of the entries.
+     *
+     * @param numColumns number of leading index columns to consider, between
+     *                   1 and the index column count
+     */
+    public int getDistinctCount(int numColumns);
+
+    /**
+     * Returns the bounds of an equi-depth histogram of the index entries,
+     * where each bound contains the values of the index columns for a
+     * sampled entry.  The first and last bounds are the first and last
+     * entries of the index, and roughly {@code getEntryCount() /
+     * (bounds.size() - 1)} entries fall between each consecutive pair of
+     * bounds.  Empty if the index is empty.
+     */
+    public List<? extends Row> getHistogramBounds();
+  }
 }
@@ -17,6 +17,7 @@ limitations under the License.
 package com.healthmarketscience.jackcess;
 
 import java.io.IOException;
+import java.util.Collection;
 
 import com.healthmarketscience.jackcess.util.EntryIterableBuilder;
 
@@ -69,6 +70,44 @@ public interface IndexCursor extends Cursor
   public void findClosestRowByEntry(Object... entryValues)
     throws IOException;
 
+  /**
+   * Returns an Iterable over all the rows (as defined by the cursor) where
+   * the index entries match any of the given values.  The given entries are
+   * sorted in index order and the matching rows are returned in that order,
+   * which allows the lookups to be done in a single forward pass over the
+   * index (much cheaper than calling {@link #findFirstRowByEntry} for each
+   * entry when there are many entries).  Entries given multiple times will
+   * return the matching rows multiple times.
+   * <p>
+   * Note, the cursor position is changed while iterating the returned rows.
+   *
+   * @param entryValues collection of column values for the index's columns
+   *                    (each element is the equivalent of the arguments to
+   *                    {@link #findFirstRowByEntry})
+   * @usage _intermediate_method_
+   */
+  public Iterable<Row> findRowsByEntries(Collection<Object[]> entryValues)
+    throws IOException;
+
+  /**
+   * Returns an estimate of the number of index entries between the given
+   * start and end values (inclusive), ignoring any range configured for this
+   * cursor.  The estimate is based on the fan-out of the index pages on the
+   * paths to the given entries, so only those pages are read (the count is
+   * exact if both entries fall on the same leaf page).
+   *
+   * @param startEntryValues the column values for the index's columns (the
+   *                         equivalent of the arguments to
+   *                         {@link #findFirstRowByEntry}), or {@code null}
+   *                         for the first entry in the index
+   * @param endEntryValues the column values for the index's columns, or
+   *                       {@code null} for the last entry in the index
+   * @usage _intermediate_method_
+   */
+  public int estimateRangeCount(Object[] startEntryValues,
+                                Object[] endEntryValues)
+    throws IOException;
+
   /**
    * Returns {@code true} if the current row matches the given index entries.
    *
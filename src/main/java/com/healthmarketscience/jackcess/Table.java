@@ -17,6 +17,7 @@ limitations under the License.
 package com.healthmarketscience.jackcess;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -273,6 +274,87 @@ public interface Table extends Iterable<Row>
    */
   public Row deleteRow(Row row) throws IOException;
 
+  /**
+   * Deletes the rows with the given ids.  Provided RowIds must have
+   * previously been returned from this Table.  This is much more efficient
+   * than calling {@link #deleteRow} multiple times, as each affected data
+   * page is only written once, the index entries are removed in index order
+   * and the table definition is only updated once.  Rows which are already
+   * deleted are ignored.
+   * @return the number of rows actually deleted
+   * @throws IllegalStateException if any of the given rows is not valid
+   * @usage _intermediate_method_
+   */
+  public int deleteRows(Collection<? extends RowId> rowIds) throws IOException;
+
+  /**
+   * Updates the rows with the given ids using the given row values (see
+   * {@link Cursor#updateCurrentRow(Object...)} for the format of the row
+   * values).  Provided RowIds must have previously been returned from this
+   * Table.  This is more efficient than calling {@link #updateRow} multiple
+   * times, as the rows are updated in data page order and updates which do
+   * not change any indexed values or grow the row are written in place with
+   * each data page only written once.
+   * <p>
+   * Note, the given row arrays will be updated with the current row values
+   * (assuming they are at least as long as the number of Columns in this
+   * Table).
+   * <p>
+   * Most exceptions thrown from this method will be wrapped with a {@link
+   * BatchUpdateException}.  In the case of a partially successful update,
+   * the update count is the number of rows (in RowId order) which were
+   * updated before the failure, those updates have been written and the
+   * remaining rows are unchanged.
+   * @throws IllegalStateException if any of the given rows is not valid (no
+   *         rows are updated in this case)
+   * @usage _intermediate_method_
+   */
+  public void updateRows(Map<? extends RowId,? extends Object[]> rows)
+    throws IOException;
+
+  /**
+   * Rewrites all the live rows of this table densely into new data pages,
+   * reclaiming the space used by deleted rows and moving any overflow row
+   * data back inline.  The indexes are updated for the new row locations and
+   * the old data pages are returned to the database for reuse.
+   * <p>
+   * Note, the rows of the table are all moved, so any RowIds (or Rows)
+   * previously returned from this table are no longer valid and any active
+   * Cursors on this table should be reset.
+   * @return info about the space reclaimed by the compaction
+   * @usage _intermediate_method_
+   */
+  public Table.CompactResult compact() throws IOException;
+
+  /**
+   * Removes all the rows from this table.  This is much faster than deleting
+   * the rows individually, as all the data pages of the table (and its long
+   * value pages) are returned to the database and the indexes are simply
+   * reset.  The next auto-number value is also reset.  Any foreign-key
+   * relationships to other tables are enforced (if enabled) as if the rows
+   * were deleted individually.
+   * <p>
+   * Note, any RowIds (or Rows) previously returned from this table are no
+   * longer valid and any active Cursors on this table should be reset.
+   * @throws ConstraintViolationException if the rows of this table are
+   *         referenced by another table (and the relationship does not
+   *         cascade deletes or nulls)
+   * @see #truncate(boolean)
+   * @usage _general_method_
+   */
+  public void truncate() throws IOException;
+
+  /**
+   * Removes all the rows from this table, optionally resetting the next
+   * auto-number value (see {@link #truncate()} for details).
+   *
+   * @param resetAutoNumber if {@code true}, the auto-number values of new
+   *                        rows start over, otherwise they continue from the
+   *                        last value used before the truncate
+   * @usage _general_method_
+   */
+  public void truncate(boolean resetAutoNumber) throws IOException;
+
   /**
    * Calls {@link #reset} on this table and returns a modifiable
    * Iterator which will iterate through all the rows of this table.  Use of
@@ -315,4 +397,22 @@ public interface Table extends Iterable<Row>
    * Convenience method for constructing a new CursorBuilder for this Table.
    */
   public CursorBuilder newCursor();
+
+  /**
+   * Info about the space reclaimed by a call to {@link Table#compact}.
+   * @usage _intermediate_class_
+   */
+  public interface CompactResult {
+
+    /**
+     * @return the number of data pages freed by the compaction
+     */
+    public int getReclaimedPageCount();
+
+    /**
+     * @return the number of bytes of data page space freed by the compaction
+     *         (from deleted rows and overflow row pointers)
+     */
+    public long getReclaimedBytes();
+  }
 }
@@ -0,0 +1,114 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Low-level byte operations used by {@link ByteUtil} which have faster
+ * implementations in newer jdks.  This is the java 8 implementation, the
+ * jackcess jar is a multi-release jar which includes a java 9+ version of
+ * this class (in src/main/java9) using the vectorized Arrays methods and
+ * VarHandle views.
+ *
+ * @author James Ahlborn
+ */
+final class ByteAccess
+{
+  private ByteAccess() {}
+
+  /**
+   * Compares the given byte arrays lexicographically, treating the bytes as
+   * unsigned values (a shorter array which is a prefix of a longer array
+   * sorts first).
+   * @return -1, 0 or 1 as left is less than, equal to or greater than right
+   */
+  static int compareUnsigned(byte[] left, byte[] right) {
+    int len = Math.min(left.length, right.length);
+    int pos = 0;
+    while((pos < len) && (left[pos] == right[pos])) {
+      ++pos;
+    }
+    if(pos < len) {
+      return ((ByteUtil.asUnsignedByte(left[pos]) <
+               ByteUtil.asUnsignedByte(right[pos])) ? -1 : 1);
+    }
+    return ((left.length < right.length) ? -1 :
+            ((left.length > right.length) ? 1 : 0));
+  }
+
+  /**
+   * @return {@code true} if the bytes of the given buffer starting at the
+   *         given offset match the given pattern, {@code false} otherwise
+   */
+  static boolean matchesRange(ByteBuffer buffer, int start, byte[] pattern) {
+    for(int i = 0; i < pattern.length; ++i) {
+      if(pattern[i] != buffer.get(start + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads a 3 byte int with the given byte order from the given buffer.
+   */
+  static int get3ByteInt(ByteBuffer buffer, int offset, ByteOrder order) {
+    int offInc = 1;
+    if(order == ByteOrder.BIG_ENDIAN) {
+      offInc = -1;
+      offset += 2;
+    }
+
+    int rtn = ByteUtil.getUnsignedByte(buffer, offset);
+    rtn += (ByteUtil.getUnsignedByte(buffer, offset + (1 * offInc)) << 8);
+    rtn += (ByteUtil.getUnsignedByte(buffer, offset + (2 * offInc)) << 16);
+    return rtn;
+  }
+
+  /**
+   * Reverses the 8 bytes at the given offset.
+   */
+  static void swap8Bytes(byte[] bytes, int offset) {
+    swapBytesAt(bytes, offset + 0, offset + 7);
+    swapBytesAt(bytes, offset + 1, offset + 6);
+    swapBytesAt(bytes, offset + 2, offset + 5);
+    swapBytesAt(bytes, offset + 3, offset + 4);
+  }
+
+  /**
+   * Reverses the 4 bytes at the given offset.
+   */
+  static void swap4Bytes(byte[] bytes, int offset) {
+    swapBytesAt(bytes, offset + 0, offset + 3);
+    swapBytesAt(bytes, offset + 1, offset + 2);
+  }
+
+  /**
+   * Reverses the 2 bytes at the given offset.
+   */
+  static void swap2Bytes(byte[] bytes, int offset) {
+    swapBytesAt(bytes, offset + 0, offset + 1);
+  }
+
+  private static void swapBytesAt(byte[] bytes, int p1, int p2) {
+    byte b = bytes[p1];
+    bytes[p1] = bytes[p2];
+    bytes[p2] = b;
+  }
+}
@@ -130,17 +130,7 @@ public final class ByteUtil {
    */
   public static int get3ByteInt(ByteBuffer buffer, int offset,
                                 ByteOrder order) {
-
-    int offInc = 1;
-    if(order == ByteOrder.BIG_ENDIAN) {
-      offInc = -1;
-      offset += 2;
-    }
-
-    int rtn = getUnsignedByte(buffer, offset);
-    rtn += (getUnsignedByte(buffer, offset + (1 * offInc)) << 8);
-    rtn += (getUnsignedByte(buffer, offset + (2 * offInc)) << 16);
-    return rtn;
+    return ByteAccess.get3ByteInt(buffer, offset, order);
   }
 
   /**
@@ -374,12 +364,7 @@ public final class ByteUtil {
   public static boolean matchesRange(ByteBuffer buffer, int start,
                                      byte[] pattern)
   {
-    for(int i = 0; i < pattern.length; ++i) {
-      if(pattern[i] != buffer.get(start + i)) {
-        return false;
-      }
-    }
-    return true;
+    return ByteAccess.matchesRange(buffer, start, pattern);
   }
 
   /**
@@ -551,6 +536,16 @@ public final class ByteUtil {
     return b & 0xFF;
   }
 
+  /**
+   * Compares the given byte arrays lexicographically, treating the bytes as
+   * unsigned values (a shorter array which is a prefix of a longer array
+   * sorts first).  Uses the vectorized jdk implementation when available.
+   * @return -1, 0 or 1 as left is less than, equal to or greater than right
+   */
+  public static int compareUnsigned(byte[] left, byte[] right) {
+    return ByteAccess.compareUnsigned(left, right);
+  }
+
   /**
    * @return the short value converted to an unsigned int value
    */
@@ -566,10 +561,7 @@ public final class ByteUtil {
    */
   public static void swap8Bytes(byte[] bytes, int offset)
   {
-    swapBytesAt(bytes, offset + 0, offset + 7);
-    swapBytesAt(bytes, offset + 1, offset + 6);
-    swapBytesAt(bytes, offset + 2, offset + 5);
-    swapBytesAt(bytes, offset + 3, offset + 4);
+    ByteAccess.swap8Bytes(bytes, offset);
   }
 
   /**
@@ -580,8 +572,7 @@ public final class ByteUtil {
    */
   public static void swap4Bytes(byte[] bytes, int offset)
   {
-    swapBytesAt(bytes, offset + 0, offset + 3);
-    swapBytesAt(bytes, offset + 1, offset + 2);
+    ByteAccess.swap4Bytes(bytes, offset);
   }
 
   /**
@@ -592,17 +583,7 @@ public final class ByteUtil {
    */
   public static void swap2Bytes(byte[] bytes, int offset)
   {
-    swapBytesAt(bytes, offset + 0, offset + 1);
-  }
-
-  /**
-   * Swaps the bytes at the given positions.
-   */
-  private static void swapBytesAt(byte[] bytes, int p1, int p2)
-  {
-    byte b = bytes[p1];
-    bytes[p1] = bytes[p2];
-    bytes[p2] = b;
+    ByteAccess.swap2Bytes(bytes, offset);
   }
 
   /**
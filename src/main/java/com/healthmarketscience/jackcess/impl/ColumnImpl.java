@@ -363,6 +363,14 @@ public class ColumnImpl implements Column, Comparable<ColumnImpl>, DateTimeConte
     // base does nothing
   }
 
+  /**
+   * Releases any database pages owned by this column (all the rows of the
+   * table are being removed).
+   */
+  void releaseOwnedPages() throws IOException {
+    // base does nothing
+  }
+
   /**
    * Secondary column initialization after the table is fully loaded.
    */
@@ -726,10 +734,15 @@ public class ColumnImpl implements Column, Comparable<ColumnImpl>, DateTimeConte
 
   @Override
   public PropertyMap getProperties() throws IOException {
-    if(_props == null) {
-      _props = getTable().getPropertyMaps().get(getName());
+    getDatabase().startMetadataAccess();
+    try {
+      if(_props == null) {
+        _props = getTable().getPropertyMaps().get(getName());
+      }
+      return _props;
+    } finally {
+      getDatabase().finishMetadataAccess();
     }
-    return _props;
   }
 
   @Override
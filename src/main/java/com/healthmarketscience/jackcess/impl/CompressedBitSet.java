@@ -0,0 +1,428 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.util.Arrays;
+
+/**
+ * Compressed replacement for a {@link java.util.BitSet} which is used for
+ * usage map page numbers.  The bits are split into chunks of 64K bits, each
+ * of which is stored as either a sorted array of the set bits (for sparse
+ * chunks) or a plain bitmap (for dense chunks), similar to a "roaring"
+ * bitmap.  Empty chunks take no space, so large, sparsely populated page
+ * ranges remain small.
+ *
+ * @author James Ahlborn
+ */
+final class CompressedBitSet implements Cloneable
+{
+  private static final int CHUNK_SHIFT = 16;
+  private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+  /** max number of bits stored in an ArrayChunk (at which point the array
+      is the same size as a BitmapChunk) */
+  private static final int MAX_ARRAY_SIZE = 4096;
+  /** BitmapChunks are converted back to ArrayChunks once they become this
+      sparse (leaving some slack so we don't flip back and forth) */
+  private static final int MIN_BITMAP_SIZE = MAX_ARRAY_SIZE / 2;
+
+  private static final Chunk[] NO_CHUNKS = new Chunk[0];
+
+  /** the chunks of bits, indexed by the high bits of the bit index (null
+      for empty chunks) */
+  private Chunk[] _chunks = NO_CHUNKS;
+
+  CompressedBitSet() {}
+
+  public boolean get(int bitIndex) {
+    Chunk chunk = getChunk(bitIndex >>> CHUNK_SHIFT);
+    return((chunk != null) && chunk.get(bitIndex & CHUNK_MASK));
+  }
+
+  public void set(int bitIndex) {
+    int key = bitIndex >>> CHUNK_SHIFT;
+    Chunk chunk = getOrCreateChunk(key);
+    _chunks[key] = chunk.set(bitIndex & CHUNK_MASK);
+  }
+
+  /**
+   * Sets the bits from the fromIndex (inclusive) to the toIndex (exclusive).
+   */
+  public void set(int fromIndex, int toIndex) {
+    while(fromIndex < toIndex) {
+      int key = fromIndex >>> CHUNK_SHIFT;
+      int chunkEnd = Math.min((key + 1) << CHUNK_SHIFT, toIndex);
+      Chunk chunk = getOrCreateChunk(key);
+      _chunks[key] = chunk.set(fromIndex & CHUNK_MASK,
+                               ((chunkEnd - 1) & CHUNK_MASK) + 1);
+      fromIndex = chunkEnd;
+    }
+  }
+
+  public void clear(int bitIndex) {
+    int key = bitIndex >>> CHUNK_SHIFT;
+    Chunk chunk = getChunk(key);
+    if(chunk != null) {
+      chunk = chunk.clear(bitIndex & CHUNK_MASK);
+      _chunks[key] = ((chunk.cardinality() > 0) ? chunk : null);
+    }
+  }
+
+  public void clear() {
+    _chunks = NO_CHUNKS;
+  }
+
+  /**
+   * Returns the index of the first set bit at or after the given index, -1
+   * if there is none.
+   */
+  public int nextSetBit(int fromIndex) {
+    if(fromIndex < 0) {
+      fromIndex = 0;
+    }
+    int low = fromIndex & CHUNK_MASK;
+    for(int key = (fromIndex >>> CHUNK_SHIFT); key < _chunks.length; ++key) {
+      Chunk chunk = _chunks[key];
+      if(chunk != null) {
+        int bit = chunk.nextSetBit(low);
+        if(bit >= 0) {
+          return ((key << CHUNK_SHIFT) | bit);
+        }
+      }
+      low = 0;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the index of the last set bit at or before the given index, -1
+   * if there is none.
+   */
+  public int previousSetBit(int fromIndex) {
+    if(fromIndex < 0) {
+      return -1;
+    }
+    int key = (fromIndex >>> CHUNK_SHIFT);
+    int low = fromIndex & CHUNK_MASK;
+    if(key >= _chunks.length) {
+      key = _chunks.length - 1;
+      low = CHUNK_MASK;
+    }
+    for(; key >= 0; --key) {
+      Chunk chunk = _chunks[key];
+      if(chunk != null) {
+        int bit = chunk.previousSetBit(low);
+        if(bit >= 0) {
+          return ((key << CHUNK_SHIFT) | bit);
+        }
+      }
+      low = CHUNK_MASK;
+    }
+    return -1;
+  }
+
+  public int cardinality() {
+    int count = 0;
+    for(Chunk chunk : _chunks) {
+      if(chunk != null) {
+        count += chunk.cardinality();
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public CompressedBitSet clone() {
+    CompressedBitSet copy = new CompressedBitSet();
+    copy._chunks = new Chunk[_chunks.length];
+    for(int i = 0; i < _chunks.length; ++i) {
+      if(_chunks[i] != null) {
+        copy._chunks[i] = _chunks[i].copy();
+      }
+    }
+    return copy;
+  }
+
+  private Chunk getChunk(int key) {
+    return((key < _chunks.length) ? _chunks[key] : null);
+  }
+
+  private Chunk getOrCreateChunk(int key) {
+    if(key >= _chunks.length) {
+      _chunks = Arrays.copyOf(_chunks, key + 1);
+    }
+    Chunk chunk = _chunks[key];
+    if(chunk == null) {
+      chunk = new ArrayChunk();
+      _chunks[key] = chunk;
+    }
+    return chunk;
+  }
+
+  /**
+   * A chunk of CHUNK_SIZE bits.  The modification methods return the chunk
+   * which should be used going forward (which may be a different
+   * representation).
+   */
+  private static abstract class Chunk
+  {
+    public abstract boolean get(int bit);
+
+    public abstract Chunk set(int bit);
+
+    public abstract Chunk set(int fromBit, int toBit);
+
+    public abstract Chunk clear(int bit);
+
+    public abstract int nextSetBit(int fromBit);
+
+    public abstract int previousSetBit(int fromBit);
+
+    public abstract int cardinality();
+
+    public abstract Chunk copy();
+  }
+
+  /**
+   * Chunk which stores the set bits as a sorted array.
+   */
+  private static final class ArrayChunk extends Chunk
+  {
+    private char[] _bits;
+    private int _size;
+
+    private ArrayChunk() {
+      this(new char[4], 0);
+    }
+
+    private ArrayChunk(char[] bits, int size) {
+      _bits = bits;
+      _size = size;
+    }
+
+    private int find(int bit) {
+      return Arrays.binarySearch(_bits, 0, _size, (char)bit);
+    }
+
+    @Override
+    public boolean get(int bit) {
+      return(find(bit) >= 0);
+    }
+
+    @Override
+    public Chunk set(int bit) {
+      int idx = find(bit);
+      if(idx >= 0) {
+        return this;
+      }
+      if(_size >= MAX_ARRAY_SIZE) {
+        return toBitmap().set(bit);
+      }
+      idx = -idx - 1;
+      if(_size == _bits.length) {
+        _bits = Arrays.copyOf(
+            _bits, Math.min(Math.max(_size * 2, 4), MAX_ARRAY_SIZE));
+      }
+      System.arraycopy(_bits, idx, _bits, idx + 1, _size - idx);
+      _bits[idx] = (char)bit;
+      ++_size;
+      return this;
+    }
+
+    @Override
+    public Chunk set(int fromBit, int toBit) {
+      if((_size + (toBit - fromBit)) > MAX_ARRAY_SIZE) {
+        return toBitmap().set(fromBit, toBit);
+      }
+      for(int bit = fromBit; bit < toBit; ++bit) {
+        set(bit);
+      }
+      return this;
+    }
+
+    @Override
+    public Chunk clear(int bit) {
+      int idx = find(bit);
+      if(idx >= 0) {
+        System.arraycopy(_bits, idx + 1, _bits, idx, _size - idx - 1);
+        --_size;
+      }
+      return this;
+    }
+
+    @Override
+    public int nextSetBit(int fromBit) {
+      int idx = find(fromBit);
+      if(idx < 0) {
+        idx = -idx - 1;
+      }
+      return((idx < _size) ? _bits[idx] : -1);
+    }
+
+    @Override
+    public int previousSetBit(int fromBit) {
+      int idx = find(fromBit);
+      if(idx < 0) {
+        idx = -idx - 2;
+      }
+      return((idx >= 0) ? _bits[idx] : -1);
+    }
+
+    @Override
+    public int cardinality() {
+      return _size;
+    }
+
+    @Override
+    public Chunk copy() {
+      return new ArrayChunk(Arrays.copyOf(_bits, _bits.length), _size);
+    }
+
+    private BitmapChunk toBitmap() {
+      BitmapChunk bitmap = new BitmapChunk();
+      for(int i = 0; i < _size; ++i) {
+        bitmap.set(_bits[i]);
+      }
+      return bitmap;
+    }
+  }
+
+  /**
+   * Chunk which stores all the bits in a bitmap.
+   */
+  private static final class BitmapChunk extends Chunk
+  {
+    private static final int NUM_WORDS = CHUNK_SIZE / Long.SIZE;
+
+    private final long[] _words;
+    private int _cardinality;
+
+    private BitmapChunk() {
+      this(new long[NUM_WORDS], 0);
+    }
+
+    private BitmapChunk(long[] words, int cardinality) {
+      _words = words;
+      _cardinality = cardinality;
+    }
+
+    @Override
+    public boolean get(int bit) {
+      return((_words[bit >>> 6] & (1L << bit)) != 0L);
+    }
+
+    @Override
+    public Chunk set(int bit) {
+      int idx = bit >>> 6;
+      long word = _words[idx];
+      long newWord = word | (1L << bit);
+      if(newWord != word) {
+        _words[idx] = newWord;
+        ++_cardinality;
+      }
+      return this;
+    }
+
+    @Override
+    public Chunk set(int fromBit, int toBit) {
+      int startIdx = fromBit >>> 6;
+      int endIdx = (toBit - 1) >>> 6;
+      long startMask = -1L << fromBit;
+      long endMask = -1L >>> -toBit;
+      for(int idx = startIdx; idx <= endIdx; ++idx) {
+        long mask = -1L;
+        if(idx == startIdx) {
+          mask &= startMask;
+        }
+        if(idx == endIdx) {
+          mask &= endMask;
+        }
+        long word = _words[idx];
+        long newWord = word | mask;
+        _cardinality += Long.bitCount(newWord) - Long.bitCount(word);
+        _words[idx] = newWord;
+      }
+      return this;
+    }
+
+    @Override
+    public Chunk clear(int bit) {
+      int idx = bit >>> 6;
+      long word = _words[idx];
+      long newWord = word & ~(1L << bit);
+      if(newWord != word) {
+        _words[idx] = newWord;
+        --_cardinality;
+        if(_cardinality < MIN_BITMAP_SIZE) {
+          return toArray();
+        }
+      }
+      return this;
+    }
+
+    @Override
+    public int nextSetBit(int fromBit) {
+      int idx = fromBit >>> 6;
+      long word = _words[idx] & (-1L << fromBit);
+      while(true) {
+        if(word != 0L) {
+          return (idx << 6) + Long.numberOfTrailingZeros(word);
+        }
+        if(++idx == NUM_WORDS) {
+          return -1;
+        }
+        word = _words[idx];
+      }
+    }
+
+    @Override
+    public int previousSetBit(int fromBit) {
+      int idx = fromBit >>> 6;
+      long word = _words[idx] & (-1L >>> -(fromBit + 1));
+      while(true) {
+        if(word != 0L) {
+          return (idx << 6) + (Long.SIZE - 1) -
+            Long.numberOfLeadingZeros(word);
+        }
+        if(idx-- == 0) {
+          return -1;
+        }
+        word = _words[idx];
+      }
+    }
+
+    @Override
+    public int cardinality() {
+      return _cardinality;
+    }
+
+    @Override
+    public Chunk copy() {
+      return new BitmapChunk(_words.clone(), _cardinality);
+    }
+
+    private ArrayChunk toArray() {
+      char[] bits = new char[_cardinality];
+      int size = 0;
+      for(int bit = nextSetBit(0); bit >= 0;
+          bit = ((bit < CHUNK_MASK) ? nextSetBit(bit + 1) : -1)) {
+        bits[size++] = (char)bit;
+      }
+      return new ArrayChunk(bits, size);
+    }
+  }
+}
@@ -215,7 +215,12 @@ public abstract class CursorImpl implements Cursor
 
   protected boolean isAtBeginning(boolean moveForward) throws IOException {
     if(getDirHandler(moveForward).getBeginningPosition().equals(_curPos)) {
-      return !recheckPosition(!moveForward);
+      getPageChannel().startRead(getTable());
+      try {
+        return !recheckPosition(!moveForward);
+      } finally {
+        getPageChannel().finishRead(getTable());
+      }
     }
     return false;
   }
@@ -225,8 +230,13 @@ public abstract class CursorImpl implements Cursor
   {
     // we need to ensure that the "deleted" flag has been read for this row
     // (or re-read if the table has been recently modified)
-    TableImpl.positionAtRowData(_rowState, _curPos.getRowId());
-    return _rowState.isDeleted();
+    getPageChannel().startRead(getTable());
+    try {
+      TableImpl.positionAtRowData(_rowState, _curPos.getRowId());
+      return _rowState.isDeleted();
+    } finally {
+      getPageChannel().finishRead(getTable());
+    }
   }
   
   /**
@@ -356,12 +366,20 @@ public abstract class CursorImpl implements Cursor
   protected boolean moveToAnotherRow(boolean moveForward)
     throws IOException
   {
-    if(_curPos.equals(getDirHandler(moveForward).getEndPosition())) {
-      // already at end, make sure nothing has changed
-      return recheckPosition(moveForward);
-    }
+    // note, each move is a separate read operation, any changes made by
+    // other threads in between are picked up via the usual modification
+    // checks
+    getPageChannel().startRead(getTable());
+    try {
+      if(_curPos.equals(getDirHandler(moveForward).getEndPosition())) {
+        // already at end, make sure nothing has changed
+        return recheckPosition(moveForward);
+      }
 
-    return moveToAnotherRowImpl(moveForward);
+      return moveToAnotherRowImpl(moveForward);
+    } finally {
+      getPageChannel().finishRead(getTable());
+    }
   }
 
   /**
@@ -383,7 +401,12 @@ public abstract class CursorImpl implements Cursor
     throws IOException
   {
     if(!curPos.equals(_curPos) || !prevPos.equals(_prevPos)) {
-      restorePositionImpl(curPos, prevPos);
+      getPageChannel().startRead(getTable());
+      try {
+        restorePositionImpl(curPos, prevPos);
+      } finally {
+        getPageChannel().finishRead(getTable());
+      }
     }
   }
 
@@ -439,6 +462,7 @@ public abstract class CursorImpl implements Cursor
     PositionImpl curPos = _curPos;
     PositionImpl prevPos = _prevPos;
     boolean found = false;
+    getPageChannel().startRead(getTable());
     try {
       reset(MOVE_FORWARD);
       if(TableImpl.positionAtRowHeader(_rowState, rowIdImpl) == null) {
@@ -451,6 +475,7 @@ public abstract class CursorImpl implements Cursor
       found = true;
       return true;
     } finally {
+      getPageChannel().finishRead(getTable());
       if(!found) {
         try {
           restorePosition(curPos, prevPos);
@@ -732,7 +757,12 @@ public abstract class CursorImpl implements Cursor
   public Row getCurrentRow(Collection<String> columnNames)
     throws IOException
   {
-    return _table.getRow(_rowState, _curPos.getRowId(), columnNames);
+    getPageChannel().startRead(getTable());
+    try {
+      return _table.getRow(_rowState, _curPos.getRowId(), columnNames);
+    } finally {
+      getPageChannel().finishRead(getTable());
+    }
   }
 
   @Override
@@ -745,7 +775,12 @@ public abstract class CursorImpl implements Cursor
   public Object getCurrentRowValue(ColumnImpl column)
     throws IOException
   {
-    return _table.getRowValue(_rowState, _curPos.getRowId(), column);
+    getPageChannel().startRead(getTable());
+    try {
+      return _table.getRowValue(_rowState, _curPos.getRowId(), column);
+    } finally {
+      getPageChannel().finishRead(getTable());
+    }
   }
 
   @Override
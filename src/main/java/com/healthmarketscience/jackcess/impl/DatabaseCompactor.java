@@ -0,0 +1,243 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.healthmarketscience.jackcess.Column;
+import com.healthmarketscience.jackcess.ColumnBuilder;
+import com.healthmarketscience.jackcess.Cursor;
+import com.healthmarketscience.jackcess.CursorBuilder;
+import com.healthmarketscience.jackcess.DataType;
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.Database.FileFormat;
+import com.healthmarketscience.jackcess.DatabaseBuilder;
+import com.healthmarketscience.jackcess.Index;
+import com.healthmarketscience.jackcess.IndexBuilder;
+import com.healthmarketscience.jackcess.PropertyMap;
+import com.healthmarketscience.jackcess.Relationship;
+import com.healthmarketscience.jackcess.RelationshipBuilder;
+import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.Table;
+import com.healthmarketscience.jackcess.TableBuilder;
+import com.healthmarketscience.jackcess.TableMetaData;
+
+/**
+ * Helper class used to copy the contents of a database into a new, densely
+ * packed database file.  The rows of each table are written in primary key
+ * order (so the data pages and long value pages are filled sequentially) and
+ * the indexes are populated after all the rows have been written.
+ *
+ * @author James Ahlborn
+ */
+class DatabaseCompactor
+{
+  /** number of rows written to the new table in a single batch */
+  private static final int ROW_BATCH_SIZE = 1000;
+
+  private final DatabaseImpl _srcDb;
+
+  DatabaseCompactor(DatabaseImpl srcDb) {
+    _srcDb = srcDb;
+  }
+
+  /**
+   * Creates a new database at the given path with the contents of the source
+   * database.
+   */
+  public void compactTo(Path target) throws IOException
+  {
+    List<String> tableNames = new ArrayList<String>(_srcDb.getTableNames());
+
+    // complex columns depend on hidden tables which we cannot create, so
+    // fail before doing anything
+    for(String tableName : tableNames) {
+      if(isLinked(tableName)) {
+        continue;
+      }
+      for(Column col : _srcDb.getTable(tableName).getColumns()) {
+        if(col.getType() == DataType.COMPLEX_TYPE) {
+          throw new UnsupportedOperationException(withErrorContext(
+              "Cannot compact tables with complex column " + col.getName() +
+              " (Table=" + tableName + ")"));
+        }
+      }
+    }
+
+    FileFormat fileFormat = _srcDb.getFileFormat();
+    if(fileFormat == FileFormat.GENERIC_JET4) {
+      // there is no template for "generic" jet4 files, but the 2000 format
+      // is the same on disk
+      fileFormat = FileFormat.V2000;
+    }
+
+    Database destDb = new DatabaseBuilder(target)
+      .setFileFormat(fileFormat)
+      .setCharset(_srcDb.getCharset())
+      .setTimeZone(_srcDb.getTimeZone())
+      .setAutoSync(false)
+      .create();
+    try {
+
+      // copy the data verbatim
+      destDb.setAllowAutoNumberInsert(true);
+      destDb.setEvaluateExpressions(false);
+      destDb.setEnforceForeignKeys(false);
+
+      copyProperties(_srcDb.getSummaryProperties(),
+                     destDb.getSummaryProperties(), true);
+      copyProperties(_srcDb.getUserDefinedProperties(),
+                     destDb.getUserDefinedProperties(), true);
+      copyProperties(_srcDb.getDatabaseProperties(),
+                     destDb.getDatabaseProperties(), false);
+
+      for(String tableName : tableNames) {
+        if(isLinked(tableName)) {
+          TableMetaData tmd = _srcDb.getTableMetaData(tableName);
+          destDb.createLinkedTable(tableName, tmd.getLinkedDbName(),
+                                   tmd.getLinkedTableName());
+          continue;
+        }
+        copyTable(_srcDb.getTable(tableName), destDb);
+      }
+
+      for(Relationship rel : _srcDb.getRelationships()) {
+        copyRelationship(rel, destDb);
+      }
+
+    } finally {
+      destDb.close();
+    }
+  }
+
+  private void copyTable(Table srcTable, Database destDb) throws IOException
+  {
+    TableBuilder tb = new TableBuilder(srcTable.getName());
+    for(Column col : srcTable.getColumns()) {
+      tb.addColumn(new ColumnBuilder(col.getName()).setFromColumn(col));
+    }
+    for(PropertyMap.Property prop : srcTable.getProperties()) {
+      tb.putProperty(prop.getName(), prop.getType(), prop.getValue());
+    }
+    Table destTable = tb.toTable(destDb);
+
+    // write the rows in primary key order (if any)
+    Cursor srcCursor = null;
+    for(Index idx : srcTable.getIndexes()) {
+      if(idx.isPrimaryKey()) {
+        srcCursor = CursorBuilder.createCursor(idx);
+        break;
+      }
+    }
+    if(srcCursor == null) {
+      srcCursor = CursorBuilder.createCursor(srcTable);
+    }
+    List<Object[]> rows = new ArrayList<Object[]>(ROW_BATCH_SIZE);
+    for(Row row : srcCursor) {
+      rows.add(destTable.asRow(row));
+      if(rows.size() == ROW_BATCH_SIZE) {
+        destTable.addRows(rows);
+        rows.clear();
+      }
+    }
+    if(!rows.isEmpty()) {
+      destTable.addRows(rows);
+    }
+
+    // now populate the indexes in one pass each (the foreign key indexes
+    // are created along with the relationships)
+    for(Index idx : srcTable.getIndexes()) {
+      if(idx.isForeignKey()) {
+        continue;
+      }
+      IndexBuilder ib = new IndexBuilder(idx.getName());
+      for(Index.Column idxCol : idx.getColumns()) {
+        ib.addColumns(idxCol.isAscending(), idxCol.getName());
+      }
+      if(idx.isPrimaryKey()) {
+        ib.setPrimaryKey();
+      } else if(idx.isUnique()) {
+        ib.setUnique();
+      }
+      if(idx.isRequired()) {
+        ib.setRequired();
+      }
+      if(idx.shouldIgnoreNulls()) {
+        ib.setIgnoreNulls();
+      }
+      ib.addToTable(destTable);
+    }
+  }
+
+  private void copyRelationship(Relationship rel, Database destDb)
+    throws IOException
+  {
+    RelationshipBuilder rb = new RelationshipBuilder(
+        rel.getFromTable().getName(), rel.getToTable().getName())
+      .setName(rel.getName());
+    List<Column> fromCols = rel.getFromColumns();
+    List<Column> toCols = rel.getToColumns();
+    for(int i = 0; i < fromCols.size(); ++i) {
+      rb.addColumns(fromCols.get(i).getName(), toCols.get(i).getName());
+    }
+    if(rel.hasReferentialIntegrity()) {
+      rb.setReferentialIntegrity();
+      if(rel.cascadeUpdates()) {
+        rb.setCascadeUpdates();
+      }
+      if(rel.cascadeDeletes()) {
+        rb.setCascadeDeletes();
+      }
+      if(rel.cascadeNullOnDelete()) {
+        rb.setCascadeNullOnDelete();
+      }
+    }
+    rb.setJoinType(rel.getJoinType());
+    rb.toRelationship(destDb);
+  }
+
+  private static void copyProperties(PropertyMap srcProps,
+                                     PropertyMap destProps, boolean overwrite)
+    throws IOException
+  {
+    boolean modified = false;
+    for(PropertyMap.Property prop : srcProps) {
+      if(!overwrite && (destProps.get(prop.getName()) != null)) {
+        // keep the values appropriate for the new database
+        continue;
+      }
+      destProps.put(prop.getName(), prop.getType(), prop.getValue(),
+                    prop.isDdl());
+      modified = true;
+    }
+    if(modified) {
+      destProps.save();
+    }
+  }
+
+  private boolean isLinked(String tableName) throws IOException {
+    TableMetaData tmd = _srcDb.getTableMetaData(tableName);
+    return ((tmd != null) && tmd.isLinked());
+  }
+
+  private String withErrorContext(String msg) {
+    return msg + " (Db=" + _srcDb.getName() + ")";
+  }
+}
@@ -48,6 +48,7 @@ import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
 
 import com.healthmarketscience.jackcess.ColumnBuilder;
@@ -76,6 +77,7 @@ import com.healthmarketscience.jackcess.util.ErrorHandler;
 import com.healthmarketscience.jackcess.util.LinkResolver;
 import com.healthmarketscience.jackcess.util.ReadOnlyFileChannel;
 import com.healthmarketscience.jackcess.util.SimpleColumnValidatorFactory;
+import com.healthmarketscience.jackcess.util.SyncPolicy;
 import com.healthmarketscience.jackcess.util.TableIterableBuilder;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
@@ -267,6 +269,8 @@ public class DatabaseImpl implements Database, DateTimeContext
   private final String _name;
   /** whether or not this db is read-only */
   private final boolean _readOnly;
+  /** how this db may be shared between threads */
+  private final ConcurrencyMode _concurrencyMode;
   /** Buffer to hold database pages */
   private ByteBuffer _buffer;
   /** ID of the Tables system object */
@@ -326,8 +330,12 @@ public class DatabaseImpl implements Database, DateTimeContext
   private boolean _evaluateExpressions;
   /** factory for ColumnValidators */
   private ColumnValidatorFactory _validatorFactory = SimpleColumnValidatorFactory.INSTANCE;
-  /** cache of in-use tables */
+  /** cache of in-use tables.  this (along with the system catalog lookups
+      and other lazily loaded metadata) is guarded by the metadata lock so
+      that the database may be shared by multiple threads */
   private final TableCache _tableCache = new TableCache();
+  /** lock guarding the lazily loaded database metadata */
+  private final ReentrantLock _metadataLock = new ReentrantLock();
   /** handler for reading/writing properteies */
   private PropertyMaps.Handler _propsHandler;
   /** ID of the Databases system object */
@@ -344,9 +352,15 @@ public class DatabaseImpl implements Database, DateTimeContext
   private LinkResolver _linkResolver;
   /** any linked databases which have been opened */
   private Map<String,Database> _linkedDbs;
-  /** shared state used when enforcing foreign keys */
-  private final FKEnforcer.SharedState _fkEnforcerSharedState =
-    FKEnforcer.initSharedState();
+  /** shared state used when enforcing foreign keys (per thread, as
+      multiple threads may be writing) */
+  private final ThreadLocal<FKEnforcer.SharedState> _fkEnforcerSharedState =
+    new ThreadLocal<FKEnforcer.SharedState>() {
+      @Override
+      protected FKEnforcer.SharedState initialValue() {
+        return FKEnforcer.initSharedState();
+      }
+    };
   /** shared context for evaluating expressions */
   private DBEvalContext _evalCtx;
   /** factory for the appropriate date/time type */
@@ -380,6 +394,37 @@ public class DatabaseImpl implements Database, DateTimeContext
       boolean autoSync, Charset charset, TimeZone timeZone,
       CodecProvider provider)
     throws IOException
+  {
+    return open(mdbFile, readOnly, channel,
+                (autoSync ? SyncPolicy.EVERY_WRITE : SyncPolicy.ON_CLOSE),
+                charset, timeZone, provider, null, false);
+  }
+
+  /**
+   * Open an existing Database.  If the existing file is not writeable or the
+   * readOnly flag is {@code true}, the file will be opened read-only.
+   * @param mdbFile File containing the database
+   * @param readOnly iff {@code true}, force opening file in read-only
+   *                 mode
+   * @param channel  pre-opened FileChannel.  if provided explicitly, it will
+   *                 not be closed by this Database instance
+   * @param syncPolicy determines when writes are synced to disk, if {@code
+   *                   null}, uses default
+   * @param charset  Charset to use, if {@code null}, uses default
+   * @param timeZone TimeZone to use, if {@code null}, uses default
+   * @param provider CodecProvider for handling page encoding/decoding, may be
+   *                 {@code null} if no special encoding is necessary
+   * @param concurrencyMode how the Database may be shared between threads,
+   *                        if {@code null}, uses default
+   * @param journal whether or not to use a write-ahead journal for writes
+   * @usage _advanced_method_
+   */
+  public static DatabaseImpl open(
+      Path mdbFile, boolean readOnly, FileChannel channel,
+      SyncPolicy syncPolicy, Charset charset, TimeZone timeZone,
+      CodecProvider provider, ConcurrencyMode concurrencyMode,
+      boolean journal)
+    throws IOException
   {
     boolean closeChannel = false;
     if(channel == null) {
@@ -399,6 +444,12 @@ public class DatabaseImpl implements Database, DateTimeContext
     boolean success = false;
     try {
 
+      if(!readOnly && (mdbFile != null) &&
+         PageJournal.recover(mdbFile, channel)) {
+        // the last writer did not close the database cleanly
+        LOG.warn("Replayed journal for database " + mdbFile);
+      }
+
       if(!readOnly) {
 
         // verify that format supports writing
@@ -412,9 +463,10 @@ public class DatabaseImpl implements Database, DateTimeContext
         }
       }
 
-      DatabaseImpl db = new DatabaseImpl(mdbFile, channel, closeChannel, autoSync,
-                                         null, charset, timeZone, provider,
-                                         readOnly);
+      DatabaseImpl db = new DatabaseImpl(mdbFile, channel, closeChannel,
+                                         syncPolicy, null, charset, timeZone,
+                                         provider,
+                                         readOnly, concurrencyMode, journal);
       success = true;
       return db;
 
@@ -450,6 +502,35 @@ public class DatabaseImpl implements Database, DateTimeContext
                                     FileChannel channel, boolean autoSync,
                                     Charset charset, TimeZone timeZone)
     throws IOException
+  {
+    return create(fileFormat, mdbFile, channel,
+                  (autoSync ? SyncPolicy.EVERY_WRITE : SyncPolicy.ON_CLOSE),
+                  charset, timeZone, null, false);
+  }
+
+  /**
+   * Create a new Database for the given fileFormat
+   * @param fileFormat version of new database.
+   * @param mdbFile Location to write the new database to.  <b>If this file
+   *                already exists, it will be overwritten.</b>
+   * @param channel  pre-opened FileChannel.  if provided explicitly, it will
+   *                 not be closed by this Database instance
+   * @param syncPolicy determines when writes are synced to disk, if {@code
+   *                   null}, uses default
+   * @param charset  Charset to use, if {@code null}, uses default
+   * @param timeZone TimeZone to use, if {@code null}, uses default
+   * @param concurrencyMode how the Database may be shared between threads,
+   *                        if {@code null}, uses default
+   * @param journal whether or not to use a write-ahead journal for writes
+   * @usage _advanced_method_
+   */
+  public static DatabaseImpl create(FileFormat fileFormat, Path mdbFile,
+                                    FileChannel channel,
+                                    SyncPolicy syncPolicy,
+                                    Charset charset, TimeZone timeZone,
+                                    ConcurrencyMode concurrencyMode,
+                                    boolean journal)
+    throws IOException
   {
     FileFormatDetails details = getFileFormatDetails(fileFormat);
     if (details.getFormat().READ_ONLY) {
@@ -472,9 +553,14 @@ public class DatabaseImpl implements Database, DateTimeContext
       channel.truncate(0);
       transferDbFrom(channel, getResourceAsStream(details.getEmptyFilePath()));
       channel.force(true);
-      DatabaseImpl db = new DatabaseImpl(mdbFile, channel, closeChannel, autoSync,
-                                         fileFormat, charset, timeZone, null,
-                                         false);
+      if(mdbFile != null) {
+        // a journal left over from a previous file must not be replayed
+        Files.deleteIfExists(PageJournal.getJournalPath(mdbFile));
+      }
+      DatabaseImpl db = new DatabaseImpl(mdbFile, channel, closeChannel,
+                                         syncPolicy, fileFormat, charset,
+                                         timeZone, null,
+                                         false, concurrencyMode, journal);
       success = true;
       return db;
     } finally {
@@ -531,10 +617,39 @@ public class DatabaseImpl implements Database, DateTimeContext
                          TimeZone timeZone, CodecProvider provider,
                          boolean readOnly)
     throws IOException
+  {
+    this(file, channel, closeChannel,
+         (autoSync ? SyncPolicy.EVERY_WRITE : SyncPolicy.ON_CLOSE),
+         fileFormat, charset, timeZone, provider, readOnly, null, false);
+  }
+
+  /**
+   * Create a new database by reading it in from a FileChannel.
+   * @param file the File to which the channel is connected
+   * @param channel File channel of the database.
+   * @param syncPolicy determines when writes are synced to disk, if {@code
+   *                   null}, uses default
+   * @param fileFormat version of new database (if known)
+   * @param charset Charset to use, if {@code null}, uses default
+   * @param timeZone TimeZone to use, if {@code null}, uses default
+   * @param concurrencyMode how the Database may be shared between threads,
+   *                        if {@code null}, uses default
+   * @param journal whether or not to use a write-ahead journal for writes
+   *                (ignored if read-only)
+   */
+  protected DatabaseImpl(Path file, FileChannel channel, boolean closeChannel,
+                         SyncPolicy syncPolicy, FileFormat fileFormat,
+                         Charset charset, TimeZone timeZone,
+                         CodecProvider provider, boolean readOnly,
+                         ConcurrencyMode concurrencyMode,
+                         boolean journal)
+    throws IOException
   {
     _file = file;
     _name = getName(file);
     _readOnly = readOnly;
+    _concurrencyMode = ((concurrencyMode == null) ?
+                        ConcurrencyMode.NONE : concurrencyMode);
     _format = JetFormat.getFormat(channel);
     _charset = ((charset == null) ? getDefaultCharset(_format) : charset);
     _columnOrder = getDefaultColumnOrder();
@@ -544,7 +659,31 @@ public class DatabaseImpl implements Database, DateTimeContext
     _fileFormat = fileFormat;
     setZoneInfo(timeZone, null);
     _dtf = ColumnImpl.getDateTimeFactory(getDefaultDateTimeType());
-    _pageChannel = new PageChannel(channel, closeChannel, _format, autoSync);
+    PageJournal pageJournal = null;
+    DirtyPageSet journalSnapshot = null;
+    if(journal && !readOnly) {
+      if(file == null) {
+        throw new IllegalArgumentException(
+            "A journal requires a database file");
+      }
+      pageJournal = PageJournal.create(file, channel, _format.PAGE_SIZE);
+    } else if(readOnly && (file != null)) {
+      // a writable open would replay the journal, but we can't modify the
+      // file, so read the journaled pages instead
+      journalSnapshot = PageJournal.load(file, channel, _format.PAGE_SIZE);
+      if(journalSnapshot != null) {
+        LOG.warn("Database " + file + " has a journal (it is in use or was " +
+                 "not closed cleanly), reading " +
+                 journalSnapshot.getPageCount() + " journaled pages");
+      }
+    }
+    if(syncPolicy == null) {
+      syncPolicy = (DEFAULT_AUTO_SYNC ? SyncPolicy.EVERY_WRITE :
+                    SyncPolicy.ON_CLOSE);
+    }
+    _pageChannel = new PageChannel(channel, closeChannel, _format, syncPolicy,
+                                   _concurrencyMode, pageJournal,
+                                   journalSnapshot);
     if(provider == null) {
       provider = DefaultCodecProvider.INSTANCE;
     }
@@ -574,6 +713,11 @@ public class DatabaseImpl implements Database, DateTimeContext
     return _readOnly;
   }
 
+  @Override
+  public ConcurrencyMode getConcurrencyMode() {
+    return _concurrencyMode;
+  }
+
   /**
    * @usage _advanced_method_
    */
@@ -601,10 +745,15 @@ public class DatabaseImpl implements Database, DateTimeContext
    * @usage _advanced_method_
    */
   public TableImpl getAccessControlEntries() throws IOException {
-    if(_accessControlEntries == null) {
-      _accessControlEntries = getRequiredSystemTable(TABLE_SYSTEM_ACES);
+    startMetadataAccess();
+    try {
+      if(_accessControlEntries == null) {
+        _accessControlEntries = getRequiredSystemTable(TABLE_SYSTEM_ACES);
+      }
+      return _accessControlEntries;
+    } finally {
+      finishMetadataAccess();
     }
-    return _accessControlEntries;
   }
 
   /**
@@ -612,10 +761,15 @@ public class DatabaseImpl implements Database, DateTimeContext
    * @usage _advanced_method_
    */
   public TableImpl getSystemComplexColumns() throws IOException {
-    if(_complexCols == null) {
-      _complexCols = getRequiredSystemTable(TABLE_SYSTEM_COMPLEX_COLS);
+    startMetadataAccess();
+    try {
+      if(_complexCols == null) {
+        _complexCols = getRequiredSystemTable(TABLE_SYSTEM_COMPLEX_COLS);
+      }
+      return _complexCols;
+    } finally {
+      finishMetadataAccess();
     }
-    return _complexCols;
   }
 
   @Override
@@ -646,23 +800,27 @@ public class DatabaseImpl implements Database, DateTimeContext
 
   @Override
   public boolean isLinkedTable(Table table) throws IOException {
+    startMetadataAccess();
+    try {
+      if((table == null) || (this == table.getDatabase())) {
+        // if the table is null or this db owns the table, not linked
+        return false;
+      }
 
-    if((table == null) || (this == table.getDatabase())) {
-      // if the table is null or this db owns the table, not linked
-      return false;
-    }
+      // common case, local table name == remote table name
+      TableInfo tableInfo = lookupTable(table.getName());
+      if((tableInfo != null) && tableInfo.isLinked() &&
+         matchesLinkedTable(table, ((LinkedTableInfo)tableInfo).linkedTableName,
+                            ((LinkedTableInfo)tableInfo).linkedDbName)) {
+        return true;
+      }
 
-    // common case, local table name == remote table name
-    TableInfo tableInfo = lookupTable(table.getName());
-    if((tableInfo != null) && tableInfo.isLinked() &&
-       matchesLinkedTable(table, ((LinkedTableInfo)tableInfo).linkedTableName,
-                          ((LinkedTableInfo)tableInfo).linkedDbName)) {
-      return true;
+      // but, the local table name may not match the remote table name, so we
+      // need to do a search if the common case fails
+      return _tableFinder.isLinkedTable(table);
+    } finally {
+      finishMetadataAccess();
     }
-
-    // but, the local table name may not match the remote table name, so we
-    // need to do a search if the common case fails
-    return _tableFinder.isLinkedTable(table);
   }
 
   private boolean matchesLinkedTable(Table table, String linkedTableName,
@@ -804,7 +962,7 @@ public class DatabaseImpl implements Database, DateTimeContext
    * @usage _advanced_method_
    */
   FKEnforcer.SharedState getFKEnforcerSharedState() {
-    return _fkEnforcerSharedState;
+    return _fkEnforcerSharedState.get();
   }
 
   @Override
@@ -838,7 +996,7 @@ public class DatabaseImpl implements Database, DateTimeContext
    * @returns the current handler for reading/writing properties, creating if
    * necessary
    */
-  private PropertyMaps.Handler getPropsHandler() {
+  private synchronized PropertyMaps.Handler getPropsHandler() {
     if(_propsHandler == null) {
       _propsHandler = new PropertyMaps.Handler(this);
     }
@@ -847,37 +1005,61 @@ public class DatabaseImpl implements Database, DateTimeContext
 
   @Override
   public FileFormat getFileFormat() throws IOException {
+    startMetadataAccess();
+    try {
+      if(_fileFormat == null) {
 
-    if(_fileFormat == null) {
+        Map<String,FileFormat> possibleFileFormats =
+          getFormat().getPossibleFileFormats();
 
-      Map<String,FileFormat> possibleFileFormats =
-        getFormat().getPossibleFileFormats();
+        if(possibleFileFormats.size() == 1) {
 
-      if(possibleFileFormats.size() == 1) {
+          // single possible format (null key), easy enough
+          _fileFormat = possibleFileFormats.get(null);
 
-        // single possible format (null key), easy enough
-        _fileFormat = possibleFileFormats.get(null);
+        } else {
 
-      } else {
+          // need to check the "AccessVersion" property
+          String accessVersion = (String)getDatabaseProperties().getValue(
+              PropertyMap.ACCESS_VERSION_PROP);
 
-        // need to check the "AccessVersion" property
-        String accessVersion = (String)getDatabaseProperties().getValue(
-            PropertyMap.ACCESS_VERSION_PROP);
-
-        if(isBlank(accessVersion)) {
-          // no access version, fall back to "generic"
-          accessVersion = null;
-        }
+          if(isBlank(accessVersion)) {
+            // no access version, fall back to "generic"
+            accessVersion = null;
+          }
 
-        _fileFormat = possibleFileFormats.get(accessVersion);
+          _fileFormat = possibleFileFormats.get(accessVersion);
 
-        if(_fileFormat == null) {
-          throw new IllegalStateException(withErrorContext(
-                  "Could not determine FileFormat"));
+          if(_fileFormat == null) {
+            throw new IllegalStateException(withErrorContext(
+                    "Could not determine FileFormat"));
+          }
         }
       }
+      return _fileFormat;
+    } finally {
+      finishMetadataAccess();
     }
-    return _fileFormat;
+  }
+
+  /**
+   * Begins access to the lazily loaded database metadata (must be followed by
+   * a call to {@link #finishMetadataAccess}).
+   */
+  void startMetadataAccess() {
+    // the read lock must be acquired before the metadata lock, otherwise we
+    // could deadlock with a writer which needs to load some metadata
+    _pageChannel.startRead();
+    _metadataLock.lock();
+  }
+
+  /**
+   * Completes access to the database metadata begun by {@link
+   * #startMetadataAccess}.
+   */
+  void finishMetadataAccess() {
+    _metadataLock.unlock();
+    _pageChannel.finishRead();
   }
 
   /**
@@ -916,11 +1098,15 @@ public class DatabaseImpl implements Database, DateTimeContext
    * @usage _intermediate_method_
    */
   public ColumnImpl.SortOrder getDefaultSortOrder() throws IOException {
-
-    if(_defaultSortOrder == null) {
-      initRootPageInfo();
+    startMetadataAccess();
+    try {
+      if(_defaultSortOrder == null) {
+        initRootPageInfo();
+      }
+      return _defaultSortOrder;
+    } finally {
+      finishMetadataAccess();
     }
-    return _defaultSortOrder;
   }
 
   /**
@@ -929,11 +1115,15 @@ public class DatabaseImpl implements Database, DateTimeContext
    * @usage _intermediate_method_
    */
   public short getDefaultCodePage() throws IOException {
-
-    if(_defaultCodePage == null) {
-      initRootPageInfo();
+    startMetadataAccess();
+    try {
+      if(_defaultCodePage == null) {
+        initRootPageInfo();
+      }
+      return _defaultCodePage;
+    } finally {
+      finishMetadataAccess();
     }
-    return _defaultCodePage;
   }
 
   /**
@@ -1016,14 +1206,20 @@ public class DatabaseImpl implements Database, DateTimeContext
     return getTableNames(false, true, false);
   }
 
-  private Set<String> getTableNames(boolean normalTables, boolean systemTables,
-                                    boolean linkedTables)
+  private Set<String> getTableNames(
+      boolean normalTables, boolean systemTables, boolean linkedTables)
     throws IOException
   {
-    Set<String> tableNames = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
-    _tableFinder.getTableNames(tableNames, normalTables, systemTables,
-                               linkedTables);
-    return tableNames;
+    startMetadataAccess();
+    try {
+      Set<String> tableNames =
+        new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+      _tableFinder.getTableNames(tableNames, normalTables, systemTables,
+                                 linkedTables);
+      return tableNames;
+    } finally {
+      finishMetadataAccess();
+    }
   }
 
   @Override
@@ -1080,24 +1276,28 @@ public class DatabaseImpl implements Database, DateTimeContext
    * @usage _advanced_method_
    */
   public TableImpl getTable(int tableDefPageNumber) throws IOException {
+    startMetadataAccess();
+    try {
+      // first, check for existing table
+      TableImpl table = _tableCache.get(tableDefPageNumber);
+      if(table != null) {
+        return table;
+      }
 
-    // first, check for existing table
-    TableImpl table = _tableCache.get(tableDefPageNumber);
-    if(table != null) {
-      return table;
-    }
-
-    // lookup table info from system catalog
-    Row objectRow = _tableFinder.getObjectRow(
-        tableDefPageNumber, SYSTEM_CATALOG_COLUMNS);
-    if(objectRow == null) {
-      return null;
-    }
+      // lookup table info from system catalog
+      Row objectRow = _tableFinder.getObjectRow(
+          tableDefPageNumber, SYSTEM_CATALOG_COLUMNS);
+      if(objectRow == null) {
+        return null;
+      }
 
-    String name = objectRow.getString(CAT_COL_NAME);
-    int flags = objectRow.getInt(CAT_COL_FLAGS);
+      String name = objectRow.getString(CAT_COL_NAME);
+      int flags = objectRow.getInt(CAT_COL_FLAGS);
 
-    return readTable(name, tableDefPageNumber, flags);
+      return readTable(name, tableDefPageNumber, flags);
+    } finally {
+      finishMetadataAccess();
+    }
   }
 
   /**
@@ -1108,24 +1308,34 @@ public class DatabaseImpl implements Database, DateTimeContext
   protected TableImpl getTable(String name, boolean includeSystemTables)
     throws IOException
   {
-    TableInfo tableInfo = getTableInfo(name, includeSystemTables);
-    return ((tableInfo != null) ?
-            getTable(tableInfo, includeSystemTables) : null);
+    startMetadataAccess();
+    try {
+      TableInfo tableInfo = getTableInfo(name, includeSystemTables);
+      return ((tableInfo != null) ?
+              getTable(tableInfo, includeSystemTables) : null);
+    } finally {
+      finishMetadataAccess();
+    }
   }
 
   private TableInfo getTableInfo(String name, boolean includeSystemTables)
     throws IOException
   {
-    TableInfo tableInfo = lookupTable(name);
+    startMetadataAccess();
+    try {
+      TableInfo tableInfo = lookupTable(name);
 
-    if ((tableInfo == null) || (tableInfo.pageNumber == null)) {
-      return null;
-    }
-    if(!includeSystemTables && tableInfo.isSystem()) {
-      return null;
-    }
+      if ((tableInfo == null) || (tableInfo.pageNumber == null)) {
+        return null;
+      }
+      if(!includeSystemTables && tableInfo.isSystem()) {
+        return null;
+      }
 
-    return tableInfo;
+      return tableInfo;
+    } finally {
+      finishMetadataAccess();
+    }
   }
 
   private TableImpl getTable(TableInfo tableInfo, boolean includeSystemTables)
@@ -1289,25 +1499,30 @@ public class DatabaseImpl implements Database, DateTimeContext
       TableImpl table1, TableImpl table2, boolean includeSystemTables)
     throws IOException
   {
-    initRelationships();
+    startMetadataAccess();
+    try {
+      initRelationships();
+
+      List<Relationship> relationships = new ArrayList<Relationship>();
+
+      if(table1 != null) {
+        Cursor cursor = createCursorWithOptionalIndex(
+            _relationships, REL_COL_FROM_TABLE, table1.getName());
+        collectRelationships(cursor, table1, table2, relationships,
+                             includeSystemTables);
+        cursor = createCursorWithOptionalIndex(
+            _relationships, REL_COL_TO_TABLE, table1.getName());
+        collectRelationships(cursor, table2, table1, relationships,
+                             includeSystemTables);
+      } else {
+        collectRelationships(new CursorBuilder(_relationships).toCursor(),
+                             null, null, relationships, includeSystemTables);
+      }
 
-    List<Relationship> relationships = new ArrayList<Relationship>();
-
-    if(table1 != null) {
-      Cursor cursor = createCursorWithOptionalIndex(
-          _relationships, REL_COL_FROM_TABLE, table1.getName());
-      collectRelationships(cursor, table1, table2, relationships,
-                           includeSystemTables);
-      cursor = createCursorWithOptionalIndex(
-          _relationships, REL_COL_TO_TABLE, table1.getName());
-      collectRelationships(cursor, table2, table1, relationships,
-                           includeSystemTables);
-    } else {
-      collectRelationships(new CursorBuilder(_relationships).toCursor(),
-                           null, null, relationships, includeSystemTables);
+      return relationships;
+    } finally {
+      finishMetadataAccess();
     }
-
-    return relationships;
   }
 
   RelationshipImpl writeRelationship(RelationshipCreator creator)
@@ -1424,57 +1639,66 @@ public class DatabaseImpl implements Database, DateTimeContext
   @Override
   public List<Query> getQueries() throws IOException
   {
-    // the queries table does not get loaded until first accessed
-    if(_queries == null) {
-      _queries = getRequiredSystemTable(TABLE_SYSTEM_QUERIES);
-    }
+    startMetadataAccess();
+    try {
+      // the queries table does not get loaded until first accessed
+      if(_queries == null) {
+        _queries = getRequiredSystemTable(TABLE_SYSTEM_QUERIES);
+      }
 
-    // find all the queries from the system catalog
-    List<Row> queryInfo = new ArrayList<Row>();
-    Map<Integer,List<QueryImpl.Row>> queryRowMap =
-      new HashMap<Integer,List<QueryImpl.Row>>();
-    for(Row row :
-          CursorImpl.createCursor(_systemCatalog).newIterable().setColumnNames(
-              SYSTEM_CATALOG_COLUMNS))
-    {
-      String name = row.getString(CAT_COL_NAME);
-      if (name != null && TYPE_QUERY.equals(row.get(CAT_COL_TYPE))) {
-        queryInfo.add(row);
-        Integer id = row.getInt(CAT_COL_ID);
-        queryRowMap.put(id, new ArrayList<QueryImpl.Row>());
+      // find all the queries from the system catalog
+      List<Row> queryInfo = new ArrayList<Row>();
+      Map<Integer,List<QueryImpl.Row>> queryRowMap =
+        new HashMap<Integer,List<QueryImpl.Row>>();
+      for(Row row : CursorImpl.createCursor(_systemCatalog).newIterable()
+            .setColumnNames(SYSTEM_CATALOG_COLUMNS))
+      {
+        String name = row.getString(CAT_COL_NAME);
+        if (name != null && TYPE_QUERY.equals(row.get(CAT_COL_TYPE))) {
+          queryInfo.add(row);
+          Integer id = row.getInt(CAT_COL_ID);
+          queryRowMap.put(id, new ArrayList<QueryImpl.Row>());
+        }
       }
-    }
 
-    // find all the query rows
-    for(Row row : CursorImpl.createCursor(_queries)) {
-      QueryImpl.Row queryRow = new QueryImpl.Row(row);
-      List<QueryImpl.Row> queryRows = queryRowMap.get(queryRow.objectId);
-      if(queryRows == null) {
-        LOG.warn(withErrorContext(
-                     "Found rows for query with id " + queryRow.objectId +
-                     " missing from system catalog"));
-        continue;
+      // find all the query rows
+      for(Row row : CursorImpl.createCursor(_queries)) {
+        QueryImpl.Row queryRow = new QueryImpl.Row(row);
+        List<QueryImpl.Row> queryRows = queryRowMap.get(queryRow.objectId);
+        if(queryRows == null) {
+          LOG.warn(withErrorContext(
+                       "Found rows for query with id " + queryRow.objectId +
+                       " missing from system catalog"));
+          continue;
+        }
+        queryRows.add(queryRow);
       }
-      queryRows.add(queryRow);
-    }
 
-    // lastly, generate all the queries
-    List<Query> queries = new ArrayList<Query>();
-    for(Row row : queryInfo) {
-      String name = row.getString(CAT_COL_NAME);
-      Integer id = row.getInt(CAT_COL_ID);
-      int flags = row.getInt(CAT_COL_FLAGS);
-      List<QueryImpl.Row> queryRows = queryRowMap.get(id);
-      queries.add(QueryImpl.create(flags, name, queryRows, id));
-    }
+      // lastly, generate all the queries
+      List<Query> queries = new ArrayList<Query>();
+      for(Row row : queryInfo) {
+        String name = row.getString(CAT_COL_NAME);
+        Integer id = row.getInt(CAT_COL_ID);
+        int flags = row.getInt(CAT_COL_FLAGS);
+        List<QueryImpl.Row> queryRows = queryRowMap.get(id);
+        queries.add(QueryImpl.create(flags, name, queryRows, id));
+      }
 
-    return queries;
+      return queries;
+    } finally {
+      finishMetadataAccess();
+    }
   }
 
   @Override
   public TableImpl getSystemTable(String tableName) throws IOException
   {
-    return getTable(tableName, true);
+    startMetadataAccess();
+    try {
+      return getTable(tableName, true);
+    } finally {
+      finishMetadataAccess();
+    }
   }
 
   private TableImpl getRequiredSystemTable(String tableName) throws IOException
@@ -1489,26 +1713,41 @@ public class DatabaseImpl implements Database, DateTimeContext
 
   @Override
   public PropertyMap getDatabaseProperties() throws IOException {
-    if(_dbPropMaps == null) {
-      _dbPropMaps = getPropertiesForDbObject(OBJECT_NAME_DB_PROPS);
+    startMetadataAccess();
+    try {
+      if(_dbPropMaps == null) {
+        _dbPropMaps = getPropertiesForDbObject(OBJECT_NAME_DB_PROPS);
+      }
+      return _dbPropMaps.getDefault();
+    } finally {
+      finishMetadataAccess();
     }
-    return _dbPropMaps.getDefault();
   }
 
   @Override
   public PropertyMap getSummaryProperties() throws IOException {
-    if(_summaryPropMaps == null) {
-      _summaryPropMaps = getPropertiesForDbObject(OBJECT_NAME_SUMMARY_PROPS);
+    startMetadataAccess();
+    try {
+      if(_summaryPropMaps == null) {
+        _summaryPropMaps = getPropertiesForDbObject(OBJECT_NAME_SUMMARY_PROPS);
+      }
+      return _summaryPropMaps.getDefault();
+    } finally {
+      finishMetadataAccess();
     }
-    return _summaryPropMaps.getDefault();
   }
 
   @Override
   public PropertyMap getUserDefinedProperties() throws IOException {
-    if(_userDefPropMaps == null) {
-      _userDefPropMaps = getPropertiesForDbObject(OBJECT_NAME_USERDEF_PROPS);
+    startMetadataAccess();
+    try {
+      if(_userDefPropMaps == null) {
+        _userDefPropMaps = getPropertiesForDbObject(OBJECT_NAME_USERDEF_PROPS);
+      }
+      return _userDefPropMaps.getDefault();
+    } finally {
+      finishMetadataAccess();
     }
-    return _userDefPropMaps.getDefault();
   }
 
   /**
@@ -1519,9 +1758,14 @@ public class DatabaseImpl implements Database, DateTimeContext
       int objectId, PropertyMaps.Owner owner)
     throws IOException
   {
-    return readProperties(
-        objectId, _tableFinder.getObjectRow(
-            objectId, SYSTEM_CATALOG_PROPS_COLUMNS), owner);
+    startMetadataAccess();
+    try {
+      return readProperties(
+          objectId, _tableFinder.getObjectRow(
+              objectId, SYSTEM_CATALOG_PROPS_COLUMNS), owner);
+    } finally {
+      finishMetadataAccess();
+    }
   }
 
   private Integer getDbParentId() throws IOException {
@@ -1584,47 +1828,52 @@ public class DatabaseImpl implements Database, DateTimeContext
   @Override
   public String getDatabasePassword() throws IOException
   {
-    ByteBuffer buffer = takeSharedBuffer();
+    startMetadataAccess();
     try {
-      _pageChannel.readRootPage(buffer);
-
-      byte[] pwdBytes = new byte[_format.SIZE_PASSWORD];
-      buffer.position(_format.OFFSET_PASSWORD);
-      buffer.get(pwdBytes);
+      ByteBuffer buffer = takeSharedBuffer();
+      try {
+        _pageChannel.readRootPage(buffer);
+
+        byte[] pwdBytes = new byte[_format.SIZE_PASSWORD];
+        buffer.position(_format.OFFSET_PASSWORD);
+        buffer.get(pwdBytes);
+
+        // de-mask password using extra password mask if necessary (the extra
+        // password mask is generated from the database creation date stored in
+        // the header)
+        byte[] pwdMask = getPasswordMask(buffer, _format);
+        if(pwdMask != null) {
+          for(int i = 0; i < pwdBytes.length; ++i) {
+            pwdBytes[i] ^= pwdMask[i % pwdMask.length];
+          }
+        }
 
-      // de-mask password using extra password mask if necessary (the extra
-      // password mask is generated from the database creation date stored in
-      // the header)
-      byte[] pwdMask = getPasswordMask(buffer, _format);
-      if(pwdMask != null) {
+        boolean hasPassword = false;
         for(int i = 0; i < pwdBytes.length; ++i) {
-          pwdBytes[i] ^= pwdMask[i % pwdMask.length];
+          if(pwdBytes[i] != 0) {
+            hasPassword = true;
+            break;
+          }
         }
-      }
 
-      boolean hasPassword = false;
-      for(int i = 0; i < pwdBytes.length; ++i) {
-        if(pwdBytes[i] != 0) {
-          hasPassword = true;
-          break;
+        if(!hasPassword) {
+          return null;
         }
-      }
 
-      if(!hasPassword) {
-        return null;
-      }
+        String pwd = ColumnImpl.decodeUncompressedText(pwdBytes, getCharset());
 
-      String pwd = ColumnImpl.decodeUncompressedText(pwdBytes, getCharset());
+        // remove any trailing null chars
+        int idx = pwd.indexOf('\0');
+        if(idx >= 0) {
+          pwd = pwd.substring(0, idx);
+        }
 
-      // remove any trailing null chars
-      int idx = pwd.indexOf('\0');
-      if(idx >= 0) {
-        pwd = pwd.substring(0, idx);
+        return pwd;
+      } finally {
+        releaseSharedBuffer(buffer);
       }
-
-      return pwd;
     } finally {
-      releaseSharedBuffer(buffer);
+      finishMetadataAccess();
     }
   }
 
@@ -1848,6 +2097,89 @@ public class DatabaseImpl implements Database, DateTimeContext
     return CursorImpl.createCursor(table);
   }
 
+  @Override
+  public void compactTo(Path target) throws IOException {
+    flush();
+    new DatabaseCompactor(this).compactTo(target);
+  }
+
+  @Override
+  public void beginTransaction() throws IOException {
+    _pageChannel.startTransaction();
+  }
+
+  @Override
+  public void commit() throws IOException {
+    _pageChannel.commitTransaction();
+  }
+
+  @Override
+  public void rollback() throws IOException {
+    // keep the database locked until the metadata is re-loaded
+    _pageChannel.startWrite();
+    try {
+      _pageChannel.rollbackTransaction(this);
+      resetMetadata();
+    } finally {
+      _pageChannel.finishWrite();
+    }
+  }
+
+  /**
+   * Discards all cached metadata and re-reads it from the database file
+   * (e.g. after the file was modified by another process).  Any Table (and
+   * Cursor) instances retrieved before this call are no longer valid.  This
+   * should not be called while other threads are using this Database.
+   * @usage _advanced_method_
+   */
+  public void reloadMetadata() throws IOException {
+    if(_readOnly) {
+      resetMetadata();
+      return;
+    }
+    _pageChannel.startExclusiveWrite();
+    try {
+      // the free pages may have changed as well
+      _pageChannel.readGlobalUsageMap(this);
+      resetMetadata();
+    } finally {
+      _pageChannel.finishWrite();
+    }
+  }
+
+  /**
+   * Discards all cached metadata (which may no longer match the database
+   * pages) and re-reads the system catalog.
+   */
+  private void resetMetadata() throws IOException {
+    startMetadataAccess();
+    try {
+      _tableLookup.clear();
+      _tableNames = null;
+      _tableCache.clear();
+      _systemCatalog = null;
+      _tableFinder = null;
+      _accessControlEntries = null;
+      _relParentId = null;
+      _newRelSIDs.clear();
+      _relationships = null;
+      _queries = null;
+      _complexCols = null;
+      _newTableSIDs.clear();
+      _propsHandler = null;
+      _dbParentId = null;
+      _newObjOwner = null;
+      _dbPropMaps = null;
+      _summaryPropMaps = null;
+      _userDefPropMaps = null;
+      _defaultSortOrder = null;
+      _defaultCodePage = null;
+      readSystemCatalog();
+    } finally {
+      finishMetadataAccess();
+    }
+  }
+
   @Override
   public void flush() throws IOException {
     if(_linkedDbs != null) {
@@ -1858,6 +2190,16 @@ public class DatabaseImpl implements Database, DateTimeContext
     _pageChannel.flush();
   }
 
+  @Override
+  public void awaitDurable() throws IOException {
+    if(_linkedDbs != null) {
+      for(Database linkedDb : _linkedDbs.values()) {
+        linkedDb.awaitDurable();
+      }
+    }
+    _pageChannel.awaitDurable();
+  }
+
   @Override
   public void close() throws IOException {
     if(_linkedDbs != null) {
@@ -2734,6 +3076,11 @@ public class DatabaseImpl implements Database, DateTimeContext
       return table;
     }
 
+    public void clear() {
+      _tables.clear();
+      purgeOldRefs();
+    }
+
     private void purgeOldRefs() {
       WeakTableReference oldRef = null;
       while((oldRef = (WeakTableReference)_queue.poll()) != null) {
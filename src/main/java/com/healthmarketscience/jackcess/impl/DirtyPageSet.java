@@ -0,0 +1,236 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Holds the (raw, encoded) contents of pages which have been written but not
+ * yet stored in the database file (e.g. the pages written during a
+ * transaction).  Reads of pages which have not been written fall through to
+ * an underlying source.  Pages are held in memory up to a limit, after which
+ * additional pages are spilled to a temp file.
+ *
+ * @author James Ahlborn
+ */
+final class DirtyPageSet implements Closeable
+{
+  /** max number of pages which are held in memory before spilling additional
+      pages to a temp file */
+  static final int MAX_MEMORY_PAGES = 1024;
+
+  private static final String SPILL_FILE_PREFIX = "jackcess_txn_";
+
+  /** source of the pages which have not been written */
+  private final Source _source;
+  private final int _pageSize;
+  private final int _maxMemoryPages;
+  /** dirty pages held in memory */
+  private final Map<Integer,byte[]> _memPages = new HashMap<Integer,byte[]>();
+  /** offsets of the dirty pages which have been spilled to the temp file */
+  private final Map<Integer,Long> _spillPages = new HashMap<Integer,Long>();
+  /** temp file channel for spilled pages, created on demand */
+  private FileChannel _spillChannel;
+  /** offset at which the next spilled page will be written */
+  private long _spillEnd;
+
+  DirtyPageSet(Source source, int pageSize) {
+    this(source, pageSize, MAX_MEMORY_PAGES);
+  }
+
+  DirtyPageSet(Source source, int pageSize, int maxMemoryPages) {
+    _source = source;
+    _pageSize = pageSize;
+    _maxMemoryPages = maxMemoryPages;
+  }
+
+  public int getPageCount() {
+    return _memPages.size() + _spillPages.size();
+  }
+
+  public boolean hasSpilled() {
+    return !_spillPages.isEmpty();
+  }
+
+  /**
+   * Reads bytes at the given position (which must be within a single page),
+   * using the dirty page contents if the page has been written.
+   */
+  public int read(ByteBuffer dst, long position) throws IOException {
+    byte[] page = getPage(getPageNumber(position));
+    if(page == null) {
+      return _source.read(dst, position);
+    }
+    int len = dst.remaining();
+    dst.put(page, getPageOffset(position), len);
+    return len;
+  }
+
+  /**
+   * Writes the given bytes to the dirty page at the given position (which
+   * must be within a single page).
+   * @return the number of the page written
+   */
+  public int write(ByteBuffer src, long position) throws IOException {
+    int pageNumber = getPageNumber(position);
+    byte[] page = getPage(pageNumber);
+    if(page == null) {
+      // start with the current contents of the page
+      page = new byte[_pageSize];
+      ByteBuffer pageBuf = ByteBuffer.wrap(page);
+      long pagePos = (long)pageNumber * _pageSize;
+      while(pageBuf.hasRemaining() &&
+            (_source.read(pageBuf, pagePos + pageBuf.position()) > 0)) {
+        // keep reading
+      }
+    }
+    src.get(page, getPageOffset(position), src.remaining());
+    putPage(pageNumber, page);
+    return pageNumber;
+  }
+
+  /**
+   * Returns the numbers of all the pages in this set, in page order.
+   */
+  public SortedSet<Integer> getPageNumbers() {
+    SortedSet<Integer> pageNumbers = new TreeSet<Integer>(_memPages.keySet());
+    pageNumbers.addAll(_spillPages.keySet());
+    return pageNumbers;
+  }
+
+  /**
+   * Returns the contents of the given page, {@code null} if it is not in this
+   * set.  Changes to the returned bytes must be saved using {@link #putPage}.
+   */
+  public byte[] getPage(int pageNumber) throws IOException {
+    byte[] page = _memPages.get(pageNumber);
+    if(page == null) {
+      Long spillPos = _spillPages.get(pageNumber);
+      if(spillPos != null) {
+        page = new byte[_pageSize];
+        ByteBuffer pageBuf = ByteBuffer.wrap(page);
+        while(pageBuf.hasRemaining()) {
+          if(_spillChannel.read(pageBuf, spillPos + pageBuf.position()) < 0) {
+            throw new IOException("Failed reading spilled page " + pageNumber);
+          }
+        }
+      }
+    }
+    return page;
+  }
+
+  /**
+   * Saves the contents of the given page.
+   */
+  public void putPage(int pageNumber, byte[] page) throws IOException {
+    if(_memPages.containsKey(pageNumber) ||
+       ((_memPages.size() < _maxMemoryPages) &&
+        !_spillPages.containsKey(pageNumber))) {
+      _memPages.put(pageNumber, page);
+      return;
+    }
+
+    Long spillPos = _spillPages.get(pageNumber);
+    if(spillPos == null) {
+      if(_spillChannel == null) {
+        _spillChannel = FileChannel.open(
+            Files.createTempFile(SPILL_FILE_PREFIX, ".tmp"),
+            StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.DELETE_ON_CLOSE);
+      }
+      spillPos = _spillEnd;
+      _spillEnd += _pageSize;
+      _spillPages.put(pageNumber, spillPos);
+    }
+    ByteBuffer pageBuf = ByteBuffer.wrap(page);
+    while(pageBuf.hasRemaining()) {
+      _spillChannel.write(pageBuf, spillPos + pageBuf.position());
+    }
+  }
+
+  /**
+   * Discards all the pages in this set.
+   */
+  public void clear() throws IOException {
+    _memPages.clear();
+    _spillPages.clear();
+    _spillEnd = 0L;
+    if(_spillChannel != null) {
+      _spillChannel.truncate(0L);
+    }
+  }
+
+  /**
+   * Writes all the pages in this set to the given channel (in page order).
+   */
+  public void writeTo(FileChannel channel) throws IOException {
+    for(Integer pageNumber : getPageNumbers()) {
+      ByteBuffer page = ByteBuffer.wrap(getPage(pageNumber));
+      long pagePos = (long)pageNumber * _pageSize;
+      while(page.hasRemaining()) {
+        channel.write(page, pagePos + page.position());
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    _memPages.clear();
+    _spillPages.clear();
+    if(_spillChannel != null) {
+      _spillChannel.close();
+      _spillChannel = null;
+    }
+  }
+
+  /**
+   * Returns a Source which reads directly from the given channel.
+   */
+  static Source channelSource(final FileChannel channel) {
+    return new Source() {
+      @Override
+      public int read(ByteBuffer dst, long position) throws IOException {
+        return channel.read(dst, position);
+      }
+    };
+  }
+
+  private int getPageNumber(long position) {
+    return (int)(position / _pageSize);
+  }
+
+  private int getPageOffset(long position) {
+    return (int)(position % _pageSize);
+  }
+
+  /**
+   * The source of the pages which have not been written.
+   */
+  interface Source
+  {
+    public int read(ByteBuffer dst, long position) throws IOException;
+  }
+}
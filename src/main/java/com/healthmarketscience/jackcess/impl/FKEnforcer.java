@@ -20,9 +20,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.TreeSet;
 
 import com.healthmarketscience.jackcess.Column;
@@ -245,6 +247,90 @@ final class FKEnforcer
     }
   }
 
+  /**
+   * Handles foreign-key constraints when removing all the rows from the table.
+   */
+  public void truncateTable() throws IOException {
+    if(!enforcing()) {
+      return;
+    }
+    initialize();
+
+    // note, self-referencing relationships can be ignored as all the rows are
+    // going away
+
+    // first, check the tables for which we are the primary table in the
+    // relationship (but not cascading)
+    for(Joiner joiner : _primaryJoinersChkDel) {
+      if(!isSelfJoin(joiner) && hasSecondaryValues(joiner, false)) {
+        throw new ConstraintViolationException(
+            "Removing all rows violates constraint " + joiner.toFKString());
+      }
+    }
+
+    // next, delete from the tables for which we are the primary table in
+    // the relationship
+    for(Joiner joiner : _primaryJoinersDoDel) {
+      if(!isSelfJoin(joiner)) {
+        hasSecondaryValues(joiner, true);
+      }
+    }
+
+    // lastly, null the tables for which we are the primary table in
+    // the relationship
+    for(Joiner joiner : _primaryJoinersDoNull) {
+      if(!isSelfJoin(joiner)) {
+        nullAllSecondaryValues(joiner);
+      }
+    }
+  }
+
+  /**
+   * Adds the tables which may be read or written when enforcing the
+   * foreign-key constraints for a write to this table to the given map of
+   * table definition page number to whether the table may be written.  When
+   * multiple writers are allowed, all of these tables are locked (in page
+   * number order) before the write begins.
+   */
+  void collectLockTables(SortedMap<Integer,Boolean> tables) throws IOException {
+    if(!enforcing() || _cols.isEmpty()) {
+      return;
+    }
+    collectLockTables(_table, true, tables);
+  }
+
+  private static void collectLockTables(
+      TableImpl table, boolean topLevel, SortedMap<Integer,Boolean> tables)
+    throws IOException
+  {
+    for(IndexImpl idx : table.getIndexes()) {
+      IndexImpl.ForeignKeyReference ref = idx.getReference();
+      if(ref == null) {
+        continue;
+      }
+
+      Integer otherPageNumber = ref.getOtherTablePageNumber();
+      if(!ref.isPrimaryTable()) {
+        // the primary table is only read, and only at the top-level of an
+        // operation (see updateRow)
+        if(topLevel && !tables.containsKey(otherPageNumber)) {
+          tables.put(otherPageNumber, Boolean.FALSE);
+        }
+      } else if(ref.isCascadeUpdates() || ref.isCascadeDeletes() ||
+                ref.isCascadeNullOnDelete()) {
+        // changes cascade to the secondary table, which may in turn cascade
+        // to its secondary tables
+        if(!Boolean.TRUE.equals(tables.put(otherPageNumber, Boolean.TRUE))) {
+          collectLockTables(idx.getReferencedIndex().getTable(), false,
+                            tables);
+        }
+      } else if(!tables.containsKey(otherPageNumber)) {
+        // the secondary table is only checked for referencing rows
+        tables.put(otherPageNumber, Boolean.FALSE);
+      }
+    }
+  }
+
   private static void requirePrimaryValues(Joiner joiner, Object[] row) 
     throws IOException 
   {
@@ -317,6 +403,79 @@ final class FKEnforcer
     }
   }
 
+  /**
+   * Checks the secondary table of the given relationship for any rows which
+   * reference the primary table, optionally deleting them.
+   */
+  private static boolean hasSecondaryValues(Joiner joiner, boolean delete)
+    throws IOException
+  {
+    IndexCursor toCursor = joiner.getToCursor();
+    List<? extends Index.Column> toCols = joiner.getToIndex().getColumns();
+    Set<String> toColNames = getColumnNames(toCols);
+
+    boolean found = false;
+    toCursor.beforeFirst();
+    while(toCursor.moveToNextRow()) {
+      if(areNull(toCols, toCursor.getCurrentRow(toColNames))) {
+        continue;
+      }
+      found = true;
+      if(!delete) {
+        break;
+      }
+      toCursor.deleteCurrentRow();
+    }
+    return found;
+  }
+
+  private static void nullAllSecondaryValues(Joiner joiner)
+    throws IOException
+  {
+    IndexCursor toCursor = joiner.getToCursor();
+    List<? extends Index.Column> toCols = joiner.getToIndex().getColumns();
+    Set<String> toColNames = getColumnNames(toCols);
+    Object[] toRow = new Object[joiner.getToTable().getColumnCount()];
+
+    toCursor.beforeFirst();
+    while(toCursor.moveToNextRow()) {
+      if(areNull(toCols, toCursor.getCurrentRow(toColNames))) {
+        continue;
+      }
+
+      // create update row for "to" table
+      Arrays.fill(toRow, Column.KEEP_VALUE);
+      for(Index.Column toCol : toCols) {
+        toCol.getColumn().setRowValue(toRow, null);
+      }
+
+      toCursor.updateCurrentRow(toRow);
+    }
+  }
+
+  private static Set<String> getColumnNames(
+      List<? extends Index.Column> idxCols) {
+    Set<String> colNames = new HashSet<String>();
+    for(Index.Column idxCol : idxCols) {
+      colNames.add(idxCol.getName());
+    }
+    return colNames;
+  }
+
+  private static boolean areNull(List<? extends Index.Column> idxCols,
+                                 Row row) {
+    for(Index.Column idxCol : idxCols) {
+      if(row.get(idxCol.getName()) != null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isSelfJoin(Joiner joiner) {
+    return (joiner.getToTable() == _table);
+  }
+
   private boolean anyUpdates(Object[] oldRow, Object[] newRow) {
     for(ColumnImpl col : _cols) {
       if(!MATCHER.matches(_table, col.getName(),
@@ -359,7 +518,7 @@ final class FKEnforcer
   }
 
   /**
-   * Shared state used by all FKEnforcers for a given Database.
+   * Shared state used by all FKEnforcers for a given Database (and thread).
    */
   static final class SharedState 
   {
@@ -0,0 +1,269 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * In-memory index of the free space on the data pages owned by a table (or
+ * long value column), used to find a page with enough room for a new row.
+ * The free space for a page is read lazily from the page header (the pages
+ * listed in the "free space" usage map are scanned from the end, a few at a
+ * time, as needed) and is kept up to date as pages are written.  The "free
+ * space" usage map is updated to match as pages fill up.
+ *
+ * @author James Ahlborn
+ */
+class FreeSpaceMap
+{
+  /** max number of pages read from the "free space" usage map for a single
+      search */
+  private static final int MAX_PAGES_PER_SCAN = 16;
+  /** pages without room for a row of this size are considered full */
+  private static final int MIN_ROW_SIZE = 8;
+  /** offset of the owner id (table definition page number or long value
+      marker) in the header of a data page */
+  private static final int OFFSET_OWNER_ID = 4;
+
+  /** Usage map of pages that the owner owns */
+  private final UsageMap _ownedPages;
+  /** Usage map of pages that the owner owns with free space on them */
+  private final UsageMap _freeSpacePages;
+  /** the owner id found in the header of the owner's data pages */
+  private final int _ownerId;
+  /** known pages with free space, ordered by free space then page number
+      (both packed into a single value) */
+  private final NavigableSet<Long> _pagesBySpace = new TreeSet<Long>();
+  /** free space for the known pages */
+  private final Map<Integer,Integer> _pageSpace =
+    new HashMap<Integer,Integer>();
+  /** pages which should not be returned by a search (until next updated) */
+  private final Set<Integer> _ignoredPages = new HashSet<Integer>();
+  /** pages from the "free space" usage map which have not been read yet
+      (read from the end), {@code null} until the first search */
+  private int[] _unscannedPages;
+  private int _numUnscannedPages;
+
+  FreeSpaceMap(UsageMap ownedPages, UsageMap freeSpacePages, int ownerId) {
+    _ownedPages = ownedPages;
+    _freeSpacePages = freeSpacePages;
+    _ownerId = ownerId;
+  }
+
+  private JetFormat getFormat() {
+    return _ownedPages.getFormat();
+  }
+
+  private PageChannel getPageChannel() {
+    return _ownedPages.getPageChannel();
+  }
+
+  /**
+   * Returns a data page which has room for a row of the given size (loaded
+   * into the given page holder), or {@code null} if no known page has enough
+   * room.  The page with the least sufficient free space is chosen.
+   */
+  public ByteBuffer findPage(int rowSize, TempPageHolder pageH)
+    throws IOException
+  {
+    JetFormat format = getFormat();
+    long minKey = toKey(TableImpl.getRowSpaceUsage(rowSize, format), 0);
+    int numScanned = 0;
+    while(true) {
+
+      Long key = _pagesBySpace.ceiling(minKey);
+      if(key != null) {
+        int pageNumber = (int)key.longValue();
+        ByteBuffer dataPage = pageH.setPage(getPageChannel(), pageNumber);
+        if(TableImpl.rowFitsOnDataPage(rowSize, dataPage, format)) {
+          return dataPage;
+        }
+        // our info was stale, fix it and try again
+        updatePage(pageNumber, dataPage);
+        continue;
+      }
+
+      if((numScanned >= MAX_PAGES_PER_SCAN) || !scanNextPage(pageH)) {
+        // nothing (more) to be found
+        return null;
+      }
+      ++numScanned;
+    }
+  }
+
+  /**
+   * Updates the free space info for the given (owned) data page, which was
+   * just created or modified.  Updates the "free space" usage map if the page
+   * has filled up (or has room again).
+   */
+  public void updatePage(int pageNumber, ByteBuffer dataPage)
+    throws IOException
+  {
+    JetFormat format = getFormat();
+    int freeSpace = dataPage.getShort(format.OFFSET_FREE_SPACE);
+    int rowsOnPage = TableImpl.getRowsOnDataPage(dataPage, format);
+
+    removeKnownPage(pageNumber);
+    _ignoredPages.remove(pageNumber);
+
+    if((rowsOnPage < format.MAX_NUM_ROWS_ON_DATA_PAGE) &&
+       (freeSpace >= TableImpl.getRowSpaceUsage(MIN_ROW_SIZE, format))) {
+      _pageSpace.put(pageNumber, freeSpace);
+      _pagesBySpace.add(toKey(freeSpace, pageNumber));
+      if(!_freeSpacePages.containsPageNumber(pageNumber)) {
+        _freeSpacePages.addPageNumber(pageNumber);
+      }
+    } else if(_freeSpacePages.containsPageNumber(pageNumber)) {
+      // page is full
+      _freeSpacePages.removePageNumber(pageNumber);
+    }
+  }
+
+  /**
+   * Excludes the given page from any searches until it is next updated
+   * (e.g. because it is in the middle of being modified).
+   */
+  public void ignorePage(int pageNumber) {
+    removeKnownPage(pageNumber);
+    _ignoredPages.add(pageNumber);
+  }
+
+  /**
+   * Removes all the pages from the owner's usage maps and returns them to the
+   * database for reuse.  Only pages which are actually data pages of the
+   * owner are returned to the database, any other pages (the usage map may
+   * have stale entries) are just removed from the owner's usage maps.
+   */
+  public void releaseAllPages() throws IOException
+  {
+    List<Integer> pageNumbers = new ArrayList<Integer>();
+    UsageMap.PageCursor pageCursor = _ownedPages.cursor();
+    while(true) {
+      int pageNumber = pageCursor.getNextPage();
+      if(pageNumber < 0) {
+        break;
+      }
+      pageNumbers.add(pageNumber);
+    }
+
+    PageChannel pageChannel = getPageChannel();
+    TempPageHolder pageH = TempPageHolder.newHolder(
+        TempBufferHolder.Type.SOFT);
+    for(Integer pageNumber : pageNumbers) {
+      ByteBuffer page = pageH.setPage(pageChannel, pageNumber);
+      boolean ownedPage = ((page.get(0) == PageTypes.DATA) &&
+                           (page.getInt(OFFSET_OWNER_ID) == _ownerId));
+      _ownedPages.removePageNumber(pageNumber);
+      if(_freeSpacePages.containsPageNumber(pageNumber)) {
+        _freeSpacePages.removePageNumber(pageNumber);
+      }
+      if(ownedPage) {
+        pageChannel.deallocatePage(pageNumber);
+      }
+    }
+
+    reset();
+  }
+
+  /**
+   * Discards all the free space info (e.g. because the owned pages have been
+   * replaced), which will be re-read lazily as needed.
+   */
+  public void reset() {
+    _pagesBySpace.clear();
+    _pageSpace.clear();
+    _ignoredPages.clear();
+    _unscannedPages = null;
+    _numUnscannedPages = 0;
+  }
+
+  private void removeKnownPage(int pageNumber) {
+    Integer oldSpace = _pageSpace.remove(pageNumber);
+    if(oldSpace != null) {
+      _pagesBySpace.remove(toKey(oldSpace, pageNumber));
+    }
+  }
+
+  /**
+   * Reads the free space info for the next unread page in the "free space"
+   * usage map, returning {@code false} if there are no more pages to read.
+   */
+  private boolean scanNextPage(TempPageHolder pageH) throws IOException
+  {
+    if(_unscannedPages == null) {
+      initUnscannedPages();
+    }
+
+    while(_numUnscannedPages > 0) {
+      int pageNumber = _unscannedPages[--_numUnscannedPages];
+      if(_pageSpace.containsKey(pageNumber) ||
+         _ignoredPages.contains(pageNumber) ||
+         !_freeSpacePages.containsPageNumber(pageNumber) ||
+         !_ownedPages.containsPageNumber(pageNumber)) {
+        // already known or no longer relevant
+        continue;
+      }
+      ByteBuffer dataPage = pageH.setPage(getPageChannel(), pageNumber);
+      if(dataPage.get(0) == PageTypes.DATA) {
+        updatePage(pageNumber, dataPage);
+      }
+      return true;
+    }
+
+    return false;
+  }
+
+  private void initUnscannedPages() {
+    int[] pages = new int[_freeSpacePages.getPageCount()];
+    int numPages = 0;
+    UsageMap.PageCursor pageCursor = _freeSpacePages.cursor();
+    while(true) {
+      int pageNumber = pageCursor.getNextPage();
+      if(pageNumber < 0) {
+        break;
+      }
+      if(numPages == pages.length) {
+        pages = Arrays.copyOf(pages, (numPages * 2) + 1);
+      }
+      pages[numPages++] = pageNumber;
+    }
+    _unscannedPages = pages;
+    _numUnscannedPages = numPages;
+  }
+
+  private static long toKey(int freeSpace, int pageNumber) {
+    return (((long)freeSpace << 32) | (pageNumber & 0xFFFFFFFFL));
+  }
+
+  @Override
+  public String toString() {
+    return CustomToStringStyle.builder(this)
+      .append("knownPages", _pageSpace)
+      .append("numUnscannedPages", _numUnscannedPages)
+      .toString();
+  }
+}
@@ -38,6 +38,8 @@ public class GeneralIndexCodes extends GeneralLegacyIndexCodes {
         handlers */
     private static final CharHandler[] _values = loadCodes(
         CODES_FILE, FIRST_CHAR, LAST_CHAR);
+    /** compiled codes for the simple chars in the first 256 chars */
+    private static final SimpleCodes _simpleValues = new SimpleCodes(_values);
   }
   
   private static final class ExtCodes
@@ -46,6 +48,8 @@ public class GeneralIndexCodes extends GeneralLegacyIndexCodes {
         lazy load the handlers */
     private static final CharHandler[] _values = loadCodes(
         EXT_CODES_FILE, FIRST_EXT_CHAR, LAST_EXT_CHAR);
+    /** compiled codes for the simple chars in the rest of BMP 0 */
+    private static final SimpleCodes _simpleValues = new SimpleCodes(_values);
   }
 
   static final GeneralIndexCodes GEN_INSTANCE = new GeneralIndexCodes();
@@ -67,4 +71,14 @@ public class GeneralIndexCodes extends GeneralLegacyIndexCodes {
     return ExtCodes._values[extOffset];
   }
 
+  @Override
+  SimpleCodes getSimpleCodes() {
+    return Codes._simpleValues;
+  }
+
+  @Override
+  SimpleCodes getExtSimpleCodes() {
+    return ExtCodes._simpleValues;
+  }
+
 }
@@ -293,6 +293,8 @@ public class GeneralLegacyIndexCodes {
         handlers */
     private static final CharHandler[] _values = loadCodes(
         CODES_FILE, FIRST_CHAR, LAST_CHAR);
+    /** compiled codes for the simple chars in the first 256 chars */
+    private static final SimpleCodes _simpleValues = new SimpleCodes(_values);
   }
 
   private static final class ExtCodes
@@ -301,6 +303,8 @@ public class GeneralLegacyIndexCodes {
         lazy load the handlers */
     private static final CharHandler[] _values = loadCodes(
         EXT_CODES_FILE, FIRST_EXT_CHAR, LAST_EXT_CHAR);
+    /** compiled codes for the simple chars in the rest of BMP 0 */
+    private static final SimpleCodes _simpleValues = new SimpleCodes(_values);
   }
 
   static final GeneralLegacyIndexCodes GEN_LEG_INSTANCE =
@@ -322,6 +326,21 @@ public class GeneralLegacyIndexCodes {
     return ExtCodes._values[extOffset];
   }
 
+  /**
+   * Returns the compiled codes for the simple chars in the first 256 chars.
+   */
+  SimpleCodes getSimpleCodes() {
+    return Codes._simpleValues;
+  }
+
+  /**
+   * Returns the compiled codes for the simple chars in the rest of the chars
+   * in BMP 0.
+   */
+  SimpleCodes getExtSimpleCodes() {
+    return ExtCodes._simpleValues;
+  }
+
   /**
    * Loads the CharHandlers for the given range of characters from the
    * resource file with the given name.
@@ -512,24 +531,26 @@ public class GeneralLegacyIndexCodes {
     throws IOException
   {
     // first, convert to string
-    String str = ColumnImpl.toCharSequence(value).toString();
+    CharSequence str = ColumnImpl.toCharSequence(value);
 
     // all text columns (including memos) are only indexed up to the max
     // number of chars in a VARCHAR column
-    if(str.length() > MAX_TEXT_INDEX_CHAR_LENGTH) {
-      str = str.substring(0, MAX_TEXT_INDEX_CHAR_LENGTH);
-    }
+    int strLen = Math.min(str.length(), MAX_TEXT_INDEX_CHAR_LENGTH);
 
     // record previous entry length so we can do any post-processing
     // necessary for this entry (handling descending)
     int prevLength = bout.getLength();
 
-    // now, convert each character to a "code" of one or more bytes
+    // the common case is text made up entirely of simple chars (which only
+    // have inline codes), so write as many of those as possible directly
+    // using the compiled codes
+    int charOffset = writeSimpleCodes(str, strLen, bout);
+
+    // now, convert each remaining character to a "code" of one or more bytes
     ExtraCodesStream extraCodes = null;
     ByteStream unprintableCodes = null;
     ByteStream crazyCodes = null;
-    int charOffset = 0;
-    for(int i = 0; i < str.length(); ++i) {
+    for(int i = charOffset; i < strLen; ++i) {
 
       char c = str.charAt(i);
       CharHandler ch = getCharHandler(c);
@@ -553,7 +574,7 @@ public class GeneralLegacyIndexCodes {
       byte extraCodeModifier = ch.getExtraByteModifier();
       if((bytes != null) || (extraCodeModifier != 0)) {
         if(extraCodes == null) {
-          extraCodes = new ExtraCodesStream(str.length());
+          extraCodes = new ExtraCodesStream(strLen);
         }
 
         // keep track of the extra codes for later
@@ -641,6 +662,34 @@ public class GeneralLegacyIndexCodes {
     bout.write(END_EXTRA_TEXT);
   }
 
+  /**
+   * Writes the inline codes for the leading simple chars in the given text to
+   * the given stream, returning the number of chars written.
+   */
+  private int writeSimpleCodes(CharSequence str, int strLen, ByteStream bout)
+  {
+    SimpleCodes codes = getSimpleCodes();
+    SimpleCodes extCodes = null;
+    int i = 0;
+    for(; i < strLen; ++i) {
+      char c = str.charAt(i);
+      if(c <= LAST_CHAR) {
+        if(!codes.write(c, bout)) {
+          break;
+        }
+      } else {
+        if(extCodes == null) {
+          extCodes = getExtSimpleCodes();
+        }
+        if(!extCodes.write(asUnsignedChar(c) - asUnsignedChar(FIRST_EXT_CHAR),
+                           bout)) {
+          break;
+        }
+      }
+    }
+    return i;
+  }
+
   /**
    * Encodes the given extra code info in the given stream.
    */
@@ -780,6 +829,58 @@ public class GeneralLegacyIndexCodes {
     bout.write(CRAZY_CODES_SUFFIX);
   }
 
+  /**
+   * Flattened form of the inline codes for the simple chars in a range of
+   * CharHandlers, which avoids the per-char handler lookups and type checks
+   * when writing simple text.
+   */
+  static final class SimpleCodes
+  {
+    /** max length of the inline codes for a single char */
+    private static final int MAX_CODE_LENGTH = 0x0F;
+
+    /** for each char, the offset (upper bits) and length (lower 4 bits) of
+        the inline codes in _bytes, or 0 if the char is not simple */
+    private final int[] _codes;
+    /** all the inline codes */
+    private final byte[] _bytes;
+
+    SimpleCodes(CharHandler[] handlers)
+    {
+      _codes = new int[handlers.length];
+      ByteStream bytes = new ByteStream(handlers.length * 4);
+      for(int i = 0; i < handlers.length; ++i) {
+        CharHandler ch = handlers[i];
+        if(ch.getType() != Type.SIMPLE) {
+          continue;
+        }
+        byte[] inlineBytes = ch.getInlineBytes();
+        if(inlineBytes.length > MAX_CODE_LENGTH) {
+          throw new IllegalStateException("Unexpected code bytes length " +
+                                          inlineBytes.length);
+        }
+        _codes[i] = (bytes.getLength() << 4) | inlineBytes.length;
+        bytes.write(inlineBytes);
+      }
+      _bytes = bytes.toByteArray();
+    }
+
+    /**
+     * Writes the inline codes for the char at the given index if it is a
+     * simple char, returning {@code true} if it was written, {@code false}
+     * otherwise.
+     */
+    boolean write(int idx, ByteStream bout)
+    {
+      int code = _codes[idx];
+      if(code == 0) {
+        return false;
+      }
+      bout.write(_bytes, (code >>> 4), (code & MAX_CODE_LENGTH));
+      return true;
+    }
+  }
+
   /**
    * Extension of ByteStream which keeps track of an additional char count and
    * the length of any "unprintable" code prefix.
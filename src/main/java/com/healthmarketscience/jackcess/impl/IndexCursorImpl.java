@@ -17,9 +17,13 @@ limitations under the License.
 package com.healthmarketscience.jackcess.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -183,6 +187,44 @@ public class IndexCursorImpl extends CursorImpl implements IndexCursor
     }
   }
 
+  @Override
+  public Iterable<Row> findRowsByEntries(Collection<Object[]> entryValues)
+    throws IOException
+  {
+    // encode all the entries up front so that they can be sorted in index
+    // order
+    final List<EntryProbe> probes = new ArrayList<EntryProbe>(
+        entryValues.size());
+    IndexData indexData = _entryCursor.getIndexData();
+    for(Object[] values : entryValues) {
+      Object[] rowValues = toRowValues(values);
+      probes.add(new EntryProbe(rowValues,
+                                indexData.createEntryBytes(rowValues)));
+    }
+    Collections.sort(probes, EntryProbe.COMPARATOR);
+
+    return new Iterable<Row>() {
+      @Override
+      public Iterator<Row> iterator() {
+        return new MultiEntryIterator(probes);
+      }
+    };
+  }
+
+  @Override
+  public int estimateRangeCount(Object[] startEntryValues,
+                                Object[] endEntryValues)
+    throws IOException
+  {
+    IndexData indexData = _entryCursor.getIndexData();
+    Object[] startRow = ((startEntryValues != null) ?
+                         toRowValues(startEntryValues) : null);
+    Object[] endRow = ((endEntryValues != null) ?
+                       indexData.constructPartialIndexRowFromEntry(
+                           IndexData.MAX_VALUE, endEntryValues) : null);
+    return indexData.estimateEntryCount(startRow, endRow);
+  }
+
   @Override
   public boolean currentRowMatchesEntry(Object... entryValues)
     throws IOException
@@ -367,14 +409,48 @@ public class IndexCursorImpl extends CursorImpl implements IndexCursor
   private boolean findPotentialRow(Object[] rowValues, boolean requireMatch)
     throws IOException
   {
-    _entryCursor.beforeEntry(rowValues);
+    getPageChannel().startRead(getTable());
+    try {
+      _entryCursor.beforeEntry(rowValues);
+      return moveToNextEntry(requireMatch);
+    } finally {
+      getPageChannel().finishRead(getTable());
+    }
+  }
+
+  /**
+   * Moves to the first potential row for the given probe, searching forward
+   * from the current position if possible.
+   */
+  private boolean findPotentialRow(EntryProbe probe)
+    throws IOException
+  {
+    getPageChannel().startRead(getTable());
+    try {
+      _entryCursor.beforeEncodedEntry(probe._entryBytes);
+      return moveToNextEntry(true);
+    } finally {
+      getPageChannel().finishRead(getTable());
+    }
+  }
+
+  /**
+   * Moves to the next entry of the entry cursor (which has just been
+   * repositioned).
+   */
+  private boolean moveToNextEntry(boolean requireMatch)
+    throws IOException
+  {
     IndexData.Entry startEntry = _entryCursor.getNextEntry();
     if(requireMatch && !startEntry.getRowId().isValid()) {
       // at end of index, no potential matches
       return false;
     }
-    // move to position and check it out
-    restorePosition(new IndexPosition(startEntry));
+    // move to position and check it out.  note, we keep the previous
+    // position in sync with the entry cursor so that it does not need to
+    // re-search the index
+    restorePosition(new IndexPosition(startEntry),
+                    new IndexPosition(_entryCursor.getPreviousPositionEntry()));
     return true;
   }
 
@@ -514,6 +590,68 @@ public class IndexCursorImpl extends CursorImpl implements IndexCursor
     }
   }
 
+  /**
+   * Lookup info for a single entry of a multi-entry search.
+   */
+  private static final class EntryProbe
+  {
+    private static final Comparator<EntryProbe> COMPARATOR =
+      new Comparator<EntryProbe>() {
+        @Override
+        public int compare(EntryProbe p1, EntryProbe p2) {
+          return IndexData.BYTE_CODE_COMPARATOR.compare(
+              p1._entryBytes, p2._entryBytes);
+        }
+      };
+
+    private final Object[] _rowValues;
+    private final byte[] _entryBytes;
+
+    private EntryProbe(Object[] rowValues, byte[] entryBytes) {
+      _rowValues = rowValues;
+      _entryBytes = entryBytes;
+    }
+  }
+
+  /**
+   * Row iterator (by multiple matching entries) for this cursor, modifiable.
+   */
+  private final class MultiEntryIterator extends BaseIterator
+  {
+    private final List<EntryProbe> _probes;
+    private int _probeIdx;
+    private boolean _newProbe = true;
+
+    private MultiEntryIterator(List<EntryProbe> probes)
+    {
+      super(null, true, MOVE_FORWARD, null);
+      _probes = probes;
+    }
+
+    @Override
+    protected boolean findNext() throws IOException {
+      while(_probeIdx < _probes.size()) {
+        EntryProbe probe = _probes.get(_probeIdx);
+        boolean found = false;
+        if(_newProbe) {
+          _newProbe = false;
+          found = (findPotentialRow(probe) &&
+                   currentRowMatchesEntryImpl(probe._rowValues, _colMatcher));
+        } else {
+          found = (moveToNextRow() &&
+                   currentRowMatchesEntryImpl(probe._rowValues, _colMatcher));
+        }
+        if(found) {
+          return true;
+        }
+        // move on to the next entry
+        ++_probeIdx;
+        _newProbe = true;
+      }
+      return false;
+    }
+  }
+
   /**
    * Row iterator (by matching entry) for this cursor, modifiable.
    */
@@ -19,6 +19,7 @@ package com.healthmarketscience.jackcess.impl;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -26,10 +27,12 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 
 import com.healthmarketscience.jackcess.ConstraintViolationException;
 import com.healthmarketscience.jackcess.Index;
 import com.healthmarketscience.jackcess.IndexBuilder;
+import com.healthmarketscience.jackcess.Row;
 import com.healthmarketscience.jackcess.RuntimeIOException;
 import static com.healthmarketscience.jackcess.impl.ByteUtil.ByteStream;
 import static com.healthmarketscience.jackcess.impl.IndexCodes.*;
@@ -84,6 +87,14 @@ public class IndexData {
 
   private static final int MAGIC_INDEX_NUMBER = 1923;
 
+  /** max number of peer leaf pages which will be walked when searching for
+      an entry near a known position before falling back to a search from
+      the root page */
+  private static final int MAX_NEARBY_PAGES = 2;
+
+  /** max number of entries sampled when computing index statistics */
+  private static final int MAX_STATISTICS_SAMPLE_SIZE = 101;
+
   private static final ByteOrder ENTRY_BYTE_ORDER = ByteOrder.BIG_ENDIAN;
 
   /** type attributes for Entries which simplify comparisons */
@@ -118,18 +129,7 @@ public class IndexData {
         if(right == null) {
           return 1;
         }
-
-        int len = Math.min(left.length, right.length);
-        int pos = 0;
-        while((pos < len) && (left[pos] == right[pos])) {
-          ++pos;
-        }
-        if(pos < len) {
-          return ((ByteUtil.asUnsignedByte(left[pos]) <
-                   ByteUtil.asUnsignedByte(right[pos])) ? -1 : 1);
-        }
-        return ((left.length < right.length) ? -1 :
-                ((left.length > right.length) ? 1 : 0));
+        return ByteUtil.compareUnsigned(left, right);
       }
     };
 
@@ -163,6 +163,9 @@ public class IndexData {
   private boolean _initialized;
   /** modification count for the table, keeps cursors up-to-date */
   private int _modCount;
+  /** statistics for the index entries, if computed since the last
+      modification */
+  private StatisticsImpl _statistics;
   /** temp buffer used to read/write the index pages */
   private final TempBufferHolder _indexBufferH =
     TempBufferHolder.newHolder(TempBufferHolder.Type.SOFT, true);
@@ -174,7 +177,9 @@ public class IndexData {
   private boolean _primaryKey;
   /** if non-null, the reason why we cannot create entries for this index */
   private String _unsupportedReason;
-  /** Cache which manages the index pages */
+  /** Cache which manages the index pages.  access to the cache (and the
+      temp buffers) is guarded by this object's monitor so that multiple
+      cursors may read a shared (read-only) index concurrently */
   private final IndexPageCache _pageCache;
 
   protected IndexData(TableImpl table, int number, int uniqueEntryCount,
@@ -377,6 +382,12 @@ public class IndexData {
     _ownedPages.addPageNumber(pageNumber);
   }
 
+  void removeOwnedPage(int pageNumber) throws IOException {
+    if(_ownedPages.containsPageNumber(pageNumber)) {
+      _ownedPages.removePageNumber(pageNumber);
+    }
+  }
+
   void collectUsageMapPages(Collection<Integer> pages) {
     pages.add(_ownedPages.getTablePageNumber());
   }
@@ -409,12 +420,148 @@ public class IndexData {
     return count;
   }
 
+  /**
+   * Returns statistics about the entries in this index, computing them if
+   * they are not available for the current state of the index.
+   * <p>
+   * Forces index initialization.
+   * @usage _intermediate_method_
+   */
+  public synchronized Index.Statistics getStatistics()
+    throws IOException
+  {
+    initialize();
+    if((_statistics == null) || (_statistics._modCount != _modCount)) {
+      _statistics = computeStatistics();
+    }
+    return _statistics;
+  }
+
+  /**
+   * Estimates the number of index entries between the given start and end
+   * rows (inclusive) using the fan-out of the index pages.
+   * <p>
+   * Forces index initialization.
+   *
+   * @param startRow the first row of data for the range, or {@code null} for
+   *                 the first entry
+   * @param endRow the last row of data for the range, or {@code null} for
+   *               the last entry
+   * @usage _intermediate_method_
+   */
+  public synchronized int estimateEntryCount(Object[] startRow, Object[] endRow)
+    throws IOException
+  {
+    initialize();
+    Entry startEntry = FIRST_ENTRY;
+    if(startRow != null) {
+      startEntry = new Entry(createEntryBytes(startRow),
+                             RowIdImpl.FIRST_ROW_ID);
+    }
+    Entry endEntry = LAST_ENTRY;
+    if(endRow != null) {
+      endEntry = new Entry(createEntryBytes(endRow), RowIdImpl.LAST_ROW_ID);
+    }
+    return _pageCache.estimateEntryCount(startEntry, endEntry);
+  }
+
+  /**
+   * Computes the statistics for the current index entries.  All the leaf
+   * pages are read in order to count the entries (and distinct entries)
+   * exactly, and the histogram and column prefix counts are built from the
+   * table rows of a sample of evenly spaced entries (the entry bytes cannot
+   * generally be decoded back into values).
+   */
+  private StatisticsImpl computeStatistics()
+    throws IOException
+  {
+    // walk the leaf pages, keeping track of where each page starts
+    List<Integer> pageNumbers = new ArrayList<Integer>();
+    List<Integer> pageStartIdxs = new ArrayList<Integer>();
+    int entryCount = 0;
+    int distinctCount = 0;
+    Entry prevEntry = null;
+    DataPage dataPage = findDataPage(FIRST_ENTRY);
+    while(true) {
+      List<Entry> entries = dataPage.getEntries();
+      if(!entries.isEmpty()) {
+        pageNumbers.add(dataPage.getPageNumber());
+        pageStartIdxs.add(entryCount);
+        entryCount += entries.size();
+        distinctCount += countDistinctEntries(entries, prevEntry);
+        prevEntry = entries.get(entries.size() - 1);
+      }
+      int nextPageNumber = dataPage.getNextPageNumber();
+      if(nextPageNumber == INVALID_INDEX_PAGE_NUMBER) {
+        break;
+      }
+      dataPage = getDataPage(nextPageNumber);
+    }
+
+    int numColumns = _columns.size();
+    List<String> colNames = new ArrayList<String>(numColumns);
+    for(ColumnDescriptor col : _columns) {
+      colNames.add(col.getName());
+    }
+
+    // grab the rows for the sampled entries (which are the histogram bounds)
+    // and count the distinct column prefixes in the sample
+    List<Row> bounds = new ArrayList<Row>();
+    int[] sampleDistinctCounts = new int[numColumns];
+    int sampleSize = Math.min(entryCount, MAX_STATISTICS_SAMPLE_SIZE);
+    TableImpl.RowState rowState = getTable().createRowState();
+    byte[][] prevPrefixes = new byte[numColumns][];
+    int pageIdx = 0;
+    for(int i = 0; i < sampleSize; ++i) {
+      int entryIdx = ((sampleSize > 1) ?
+                      (int)(((long)i * (entryCount - 1)) / (sampleSize - 1)) :
+                      0);
+      while(((pageIdx + 1) < pageNumbers.size()) &&
+            (pageStartIdxs.get(pageIdx + 1) <= entryIdx)) {
+        ++pageIdx;
+      }
+      Entry entry = getDataPage(pageNumbers.get(pageIdx)).getEntries()
+        .get(entryIdx - pageStartIdxs.get(pageIdx));
+      Row row = getTable().getRow(rowState, entry.getRowId(), colNames);
+      bounds.add(row);
+
+      Object[] values = new Object[numColumns];
+      for(int j = 0; j < numColumns; ++j) {
+        values[j] = row.get(colNames.get(j));
+        byte[] prefix = createEntryBytes(constructPartialIndexRowFromEntry(
+            MIN_VALUE, Arrays.copyOf(values, j + 1)));
+        if(!Arrays.equals(prefix, prevPrefixes[j])) {
+          ++sampleDistinctCounts[j];
+          prevPrefixes[j] = prefix;
+        }
+      }
+    }
+
+    // the full distinct count is exact, the prefix counts are scaled by the
+    // ratio seen in the sample
+    int[] distinctCounts = new int[numColumns];
+    for(int j = 0; j < numColumns; ++j) {
+      int count = distinctCount;
+      if((j < (numColumns - 1)) && (sampleSize > 0)) {
+        count = (int)Math.round(
+            ((double)distinctCount * sampleDistinctCounts[j]) /
+            sampleDistinctCounts[numColumns - 1]);
+        count = Math.min(Math.max(count, sampleDistinctCounts[j]),
+                         distinctCount);
+      }
+      distinctCounts[j] = count;
+    }
+
+    return new StatisticsImpl(_modCount, entryCount, distinctCounts,
+                              Collections.unmodifiableList(bounds));
+  }
+
   /**
    * Forces initialization of this index (actual parsing of index pages).
    * normally, the index will not be initialized until the entries are
    * actually needed.
    */
-  public void initialize() throws IOException {
+  public synchronized void initialize() throws IOException {
     if(!_initialized) {
       _pageCache.setRootPageNumber(getRootPageNumber());
       _initialized = true;
@@ -438,6 +585,36 @@ public class IndexData {
     _pageCache.write();
   }
 
+  /**
+   * Removes all the entries from this index, resetting the root page to an
+   * empty page and releasing all the other index pages.
+   * <p>
+   * Forces index initialization.
+   */
+  public void truncate() throws IOException
+  {
+    // make sure we've parsed the root page
+    initialize();
+
+    if(_unsupportedReason != null) {
+      throw new UnsupportedOperationException(
+          "Cannot write indexes of this type due to " + _unsupportedReason);
+    }
+
+    for(Integer pageNumber : _pageCache.truncate()) {
+      removeOwnedPage(pageNumber);
+    }
+
+    ByteBuffer buffer = getPageChannel().createPageBuffer();
+    writeDataPage(buffer, NEW_ROOT_DATA_PAGE,
+                  getTable().getTableDefPageNumber(), getFormat());
+    getPageChannel().writePage(buffer, _rootPageNumber);
+
+    _pageCache.setRootPageNumber(_rootPageNumber);
+    _uniqueEntryCount = 0;
+    ++_modCount;
+  }
+
   /**
    * Read the rest of the index info from a tableBuffer
    * @param tableBuffer table definition buffer to read from initial info
@@ -731,6 +908,43 @@ public class IndexData {
     deleteRowImpl(row, rowId);
   }
 
+  /**
+   * Removes the entries for the given rows from this index.  The entries are
+   * removed in index order, so that each index page is only visited once.
+   * <p>
+   * Forces index initialization.
+   *
+   * @param rows Rows to remove
+   * @param rowIds rowIds of the rows to be removed
+   */
+  public void deleteRows(List<Object[]> rows, List<RowIdImpl> rowIds)
+    throws IOException
+  {
+    // make sure we've parsed the entries
+    initialize();
+
+    List<Entry> oldEntries = new ArrayList<Entry>(rows.size());
+    for(int i = 0; i < rows.size(); ++i) {
+      Object[] row = rows.get(i);
+      if(shouldIgnoreNulls() && (countNullValues(row) == _columns.size())) {
+        // nothing to do
+        continue;
+      }
+      oldEntries.add(new Entry(createEntryBytes(row), rowIds.get(i)));
+    }
+    Collections.sort(oldEntries);
+
+    for(Entry oldEntry : oldEntries) {
+      if(removeEntry(oldEntry) != null) {
+        ++_modCount;
+      } else {
+        LOG.warn(withErrorContext(
+            "Failed removing index entry " + oldEntry + " for rowId: " +
+            oldEntry.getRowId()));
+      }
+    }
+  }
+
   private Entry deleteRowImpl(Object[] row, RowIdImpl rowId)
     throws IOException
   {
@@ -899,6 +1113,67 @@ public class IndexData {
     return new Position(dataPage, idx, entry, between);
   }
 
+  /**
+   * Finds the position of the given entry, starting the search from the
+   * given (up-to-date) position.  If the entry is on the same leaf page as
+   * the given position or on one of the next few peer pages, the leaf pages
+   * are walked forward instead of searching from the root page.
+   */
+  private Position findEntryPosition(Position fromPos, Entry entry)
+    throws IOException
+  {
+    DataPage dataPage = findNearbyDataPage(fromPos, entry);
+    if(dataPage == null) {
+      // too far away, search from the root
+      return findEntryPosition(entry);
+    }
+
+    int idx = dataPage.findEntry(entry);
+    boolean between = false;
+    if(idx < 0) {
+      idx = missingIndexToInsertionPoint(idx);
+      between = true;
+    }
+    return new Position(dataPage, idx, entry, between);
+  }
+
+  /**
+   * Returns the leaf page on which the given entry does or should reside if
+   * that page can be reached by walking forward from the given position,
+   * {@code null} otherwise.
+   */
+  private DataPage findNearbyDataPage(Position fromPos, Entry entry)
+    throws IOException
+  {
+    DataPage dataPage = fromPos.getDataPage();
+    if(!dataPage.isLeaf() || (fromPos.getEntry().compareTo(entry) > 0)) {
+      // can only walk forward along the leaf pages
+      return null;
+    }
+
+    int numPages = 0;
+    while(true) {
+      List<Entry> entries = dataPage.getEntries();
+      if(entries.isEmpty()) {
+        // page is in flux, let the "normal" search sort it out
+        return null;
+      }
+      if(entries.get(entries.size() - 1).compareTo(entry) >= 0) {
+        // entry belongs on this page
+        return dataPage;
+      }
+      int nextPageNumber = dataPage.getNextPageNumber();
+      if(nextPageNumber == INVALID_INDEX_PAGE_NUMBER) {
+        // entry is after the last entry in the index
+        return dataPage;
+      }
+      if(++numPages > MAX_NEARBY_PAGES) {
+        return null;
+      }
+      dataPage = getDataPage(nextPageNumber);
+    }
+  }
+
   private Position getNextPosition(Position curPos)
     throws IOException
   {
@@ -1182,7 +1457,8 @@ public class IndexData {
 
   /**
    * Reads an index page, populating the correct collection based on the page
-   * type (node or leaf).
+   * type (node or leaf).  Note, the entries are not actually created until
+   * they are needed (see {@link PageEntryList}).
    */
   protected void readDataPage(DataPage dataPage)
     throws IOException
@@ -1200,58 +1476,40 @@ public class IndexData {
     int entryMaskLength = getFormat().SIZE_INDEX_ENTRY_MASK;
     int entryMaskPos = getFormat().OFFSET_INDEX_ENTRY_MASK;
     int entryPos = entryMaskPos + entryMaskLength;
-    int lastStart = 0;
-    int totalEntrySize = 0;
-    byte[] entryPrefix = null;
-    List<Entry> entries = new ArrayList<Entry>();
-    TempBufferHolder tmpEntryBufferH =
-      TempBufferHolder.newHolder(TempBufferHolder.Type.HARD, true,
-                                 ENTRY_BYTE_ORDER);
-
-    Entry prevEntry = FIRST_ENTRY;
+
+    // determine the offsets of all the entries from the entry mask
+    int[] entryOffsets = new int[(entryMaskLength * 8) + 1];
+    int numEntries = 0;
     for (int i = 0; i < entryMaskLength; i++) {
       byte entryMask = buffer.get(entryMaskPos + i);
       for (int j = 0; j < 8; j++) {
         if ((entryMask & (1 << j)) != 0) {
-          int length = (i * 8) + j - lastStart;
-          buffer.position(entryPos + lastStart);
-
-          // determine if we can read straight from the index page (if no
-          // entryPrefix).  otherwise, create temp buf with complete entry.
-          ByteBuffer curEntryBuffer = buffer;
-          int curEntryLen = length;
-          if(entryPrefix != null) {
-            curEntryBuffer = getTempEntryBuffer(
-                buffer, length, entryPrefix, tmpEntryBufferH);
-            curEntryLen += entryPrefix.length;
-          }
-          totalEntrySize += curEntryLen;
-
-          Entry entry = newEntry(curEntryBuffer, curEntryLen, isLeaf);
-          if(prevEntry.compareTo(entry) >= 0) {
-            throw new IOException(withErrorContext(
-                    "Unexpected order in index entries, " +
-                    prevEntry + " >= " + entry));
-          }
-
-          entries.add(entry);
-
-          if((entries.size() == 1) && (entryPrefixLength > 0)) {
-            // read any shared entry prefix
-            entryPrefix = new byte[entryPrefixLength];
-            buffer.position(entryPos + lastStart);
-            buffer.get(entryPrefix);
-          }
-
-          lastStart += length;
-          prevEntry = entry;
+          entryOffsets[++numEntries] = (i * 8) + j;
         }
       }
     }
+    entryOffsets = Arrays.copyOf(entryOffsets, numEntries + 1);
+
+    // grab the raw entry data (the first entry includes the shared prefix)
+    int dataLength = entryOffsets[numEntries];
+    byte[] entryData = ByteUtil.getBytes(buffer, entryPos, dataLength);
+    byte[] entryPrefix = EMPTY_PREFIX;
+    if((numEntries > 0) && (entryPrefixLength > 0)) {
+      entryPrefix = ByteUtil.copyOf(entryData, entryPrefixLength);
+    }
 
-    dataPage.setEntryPrefix(entryPrefix != null ? entryPrefix : EMPTY_PREFIX);
+    PageEntryList entries = new PageEntryList(
+        entryData, entryOffsets, entryPrefix, isLeaf);
+    int badIdx = entries.findOutOfOrderEntry();
+    if(badIdx > 0) {
+      throw new IOException(withErrorContext(
+              "Unexpected order in index entries, " +
+              entries.get(badIdx - 1) + " >= " + entries.get(badIdx)));
+    }
+
+    dataPage.setEntryPrefix(entryPrefix);
     dataPage.setEntries(entries);
-    dataPage.setTotalEntrySize(totalEntrySize);
+    dataPage.setTotalEntrySize(entries.getTotalEntrySize());
 
     int prevPageNumber = buffer.getInt(getFormat().OFFSET_PREV_INDEX_PAGE);
     int nextPageNumber = buffer.getInt(getFormat().OFFSET_NEXT_INDEX_PAGE);
@@ -1263,39 +1521,6 @@ public class IndexData {
     dataPage.setChildTailPageNumber(childTailPageNumber);
   }
 
-  /**
-   * Returns a new Entry of the correct type for the given data and page type.
-   */
-  private static Entry newEntry(ByteBuffer buffer, int entryLength,
-                                boolean isLeaf)
-    throws IOException
-  {
-    if(isLeaf) {
-      return new Entry(buffer, entryLength);
-    }
-    return new NodeEntry(buffer, entryLength);
-  }
-
-  /**
-   * Returns an entry buffer containing the relevant data for an entry given
-   * the valuePrefix.
-   */
-  private ByteBuffer getTempEntryBuffer(
-      ByteBuffer indexPage, int entryLen, byte[] valuePrefix,
-      TempBufferHolder tmpEntryBufferH)
-  {
-    ByteBuffer tmpEntryBuffer = tmpEntryBufferH.getBuffer(
-        getPageChannel(), valuePrefix.length + entryLen);
-
-    // combine valuePrefix and rest of entry from indexPage, then prep for
-    // reading
-    tmpEntryBuffer.put(valuePrefix);
-    tmpEntryBuffer.put(indexPage.array(), indexPage.position(), entryLen);
-    tmpEntryBuffer.flip();
-
-    return tmpEntryBuffer;
-  }
-
   /**
    * Determines if the given index page is a leaf or node page.
    */
@@ -1338,7 +1563,7 @@ public class IndexData {
   /**
    * Creates the entry bytes for a row of values.
    */
-  private byte[] createEntryBytes(Object[] values) throws IOException
+  synchronized byte[] createEntryBytes(Object[] values) throws IOException
   {
     if(values == null) {
       return null;
@@ -1381,7 +1606,7 @@ public class IndexData {
   /**
    * Finds the data page for the given entry.
    */
-  protected DataPage findDataPage(Entry entry)
+  protected synchronized DataPage findDataPage(Entry entry)
     throws IOException
   {
     return _pageCache.findCacheDataPage(entry);
@@ -1390,7 +1615,7 @@ public class IndexData {
   /**
    * Gets the data page for the pageNumber.
    */
-  protected DataPage getDataPage(int pageNumber)
+  protected synchronized DataPage getDataPage(int pageNumber)
     throws IOException
   {
     return _pageCache.getCacheDataPage(pageNumber);
@@ -2035,36 +2260,6 @@ public class IndexData {
       this(entryBytes, rowId, determineEntryType(entryBytes, rowId));
     }
 
-    /**
-     * Read an existing entry in from a buffer
-     */
-    private Entry(ByteBuffer buffer, int entryLen)
-      throws IOException
-    {
-      this(buffer, entryLen, 0);
-    }
-
-    /**
-     * Read an existing entry in from a buffer
-     */
-    private Entry(ByteBuffer buffer, int entryLen, int extraTrailingLen)
-      throws IOException
-    {
-      // we need 4 trailing bytes for the rowId, plus whatever the caller
-      // wants
-      int colEntryLen = entryLen - (4 + extraTrailingLen);
-
-      // read the entry bytes
-      _entryBytes = ByteUtil.getBytes(buffer, colEntryLen);
-
-      // read the rowId
-      int page = ByteUtil.get3ByteInt(buffer, ENTRY_BYTE_ORDER);
-      int row = ByteUtil.getUnsignedByte(buffer);
-
-      _rowId = new RowIdImpl(page, row);
-      _type = EntryType.NORMAL;
-    }
-
     public RowIdImpl getRowId() {
       return _rowId;
     }
@@ -2231,18 +2426,6 @@ public class IndexData {
       _subPageNumber = subPageNumber;
     }
 
-    /**
-     * Read an existing node entry in from a buffer
-     */
-    private NodeEntry(ByteBuffer buffer, int entryLen)
-      throws IOException
-    {
-      // we need 4 trailing bytes for the sub-page number
-      super(buffer, entryLen, 4);
-
-      _subPageNumber = ByteUtil.getInt(buffer, ENTRY_BYTE_ORDER);
-    }
-
     @Override
     public Integer getSubPageNumber() {
       return _subPageNumber;
@@ -2376,8 +2559,8 @@ public class IndexData {
     public void beforeEntry(Object[] row)
       throws IOException
     {
-      restorePosition(new Entry(IndexData.this.createEntryBytes(row),
-                                RowIdImpl.FIRST_ROW_ID));
+      moveToEntry(new Entry(IndexData.this.createEntryBytes(row),
+                            RowIdImpl.FIRST_ROW_ID));
     }
 
     /**
@@ -2387,8 +2570,43 @@ public class IndexData {
     public void afterEntry(Object[] row)
       throws IOException
     {
-      restorePosition(new Entry(IndexData.this.createEntryBytes(row),
-                                RowIdImpl.LAST_ROW_ID));
+      moveToEntry(new Entry(IndexData.this.createEntryBytes(row),
+                            RowIdImpl.LAST_ROW_ID));
+    }
+
+    /**
+     * Repositions the cursor so that the next row will be the first entry
+     * &gt;= the given entry bytes (as created by {@link #createEntryBytes}).
+     */
+    void beforeEncodedEntry(byte[] entryBytes)
+      throws IOException
+    {
+      moveToEntry(new Entry(entryBytes, RowIdImpl.FIRST_ROW_ID));
+    }
+
+    /**
+     * Moves the cursor to the given entry (current position becomes previous
+     * position).  If the given entry is at or after the current position,
+     * the search starts from the current leaf page, which makes this
+     * efficient for monotonically increasing lookups (sorted lookups, merge
+     * joins).
+     */
+    private void moveToEntry(Entry entry)
+      throws IOException
+    {
+      if(!isUpToDate()) {
+        restorePosition(entry);
+        return;
+      }
+      _prevPos = _curPos;
+      _curPos = updatePosition(entry, _curPos);
+    }
+
+    /**
+     * @return the entry at the previous position of this cursor
+     */
+    Entry getPreviousPositionEntry() {
+      return _prevPos.getEntry();
     }
 
     /**
@@ -2426,12 +2644,16 @@ public class IndexData {
       if(!_curPos.equalsEntry(curEntry) ||
          !_prevPos.equalsEntry(prevEntry))
       {
+        // if nothing has changed, the new positions can be searched for
+        // starting from the current position
+        Position fromPos = _curPos;
         if(!isUpToDate()) {
           updateBounds();
           _lastModCount = getIndexModCount();
+          fromPos = null;
         }
-        _prevPos = updatePosition(prevEntry);
-        _curPos = updatePosition(curEntry);
+        _prevPos = updatePosition(prevEntry, fromPos);
+        _curPos = updatePosition(curEntry, fromPos);
       } else {
         checkForModification();
       }
@@ -2480,6 +2702,16 @@ public class IndexData {
      */
     private Position updatePosition(Entry entry)
       throws IOException
+    {
+      return updatePosition(entry, null);
+    }
+
+    /**
+     * Updates the given position, taking boundaries into account.  If a
+     * (up-to-date) starting position is given, the search starts from there.
+     */
+    private Position updatePosition(Entry entry, Position fromPos)
+      throws IOException
     {
       if(!entry.isValid()) {
         // no use searching if "updating" the first/last pos
@@ -2493,7 +2725,9 @@ public class IndexData {
         }
       }
 
-      Position pos = findEntryPosition(entry);
+      Position pos = ((fromPos != null) ?
+                      findEntryPosition(fromPos, entry) :
+                      findEntryPosition(entry));
       if(pos.compareTo(_lastPos) >= 0) {
         return _lastPos;
       } else if(pos.compareTo(_firstPos) <= 0) {
@@ -2729,7 +2963,7 @@ public class IndexData {
     }
 
     public final int findEntry(Entry entry) {
-      return Collections.binarySearch(getEntries(), entry);
+      return IndexData.findEntry(getEntries(), entry);
     }
 
     @Override
@@ -2812,6 +3046,389 @@ public class IndexData {
     public Entry removeEntry(int idx) { return null; }
   }
 
+  /**
+   * Returns the number of entries in the given sorted entries which have
+   * different entry bytes than the previous entry (where the first entry is
+   * compared to the given previous entry, if any).
+   */
+  private static int countDistinctEntries(List<Entry> entries, Entry prevEntry)
+  {
+    if(entries.isEmpty()) {
+      return 0;
+    }
+    int count = (((prevEntry == null) ||
+                  !prevEntry.equalsEntryBytes(entries.get(0))) ? 1 : 0);
+    if(entries instanceof PageEntryList) {
+      // compare in place
+      PageEntryList pageEntries = (PageEntryList)entries;
+      for(int i = 1; i < pageEntries.size(); ++i) {
+        if(!pageEntries.equalsEntryBytes(i - 1, i)) {
+          ++count;
+        }
+      }
+      return count;
+    }
+    for(int i = 1; i < entries.size(); ++i) {
+      if(!entries.get(i - 1).equalsEntryBytes(entries.get(i))) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Searches the given sorted entries for the given entry (same results as
+   * {@link Collections#binarySearch(List,Object)}), comparing in place if
+   * possible.
+   */
+  static int findEntry(List<Entry> entries, Entry entry) {
+    if(entries instanceof PageEntryList) {
+      return ((PageEntryList)entries).find(entry);
+    }
+    return Collections.binarySearch(entries, entry);
+  }
+
+  /**
+   * List of the entries on an index page which is backed by the raw entry
+   * data read from the page.  Entry objects are only created as they are
+   * requested, and searches compare the raw data in place.  Once the list is
+   * modified, all the entries are created and the raw data is discarded.
+   */
+  private static final class PageEntryList extends AbstractList<Entry>
+    implements RandomAccess
+  {
+    /** raw entry data from the page (the first entry includes the prefix,
+        all other entries do not) */
+    private byte[] _entryData;
+    /** offsets of each entry within the raw entry data (plus the end
+        offset) */
+    private final int[] _entryOffsets;
+    /** common entry prefix for all entries on the page */
+    private final byte[] _entryPrefix;
+    /** number of trailing (non entry bytes) bytes for each entry */
+    private final int _trailingLen;
+    /** whether or not this is a leaf page */
+    private final boolean _leaf;
+    /** the entries which have been created so far */
+    private Entry[] _entries;
+    /** all entries, once the list has been modified */
+    private List<Entry> _modEntries;
+
+    private PageEntryList(byte[] entryData, int[] entryOffsets,
+                          byte[] entryPrefix, boolean isLeaf)
+    {
+      _entryData = entryData;
+      _entryOffsets = entryOffsets;
+      _entryPrefix = entryPrefix;
+      _leaf = isLeaf;
+      // leaf entries have a 4 byte rowId, node entries also have a 4 byte
+      // sub-page number
+      _trailingLen = (isLeaf ? 4 : 8);
+      _entries = new Entry[entryOffsets.length - 1];
+    }
+
+    @Override
+    public int size() {
+      return ((_modEntries != null) ? _modEntries.size() : _entries.length);
+    }
+
+    @Override
+    public Entry get(int idx) {
+      if(_modEntries != null) {
+        return _modEntries.get(idx);
+      }
+      Entry entry = _entries[idx];
+      if(entry == null) {
+        // entries are immutable, so concurrent readers racing to create the
+        // same entry is harmless
+        entry = createEntry(idx);
+        _entries[idx] = entry;
+      }
+      return entry;
+    }
+
+    @Override
+    public Entry set(int idx, Entry entry) {
+      return getModifiableEntries().set(idx, entry);
+    }
+
+    @Override
+    public void add(int idx, Entry entry) {
+      getModifiableEntries().add(idx, entry);
+      ++modCount;
+    }
+
+    @Override
+    public Entry remove(int idx) {
+      Entry entry = getModifiableEntries().remove(idx);
+      ++modCount;
+      return entry;
+    }
+
+    @Override
+    protected void removeRange(int fromIdx, int toIdx) {
+      getModifiableEntries().subList(fromIdx, toIdx).clear();
+      ++modCount;
+    }
+
+    private List<Entry> getModifiableEntries() {
+      if(_modEntries == null) {
+        List<Entry> entries = new ArrayList<Entry>(_entries.length + 1);
+        for(int i = 0; i < _entries.length; ++i) {
+          entries.add(get(i));
+        }
+        _modEntries = entries;
+        _entries = null;
+        _entryData = null;
+      }
+      return _modEntries;
+    }
+
+    /**
+     * Returns the total size of all the (uncompressed) entries.
+     */
+    public int getTotalEntrySize() {
+      int numEntries = _entries.length;
+      return (_entryOffsets[numEntries] +
+              (Math.max(numEntries - 1, 0) * _entryPrefix.length));
+    }
+
+    /**
+     * Searches for the given entry (same results as
+     * {@link Collections#binarySearch(List,Object)}).
+     */
+    public int find(Entry entry) {
+      if(_modEntries != null) {
+        return Collections.binarySearch(_modEntries, entry);
+      }
+
+      int low = 0;
+      int high = _entries.length - 1;
+      while(low <= high) {
+        int mid = (low + high) >>> 1;
+        int cmp = compareTo(mid, entry);
+        if(cmp < 0) {
+          low = mid + 1;
+        } else if(cmp > 0) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -(low + 1);
+    }
+
+    /**
+     * Returns {@code true} if the entries at the given indexes have the same
+     * entry bytes (ignoring the rowIds).
+     */
+    public boolean equalsEntryBytes(int idx1, int idx2) {
+      if(_modEntries != null) {
+        return _modEntries.get(idx1).equalsEntryBytes(_modEntries.get(idx2));
+      }
+      return (compareRawEntryBytes(idx1, idx2) == 0);
+    }
+
+    /**
+     * Returns the index of the first raw entry which is not in the correct
+     * order (compared to the previous entry), -1 if all the entries are in
+     * order.
+     */
+    public int findOutOfOrderEntry() {
+      for(int i = 1; i < _entries.length; ++i) {
+        if(compareRaw(i - 1, i) >= 0) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Returns the length of the given entry including any prefix bytes.
+     */
+    private int getRawLength(int idx) {
+      int len = _entryOffsets[idx + 1] - _entryOffsets[idx];
+      return ((idx > 0) ? (len + _entryPrefix.length) : len);
+    }
+
+    /**
+     * Returns the given byte of the given entry (including any prefix
+     * bytes).
+     */
+    private byte getRawByte(int idx, int pos) {
+      if(idx > 0) {
+        if(pos < _entryPrefix.length) {
+          return _entryPrefix[pos];
+        }
+        pos -= _entryPrefix.length;
+      }
+      return _entryData[_entryOffsets[idx] + pos];
+    }
+
+    private int getRawInt(int idx, int pos, int numBytes) {
+      int val = 0;
+      for(int i = 0; i < numBytes; ++i) {
+        val = (val << 8) | ByteUtil.asUnsignedByte(getRawByte(idx, pos + i));
+      }
+      return val;
+    }
+
+    private Entry createEntry(int idx) {
+      int entryLen = getRawLength(idx) - _trailingLen;
+      byte[] entryBytes = new byte[entryLen];
+      for(int i = 0; i < entryLen; ++i) {
+        entryBytes[i] = getRawByte(idx, i);
+      }
+      RowIdImpl rowId = new RowIdImpl(getRawInt(idx, entryLen, 3),
+                                      getRawInt(idx, entryLen + 3, 1));
+      if(_leaf) {
+        return new Entry(entryBytes, rowId, EntryType.NORMAL);
+      }
+      return new NodeEntry(entryBytes, rowId, EntryType.NORMAL,
+                           getRawInt(idx, entryLen + 4, 4));
+    }
+
+    /**
+     * Compares the given raw entry with the given entry (equivalent to
+     * {@link Entry#compareTo}).
+     */
+    private int compareTo(int idx, Entry other) {
+      if(!other.isValid()) {
+        // the raw entry is a normal entry, the other is first/last
+        return ((other.getType() == EntryType.ALWAYS_FIRST) ? 1 : -1);
+      }
+
+      byte[] otherBytes = other.getEntryBytes();
+      int entryLen = getRawLength(idx) - _trailingLen;
+      int len = Math.min(entryLen, otherBytes.length);
+      int pos = 0;
+      if(idx > 0) {
+        int prefixLen = Math.min(len, _entryPrefix.length);
+        for(; pos < prefixLen; ++pos) {
+          if(_entryPrefix[pos] != otherBytes[pos]) {
+            return compareBytes(_entryPrefix[pos], otherBytes[pos]);
+          }
+        }
+      }
+      int dataOffset = _entryOffsets[idx] -
+        ((idx > 0) ? _entryPrefix.length : 0);
+      for(; pos < len; ++pos) {
+        byte b = _entryData[dataOffset + pos];
+        if(b != otherBytes[pos]) {
+          return compareBytes(b, otherBytes[pos]);
+        }
+      }
+      if(entryLen != otherBytes.length) {
+        return ((entryLen < otherBytes.length) ? -1 : 1);
+      }
+
+      // entry bytes are equal, let the RowId decide
+      RowIdImpl otherRowId = other.getRowId();
+      if(otherRowId.getType() != RowIdImpl.Type.NORMAL) {
+        return ((otherRowId.getType() == RowIdImpl.Type.ALWAYS_FIRST) ?
+                1 : -1);
+      }
+      int cmp = Integer.compare(getRawInt(idx, entryLen, 3),
+                                otherRowId.getPageNumber());
+      if(cmp != 0) {
+        return cmp;
+      }
+      return Integer.compare(getRawInt(idx, entryLen + 3, 1),
+                             otherRowId.getRowNumber());
+    }
+
+    /**
+     * Compares two raw entries (equivalent to {@link Entry#compareTo}).
+     */
+    private int compareRaw(int idx1, int idx2) {
+      int cmp = compareRawEntryBytes(idx1, idx2);
+      if(cmp != 0) {
+        return cmp;
+      }
+      // compare the rowIds (page number and row number)
+      int entryLen1 = getRawLength(idx1) - _trailingLen;
+      int entryLen2 = getRawLength(idx2) - _trailingLen;
+      cmp = Integer.compare(getRawInt(idx1, entryLen1, 3),
+                            getRawInt(idx2, entryLen2, 3));
+      if(cmp != 0) {
+        return cmp;
+      }
+      return Integer.compare(getRawInt(idx1, entryLen1 + 3, 1),
+                             getRawInt(idx2, entryLen2 + 3, 1));
+    }
+
+    /**
+     * Compares the entry bytes (ignoring the rowIds) of two raw entries.
+     */
+    private int compareRawEntryBytes(int idx1, int idx2) {
+      int entryLen1 = getRawLength(idx1) - _trailingLen;
+      int entryLen2 = getRawLength(idx2) - _trailingLen;
+      int len = Math.min(entryLen1, entryLen2);
+      for(int pos = 0; pos < len; ++pos) {
+        byte b1 = getRawByte(idx1, pos);
+        byte b2 = getRawByte(idx2, pos);
+        if(b1 != b2) {
+          return compareBytes(b1, b2);
+        }
+      }
+      return Integer.compare(entryLen1, entryLen2);
+    }
+
+    private static int compareBytes(byte b1, byte b2) {
+      return ((ByteUtil.asUnsignedByte(b1) < ByteUtil.asUnsignedByte(b2)) ?
+              -1 : 1);
+    }
+  }
+
+  /**
+   * Statistics for the entries of an index, valid for a given modification
+   * count of the index.
+   */
+  private static final class StatisticsImpl implements Index.Statistics
+  {
+    private final int _modCount;
+    private final int _entryCount;
+    private final int[] _distinctCounts;
+    private final List<Row> _histogramBounds;
+
+    private StatisticsImpl(int modCount, int entryCount, int[] distinctCounts,
+                           List<Row> histogramBounds) {
+      _modCount = modCount;
+      _entryCount = entryCount;
+      _distinctCounts = distinctCounts;
+      _histogramBounds = histogramBounds;
+    }
+
+    @Override
+    public int getEntryCount() {
+      return _entryCount;
+    }
+
+    @Override
+    public int getDistinctCount(int numColumns) {
+      if((numColumns < 1) || (numColumns > _distinctCounts.length)) {
+        throw new IllegalArgumentException(
+            "Invalid number of columns " + numColumns + ", expected 1 to " +
+            _distinctCounts.length);
+      }
+      return _distinctCounts[numColumns - 1];
+    }
+
+    @Override
+    public List<Row> getHistogramBounds() {
+      return _histogramBounds;
+    }
+
+    @Override
+    public String toString() {
+      return CustomToStringStyle.valueBuilder(this)
+        .append("entryCount", _entryCount)
+        .append("distinctCounts", _distinctCounts)
+        .append("numHistogramBounds", _histogramBounds.size())
+        .toString();
+    }
+  }
+
   /**
    * Utility class which maintains information about a pending index update.
    * An instance of this class can be used to complete the change (by calling
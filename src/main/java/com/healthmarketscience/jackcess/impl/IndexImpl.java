@@ -239,6 +239,11 @@ public class IndexImpl implements Index, Comparable<IndexImpl>
     return getTable().newCursor().setIndex(this);
   }
   
+  @Override
+  public Index.Statistics getStatistics() throws IOException {
+    return getIndexData().getStatistics();
+  }
+
   /**
    * Whether or not the complete index state has been read.
    */
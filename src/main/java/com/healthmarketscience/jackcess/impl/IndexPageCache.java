@@ -21,12 +21,14 @@ import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
 import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.RandomAccess;
+import java.util.Set;
 
 import static com.healthmarketscience.jackcess.impl.IndexData.*;
 import org.apache.commons.lang3.builder.ToStringBuilder;
@@ -91,6 +93,51 @@ public class IndexPageCache
     _rootPage.initParentPage(INVALID_INDEX_PAGE_NUMBER, false);
   }
   
+  /**
+   * Discards all the cached pages and any outstanding changes for this index
+   * and releases all the index pages except the root page (which the caller
+   * must reset to an empty page before using this cache again).
+   *
+   * @return the page numbers of the released pages
+   */
+  public Collection<Integer> truncate() throws IOException
+  {
+    // find all the pages below the root page
+    Set<Integer> pageNumbers = new LinkedHashSet<Integer>();
+    collectChildPages(_rootPage._pageNumber, pageNumbers);
+
+    _modifiedPages.clear();
+    _dataPages.clear();
+    _rootPage = null;
+
+    for(Integer pageNumber : pageNumbers) {
+      getPageChannel().deallocatePage(pageNumber);
+    }
+    return pageNumbers;
+  }
+
+  private void collectChildPages(Integer pageNumber, Set<Integer> pageNumbers)
+    throws IOException
+  {
+    // read the pages directly, no need to populate the cache
+    CacheDataPage cacheDataPage = readDataPage(pageNumber);
+    if(cacheDataPage._main._leaf) {
+      return;
+    }
+    for(Entry e : cacheDataPage._extra._entries) {
+      Integer childPageNumber = e.getSubPageNumber();
+      if(pageNumbers.add(childPageNumber)) {
+        collectChildPages(childPageNumber, pageNumbers);
+      }
+    }
+    if(cacheDataPage._main.hasChildTail()) {
+      Integer childPageNumber = cacheDataPage._main._childTailPageNumber;
+      if(pageNumbers.add(childPageNumber)) {
+        collectChildPages(childPageNumber, pageNumbers);
+      }
+    }
+  }
+
   /**
    * Writes any outstanding changes for this index to the file.
    */
@@ -247,6 +294,7 @@ public class IndexPageCache
   {
     // free this database page
     getPageChannel().deallocatePage(cacheDataPage._main._pageNumber);
+    _indexData.removeOwnedPage(cacheDataPage._main._pageNumber);
 
     // discard from our cache
     _dataPages.remove(cacheDataPage._main._pageNumber);
@@ -740,7 +788,8 @@ public class IndexPageCache
                                                  boolean isLeaf)
     throws IOException
   {
-    DataPageMain dpMain = new DataPageMain(getPageChannel().allocateNewPage());
+    DataPageMain dpMain = new DataPageMain(
+        getPageChannel().allocateNewPage(_indexData.getRootPageNumber()));
     DataPageExtra dpExtra = new DataPageExtra();
     dpMain.initParentPage(parentPageNumber, false);
     dpMain._leaf = isLeaf;
@@ -922,6 +971,71 @@ public class IndexPageCache
     }
   }
 
+  /**
+   * Estimates the number of entries between the given start and end entries
+   * based on the fan-out of the index pages on the paths to those entries.
+   * The count is exact if both entries fall on the same leaf page.
+   *
+   * @param startEntry the first entry (inclusive)
+   * @param endEntry the last entry (inclusive)
+   */
+  public int estimateEntryCount(Entry startEntry, Entry endEntry)
+    throws IOException
+  {
+    EntryEstimate start = estimatePosition(startEntry);
+    EntryEstimate end = estimatePosition(endEntry);
+    if(start._leafPageNumber == end._leafPageNumber) {
+      return Math.max(end._leafIdx - start._leafIdx, 0);
+    }
+
+    double totalEntries = (start._totalEntries + end._totalEntries) / 2.0d;
+    long count = Math.round((end._position - start._position) * totalEntries);
+    return (int)Math.min(Math.max(count, 0L), Integer.MAX_VALUE);
+  }
+
+  /**
+   * Estimates the relative position of the given entry within the index by
+   * descending from the root page (like {@link #findCacheDataPage}).
+   */
+  private EntryEstimate estimatePosition(Entry e)
+    throws IOException
+  {
+    DataPageMain curPage = _rootPage;
+    // position and the width of the current page, relative to the entire
+    // index (0.0 - 1.0)
+    double position = 0.0d;
+    double width = 1.0d;
+    // estimated total entries based on the fan-out seen so far
+    double totalEntries = 1.0d;
+    while(true) {
+
+      DataPageExtra extra = curPage.getExtra();
+      int numEntries = extra._entryView.size();
+      int idx = extra._entryView.find(e);
+      if(idx < 0) {
+        idx = missingIndexToInsertionPoint(idx);
+      }
+
+      if(curPage._leaf) {
+        if(numEntries > 0) {
+          position += (width * idx) / numEntries;
+        }
+        return new EntryEstimate(curPage._pageNumber, idx, position,
+                                 totalEntries * numEntries);
+      }
+
+      if(idx == numEntries) {
+        // just move to last child page
+        --idx;
+      }
+      position += (width * idx) / numEntries;
+      width /= numEntries;
+      totalEntries *= numEntries;
+
+      curPage = curPage.getChildPage(extra._entryView.get(idx));
+    }
+  }
+
   /**
    * Marks the given index page as modified and saves it for writing, if
    * necessary (if the page is already marked, does nothing).
@@ -1437,6 +1551,29 @@ public class IndexPageCache
     
   }
 
+  /**
+   * The estimated position of an entry within the index.
+   */
+  private static final class EntryEstimate
+  {
+    /** the leaf page on which the entry does or should reside */
+    private final int _leafPageNumber;
+    /** the insertion point of the entry on the leaf page */
+    private final int _leafIdx;
+    /** the relative position of the entry within the index (0.0 - 1.0) */
+    private final double _position;
+    /** estimated total number of entries in the index */
+    private final double _totalEntries;
+
+    private EntryEstimate(int leafPageNumber, int leafIdx, double position,
+                          double totalEntries) {
+      _leafPageNumber = leafPageNumber;
+      _leafIdx = leafIdx;
+      _position = position;
+      _totalEntries = totalEntries;
+    }
+  }
+
   /**
    * A view of an index page's entries which combines the normal entries and
    * tail entry into one collection.
@@ -1532,7 +1669,17 @@ public class IndexPageCache
     }
     
     public int find(Entry e) {
-      return Collections.binarySearch(this, e);
+      int idx = IndexData.findEntry(getEntries(), e);
+      if(!hasChildTail() || (idx != -(getEntries().size() + 1))) {
+        return idx;
+      }
+
+      // the entry sorts after all the normal entries, check the tail entry
+      int cmp = _childTailEntry.compareTo(e);
+      if(cmp == 0) {
+        return getEntries().size();
+      }
+      return ((cmp > 0) ? idx : (idx - 1));
     }
 
   }
@@ -51,6 +51,13 @@ class LongValueColumnImpl extends ColumnImpl
    * first 2 bits are type flags).
    */
   private static final int LONG_VALUE_TYPE_MASK = 0xC0000000;
+  /**
+   * The "LVAL" marker in the header of a long value page (in place of the
+   * table definition page number of a row data page), as read from a page
+   * buffer.
+   */
+  private static final int LONG_VALUE_PAGE_MARKER =
+    ('L' | ('V' << 8) | ('A' << 16) | ('L' << 24));
 
 
   /** Holds additional info for writing long values */
@@ -77,6 +84,11 @@ class LongValueColumnImpl extends ColumnImpl
     _lvalBufferH.collectUsageMapPages(pages);
   }
 
+  @Override
+  void releaseOwnedPages() throws IOException {
+    _lvalBufferH.releaseOwnedPages();
+  }
+
   @Override
   void postTableLoadInit() throws IOException {
     if(_lvalBufferH == null) {
@@ -314,6 +326,7 @@ class LongValueColumnImpl extends ColumnImpl
                                                   getFormat(), 0);
         lvalPage.put(value);
         getPageChannel().writePage(lvalPage, firstLvalPageNum);
+        _lvalBufferH.pageWritten(lvalPage, firstLvalPageNum);
         break;
 
       case LONG_VALUE_TYPE_OTHER_PAGES:
@@ -321,34 +334,45 @@ class LongValueColumnImpl extends ColumnImpl
         ByteBuffer buffer = ByteBuffer.wrap(value);
         int remainingLen = buffer.remaining();
         buffer.limit(0);
-        lvalPage = _lvalBufferH.getLongValuePage(remainingLen);
-        firstLvalPageNum = _lvalBufferH.getPageNumber();
-        firstLvalRow = (byte)TableImpl.getRowsOnDataPage(lvalPage, getFormat());
-        int lvalPageNum = firstLvalPageNum;
-        ByteBuffer nextLvalPage = null;
-        int nextLvalPageNum = 0;
-        int nextLvalRowNum = 0;
-        while(remainingLen > 0) {
-          lvalPage.clear();
 
-          // figure out how much we will put in this page (we need 4 bytes for
-          // the next page pointer)
-          int chunkLength = Math.min(getFormat().MAX_LONG_VALUE_ROW_SIZE - 4,
-                                     remainingLen);
-
-          // figure out if we will need another page, and if so, allocate it
-          if(chunkLength < remainingLen) {
-            // force a new page to be allocated for the chunk after this
-            _lvalBufferH.clear();
-            nextLvalPage = _lvalBufferH.getLongValuePage(
-                (remainingLen - chunkLength) + 4);
-            nextLvalPageNum = _lvalBufferH.getPageNumber();
-            nextLvalRowNum = TableImpl.getRowsOnDataPage(nextLvalPage,
+        // every chunk but the last fills an entire page (we need 4 bytes for
+        // the next page pointer), so those pages are allocated as a
+        // contiguous run so that the value can be read sequentially.  the
+        // last chunk may be put on any page with enough room.
+        int maxChunkLength = getFormat().MAX_LONG_VALUE_ROW_SIZE - 4;
+        int numFullPages = (remainingLen - 1) / maxChunkLength;
+        int lastChunkLength = remainingLen - (numFullPages * maxChunkLength);
+        firstLvalPageNum = _lvalBufferH.allocateLongValuePages(numFullPages);
+        firstLvalRow = 0;
+
+        ByteBuffer lastLvalPage = _lvalBufferH.getLongValuePage(
+            lastChunkLength + 4, (firstLvalPageNum + numFullPages - 1));
+        int lastLvalPageNum = _lvalBufferH.getPageNumber();
+        int lastLvalRowNum = TableImpl.getRowsOnDataPage(lastLvalPage,
                                                          getFormat());
-          } else {
-            nextLvalPage = null;
+
+        lvalPage = getPageChannel().createPageBuffer();
+        for(int i = 0; i <= numFullPages; ++i) {
+
+          int lvalPageNum = firstLvalPageNum + i;
+          int chunkLength = maxChunkLength;
+          int nextLvalPageNum = lvalPageNum + 1;
+          int nextLvalRowNum = 0;
+          if(i == (numFullPages - 1)) {
+            // next chunk is the last one
+            nextLvalPageNum = lastLvalPageNum;
+            nextLvalRowNum = lastLvalRowNum;
+          } else if(i == numFullPages) {
+            // this is the last chunk
+            lvalPage = lastLvalPage;
+            lvalPageNum = lastLvalPageNum;
+            chunkLength = lastChunkLength;
             nextLvalPageNum = 0;
-            nextLvalRowNum = 0;
+          }
+
+          lvalPage.clear();
+          if(i < numFullPages) {
+            writeLongValueHeader(lvalPage);
           }
 
           // add row to this page
@@ -361,14 +385,10 @@ class LongValueColumnImpl extends ColumnImpl
           // write this page's chunk of data
           buffer.limit(buffer.limit() + chunkLength);
           lvalPage.put(buffer);
-          remainingLen -= chunkLength;
 
           // write new page to database
           getPageChannel().writePage(lvalPage, lvalPageNum);
-
-          // move to next page
-          lvalPage = nextLvalPage;
-          lvalPageNum = nextLvalPageNum;
+          _lvalBufferH.pageWritten(lvalPage, lvalPageNum);
         }
         break;
 
@@ -414,7 +434,17 @@ class LongValueColumnImpl extends ColumnImpl
      * Returns a long value data page with space for data of the given length.
      */
     public ByteBuffer getLongValuePage(int dataLength) throws IOException {
+      return getLongValuePage(dataLength, PageChannel.INVALID_PAGE_NUMBER);
+    }
 
+    /**
+     * Returns a long value data page with space for data of the given length.
+     * If a new page is needed, it will preferably be allocated near the given
+     * hint page (if valid), otherwise near the current page.
+     */
+    public ByteBuffer getLongValuePage(int dataLength, int hintPageNumber)
+      throws IOException
+    {
       TempPageHolder lvalBufferH = getBufferHolder();
       dataLength = Math.min(dataLength, getFormat().MAX_LONG_VALUE_ROW_SIZE);
 
@@ -428,15 +458,31 @@ class LongValueColumnImpl extends ColumnImpl
       }
 
       // need new page
-      return findNewPage(dataLength);
+      if(hintPageNumber == PageChannel.INVALID_PAGE_NUMBER) {
+        hintPageNumber = lvalBufferH.getPageNumber();
+      }
+      return findNewPage(dataLength, hintPageNumber);
     }
 
-    protected ByteBuffer findNewPage(int dataLength) throws IOException {
-      ByteBuffer lvalPage = getBufferHolder().setNewPage(getPageChannel());
+    protected ByteBuffer findNewPage(int dataLength, int hintPageNumber)
+      throws IOException
+    {
+      ByteBuffer lvalPage = getBufferHolder().setNewPage(
+          getPageChannel(), hintPageNumber);
       writeLongValueHeader(lvalPage);
       return lvalPage;
     }
 
+    /**
+     * Allocates a contiguous run of the given number of new long value data
+     * pages (preferably near the current page), returning the first page
+     * number.  The pages must be written by the caller.
+     */
+    public int allocateLongValuePages(int numPages) throws IOException {
+      return getPageChannel().allocateNewPages(
+          numPages, getBufferHolder().getPageNumber());
+    }
+
     public int getOwnedPageCount() {
       return 0;
     }
@@ -455,10 +501,26 @@ class LongValueColumnImpl extends ColumnImpl
       getBufferHolder().clear();
     }
 
+    /**
+     * Called after a long value data page has been written.
+     */
+    public void pageWritten(ByteBuffer lvalPage, int pageNumber)
+      throws IOException
+    {
+      // base does nothing
+    }
+
     public void collectUsageMapPages(Collection<Integer> pages) {
       // base does nothing
     }
 
+    /**
+     * Releases all the long value data pages owned by this column.
+     */
+    public void releaseOwnedPages() throws IOException {
+      // base does nothing (pages are not tracked)
+    }
+
     protected abstract TempPageHolder getBufferHolder();
   }
 
@@ -484,6 +546,8 @@ class LongValueColumnImpl extends ColumnImpl
     private final UsageMap _ownedPages;
     /** Usage map of pages that this column owns with free space on them */
     private final UsageMap _freeSpacePages;
+    /** free space info for the pages that this column owns */
+    private final FreeSpaceMap _freeSpaceMap;
     /** page buffer used to write "long value" data */
     private final TempPageHolder _longValueBufferH =
       TempPageHolder.newHolder(TempBufferHolder.Type.SOFT);
@@ -492,6 +556,8 @@ class LongValueColumnImpl extends ColumnImpl
                                       UsageMap freeSpacePages) {
       _ownedPages = ownedPages;
       _freeSpacePages = freeSpacePages;
+      _freeSpaceMap = new FreeSpaceMap(ownedPages, freeSpacePages,
+                                       LONG_VALUE_PAGE_MARKER);
     }
 
     @Override
@@ -505,41 +571,61 @@ class LongValueColumnImpl extends ColumnImpl
     }
 
     @Override
-    protected ByteBuffer findNewPage(int dataLength) throws IOException {
-
-      // grab last owned page and check for free space.
-      ByteBuffer newPage = TableImpl.findFreeRowSpace(
-          _ownedPages, _freeSpacePages, _longValueBufferH);
-
+    protected ByteBuffer findNewPage(int dataLength, int hintPageNumber)
+      throws IOException
+    {
+      // find an owned page with enough free space
+      ByteBuffer newPage = _freeSpaceMap.findPage(
+          dataLength, _longValueBufferH);
       if(newPage != null) {
-        if(TableImpl.rowFitsOnDataPage(dataLength, newPage, getFormat())) {
-          return newPage;
-        }
-        // discard this page and allocate a new one
-        clear();
+        return newPage;
       }
 
       // nothing found on current pages, need new page
-      newPage = super.findNewPage(dataLength);
+      newPage = super.findNewPage(dataLength, hintPageNumber);
       int pageNumber = getPageNumber();
       _ownedPages.addPageNumber(pageNumber);
-      _freeSpacePages.addPageNumber(pageNumber);
+      _freeSpaceMap.updatePage(pageNumber, newPage);
       return newPage;
     }
 
+    @Override
+    public int allocateLongValuePages(int numPages) throws IOException {
+      int firstPageNumber = super.allocateLongValuePages(numPages);
+      for(int i = 0; i < numPages; ++i) {
+        _ownedPages.addPageNumber(firstPageNumber + i);
+      }
+      return firstPageNumber;
+    }
+
     @Override
     public void clear() throws IOException {
       int pageNumber = getPageNumber();
       if(pageNumber != PageChannel.INVALID_PAGE_NUMBER) {
-        _freeSpacePages.removePageNumber(pageNumber);
+        // the current page may still be in the process of being written, so
+        // it should not be chosen for any subsequent data (until written)
+        _freeSpaceMap.ignorePage(pageNumber);
       }
       super.clear();
     }
 
+    @Override
+    public void pageWritten(ByteBuffer lvalPage, int pageNumber)
+      throws IOException
+    {
+      _freeSpaceMap.updatePage(pageNumber, lvalPage);
+    }
+
     @Override
     public void collectUsageMapPages(Collection<Integer> pages) {
       pages.add(_ownedPages.getTablePageNumber());
       pages.add(_freeSpacePages.getTablePageNumber());
     }
+
+    @Override
+    public void releaseOwnedPages() throws IOException {
+      getBufferHolder().clear();
+      _freeSpaceMap.releaseAllPages();
+    }
   }
 }
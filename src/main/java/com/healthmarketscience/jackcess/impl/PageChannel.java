@@ -18,10 +18,32 @@ package com.healthmarketscience.jackcess.impl;
 
 import java.io.Flushable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.Channel;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.util.SyncPolicy;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 
 /**
@@ -30,6 +52,8 @@ import java.nio.channels.FileChannel;
  */
 public class PageChannel implements Channel, Flushable {
 
+  private static final Log LOG = LogFactory.getLog(PageChannel.class);
+
   static final int INVALID_PAGE_NUMBER = -1;
 
   static final ByteOrder DEFAULT_BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
@@ -44,6 +68,9 @@ public class PageChannel implements Channel, Flushable {
   static final int PAGE_GLOBAL_USAGE_MAP = 1;
   /** Global usage map always lives at row 0 */
   static final int ROW_GLOBAL_USAGE_MAP = 0;
+  /** first page which may be re-used after being freed (pages 0 and 1 are
+      the header and global usage map pages) */
+  private static final int FIRST_REUSABLE_PAGE_NUMBER = 2;
 
   /** Channel containing the database */
   private final FileChannel _channel;
@@ -51,22 +78,70 @@ public class PageChannel implements Channel, Flushable {
   private final boolean _closeChannel;
   /** Format of the database in the channel */
   private final JetFormat _format;
-  /** whether or not to force all writes to disk immediately */
-  private final  boolean _autoSync;
+  /** determines when writes are forced to disk */
+  private final SyncPolicy _syncPolicy;
+  /** the Syncer for this channel, passed to the _syncPolicy */
+  private final SyncPolicy.Syncer _syncer = new ChannelSyncer();
+  /** number of completed logical write operations */
+  private final AtomicLong _writeCount = new AtomicLong();
+  /** value of the _writeCount when the last completed sync started */
+  private final AtomicLong _syncedWriteCount = new AtomicLong();
   /** buffer used when deallocating old pages.  data pages generally have 4
       interesting bytes at the beginning which we want to reset. */
   private final ByteBuffer _invalidPageBytes =
     ByteBuffer.wrap(INVALID_PAGE_BYTE_HEADER);
   /** dummy buffer used when allocating new pages */
   private final ByteBuffer _forceBytes = ByteBuffer.allocate(1);
-  /** Tracks free pages in the database. */
+  /** buffer used to read the header of free pages */
+  private final ByteBuffer _freePageHeaderBytes =
+    ByteBuffer.allocate(INVALID_PAGE_BYTE_HEADER.length);
+  /** Tracks free pages in the database.  Page allocation (which updates this
+      map) is synchronized on this channel, as it is shared by all writers */
   private UsageMap _globalUsageMap;
+  /** pages which the global usage map indicates are free but which were not
+      released by jackcess (so may not really be free), never reused */
+  private final Set<Integer> _unreusablePages = new HashSet<Integer>();
   /** handler for the current database encoding type */
   private CodecHandler _codecHandler = DefaultCodecProvider.DUMMY_HANDLER;
   /** temp page buffer used when pages cannot be partially encoded */
   private TempPageHolder _fullPageEncodeBufferH;
   private TempBufferHolder _tempDecodeBufferH;
-  private int _writeCount;
+  /** lock which serializes logical write operations against readers, if
+      the database may be shared by multiple threads (otherwise {@code
+      null}).  when multiple writers are allowed, table writes only hold
+      the read lock (and the relevant table locks). */
+  private final ReentrantReadWriteLock _lock;
+  /** locks for individual tables (keyed by table definition page number),
+      if multiple writers are allowed (otherwise {@code null}) */
+  private final Map<Integer,ReentrantReadWriteLock> _tableLocks;
+  /** the state of the current logical write operation (if only one thread
+      may write at a time) */
+  private final WriteState _writeState;
+  /** the state of the current thread's logical write operation (if multiple
+      writers are allowed) */
+  private final ThreadLocal<WriteState> _threadWriteState;
+  /** write-ahead journal for page writes, if enabled (otherwise {@code
+      null}) */
+  private final PageJournal _journal;
+  /** the committed pages of another writer's journal, if the database was
+      opened read-only while that journal existed (otherwise {@code null}) */
+  private final DirtyPageSet _journalSnapshot;
+  /** source for reading the current (committed) page contents, either the
+      journal or the channel */
+  private final DirtyPageSet.Source _pageSource;
+  /** whether or not a background journal checkpoint is pending */
+  private final AtomicBoolean _checkpointPending = new AtomicBoolean();
+  /** thread which runs background syncs and journal checkpoints, created on
+      demand */
+  private ScheduledThreadPoolExecutor _background;
+  /** the pending background sync, if any */
+  private ScheduledFuture<?> _pendingSync;
+  /** the time (in nanos) at which the pending background sync will run */
+  private long _pendingSyncTime;
+  /** the pages written by the current transaction, if one is in progress */
+  private DirtyPageSet _dirtyPages;
+  /** the size of the database file when the current transaction started */
+  private long _txnFileSize;
 
   /**
    * Only used by unit tests
@@ -78,21 +153,67 @@ public class PageChannel implements Channel, Flushable {
     _channel = null;
     _closeChannel = false;
     _format = JetFormat.VERSION_4;
-    _autoSync = false;
+    _syncPolicy = SyncPolicy.ON_CLOSE;
+    _lock = null;
+    _tableLocks = null;
+    _writeState = new WriteState();
+    _threadWriteState = null;
+    _journal = null;
+    _journalSnapshot = null;
+    _pageSource = null;
   }
 
   /**
    * @param channel Channel containing the database
    * @param format Format of the database in the channel
+   * @param syncPolicy determines when writes are forced to disk
+   * @param journal write-ahead journal for page writes, if any
+   * @param journalSnapshot pages read from an existing journal which
+   *                        override the pages in the channel (read-only),
+   *                        if any
    */
   public PageChannel(FileChannel channel, boolean closeChannel,
-                     JetFormat format, boolean autoSync)
+                     JetFormat format, SyncPolicy syncPolicy,
+                     Database.ConcurrencyMode concurrencyMode,
+                     PageJournal journal,
+                     final DirtyPageSet journalSnapshot)
     throws IOException
   {
     _channel = channel;
     _closeChannel = closeChannel;
     _format = format;
-    _autoSync = autoSync;
+    _syncPolicy = syncPolicy;
+    _journal = journal;
+    _journalSnapshot = journalSnapshot;
+    if(journal != null) {
+      _pageSource = journal;
+    } else if(journalSnapshot != null) {
+      _pageSource = new DirtyPageSet.Source() {
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+          return journalSnapshot.read(dst, position);
+        }
+      };
+    } else {
+      _pageSource = DirtyPageSet.channelSource(channel);
+    }
+    if(concurrencyMode == Database.ConcurrencyMode.MULTI_WRITER) {
+      _lock = new ReentrantReadWriteLock();
+      _tableLocks = new ConcurrentHashMap<Integer,ReentrantReadWriteLock>();
+      _writeState = null;
+      _threadWriteState = new ThreadLocal<WriteState>() {
+        @Override
+        protected WriteState initialValue() {
+          return new WriteState();
+        }
+      };
+    } else {
+      _lock = ((concurrencyMode == Database.ConcurrencyMode.SINGLE_WRITER) ?
+               new ReentrantReadWriteLock() : null);
+      _tableLocks = null;
+      _writeState = new WriteState();
+      _threadWriteState = null;
+    }
   }
 
   /**
@@ -112,6 +233,10 @@ public class PageChannel implements Channel, Flushable {
           TempBufferHolder.Type.SOFT, true);
     }
 
+    readGlobalUsageMap(database);
+  }
+
+  void readGlobalUsageMap(DatabaseImpl database) throws IOException {
     // note the global usage map is a special map where any page outside of
     // the current range is assumed to be "on"
     _globalUsageMap = UsageMap.read(database, PAGE_GLOBAL_USAGE_MAP,
@@ -122,16 +247,110 @@ public class PageChannel implements Channel, Flushable {
     return _format;
   }
 
-  public boolean isAutoSync() {
-    return _autoSync;
+  public SyncPolicy getSyncPolicy() {
+    return _syncPolicy;
+  }
+
+  /**
+   * Begins a "logical" read operation.  If the database is shared by
+   * multiple threads, this excludes any writers until the matching {@link
+   * #finishRead} call.  Read operations should be kept short (cursors only
+   * hold the read lock while moving or reading the current row).  Note, the
+   * read lock must be acquired before any other locks.
+   */
+  public void startRead() {
+    if(_lock != null) {
+      _lock.readLock().lock();
+    }
+  }
+
+  /**
+   * Completes a "logical" read operation begun by {@link #startRead}.
+   */
+  public void finishRead() {
+    if(_lock != null) {
+      _lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Begins a "logical" read operation on the given table.  This is the same
+   * as {@link #startRead}, but if multiple writers are allowed, also
+   * excludes any writers of the given table.
+   */
+  public void startRead(TableImpl table) {
+    startRead();
+    if(_tableLocks != null) {
+      try {
+        getTableLock(table.getTableDefPageNumber()).readLock().lock();
+      } catch(RuntimeException e) {
+        finishRead();
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Completes a "logical" read operation begun by {@link
+   * #startRead(TableImpl)}.
+   */
+  public void finishRead(TableImpl table) {
+    if(_tableLocks != null) {
+      getTableLock(table.getTableDefPageNumber()).readLock().unlock();
+    }
+    finishRead();
   }
 
   /**
    * Begins a "logical" write operation.  See {@link #finishWrite} for more
-   * details.
+   * details.  If multiple writers are allowed, this write excludes all other
+   * readers and writers (use {@link #startWrite(TableImpl)} for row writes).
    */
   public void startWrite() {
-    ++_writeCount;
+    WriteState ws = getWriteState();
+    lockWrite();
+    incrementWriteCount(ws);
+  }
+
+  /**
+   * Begins a "logical" write operation which modifies the rows of the given
+   * table.  If multiple writers are allowed, this only excludes readers and
+   * writers of the given table and any tables related to it (otherwise,
+   * this is the same as {@link #startWrite()}).  See {@link #finishWrite}
+   * for more details.
+   * <p>
+   * If the database has a journal, row writes are always exclusive.  Writers
+   * of different tables may modify the same shared pages (e.g. the global
+   * usage map), and a journal record must not contain another writer's
+   * uncommitted changes to those pages.
+   */
+  public void startWrite(TableImpl table) throws IOException {
+    if((_tableLocks == null) || (_journal != null)) {
+      startWrite();
+      return;
+    }
+
+    WriteState ws = getWriteState();
+    if(_lock.isWriteLockedByCurrentThread()) {
+      // nested within an exclusive write, no one else is writing
+      _lock.writeLock().lock();
+    } else if(ws._count == 0) {
+      lockTables(ws, table.getWriteLockTables());
+    } else {
+      // nested within another table write, which should already hold the
+      // lock for this table (and we can't safely wait for it otherwise)
+      ReentrantReadWriteLock tableLock =
+        getTableLock(table.getTableDefPageNumber());
+      if(!tableLock.isWriteLockedByCurrentThread()) {
+        if(!tableLock.writeLock().tryLock()) {
+          throw new IllegalStateException(
+              "Cannot write table " + table.getName() +
+              " within the current write operation");
+        }
+        ws._locks.add(tableLock.writeLock());
+      }
+    }
+    incrementWriteCount(ws);
   }
 
   /**
@@ -140,24 +359,333 @@ public class PageChannel implements Channel, Flushable {
    * more details.
    */
   public void startExclusiveWrite() {
-    if(_writeCount != 0) {
+    WriteState ws = getWriteState();
+    lockWrite();
+    if(ws._count != 0) {
+      unlockWrite(ws);
       throw new IllegalArgumentException(
           "Another write operation is currently in progress");
     }
-    startWrite();
+    incrementWriteCount(ws);
+  }
+
+  private void incrementWriteCount(WriteState ws) {
+    if((++ws._count == 1) && (_journal != null) && (_dirtyPages == null)) {
+      // start of the outermost write
+      _journal.startWrite();
+    }
+  }
+
+  private void lockWrite() {
+    if(_lock == null) {
+      return;
+    }
+    if((_lock.getReadHoldCount() > 0) &&
+       !_lock.isWriteLockedByCurrentThread()) {
+      // the read lock cannot be upgraded, this would block forever (note,
+      // table writes hold the read lock when multiple writers are allowed)
+      throw new IllegalStateException(
+          "Cannot start a write operation within a read operation");
+    }
+    _lock.writeLock().lock();
+  }
+
+  /**
+   * Acquires the locks for the given tables (in page number order), as well
+   * as the shared read lock which excludes any database writes.
+   */
+  private void lockTables(WriteState ws, SortedMap<Integer,Boolean> tables) {
+    // the table locks cannot be upgraded, so make sure this thread is not
+    // reading any of the tables
+    for(Integer pageNumber : tables.keySet()) {
+      if(getTableLock(pageNumber).getReadHoldCount() > 0) {
+        throw new IllegalStateException(
+            "Cannot start a write operation within a read operation");
+      }
+    }
+
+    _lock.readLock().lock();
+    try {
+      for(Map.Entry<Integer,Boolean> e : tables.entrySet()) {
+        ReentrantReadWriteLock tableLock = getTableLock(e.getKey());
+        Lock lock = (e.getValue() ? tableLock.writeLock() :
+                     tableLock.readLock());
+        lock.lock();
+        ws._locks.add(lock);
+      }
+    } catch(RuntimeException e) {
+      unlockTables(ws);
+      throw e;
+    }
+  }
+
+  /**
+   * Releases all the locks acquired by {@link #lockTables} (and by nested
+   * table writes).
+   */
+  private void unlockTables(WriteState ws) {
+    try {
+      for(int i = ws._locks.size() - 1; i >= 0; --i) {
+        ws._locks.get(i).unlock();
+      }
+    } finally {
+      ws._locks.clear();
+      _lock.readLock().unlock();
+    }
+  }
+
+  private void unlockWrite(WriteState ws) {
+    if(_lock == null) {
+      return;
+    }
+    if(_lock.isWriteLockedByCurrentThread()) {
+      _lock.writeLock().unlock();
+    } else if(ws._count == 0) {
+      // end of the outermost table write
+      unlockTables(ws);
+    }
+  }
+
+  private ReentrantReadWriteLock getTableLock(Integer pageNumber) {
+    ReentrantReadWriteLock lock = _tableLocks.get(pageNumber);
+    if(lock == null) {
+      ReentrantReadWriteLock newLock = new ReentrantReadWriteLock();
+      lock = _tableLocks.putIfAbsent(pageNumber, newLock);
+      if(lock == null) {
+        lock = newLock;
+      }
+    }
+    return lock;
+  }
+
+  private WriteState getWriteState() {
+    return ((_threadWriteState != null) ? _threadWriteState.get() :
+            _writeState);
   }
 
   /**
    * Completes a "logical" write operation.  This method should be called in
    * finally block which wraps a logical write operation (which is preceded by
-   * a {@link #startWrite} call).  Logical write operations may be nested.  If
-   * the database is configured for "auto-sync", the channel will be flushed
-   * when the outermost operation is complete,
+   * a {@link #startWrite} call).  Logical write operations may be nested.
+   * When the outermost operation is complete, the channel will be synced as
+   * determined by the database's SyncPolicy.  If the database has a journal,
+   * the pages written by the outermost operation are instead journaled (and
+   * synced) when it is complete.
    */
   public void finishWrite() throws IOException {
     assertWriting();
-    if((--_writeCount == 0) && _autoSync) {
-      flush();
+    WriteState ws = getWriteState();
+    long journalSeq = 0L;
+    try {
+      try {
+        if(ws._count == 1) {
+          writeDeferred(ws);
+        }
+      } finally {
+        if((--ws._count == 0) && (_journal != null) && (_dirtyPages == null)) {
+          journalSeq = commitJournal(ws);
+        }
+      }
+      if((ws._count == 0) && (_dirtyPages == null) && (_journal == null)) {
+        // any deferred writes were just completed
+        writeCompleted();
+      }
+    } finally {
+      unlockWrite(ws);
+    }
+    syncJournal(journalSeq);
+  }
+
+  /**
+   * Notes the completion of an outermost write operation and syncs as
+   * determined by the SyncPolicy.
+   */
+  private void writeCompleted() throws IOException {
+    _writeCount.incrementAndGet();
+    _syncPolicy.writeCompleted(_syncer);
+  }
+
+  /**
+   * Forces all completed writes to disk.
+   */
+  private void syncChannel() throws IOException {
+    long writeCount = _writeCount.get();
+    _channel.force(true);
+    // a concurrent sync may have already covered more writes
+    long syncedCount = _syncedWriteCount.get();
+    while((syncedCount < writeCount) &&
+          !_syncedWriteCount.compareAndSet(syncedCount, writeCount)) {
+      syncedCount = _syncedWriteCount.get();
+    }
+  }
+
+  /**
+   * Schedules a background sync to run no later than the given delay from
+   * now (if one is not already scheduled to run by then).
+   */
+  private synchronized void scheduleSync(long delayNanos) {
+    long syncTime = System.nanoTime() + delayNanos;
+    if(_pendingSync != null) {
+      if((_pendingSyncTime - syncTime) <= 0L) {
+        return;
+      }
+      _pendingSync.cancel(false);
+    }
+    _pendingSyncTime = syncTime;
+    _pendingSync = getBackground().schedule(new Runnable() {
+      @Override
+      public void run() {
+        synchronized(PageChannel.this) {
+          _pendingSync = null;
+        }
+        try {
+          syncChannel();
+        } catch(IOException e) {
+          LOG.warn("Failed syncing database", e);
+        }
+      }
+    }, delayNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Blocks until all completed write operations are durable (syncing them if
+   * necessary).
+   */
+  public void awaitDurable() throws IOException {
+    if(_journal != null) {
+      _journal.sync();
+    } else if(_syncedWriteCount.get() < _writeCount.get()) {
+      syncChannel();
+    }
+  }
+
+  /**
+   * Appends the pages written by the just completed outermost write
+   * operation to the journal.
+   */
+  private long commitJournal(WriteState ws) throws IOException {
+    try {
+      return _journal.commit(ws._journalPages);
+    } finally {
+      ws._journalPages.clear();
+    }
+  }
+
+  /**
+   * Syncs the journal through the given record (if any), and checkpoints the
+   * journal if necessary.  This is done after all locks have been released,
+   * so that concurrent writers can share the journal sync.
+   */
+  private void syncJournal(long journalSeq) throws IOException {
+    if(journalSeq == 0L) {
+      return;
+    }
+    _journal.sync(journalSeq);
+    if(_journal.needsCheckpoint()) {
+      if(_lock == null) {
+        // not shared, just do it now
+        checkpointJournal();
+      } else {
+        scheduleCheckpoint();
+      }
+    }
+  }
+
+  /**
+   * Writes all the journaled pages to the database file.  Excludes all other
+   * writers while the checkpoint is in progress.
+   */
+  private void checkpointJournal() throws IOException {
+    lockWrite();
+    try {
+      _journal.checkpoint();
+    } finally {
+      if(_lock != null) {
+        _lock.writeLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * Schedules a journal checkpoint on a background thread (if one is not
+   * already pending).
+   */
+  private synchronized void scheduleCheckpoint() {
+    if(!_checkpointPending.compareAndSet(false, true)) {
+      return;
+    }
+    getBackground().execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          checkpointJournal();
+        } catch(IOException e) {
+          LOG.warn("Failed checkpointing journal", e);
+        } finally {
+          _checkpointPending.set(false);
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the background thread, creating it if necessary.
+   */
+  private synchronized ScheduledThreadPoolExecutor getBackground() {
+    if(_background == null) {
+      _background = new ScheduledThreadPoolExecutor(
+          1, ThreadUtil.newThreadFactory("jackcess-background"));
+      // any pending work is handled by close
+      _background.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+    return _background;
+  }
+
+  /**
+   * Waits for any running background work and stops the background thread.
+   */
+  private void stopBackground() throws IOException {
+    ScheduledThreadPoolExecutor background = null;
+    synchronized(this) {
+      background = _background;
+      _background = null;
+      _pendingSync = null;
+    }
+    if(background == null) {
+      return;
+    }
+    background.shutdown();
+    try {
+      background.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(
+          "Interrupted waiting for background work");
+    }
+  }
+
+  /**
+   * Registers the given write to be completed when the outermost current
+   * logical write operation is complete (or the channel is flushed).  Adding
+   * the same write multiple times within a logical write operation will
+   * result in a single write.
+   */
+  public void addDeferredWrite(DeferredWrite write) {
+    assertWriting();
+    getWriteState()._deferredWrites.add(write);
+  }
+
+  /**
+   * Completes any outstanding deferred writes.
+   */
+  private static void writeDeferred(WriteState ws) throws IOException {
+    while(!ws._deferredWrites.isEmpty()) {
+      List<DeferredWrite> writes = new ArrayList<DeferredWrite>(
+          ws._deferredWrites);
+      ws._deferredWrites.clear();
+      for(DeferredWrite write : writes) {
+        write.writeDeferred();
+      }
     }
   }
 
@@ -166,7 +694,11 @@ public class PageChannel implements Channel, Flushable {
    * false} otherwise.
    */
   public boolean isWriting() {
-    return(_writeCount > 0);
+    // when shared by a single writer, the write count only applies to the
+    // thread holding the write lock
+    return((getWriteState()._count > 0) &&
+           ((_lock == null) || (_threadWriteState != null) ||
+            _lock.isWriteLockedByCurrentThread()));
   }
 
   /**
@@ -218,15 +750,32 @@ public class PageChannel implements Channel, Flushable {
 
     validatePageNumber(pageNumber);
 
-    ByteBuffer inPage = buffer;
-    ByteBuffer outPage = buffer;
-    if(!_codecHandler.canDecodeInline()) {
-      inPage = _tempDecodeBufferH.getPageBuffer(this);
-      outPage.clear();
+    if(_codecHandler == DefaultCodecProvider.DUMMY_HANDLER) {
+      // positional reads are safe for concurrent use, nothing to decode
+      readPageBytes(buffer, pageNumber);
+      return;
     }
 
+    // the codec handlers (and the shared decode buffer) are not thread-safe
+    synchronized(_codecHandler) {
+      ByteBuffer inPage = buffer;
+      ByteBuffer outPage = buffer;
+      if(!_codecHandler.canDecodeInline()) {
+        inPage = _tempDecodeBufferH.getPageBuffer(this);
+        outPage.clear();
+      }
+
+      readPageBytes(inPage, pageNumber);
+
+      _codecHandler.decodePage(inPage, outPage, pageNumber);
+    }
+  }
+
+  private void readPageBytes(ByteBuffer inPage, int pageNumber)
+    throws IOException
+  {
     inPage.clear();
-    int bytesRead = _channel.read(
+    int bytesRead = readChannel(
         inPage, (long) pageNumber * (long) getFormat().PAGE_SIZE);
     inPage.flip();
     if(bytesRead != getFormat().PAGE_SIZE) {
@@ -234,8 +783,6 @@ public class PageChannel implements Channel, Flushable {
                             getFormat().PAGE_SIZE + " bytes from page " +
                             pageNumber + ", only read " + bytesRead);
     }
-
-    _codecHandler.decodePage(inPage, outPage, pageNumber);
   }
 
   /**
@@ -247,7 +794,7 @@ public class PageChannel implements Channel, Flushable {
     // special method for reading root page, can be done before PageChannel is
     // fully initialized
     buffer.clear();
-    int bytesRead = _channel.read(buffer, 0L);
+    int bytesRead = readChannel(buffer, 0L);
     buffer.flip();
     if(bytesRead != getFormat().PAGE_SIZE) {
       throw new IOException("Failed attempting to read " +
@@ -289,6 +836,21 @@ public class PageChannel implements Channel, Flushable {
           "Page buffer is too large, size " + (writeLen + pageOffset));
     }
 
+    if(_codecHandler == DefaultCodecProvider.DUMMY_HANDLER) {
+      writePageBytes(page, pageNumber, pageOffset, writeLen);
+      return;
+    }
+
+    // the codec handlers (and the shared encode buffer) are not thread-safe
+    synchronized(_codecHandler) {
+      writePageBytes(page, pageNumber, pageOffset, writeLen);
+    }
+  }
+
+  private void writePageBytes(ByteBuffer page, int pageNumber, int pageOffset,
+                              int writeLen)
+    throws IOException
+  {
     ByteBuffer encodedPage = page;
     if(pageNumber == 0) {
       // re-mask header
@@ -328,7 +890,7 @@ public class PageChannel implements Channel, Flushable {
     }
 
     try {
-      _channel.write(encodedPage, (getPageOffset(pageNumber) + pageOffset));
+      writeChannel(encodedPage, (getPageOffset(pageNumber) + pageOffset));
     } finally {
       if(pageNumber == 0) {
         // de-mask header
@@ -342,11 +904,63 @@ public class PageChannel implements Channel, Flushable {
    * until it is written in a call to {@link #writePage(ByteBuffer,int)}.
    */
   public int allocateNewPage() throws IOException {
+    return allocateNewPage(INVALID_PAGE_NUMBER);
+  }
+
+  /**
+   * Allocates a new page in the database, preferring a previously freed page
+   * at or after the given hint page number (if valid).  If there are no free
+   * pages, the database file is extended.  Data in the page is undefined
+   * until it is written in a call to {@link #writePage(ByteBuffer,int)}.
+   */
+  public synchronized int allocateNewPage(int hintPageNumber)
+    throws IOException
+  {
+    assertWriting();
+
+    int pageNumber = findFreePage(hintPageNumber);
+    if(pageNumber == INVALID_PAGE_NUMBER) {
+      pageNumber = extendFile(1);
+    }
+
+    _globalUsageMap.removePageNumber(pageNumber);
+    return pageNumber;
+  }
+
+  /**
+   * Allocates a contiguous run of new pages in the database, preferring a run
+   * of previously freed pages at or after the given hint page number (if
+   * valid).  If there is no such run of free pages, the database file is
+   * extended.  Data in the pages is undefined until it is written in a call
+   * to {@link #writePage(ByteBuffer,int)}.
+   * @return the page number of the first page in the run
+   */
+  public synchronized int allocateNewPages(int numPages, int hintPageNumber)
+    throws IOException
+  {
     assertWriting();
 
+    int firstPageNumber = findFreePages(numPages, hintPageNumber);
+    if(firstPageNumber == INVALID_PAGE_NUMBER) {
+      firstPageNumber = extendFile(numPages);
+    }
+
+    for(int i = 0; i < numPages; ++i) {
+      _globalUsageMap.removePageNumber(firstPageNumber + i);
+    }
+    return firstPageNumber;
+  }
+
+  /**
+   * Extends the database file by the given number of pages, returning the
+   * page number of the first new page.
+   */
+  private int extendFile(int numPages) throws IOException {
+
     // this will force the file to be extended with mostly undefined bytes
     long size = _channel.size();
-    if(size >= getFormat().MAX_DATABASE_SIZE) {
+    long newSize = size + ((long)numPages * getFormat().PAGE_SIZE);
+    if(newSize > getFormat().MAX_DATABASE_SIZE) {
       throw new IOException("Database is at maximum size " +
                             getFormat().MAX_DATABASE_SIZE);
     }
@@ -358,24 +972,118 @@ public class PageChannel implements Channel, Flushable {
 
     _forceBytes.rewind();
 
-    // push the buffer to the end of the page, so that a full page's worth of
-    // data is written
-    int pageOffset = (getFormat().PAGE_SIZE - _forceBytes.remaining());
-    long offset = size + pageOffset;
-    int pageNumber = getNextPageNumber(size);
+    // push the buffer to the end of the last page, so that a full page's
+    // worth of data is written
+    long offset = newSize - _forceBytes.remaining();
 
     // since we are just allocating page space at this point and not writing
-    // meaningful data, we do _not_ encode the page.
+    // meaningful data, we do _not_ encode the page.  (note, this is always
+    // written directly to the file, if the current transaction is rolled
+    // back, the file will be truncated)
     _channel.write(_forceBytes, offset);
 
-    _globalUsageMap.removePageNumber(pageNumber);
+    return getNextPageNumber(size);
+  }
+
+  /**
+   * Returns a page within the current database file which the global usage
+   * map indicates is free, searching from the given hint page number (if
+   * valid) first.  Returns {@link #INVALID_PAGE_NUMBER} if there are no free
+   * pages.
+   */
+  private int findFreePage(int hintPageNumber) throws IOException {
+    int endPage = getNextPageNumber(_channel.size());
+    int startPage = Math.max(hintPageNumber, FIRST_REUSABLE_PAGE_NUMBER);
+    int pageNumber = findFreePage(startPage, endPage);
+    if((pageNumber == INVALID_PAGE_NUMBER) &&
+       (startPage > FIRST_REUSABLE_PAGE_NUMBER)) {
+      // wrap around
+      pageNumber = findFreePage(FIRST_REUSABLE_PAGE_NUMBER, startPage);
+    }
     return pageNumber;
   }
 
+  /**
+   * Returns the first page of a run of the given number of pages within the
+   * current database file which the global usage map indicates are free,
+   * searching from the given hint page number (if valid) first.  Returns
+   * {@link #INVALID_PAGE_NUMBER} if there is no such run of free pages.
+   */
+  private int findFreePages(int numPages, int hintPageNumber)
+    throws IOException
+  {
+    int endPage = getNextPageNumber(_channel.size());
+    int startPage = Math.max(hintPageNumber, FIRST_REUSABLE_PAGE_NUMBER);
+    int pageNumber = findFreePages(numPages, startPage, endPage);
+    if((pageNumber == INVALID_PAGE_NUMBER) &&
+       (startPage > FIRST_REUSABLE_PAGE_NUMBER)) {
+      // wrap around
+      pageNumber = findFreePages(numPages, FIRST_REUSABLE_PAGE_NUMBER,
+                                 Math.min(startPage + numPages - 1, endPage));
+    }
+    return pageNumber;
+  }
+
+  private int findFreePages(int numPages, int startPage, int endPage)
+    throws IOException
+  {
+    int runStart = INVALID_PAGE_NUMBER;
+    int runLength = 0;
+    while(true) {
+      int pageNumber = findFreePage(startPage, endPage);
+      if(pageNumber == INVALID_PAGE_NUMBER) {
+        return pageNumber;
+      }
+
+      if((runLength > 0) && (pageNumber == (runStart + runLength))) {
+        ++runLength;
+      } else {
+        runStart = pageNumber;
+        runLength = 1;
+      }
+      if(runLength == numPages) {
+        return runStart;
+      }
+      startPage = pageNumber + 1;
+    }
+  }
+
+  private int findFreePage(int startPage, int endPage) throws IOException {
+    while(true) {
+      int pageNumber = _globalUsageMap.findPageNumber(startPage, endPage);
+      if(pageNumber == INVALID_PAGE_NUMBER) {
+        return pageNumber;
+      }
+      startPage = pageNumber + 1;
+      if(_unreusablePages.contains(pageNumber)) {
+        continue;
+      }
+
+      // sanity check that the page was actually released (deallocated pages
+      // have their header wiped out)
+      _freePageHeaderBytes.clear();
+      readChannel(_freePageHeaderBytes, getPageOffset(pageNumber));
+      if(Arrays.equals(_freePageHeaderBytes.array(),
+                       INVALID_PAGE_BYTE_HEADER)) {
+        return pageNumber;
+      }
+
+      // the page was not freed by us (e.g. freed by Access, or the usage map
+      // is wrong), so we can't be sure it is unused.  skip it from now on,
+      // but leave the usage map alone.
+      _unreusablePages.add(pageNumber);
+    }
+  }
+
+  // exposed for unit tests
+  UsageMap getGlobalUsageMap() {
+    return _globalUsageMap;
+  }
+
   /**
    * Deallocate a previously used page in the database.
    */
-  public void deallocatePage(int pageNumber) throws IOException {
+  public synchronized void deallocatePage(int pageNumber) throws IOException {
     assertWriting();
 
     validatePageNumber(pageNumber);
@@ -383,11 +1091,142 @@ public class PageChannel implements Channel, Flushable {
     // don't write the whole page, just wipe out the header (which should be
     // enough to let us know if we accidentally try to use an invalid page)
     _invalidPageBytes.rewind();
-    _channel.write(_invalidPageBytes, getPageOffset(pageNumber));
+    writeChannel(_invalidPageBytes, getPageOffset(pageNumber));
+    _unreusablePages.remove(pageNumber);
 
     _globalUsageMap.addPageNumber(pageNumber);  //force is done here
   }
 
+  /**
+   * Reads bytes from the channel at the given position, which will come from
+   * the current transaction or the journal if either has written the
+   * relevant page.
+   */
+  private int readChannel(ByteBuffer buffer, long position)
+    throws IOException
+  {
+    return((_dirtyPages != null) ? _dirtyPages.read(buffer, position) :
+           _pageSource.read(buffer, position));
+  }
+
+  /**
+   * Writes bytes to the channel at the given position (or to the current
+   * transaction or the journal, if any).
+   */
+  private void writeChannel(ByteBuffer buffer, long position)
+    throws IOException
+  {
+    if(_dirtyPages != null) {
+      _dirtyPages.write(buffer, position);
+    } else if(_journal != null) {
+      getWriteState()._journalPages.add(_journal.write(buffer, position));
+    } else {
+      _channel.write(buffer, position);
+    }
+  }
+
+  /**
+   * Returns {@code true} if a transaction is currently in progress, {@code
+   * false} otherwise.
+   */
+  public boolean isInTransaction() {
+    return (_dirtyPages != null);
+  }
+
+  /**
+   * Begins a transaction.  All page writes are held in memory (or a temp
+   * file) until the transaction is committed or rolled back.  If the
+   * database is shared by multiple threads, the transaction holds the write
+   * lock until it is complete.
+   */
+  public void startTransaction() throws IOException {
+    lockWrite();
+    WriteState ws = getWriteState();
+    if((_dirtyPages != null) || (ws._count != 0)) {
+      unlockWrite(ws);
+      throw new IllegalStateException(
+          "Cannot start a transaction within another transaction or write " +
+          "operation");
+    }
+    try {
+      _txnFileSize = _channel.size();
+    } catch(IOException e) {
+      unlockWrite(ws);
+      throw e;
+    }
+    _dirtyPages = new DirtyPageSet(_pageSource, getFormat().PAGE_SIZE);
+  }
+
+  /**
+   * Commits the current transaction, writing all the modified pages to the
+   * database file (in page order), or to the journal as a single record (if
+   * any).
+   */
+  public void commitTransaction() throws IOException {
+    WriteState ws = getWriteState();
+    requireTransaction();
+    if(ws._count != 0) {
+      throw new IllegalStateException(
+          "Cannot commit a transaction within a write operation");
+    }
+    DirtyPageSet dirtyPages = _dirtyPages;
+    _dirtyPages = null;
+    long journalSeq = 0L;
+    try {
+      try {
+        if(_journal != null) {
+          journalSeq = _journal.commit(dirtyPages);
+        } else {
+          dirtyPages.writeTo(_channel);
+        }
+      } finally {
+        dirtyPages.close();
+      }
+      if(_journal == null) {
+        writeCompleted();
+      }
+    } finally {
+      unlockWrite(ws);
+    }
+    syncJournal(journalSeq);
+  }
+
+  /**
+   * Rolls back the current transaction, discarding all the modified pages.
+   * Any in-memory state derived from the database pages must be discarded by
+   * the caller (the global usage map is re-read by this method).
+   */
+  public void rollbackTransaction(DatabaseImpl database) throws IOException {
+    WriteState ws = getWriteState();
+    requireTransaction();
+    try {
+      discardTransaction();
+      if(_fullPageEncodeBufferH != null) {
+        _fullPageEncodeBufferH.invalidate();
+      }
+      readGlobalUsageMap(database);
+    } finally {
+      unlockWrite(ws);
+    }
+  }
+
+  private void discardTransaction() throws IOException {
+    DirtyPageSet dirtyPages = _dirtyPages;
+    _dirtyPages = null;
+    dirtyPages.close();
+    // remove any pages added to the end of the file during the transaction
+    if(_channel.size() > _txnFileSize) {
+      _channel.truncate(_txnFileSize);
+    }
+  }
+
+  private void requireTransaction() {
+    if((_dirtyPages == null) ||
+       ((_lock != null) && !_lock.isWriteLockedByCurrentThread())) {
+      throw new IllegalStateException("No transaction in progress");
+    }
+  }
+
   /**
    * @return A newly-allocated buffer that can be passed to readPage
    */
@@ -412,12 +1251,33 @@ public class PageChannel implements Channel, Flushable {
 
   @Override
   public void flush() throws IOException {
-    _channel.force(true);
+    // completes any deferred writes
+    startWrite();
+    finishWrite();
+    if(_journal != null) {
+      checkpointJournal();
+    } else if(_syncedWriteCount.get() < _writeCount.get()) {
+      syncChannel();
+    }
   }
 
   @Override
   public void close() throws IOException {
+    if(_dirtyPages != null) {
+      // uncommitted changes are discarded
+      discardTransaction();
+      if((_lock != null) && _lock.isWriteLockedByCurrentThread()) {
+        _lock.writeLock().unlock();
+      }
+    }
+    stopBackground();
     flush();
+    if(_journal != null) {
+      _journal.close();
+    }
+    if(_journalSnapshot != null) {
+      _journalSnapshot.close();
+    }
     if(_closeChannel) {
       _channel.close();
     }
@@ -463,4 +1323,53 @@ public class PageChannel implements Channel, Flushable {
   public static ByteBuffer wrap(byte[] bytes) {
     return ByteBuffer.wrap(bytes).order(DEFAULT_BYTE_ORDER);
   }
+
+  /**
+   * Syncer implementation for this channel.
+   */
+  private final class ChannelSyncer implements SyncPolicy.Syncer
+  {
+    @Override
+    public long getUnsyncedWriteCount() {
+      return _writeCount.get() - _syncedWriteCount.get();
+    }
+
+    @Override
+    public void sync() throws IOException {
+      syncChannel();
+    }
+
+    @Override
+    public void syncLater(long delay, TimeUnit unit) {
+      scheduleSync(unit.toNanos(delay));
+    }
+  }
+
+  /**
+   * The state of a logical write operation.
+   */
+  private static final class WriteState
+  {
+    /** the nesting depth of the current logical write operation */
+    private int _count;
+    /** writes which have been deferred until the current logical write
+        operation completes */
+    private final Set<DeferredWrite> _deferredWrites =
+      new LinkedHashSet<DeferredWrite>();
+    /** table locks held by the current logical write operation (if multiple
+        writers are allowed) */
+    private final List<Lock> _locks = new ArrayList<Lock>();
+    /** pages written by the current logical write operation which need to be
+        journaled (if the database has a journal) */
+    private final Set<Integer> _journalPages = new HashSet<Integer>();
+  }
+
+  /**
+   * A write which may be deferred until the current logical write operation
+   * is complete.
+   */
+  public interface DeferredWrite
+  {
+    public void writeDeferred() throws IOException;
+  }
 }
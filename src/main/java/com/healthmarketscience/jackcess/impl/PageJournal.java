@@ -0,0 +1,506 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Write-ahead (redo) journal for the pages of a database file.  Page writes
+ * are held in memory (see {@link DirtyPageSet}) and, when a logical write
+ * operation completes, the images of the modified pages are appended to a
+ * sequential journal file as a single record.  The journal file is synced
+ * using "group commit", so that operations which complete at about the same
+ * time share a single sync.  Once enough pages have been journaled, they are
+ * "checkpointed" to the database file and the journal is truncated.  If the
+ * journal file exists when a database is opened (the previous user did not
+ * close the database cleanly), any complete records are replayed into the
+ * database file.
+ * <p>
+ * Journal file format: a header of [magic][page size], followed by records
+ * of [magic][page count]([page number][page bytes])*[crc].
+ * <p>
+ * All state is guarded by this journal's monitor, except for the journal
+ * sync which is done outside of it.
+ *
+ * @author James Ahlborn
+ */
+final class PageJournal implements Closeable, DirtyPageSet.Source
+{
+  private static final Log LOG = LogFactory.getLog(PageJournal.class);
+
+  /** suffix appended to the database file name to get the journal file
+      name */
+  static final String FILE_SUFFIX = "-journal";
+  /** number of journaled pages which triggers a checkpoint */
+  static final int CHECKPOINT_PAGES = DirtyPageSet.MAX_MEMORY_PAGES;
+  /** max time the group commit leader waits for other active writers to
+      complete before syncing */
+  static final long GROUP_COMMIT_WINDOW_NANOS =
+    TimeUnit.MILLISECONDS.toNanos(1L);
+
+  private static final int FILE_MAGIC = 0x4A4E524A;
+  private static final int RECORD_MAGIC = 0x4A524543;
+  private static final int FILE_HEADER_SIZE = 8;
+  private static final int RECORD_HEADER_SIZE = 8;
+  private static final int RECORD_TRAILER_SIZE = 8;
+
+  /** the journal file */
+  private final Path _path;
+  /** channel containing the database */
+  private final FileChannel _channel;
+  /** channel containing the journal */
+  private final FileChannel _journal;
+  private final int _pageSize;
+  /** the images of all pages written since the last checkpoint */
+  private final DirtyPageSet _pages;
+  /** offset at which the next record will be appended */
+  private long _appendPos = FILE_HEADER_SIZE;
+  /** sequence number of the last appended record */
+  private long _appendSeq;
+  /** sequence number of the last record known to be synced */
+  private long _syncedSeq;
+  /** whether or not a thread is currently syncing the journal */
+  private boolean _syncing;
+  /** number of logical write operations in progress */
+  private int _activeWriters;
+
+  private PageJournal(Path path, FileChannel channel, FileChannel journal,
+                      int pageSize) {
+    _path = path;
+    _channel = channel;
+    _journal = journal;
+    _pageSize = pageSize;
+    _pages = new DirtyPageSet(DirtyPageSet.channelSource(channel), pageSize);
+  }
+
+  /**
+   * Returns the journal file for the given database file.
+   */
+  static Path getJournalPath(Path dbPath) {
+    return Paths.get(dbPath.toString() + FILE_SUFFIX);
+  }
+
+  /**
+   * Creates a new (empty) journal for the given database.
+   */
+  static PageJournal create(Path dbPath, FileChannel channel, int pageSize)
+    throws IOException
+  {
+    Path path = getJournalPath(dbPath);
+    FileChannel journal = FileChannel.open(
+        path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    try {
+      ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+      header.putInt(FILE_MAGIC).putInt(pageSize).flip();
+      writeFully(journal, header, 0L);
+      journal.force(true);
+    } catch(IOException e) {
+      journal.close();
+      throw e;
+    }
+    return new PageJournal(path, channel, journal, pageSize);
+  }
+
+  /**
+   * Replays any complete records from an existing journal for the given
+   * database into the database file and then deletes the journal.
+   * @return {@code true} if a journal was found, {@code false} otherwise
+   */
+  static boolean recover(Path dbPath, FileChannel channel) throws IOException
+  {
+    Path path = getJournalPath(dbPath);
+    if(!Files.exists(path)) {
+      return false;
+    }
+
+    try(FileChannel journal = FileChannel.open(path,
+                                               StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+      if((readFully(journal, header, 0L) == FILE_HEADER_SIZE) &&
+         (header.getInt(0) == FILE_MAGIC)) {
+        replay(journal, channel, header.getInt(4));
+      }
+    }
+
+    Files.delete(path);
+    return true;
+  }
+
+  /**
+   * Loads the pages from any complete records of an existing journal for the
+   * given database, without modifying the database file or the journal (for
+   * a database opened read-only).  The returned pages will read through to
+   * the given channel for pages which are not in the journal.
+   * @return the journaled pages, or {@code null} if there is no journal
+   */
+  static DirtyPageSet load(Path dbPath, FileChannel channel, int pageSize)
+    throws IOException
+  {
+    Path path = getJournalPath(dbPath);
+    if(!Files.exists(path)) {
+      return null;
+    }
+
+    DirtyPageSet pages = new DirtyPageSet(
+        DirtyPageSet.channelSource(channel), pageSize);
+    try(FileChannel journal = FileChannel.open(path,
+                                               StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+      if((readFully(journal, header, 0L) == FILE_HEADER_SIZE) &&
+         (header.getInt(0) == FILE_MAGIC) && (header.getInt(4) == pageSize)) {
+        for(Map.Entry<Integer,Long> e :
+              readPageOffsets(journal, pageSize).entrySet()) {
+          ByteBuffer page = ByteBuffer.allocate(pageSize);
+          if(readFully(journal, page, e.getValue()) != pageSize) {
+            // the journal was checkpointed in the meantime, so the database
+            // file now contains all the journaled pages
+            pages.clear();
+            break;
+          }
+          pages.putPage(e.getKey(), page.array());
+        }
+      }
+    } catch(NoSuchFileException e) {
+      // the journal was closed by its writer in the meantime
+    } catch(IOException e) {
+      pages.close();
+      throw e;
+    }
+    return pages;
+  }
+
+  private static void replay(FileChannel journal, FileChannel channel,
+                             int pageSize)
+    throws IOException
+  {
+    Map<Integer,Long> pageOffsets = readPageOffsets(journal, pageSize);
+
+    ByteBuffer page = ByteBuffer.allocate(pageSize);
+    for(Map.Entry<Integer,Long> e : pageOffsets.entrySet()) {
+      page.clear();
+      readFully(journal, page, e.getValue());
+      page.flip();
+      writeFully(channel, page, (long)e.getKey() * pageSize);
+    }
+    channel.force(true);
+  }
+
+  /**
+   * Returns the journal offset of the latest image of each page in the
+   * complete records of the given journal (in page order).
+   */
+  private static Map<Integer,Long> readPageOffsets(FileChannel journal,
+                                                   int pageSize)
+    throws IOException
+  {
+    // find the latest journaled image of each page in the complete records
+    Map<Integer,Long> pageOffsets = new TreeMap<Integer,Long>();
+    ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+    long pos = FILE_HEADER_SIZE;
+    int numRecords = 0;
+    while(true) {
+      recordHeader.clear();
+      if((readFully(journal, recordHeader, pos) != RECORD_HEADER_SIZE) ||
+         (recordHeader.getInt(0) != RECORD_MAGIC)) {
+        break;
+      }
+      int numPages = recordHeader.getInt(4);
+      int entrySize = 4 + pageSize;
+      long recordLen = RECORD_HEADER_SIZE + ((long)numPages * entrySize) +
+        RECORD_TRAILER_SIZE;
+      if((numPages <= 0) || (recordLen > (journal.size() - pos))) {
+        // incomplete record
+        break;
+      }
+      int recordSize = (int)recordLen;
+      ByteBuffer record = ByteBuffer.allocate(recordSize);
+      readFully(journal, record, pos);
+      CRC32 crc = new CRC32();
+      crc.update(record.array(), 0, recordSize - RECORD_TRAILER_SIZE);
+      if(crc.getValue() != record.getLong(recordSize - RECORD_TRAILER_SIZE)) {
+        break;
+      }
+      for(int i = 0; i < numPages; ++i) {
+        int entryPos = RECORD_HEADER_SIZE + (i * entrySize);
+        pageOffsets.put(record.getInt(entryPos), pos + entryPos + 4);
+      }
+      pos += recordSize;
+      ++numRecords;
+    }
+
+    if(LOG.isDebugEnabled()) {
+      LOG.debug("Read " + numRecords + " journal records (" +
+                pageOffsets.size() + " pages)");
+    }
+    return pageOffsets;
+  }
+
+  /**
+   * Reads bytes from the database file at the given position (which must be
+   * within a single page), using the journaled page contents if the page has
+   * been written since the last checkpoint.
+   */
+  @Override
+  public synchronized int read(ByteBuffer dst, long position)
+    throws IOException
+  {
+    return _pages.read(dst, position);
+  }
+
+  /**
+   * Writes the given bytes to the page at the given position (which must be
+   * within a single page).  The page will be journaled by the next call to
+   * {@link #commit} which includes the page.
+   * @return the number of the page written
+   */
+  public synchronized int write(ByteBuffer src, long position)
+    throws IOException
+  {
+    return _pages.write(src, position);
+  }
+
+  /**
+   * Notes the start of a logical write operation, which must be completed by
+   * a call to {@link #commit}.
+   */
+  public synchronized void startWrite() {
+    ++_activeWriters;
+  }
+
+  /**
+   * Completes a logical write operation, appending the current images of the
+   * given pages to the journal as a single record.  The record is not
+   * durable until {@link #sync} is called with the returned sequence number.
+   */
+  public synchronized long commit(Collection<Integer> pageNumbers)
+    throws IOException
+  {
+    try {
+      return appendRecord(pageNumbers);
+    } finally {
+      --_activeWriters;
+      // a waiting group commit leader may be able to sync now
+      notifyAll();
+    }
+  }
+
+  /**
+   * Appends all the pages in the given set to the journal as a single record
+   * (e.g. for a committed transaction).  The record is not durable until
+   * {@link #sync} is called with the returned sequence number.
+   */
+  public synchronized long commit(DirtyPageSet pages) throws IOException {
+    SortedSet<Integer> pageNumbers = pages.getPageNumbers();
+    for(Integer pageNumber : pageNumbers) {
+      _pages.putPage(pageNumber, pages.getPage(pageNumber));
+    }
+    return appendRecord(pageNumbers);
+  }
+
+  private long appendRecord(Collection<Integer> pageNumbers)
+    throws IOException
+  {
+    if(pageNumbers.isEmpty()) {
+      return _syncedSeq;
+    }
+
+    int entrySize = 4 + _pageSize;
+    int recordSize = RECORD_HEADER_SIZE + (pageNumbers.size() * entrySize) +
+      RECORD_TRAILER_SIZE;
+    ByteBuffer record = ByteBuffer.allocate(recordSize);
+    record.putInt(RECORD_MAGIC).putInt(pageNumbers.size());
+    for(Integer pageNumber : pageNumbers) {
+      record.putInt(pageNumber).put(_pages.getPage(pageNumber));
+    }
+    CRC32 crc = new CRC32();
+    crc.update(record.array(), 0, record.position());
+    record.putLong(crc.getValue());
+    record.flip();
+
+    writeFully(_journal, record, _appendPos);
+    _appendPos += recordSize;
+    return ++_appendSeq;
+  }
+
+  /**
+   * Ensures that the record with the given sequence number (and all previous
+   * records) are synced to disk.  Concurrent callers are grouped, such that
+   * one thread (the "leader") syncs the journal on behalf of all the records
+   * appended so far.  The leader waits briefly for any other active writers to
+   * complete so that their records can be included in the same sync.  Must
+   * not be called while holding any database locks.
+   */
+  public void sync(long seq) throws IOException {
+    boolean interrupted = false;
+    try {
+      long targetSeq = 0L;
+      synchronized(this) {
+        while(_syncing && (_syncedSeq < seq)) {
+          interrupted |= await(0L);
+        }
+        if(_syncedSeq >= seq) {
+          return;
+        }
+
+        // we are the leader, give any active writers a chance to join this
+        // sync
+        _syncing = true;
+        long deadline = System.nanoTime() + GROUP_COMMIT_WINDOW_NANOS;
+        long remaining = GROUP_COMMIT_WINDOW_NANOS;
+        while((_activeWriters > 0) && (remaining > 0L)) {
+          interrupted |= await(remaining);
+          remaining = deadline - System.nanoTime();
+        }
+        targetSeq = _appendSeq;
+      }
+
+      boolean success = false;
+      try {
+        _journal.force(false);
+        success = true;
+      } finally {
+        synchronized(this) {
+          if(success) {
+            _syncedSeq = Math.max(_syncedSeq, targetSeq);
+          }
+          _syncing = false;
+          notifyAll();
+        }
+      }
+    } finally {
+      if(interrupted) {
+        // preserve the interrupt (a partially synced commit would be worse)
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Ensures that all appended records are synced to disk.
+   */
+  public void sync() throws IOException {
+    long seq = 0L;
+    synchronized(this) {
+      seq = _appendSeq;
+    }
+    sync(seq);
+  }
+
+  /**
+   * Returns {@code true} if enough pages have been journaled that they should
+   * be checkpointed to the database file, {@code false} otherwise.
+   */
+  public synchronized boolean needsCheckpoint() {
+    return (_pages.getPageCount() >= CHECKPOINT_PAGES);
+  }
+
+  /**
+   * Writes all the journaled pages to the database file (in page order) and
+   * truncates the journal.  Must only be called when no write operations are
+   * in progress.
+   */
+  public synchronized void checkpoint() throws IOException {
+    if(_pages.getPageCount() == 0) {
+      return;
+    }
+
+    _pages.writeTo(_channel);
+    _channel.force(true);
+
+    // the database file now contains all the journaled pages
+    _journal.truncate(FILE_HEADER_SIZE);
+    _journal.force(true);
+    _appendPos = FILE_HEADER_SIZE;
+    _syncedSeq = _appendSeq;
+    _pages.clear();
+    notifyAll();
+  }
+
+  /**
+   * Checkpoints all the journaled pages and deletes the journal file.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      checkpoint();
+    } finally {
+      _pages.close();
+      _journal.close();
+    }
+    Files.delete(_path);
+  }
+
+  /**
+   * Waits on this journal's monitor for the given time (or until notified if
+   * 0).
+   * @return {@code true} if the wait was interrupted, {@code false}
+   *         otherwise
+   */
+  private boolean await(long nanos) {
+    try {
+      if(nanos > 0L) {
+        TimeUnit.NANOSECONDS.timedWait(this, nanos);
+      } else {
+        wait();
+      }
+      return false;
+    } catch(InterruptedException e) {
+      return true;
+    }
+  }
+
+  private static int readFully(FileChannel channel, ByteBuffer buf, long pos)
+    throws IOException
+  {
+    int total = 0;
+    while(buf.hasRemaining()) {
+      int len = channel.read(buf, pos + total);
+      if(len < 0) {
+        break;
+      }
+      total += len;
+    }
+    return total;
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buf,
+                                 long pos)
+    throws IOException
+  {
+    while(buf.hasRemaining()) {
+      channel.write(buf, pos + buf.position());
+    }
+  }
+}
@@ -33,7 +33,10 @@ import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 import com.healthmarketscience.jackcess.BatchUpdateException;
@@ -115,6 +118,9 @@ public class TableImpl implements Table, PropertyMaps.Owner
       }
     };
 
+  /** offset of the owning table definition page number in a data page */
+  private static final int OFFSET_DATA_PAGE_TDEF = 4;
+
   /** owning database */
   private final DatabaseImpl _database;
   /** additional table flags from the catalog entry */
@@ -153,6 +159,8 @@ public class TableImpl implements Table, PropertyMaps.Owner
   private final UsageMap _ownedPages;
   /** Usage map of pages that this table owns with free space on them */
   private final UsageMap _freeSpacePages;
+  /** free space info for the data pages of this table */
+  private final FreeSpaceMap _freeSpaceMap;
   /** Number of rows in the table */
   private int _rowCount;
   /** last long auto number for the table */
@@ -167,6 +175,19 @@ public class TableImpl implements Table, PropertyMaps.Owner
   /** page buffer used to update the table def page */
   private final TempPageHolder _tableDefBufferH =
     TempPageHolder.newHolder(TempBufferHolder.Type.SOFT);
+  /** whether or not the row count, autonumber and index info need to be
+      written to the table def page */
+  private boolean _tdefDirty;
+  /** writes the table def page info at the end of a logical write */
+  private final PageChannel.DeferredWrite _tdefWriter =
+    new PageChannel.DeferredWrite() {
+      @Override
+      public void writeDeferred() throws IOException {
+        if(_tdefDirty) {
+          writeTableDefinitionCounts();
+        }
+      }
+    };
   /** buffer used to writing rows of data */
   private final TempBufferHolder _writeRowBufferH =
     TempBufferHolder.newHolder(TempBufferHolder.Type.SOFT, true);
@@ -222,6 +243,7 @@ public class TableImpl implements Table, PropertyMaps.Owner
     _logicalIndexCount = 0;
     _ownedPages = null;
     _freeSpacePages = null;
+    _freeSpaceMap = null;
   }
 
   /**
@@ -259,6 +281,8 @@ public class TableImpl implements Table, PropertyMaps.Owner
     _ownedPages = UsageMap.read(getDatabase(), tableBuffer);
     tableBuffer.position(getFormat().OFFSET_FREE_SPACE_PAGES);
     _freeSpacePages = UsageMap.read(getDatabase(), tableBuffer);
+    _freeSpaceMap = new FreeSpaceMap(_ownedPages, _freeSpacePages,
+                                     _tableDefPageNumber);
 
     for (int i = 0; i < _indexCount; i++) {
       _indexDatas.add(IndexData.create(this, tableBuffer, i, getFormat()));
@@ -367,6 +391,20 @@ public class TableImpl implements Table, PropertyMaps.Owner
     return getDatabase().getPageChannel();
   }
 
+  /**
+   * Returns the tables which need to be locked for a write to this table
+   * when multiple writers are allowed, mapped from table definition page
+   * number to whether the table may be written (otherwise it is only read).
+   */
+  SortedMap<Integer,Boolean> getWriteLockTables() throws IOException {
+    SortedMap<Integer,Boolean> tables = new TreeMap<Integer,Boolean>();
+    tables.put(getTableDefPageNumber(), Boolean.TRUE);
+    if(_fkEnforcer != null) {
+      _fkEnforcer.collectLockTables(tables);
+    }
+    return tables;
+  }
+
   @Override
   public ErrorHandler getErrorHandler() {
     return((_tableErrorHandler != null) ? _tableErrorHandler :
@@ -469,10 +507,15 @@ public class TableImpl implements Table, PropertyMaps.Owner
 
   @Override
   public PropertyMap getProperties() throws IOException {
-    if(_props == null) {
-      _props = getPropertyMaps().getDefault();
+    getDatabase().startMetadataAccess();
+    try {
+      if(_props == null) {
+        _props = getPropertyMaps().getDefault();
+      }
+      return _props;
+    } finally {
+      getDatabase().finishMetadataAccess();
     }
-    return _props;
   }
 
   /**
@@ -480,11 +523,16 @@ public class TableImpl implements Table, PropertyMaps.Owner
    * @usage _advanced_method_
    */
   public PropertyMaps getPropertyMaps() throws IOException {
-    if(_propertyMaps == null) {
-      _propertyMaps = getDatabase().getPropertiesForObject(
-          _tableDefPageNumber, this);
+    getDatabase().startMetadataAccess();
+    try {
+      if(_propertyMaps == null) {
+        _propertyMaps = getDatabase().getPropertiesForObject(
+            _tableDefPageNumber, this);
+      }
+      return _propertyMaps;
+    } finally {
+      getDatabase().finishMetadataAccess();
     }
-    return _propertyMaps;
   }
 
   @Override
@@ -655,7 +703,7 @@ public class TableImpl implements Table, PropertyMaps.Owner
   {
     requireValidRowId(rowId);
 
-    getPageChannel().startWrite();
+    getPageChannel().startWrite(this);
     try {
 
       // ensure that the relevant row state is up-to-date
@@ -712,6 +760,261 @@ public class TableImpl implements Table, PropertyMaps.Owner
     }
   }
 
+  @Override
+  public CompactResult compact() throws IOException {
+
+    JetFormat format = getFormat();
+    PageChannel pageChannel = getPageChannel();
+
+    pageChannel.startWrite(this);
+    try {
+
+      // find the current data pages and the live rows on them (note, the
+      // "overflow" rows are always marked deleted)
+      List<Integer> oldPages = new ArrayList<Integer>();
+      List<RowIdImpl> rowIds = new ArrayList<RowIdImpl>();
+      long oldUsedSpace = 0L;
+      TempPageHolder oldPageH = TempPageHolder.newHolder(
+          TempBufferHolder.Type.SOFT);
+      UsageMap.PageCursor pageCursor = _ownedPages.cursor();
+      while(true) {
+        int pageNumber = pageCursor.getNextPage();
+        if(pageNumber < 0) {
+          break;
+        }
+        ByteBuffer oldPage = oldPageH.setPage(pageChannel, pageNumber);
+        if((oldPage.get(0) != PageTypes.DATA) ||
+           (oldPage.getInt(OFFSET_DATA_PAGE_TDEF) != _tableDefPageNumber)) {
+          // not one of our row data pages
+          continue;
+        }
+        oldPages.add(pageNumber);
+        oldUsedSpace += (format.DATA_PAGE_INITIAL_FREE_SPACE -
+                         oldPage.getShort(format.OFFSET_FREE_SPACE));
+        int rowsOnPage = getRowsOnDataPage(oldPage, format);
+        for(int rowNum = 0; rowNum < rowsOnPage; ++rowNum) {
+          short rowStart = oldPage.getShort(getRowStartOffset(rowNum, format));
+          if(!isDeletedRow(rowStart)) {
+            rowIds.add(new RowIdImpl(pageNumber, rowNum));
+          }
+        }
+      }
+
+      // the free space info for the old pages is about to be obsolete
+      _freeSpaceMap.reset();
+      _addRowBufferH.clear();
+
+      // copy the live row data (from the overflow rows where necessary) onto
+      // new data pages, moving the index entries along with the rows
+      RowState rowState = createRowState();
+      TempPageHolder newPageH = TempPageHolder.newHolder(
+          TempBufferHolder.Type.HARD);
+      ByteBuffer newPage = null;
+      int numNewPages = 0;
+      long newUsedSpace = 0L;
+      for(RowIdImpl oldRowId : rowIds) {
+
+        ByteBuffer rowBuffer = positionAtRowData(rowState, oldRowId);
+        int rowSize = rowBuffer.remaining();
+        byte[] rowBytes = ByteUtil.getBytes(rowBuffer, rowBuffer.position(),
+                                            rowSize);
+
+        Object[] rowValues = null;
+        if(!_indexDatas.isEmpty()) {
+          for(ColumnImpl idxCol : _indexColumns) {
+            getRowColumn(format, rowBuffer, idxCol, rowState, null);
+          }
+          rowValues = rowState.getRowCacheValues();
+        }
+
+        if((newPage == null) || !rowFitsOnDataPage(rowSize, newPage, format)) {
+          if(newPage != null) {
+            newUsedSpace += writeCompactedDataPage(
+                newPage, newPageH.getPageNumber());
+          }
+          newPage = newPageH.setNewPage(pageChannel);
+          writeDataPageHeader(newPage);
+          _ownedPages.addPageNumber(newPageH.getPageNumber());
+          ++numNewPages;
+        }
+
+        int rowNum = addDataPageRow(newPage, rowSize, format, 0);
+        newPage.put(rowBytes);
+        RowIdImpl newRowId = new RowIdImpl(newPageH.getPageNumber(), rowNum);
+
+        for(IndexData indexData : _indexDatas) {
+          indexData.deleteRow(rowValues, oldRowId);
+          IndexData.commitAll(
+              indexData.prepareAddRow(rowValues, newRowId, null));
+        }
+      }
+      if(newPage != null) {
+        newUsedSpace += writeCompactedDataPage(
+            newPage, newPageH.getPageNumber());
+      }
+
+      // finally, give back the old pages
+      for(Integer pageNumber : oldPages) {
+        _ownedPages.removePageNumber(pageNumber);
+        if(_freeSpacePages.containsPageNumber(pageNumber)) {
+          _freeSpacePages.removePageNumber(pageNumber);
+        }
+        pageChannel.deallocatePage(pageNumber);
+      }
+
+      // all existing row states are now invalid
+      ++_modCount;
+      updateTableDefinition(0);
+
+      return new CompactResultImpl(oldPages.size() - numNewPages,
+                                   oldUsedSpace - newUsedSpace);
+
+    } finally {
+      pageChannel.finishWrite();
+    }
+  }
+
+  @Override
+  public void truncate() throws IOException {
+    truncate(true);
+  }
+
+  @Override
+  public void truncate(boolean resetAutoNumber) throws IOException {
+
+    getPageChannel().startWrite(this);
+    try {
+
+      // handle any relationships to other tables first (may throw)
+      _fkEnforcer.truncateTable();
+
+      // give back all the data pages (and long value pages)
+      _addRowBufferH.clear();
+      getLongValueBuffer().clear();
+      _freeSpaceMap.releaseAllPages();
+      for(ColumnImpl col : _columns) {
+        col.releaseOwnedPages();
+      }
+
+      // and reset the indexes
+      for(IndexData indexData : _indexDatas) {
+        indexData.truncate();
+      }
+
+      // all existing row states are now invalid
+      ++_modCount;
+      if(resetAutoNumber) {
+        _lastLongAutoNumber = 0;
+      }
+      updateTableDefinition(-_rowCount);
+
+    } finally {
+      getPageChannel().finishWrite();
+    }
+  }
+
+  /**
+   * Writes a new data page filled by {@link #compact}.
+   * @return the space used on the page
+   */
+  private int writeCompactedDataPage(ByteBuffer dataPage, int pageNumber)
+    throws IOException
+  {
+    getPageChannel().writePage(dataPage, pageNumber);
+    _freeSpaceMap.updatePage(pageNumber, dataPage);
+    return (getFormat().DATA_PAGE_INITIAL_FREE_SPACE -
+            dataPage.getShort(getFormat().OFFSET_FREE_SPACE));
+  }
+
+  @Override
+  public int deleteRows(Collection<? extends RowId> rowIds) throws IOException
+  {
+    // handle the rows in page order
+    Set<RowId> sortedIds = new TreeSet<RowId>(rowIds);
+    List<RowIdImpl> sortedRowIds = new ArrayList<RowIdImpl>(sortedIds.size());
+    for(RowId rowId : sortedIds) {
+      requireValidRowId((RowIdImpl)rowId);
+      sortedRowIds.add((RowIdImpl)rowId);
+    }
+
+    getPageChannel().startWrite(this);
+    try {
+
+      // first, gather the index column values for the rows and check the
+      // foreign keys (which may cascade to other tables)
+      RowState rowState = createRowState();
+      List<RowIdImpl> delRowIds = new ArrayList<RowIdImpl>(sortedRowIds.size());
+      List<Object[]> delRowValues = new ArrayList<Object[]>(
+          sortedRowIds.size());
+      for(RowIdImpl rowId : sortedRowIds) {
+
+        positionAtRowHeader(rowState, rowId);
+        if(rowState.isDeleted()) {
+          // don't care about duplicate deletion
+          continue;
+        }
+        requireNonDeletedRow(rowState, rowId);
+
+        Object[] rowValues = null;
+        if(!_indexDatas.isEmpty()) {
+          ByteBuffer rowBuffer = positionAtRowData(rowState, rowId);
+          for(ColumnImpl idxCol : _indexColumns) {
+            getRowColumn(getFormat(), rowBuffer, idxCol, rowState, null);
+          }
+          rowValues = rowState.getRowCacheValues();
+          _fkEnforcer.deleteRow(rowValues);
+        }
+
+        delRowIds.add(rowId);
+        delRowValues.add(rowValues);
+      }
+
+      // next, flag the rows as deleted, writing each data page once
+      TempPageHolder pageH = TempPageHolder.newHolder(
+          TempBufferHolder.Type.HARD);
+      List<RowIdImpl> idxRowIds = new ArrayList<RowIdImpl>(delRowIds.size());
+      List<Object[]> idxRowValues = new ArrayList<Object[]>(delRowIds.size());
+      ByteBuffer dataPage = null;
+      for(int i = 0; i < delRowIds.size(); ++i) {
+        RowIdImpl rowId = delRowIds.get(i);
+        int pageNumber = rowId.getPageNumber();
+        if(pageH.getPageNumber() != pageNumber) {
+          if(dataPage != null) {
+            writeDataPage(dataPage, pageH.getPageNumber());
+          }
+          dataPage = pageH.setPage(getPageChannel(), pageNumber);
+        }
+
+        int rowIndex = getRowStartOffset(rowId.getRowNumber(), getFormat());
+        short rowStart = dataPage.getShort(rowIndex);
+        if(isDeletedRow(rowStart)) {
+          // deleted by a cascading relationship
+          continue;
+        }
+        dataPage.putShort(rowIndex, (short)(rowStart | DELETED_ROW_MASK |
+                                            OVERFLOW_ROW_MASK));
+        idxRowIds.add(rowId);
+        idxRowValues.add(delRowValues.get(i));
+      }
+      if(dataPage != null) {
+        writeDataPage(dataPage, pageH.getPageNumber());
+      }
+
+      // update the indexes
+      for(IndexData indexData : _indexDatas) {
+        indexData.deleteRows(idxRowValues, idxRowIds);
+      }
+
+      // make sure table def gets updated
+      updateTableDefinition(-idxRowIds.size());
+
+      return idxRowIds.size();
+
+    } finally {
+      getPageChannel().finishWrite();
+    }
+  }
+
   @Override
   public Row getNextRow() throws IOException {
     return getDefaultCursor().getNextRow();
@@ -1626,6 +1929,11 @@ public class TableImpl implements Table, PropertyMaps.Owner
       TableUpdater mutator)
     throws IOException
   {
+    if(_tdefDirty) {
+      // write any outstanding changes before we modify the table definition
+      writeTableDefinitionCounts();
+    }
+
     // load complete table definition
     ByteBuffer tableBuffer = _tableDefBufferH.setPage(getPageChannel(),
                                                       _tableDefPageNumber);
@@ -2081,6 +2389,9 @@ public class TableImpl implements Table, PropertyMaps.Owner
     // being written (e.g. this happens during deleteRow)
     _addRowBufferH.possiblyInvalidate(pageNumber, pageBuffer);
 
+    // keep the free space info up-to-date
+    _freeSpaceMap.updatePage(pageNumber, pageBuffer);
+
     // update modification count so any active RowStates can keep themselves
     // up-to-date
     ++_modCount;
@@ -2227,7 +2538,7 @@ public class TableImpl implements Table, PropertyMaps.Owner
       return rows;
     }
 
-    getPageChannel().startWrite();
+    getPageChannel().startWrite(this);
     try {
 
       ByteBuffer dataPage = null;
@@ -2469,12 +2780,11 @@ public class TableImpl implements Table, PropertyMaps.Owner
   {
     requireValidRowId(rowId);
 
-    getPageChannel().startWrite();
+    getPageChannel().startWrite(this);
     try {
 
       // ensure that the relevant row state is up-to-date
       ByteBuffer rowBuffer = positionAtRowData(rowState, rowId);
-      int oldRowSize = rowBuffer.remaining();
 
       requireNonDeletedRow(rowState, rowId);
 
@@ -2484,229 +2794,356 @@ public class TableImpl implements Table, PropertyMaps.Owner
         row = dupeRow(row, _columns.size());
       }
 
-      // hang on to the raw values of var length columns we are "keeping".  this
-      // will allow us to re-use pre-written var length data, which can save
-      // space for things like long value columns.
-      Map<ColumnImpl,byte[]> keepRawVarValues =
-        (!_varColumns.isEmpty() ? new HashMap<ColumnImpl,byte[]>() : null);
+      ByteBuffer newRowData = createUpdateRow(rowState, rowBuffer, row);
 
-      // handle various value massaging activities
-      for(ColumnImpl column : _columns) {
+      writeUpdateRow(rowState, rowId, rowState.getRowCacheValues(), row,
+                     newRowData);
 
-        if(column.isAutoNumber()) {
-          // handle these separately (below)
-          continue;
-        }
+      updateTableDefinition(0);
 
-        Object rowValue = column.getRowValue(row);
-        if(rowValue == Column.KEEP_VALUE) {
+    } finally {
+      getPageChannel().finishWrite();
+    }
 
-          // fill in any "keep value" fields (restore old value)
-          rowValue = getRowColumn(getFormat(), rowBuffer, column, rowState,
-                                  keepRawVarValues);
+    return row;
+  }
 
-        } else {
+  /**
+   * Updates the indexes for and writes the given new row data (generated by
+   * {@link #createUpdateRow}) for the row with the given rowId.
+   */
+  private void writeUpdateRow(RowState rowState, RowIdImpl rowId,
+                              Object[] oldRowValues, Object[] row,
+                              ByteBuffer newRowData)
+    throws IOException
+  {
+    if(!_indexDatas.isEmpty()) {
 
-          // set oldValue to something that could not possibly be a real value
-          Object oldValue = Column.KEEP_VALUE;
-          if(_indexColumns.contains(column)) {
-            // read (old) row value to help update indexes
-            oldValue = getRowColumn(getFormat(), rowBuffer, column, rowState,
-                                    null);
-          } else {
-            oldValue = rowState.getRowCacheValue(column.getColumnIndex());
-          }
+      IndexData.PendingChange idxChange = null;
+      try {
 
-          // if the old value was passed back in, we don't need to validate
-          if(oldValue != rowValue) {
-            // pass input value through column validator
-            rowValue = column.validate(rowValue);
-          }
+        // check foreign keys before actually updating
+        _fkEnforcer.updateRow(oldRowValues, row);
+
+        // prepare index updates
+        for(IndexData indexData : _indexDatas) {
+          idxChange = indexData.prepareUpdateRow(oldRowValues, rowId, row,
+                                                 idxChange);
         }
 
-        column.setRowValue(row, rowValue);
+        // complete index updates
+        IndexData.commitAll(idxChange);
+
+      } catch(ConstraintViolationException ce) {
+        IndexData.rollbackAll(idxChange);
+        throw ce;
       }
+    }
 
-      // fill in autonumbers
-      handleAutoNumbersForUpdate(row, rowBuffer, rowState);
+    // see if we can squeeze the new row data into the existing row (note,
+    // the row state may need to be refreshed at this point)
+    ByteBuffer rowBuffer = positionAtRowData(rowState, rowId);
+    int oldRowSize = rowBuffer.remaining();
+    rowBuffer.reset();
+    int rowSize = newRowData.remaining();
 
-      // need to assign calculated values after all the other fields are
-      // filled in but before final validation
-      _calcColEval.calculate(row);
+    ByteBuffer dataPage = null;
+    int pageNumber = PageChannel.INVALID_PAGE_NUMBER;
 
-      // run row validation if enabled
-      if(_rowValidator != null) {
-        _rowValidator.validate(row);
-      }
+    if(oldRowSize >= rowSize) {
 
-      // generate new row bytes
-      ByteBuffer newRowData = createRow(
-          row, _writeRowBufferH.getPageBuffer(getPageChannel()), oldRowSize,
-          keepRawVarValues);
+      // awesome, slap it in!
+      rowBuffer.put(newRowData);
 
-      if (newRowData.limit() > getFormat().MAX_ROW_SIZE) {
-        throw new InvalidValueException(withErrorContext(
-                "Row size " + newRowData.limit() + " is too large"));
+      // grab the page we just updated
+      dataPage = rowState.getFinalPage();
+      pageNumber = rowState.getFinalRowId().getPageNumber();
+
+    } else {
+
+      // bummer, need to find a new page for the data
+      dataPage = findFreeRowSpace(rowSize, null,
+                                  PageChannel.INVALID_PAGE_NUMBER);
+      pageNumber = _addRowBufferH.getPageNumber();
+
+      RowIdImpl headerRowId = rowState.getHeaderRowId();
+      ByteBuffer headerPage = rowState.getHeaderPage();
+      if(pageNumber == headerRowId.getPageNumber()) {
+        // new row is on the same page as header row, share page
+        dataPage = headerPage;
       }
 
-      if(!_indexDatas.isEmpty()) {
+      // write out the new row data (set the deleted flag on the new data row
+      // so that it is ignored during normal table traversal)
+      int rowNum = addDataPageRow(dataPage, rowSize, getFormat(),
+                                  DELETED_ROW_MASK);
+      dataPage.put(newRowData);
+
+      // write the overflow info into the header row and clear out the
+      // remaining header data
+      rowBuffer = PageChannel.narrowBuffer(
+          headerPage,
+          findRowStart(headerPage, headerRowId.getRowNumber(), getFormat()),
+          findRowEnd(headerPage, headerRowId.getRowNumber(), getFormat()));
+      rowBuffer.put((byte)rowNum);
+      ByteUtil.put3ByteInt(rowBuffer, pageNumber);
+      ByteUtil.clearRemaining(rowBuffer);
+
+      // set the overflow flag on the header row
+      int headerRowIndex = getRowStartOffset(headerRowId.getRowNumber(),
+                                             getFormat());
+      headerPage.putShort(headerRowIndex,
+                          (short)(headerPage.getShort(headerRowIndex)
+                                  | OVERFLOW_ROW_MASK));
+      if(pageNumber != headerRowId.getPageNumber()) {
+        writeDataPage(headerPage, headerRowId.getPageNumber());
+      }
+    }
 
-        IndexData.PendingChange idxChange = null;
-        try {
+    writeDataPage(dataPage, pageNumber);
+  }
 
+  @Override
+  public void updateRows(Map<? extends RowId,? extends Object[]> rows)
+    throws IOException
+  {
+    // handle the rows in page order
+    Map<RowId,Object[]> sortedRows = new TreeMap<RowId,Object[]>(rows);
+    for(RowId rowId : sortedRows.keySet()) {
+      requireValidRowId((RowIdImpl)rowId);
+    }
+
+    getPageChannel().startWrite(this);
+    try {
+
+      RowState rowState = createRowState();
+      ByteBuffer modPage = null;
+      int modPageNumber = PageChannel.INVALID_PAGE_NUMBER;
+      int updateCount = 0;
+
+      try {
+
+        for(Map.Entry<RowId,Object[]> e : sortedRows.entrySet()) {
+          RowIdImpl rowId = (RowIdImpl)e.getKey();
+          Object[] row = e.getValue();
+
+          if((modPage != null) && (rowId.getPageNumber() != modPageNumber)) {
+            // done with the current page
+            writeDataPage(modPage, modPageNumber);
+            modPage = null;
+          }
+
+          // note, as long as the current page is not written, the rowState
+          // will keep using the modified page buffer
+          ByteBuffer rowBuffer = positionAtRowData(rowState, rowId);
+          requireNonDeletedRow(rowState, rowId);
+
+          // we need to make sure the row is the right length & type (fill
+          // with null if too short).
+          Object[] newRow = row;
+          if((row.length < _columns.size()) ||
+             (row.getClass() != Object[].class)) {
+            newRow = dupeRow(row, _columns.size());
+          }
+
+          int oldRowSize = rowBuffer.remaining();
+          ByteBuffer newRowData = createUpdateRow(rowState, rowBuffer, newRow);
           Object[] oldRowValues = rowState.getRowCacheValues();
 
-          // check foreign keys before actually updating
-          _fkEnforcer.updateRow(oldRowValues, row);
+          if(!rowState.isOverflow() &&
+             (newRowData.remaining() <= oldRowSize) &&
+             !anyIndexUpdates(oldRowValues, newRow)) {
+
+            // fast path, the new row data can be written in place and there
+            // are no index changes.  the page will be written once we are
+            // done with it
+            rowBuffer.reset();
+            rowBuffer.put(newRowData);
+            modPage = rowState.getHeaderPage();
+            modPageNumber = rowId.getPageNumber();
+
+          } else {
 
-          // prepare index updates
-          for(IndexData indexData : _indexDatas) {
-            idxChange = indexData.prepareUpdateRow(oldRowValues, rowId, row,
-                                                   idxChange);
+            // need to do a full update
+            if(modPage != null) {
+              writeDataPage(modPage, modPageNumber);
+              modPage = null;
+            }
+            writeUpdateRow(rowState, rowId, oldRowValues, newRow, newRowData);
           }
 
-          // complete index updates
-          IndexData.commitAll(idxChange);
+          if(newRow != row) {
+            System.arraycopy(newRow, 0, row, 0,
+                             Math.min(row.length, newRow.length));
+          }
 
-        } catch(ConstraintViolationException ce) {
-          IndexData.rollbackAll(idxChange);
-          throw ce;
+          ++updateCount;
         }
-      }
 
-      // see if we can squeeze the new row data into the existing row
-      rowBuffer.reset();
-      int rowSize = newRowData.remaining();
+        if(modPage != null) {
+          writeDataPage(modPage, modPageNumber);
+        }
 
-      ByteBuffer dataPage = null;
-      int pageNumber = PageChannel.INVALID_PAGE_NUMBER;
+        updateTableDefinition(0);
 
-      if(oldRowSize >= rowSize) {
+      } catch(Exception rowWriteFailure) {
 
-        // awesome, slap it in!
-        rowBuffer.put(newRowData);
+        // attempt to resolve a partial batch update
+        if(isWriteFailure(rowWriteFailure)) {
 
-        // grab the page we just updated
-        dataPage = rowState.getFinalPage();
-        pageNumber = rowState.getFinalRowId().getPageNumber();
+          // we don't really know the status of any of the rows, so clear the
+          // update count
+          updateCount = 0;
 
-      } else {
+        } else if(updateCount > 0) {
 
-        // bummer, need to find a new page for the data
-        dataPage = findFreeRowSpace(rowSize, null,
-                                    PageChannel.INVALID_PAGE_NUMBER);
-        pageNumber = _addRowBufferH.getPageNumber();
+          // attempt to flush the in place updates for the current page
+          try {
 
-        RowIdImpl headerRowId = rowState.getHeaderRowId();
-        ByteBuffer headerPage = rowState.getHeaderPage();
-        if(pageNumber == headerRowId.getPageNumber()) {
-          // new row is on the same page as header row, share page
-          dataPage = headerPage;
-        }
+            if(modPage != null) {
+              writeDataPage(modPage, modPageNumber);
+            }
 
-        // write out the new row data (set the deleted flag on the new data row
-        // so that it is ignored during normal table traversal)
-        int rowNum = addDataPageRow(dataPage, rowSize, getFormat(),
-                                    DELETED_ROW_MASK);
-        dataPage.put(newRowData);
-
-        // write the overflow info into the header row and clear out the
-        // remaining header data
-        rowBuffer = PageChannel.narrowBuffer(
-            headerPage,
-            findRowStart(headerPage, headerRowId.getRowNumber(), getFormat()),
-            findRowEnd(headerPage, headerRowId.getRowNumber(), getFormat()));
-        rowBuffer.put((byte)rowNum);
-        ByteUtil.put3ByteInt(rowBuffer, pageNumber);
-        ByteUtil.clearRemaining(rowBuffer);
-
-        // set the overflow flag on the header row
-        int headerRowIndex = getRowStartOffset(headerRowId.getRowNumber(),
-                                               getFormat());
-        headerPage.putShort(headerRowIndex,
-                            (short)(headerPage.getShort(headerRowIndex)
-                                    | OVERFLOW_ROW_MASK));
-        if(pageNumber != headerRowId.getPageNumber()) {
-          writeDataPage(headerPage, headerRowId.getPageNumber());
-        }
-      }
+            updateTableDefinition(0);
 
-      writeDataPage(dataPage, pageNumber);
+          } catch(Exception flushFailure) {
+            // the flush failure is "worse" as it implies possible database
+            // corruption
+            LOG.warn(withErrorContext(
+                    "Secondary row failure which preceded the write failure"),
+                     rowWriteFailure);
+            updateCount = 0;
+            rowWriteFailure = flushFailure;
+          }
+        }
 
-      updateTableDefinition(0);
+        throw new BatchUpdateException(
+            updateCount, withErrorContext("Failed updating rows"),
+            rowWriteFailure);
+      }
 
     } finally {
       getPageChannel().finishWrite();
     }
+  }
 
-    return row;
+  /**
+   * Returns {@code true} if any of the values of the indexed columns differ
+   * between the given rows, {@code false} otherwise.
+   */
+  private boolean anyIndexUpdates(Object[] oldRow, Object[] newRow) {
+    for(ColumnImpl idxCol : _indexColumns) {
+      if(!Objects.equals(idxCol.getRowValue(oldRow),
+                         idxCol.getRowValue(newRow))) {
+        return true;
+      }
+    }
+    return false;
   }
 
-  private ByteBuffer findFreeRowSpace(int rowSize, ByteBuffer dataPage,
-                                      int pageNumber)
+  /**
+   * Fills in the given update row (from the current row data) and generates
+   * the new row data for it.  The rowState must be positioned at the row
+   * data.
+   */
+  private ByteBuffer createUpdateRow(RowState rowState, ByteBuffer rowBuffer,
+                                     Object[] row)
     throws IOException
   {
-    // assume incoming page is modified
-    boolean modifiedPage = true;
+    int oldRowSize = rowBuffer.remaining();
 
-    if(dataPage == null) {
+    // hang on to the raw values of var length columns we are "keeping".  this
+    // will allow us to re-use pre-written var length data, which can save
+    // space for things like long value columns.
+    Map<ColumnImpl,byte[]> keepRawVarValues =
+      (!_varColumns.isEmpty() ? new HashMap<ColumnImpl,byte[]>() : null);
 
-      // find owned page w/ free space
-      dataPage = findFreeRowSpace(_ownedPages, _freeSpacePages,
-                                  _addRowBufferH);
+    // handle various value massaging activities
+    for(ColumnImpl column : _columns) {
 
-      if(dataPage == null) {
-        // No data pages exist (with free space).  Create a new one.
-        return newDataPage();
+      if(column.isAutoNumber()) {
+        // handle these separately (below)
+        continue;
       }
 
-      // found a page, see if it will work
-      pageNumber = _addRowBufferH.getPageNumber();
-      // since we just loaded this page, it is not yet modified
-      modifiedPage = false;
-    }
+      Object rowValue = column.getRowValue(row);
+      if(rowValue == Column.KEEP_VALUE) {
 
-    if(!rowFitsOnDataPage(rowSize, dataPage, getFormat())) {
+        // fill in any "keep value" fields (restore old value)
+        rowValue = getRowColumn(getFormat(), rowBuffer, column, rowState,
+                                keepRawVarValues);
 
-      // Last data page is full.  Write old one and create a new one.
-      if(modifiedPage) {
-        writeDataPage(dataPage, pageNumber);
+      } else {
+
+        // set oldValue to something that could not possibly be a real value
+        Object oldValue = Column.KEEP_VALUE;
+        if(_indexColumns.contains(column)) {
+          // read (old) row value to help update indexes
+          oldValue = getRowColumn(getFormat(), rowBuffer, column, rowState,
+                                  null);
+        } else {
+          oldValue = rowState.getRowCacheValue(column.getColumnIndex());
+        }
+
+        // if the old value was passed back in, we don't need to validate
+        if(oldValue != rowValue) {
+          // pass input value through column validator
+          rowValue = column.validate(rowValue);
+        }
       }
-      _freeSpacePages.removePageNumber(pageNumber);
 
-      dataPage = newDataPage();
+      column.setRowValue(row, rowValue);
     }
 
-    return dataPage;
+    // fill in autonumbers
+    handleAutoNumbersForUpdate(row, rowBuffer, rowState);
+
+    // need to assign calculated values after all the other fields are
+    // filled in but before final validation
+    _calcColEval.calculate(row);
+
+    // run row validation if enabled
+    if(_rowValidator != null) {
+      _rowValidator.validate(row);
+    }
+
+    // generate new row bytes
+    ByteBuffer newRowData = createRow(
+        row, _writeRowBufferH.getPageBuffer(getPageChannel()), oldRowSize,
+        keepRawVarValues);
+
+    if (newRowData.limit() > getFormat().MAX_ROW_SIZE) {
+      throw new InvalidValueException(withErrorContext(
+              "Row size " + newRowData.limit() + " is too large"));
+    }
+
+    return newRowData;
   }
 
-  static ByteBuffer findFreeRowSpace(
-      UsageMap ownedPages, UsageMap freeSpacePages,
-      TempPageHolder rowBufferH)
+  private ByteBuffer findFreeRowSpace(int rowSize, ByteBuffer dataPage,
+                                      int pageNumber)
     throws IOException
   {
-    // find last data page (Not bothering to check other pages for free
-    // space.)
-    UsageMap.PageCursor revPageCursor = ownedPages.cursor();
-    revPageCursor.afterLast();
-    while(true) {
-      int tmpPageNumber = revPageCursor.getPreviousPage();
-      if(tmpPageNumber < 0) {
-        break;
-      }
-      // only use if actually listed in free space pages
-      if(!freeSpacePages.containsPageNumber(tmpPageNumber)) {
-        continue;
-      }
-      ByteBuffer dataPage = rowBufferH.setPage(ownedPages.getPageChannel(),
-                                               tmpPageNumber);
-      if(dataPage.get() == PageTypes.DATA) {
-        // found last data page with free space
+    if(dataPage != null) {
+
+      // incoming page is modified
+      if(rowFitsOnDataPage(rowSize, dataPage, getFormat())) {
         return dataPage;
       }
+
+      // current data page is full.  write it and look for another one
+      writeDataPage(dataPage, pageNumber);
     }
 
-    return null;
+    // find owned page w/ enough free space
+    dataPage = _freeSpaceMap.findPage(rowSize, _addRowBufferH);
+
+    if(dataPage == null) {
+      // No data pages exist (with free space).  Create a new one.
+      dataPage = newDataPage();
+    }
+
+    return dataPage;
   }
 
   /**
@@ -2714,12 +3151,31 @@ public class TableImpl implements Table, PropertyMaps.Owner
    */
   private void updateTableDefinition(int rowCountInc) throws IOException
   {
+    _rowCount += rowCountInc;
+
+    if(getPageChannel().isWriting()) {
+      // the table definition will be written once the current logical write
+      // is complete
+      _tdefDirty = true;
+      getPageChannel().addDeferredWrite(_tdefWriter);
+    } else {
+      writeTableDefinitionCounts();
+    }
+  }
+
+  /**
+   * Writes the current row count, autonumber and index info to the table
+   * definition page.
+   */
+  private void writeTableDefinitionCounts() throws IOException
+  {
+    _tdefDirty = false;
+
     // load table definition
     ByteBuffer tdefPage = _tableDefBufferH.setPage(getPageChannel(),
                                                    _tableDefPageNumber);
 
     // make sure rowcount and autonumber are up-to-date
-    _rowCount += rowCountInc;
     tdefPage.putInt(getFormat().OFFSET_NUM_ROWS, _rowCount);
     tdefPage.putInt(getFormat().OFFSET_NEXT_AUTO_NUMBER, _lastLongAutoNumber);
     int ctypeOff = getFormat().OFFSET_NEXT_COMPLEX_AUTO_NUMBER;
@@ -2746,18 +3202,32 @@ public class TableImpl implements Table, PropertyMaps.Owner
    * @return Page number of the new page
    */
   private ByteBuffer newDataPage() throws IOException {
-    ByteBuffer dataPage = _addRowBufferH.setNewPage(getPageChannel());
+    // try to keep the table's data pages close together
+    ByteBuffer dataPage = _addRowBufferH.setNewPage(
+        getPageChannel(), _addRowBufferH.getPageNumber());
+    writeDataPageHeader(dataPage);
+    int pageNumber = _addRowBufferH.getPageNumber();
+    getPageChannel().writePage(dataPage, pageNumber);
+    _ownedPages.addPageNumber(pageNumber);
+    _freeSpaceMap.updatePage(pageNumber, dataPage);
+    return dataPage;
+  }
+
+  /**
+   * Writes the header for an empty data page owned by this table.
+   */
+  private void writeDataPageHeader(ByteBuffer dataPage) {
     dataPage.put(PageTypes.DATA); //Page type
     dataPage.put((byte) 1); //Unknown
     dataPage.putShort((short)getFormat().DATA_PAGE_INITIAL_FREE_SPACE); //Free space in this page
     dataPage.putInt(_tableDefPageNumber); //Page pointer to table definition
     dataPage.putInt(0); //Unknown
     dataPage.putShort((short)0); //Number of rows on this page
-    int pageNumber = _addRowBufferH.getPageNumber();
-    getPageChannel().writePage(dataPage, pageNumber);
-    _ownedPages.addPageNumber(pageNumber);
-    _freeSpacePages.addPageNumber(pageNumber);
-    return dataPage;
+  }
+
+  // exposed for unit tests
+  UsageMap getOwnedPagesUsageMap() {
+    return _ownedPages;
   }
 
   // exposed for unit tests
@@ -3315,6 +3785,38 @@ public class TableImpl implements Table, PropertyMaps.Owner
     return msg + " (Db=" + db.getName() + ";Table=" + tableName + ")";
   }
 
+  /**
+   * Simple implementation of Table.CompactResult.
+   */
+  private static final class CompactResultImpl implements CompactResult
+  {
+    private final int _reclaimedPageCount;
+    private final long _reclaimedBytes;
+
+    private CompactResultImpl(int reclaimedPageCount, long reclaimedBytes) {
+      _reclaimedPageCount = reclaimedPageCount;
+      _reclaimedBytes = reclaimedBytes;
+    }
+
+    @Override
+    public int getReclaimedPageCount() {
+      return _reclaimedPageCount;
+    }
+
+    @Override
+    public long getReclaimedBytes() {
+      return _reclaimedBytes;
+    }
+
+    @Override
+    public String toString() {
+      return CustomToStringStyle.valueBuilder(this)
+        .append("reclaimedPageCount", _reclaimedPageCount)
+        .append("reclaimedBytes", _reclaimedBytes)
+        .toString();
+    }
+  }
+
   /** various statuses for the row data */
   private enum RowStatus {
     INIT, INVALID_PAGE, INVALID_ROW, VALID, DELETED, NORMAL, OVERFLOW;
@@ -3421,6 +3923,16 @@ public class TableImpl implements Table, PropertyMaps.Owner
       }
     }
 
+    /**
+     * Resets this RowState and releases any referenced page buffers (which
+     * will be reloaded if this RowState is used again).
+     */
+    public void clear() {
+      reset();
+      _headerRowBufferH.clear();
+      _overflowRowBufferH.clear();
+    }
+
     public boolean isUpToDate() {
       return(TableImpl.this._modCount == _lastModCount);
     }
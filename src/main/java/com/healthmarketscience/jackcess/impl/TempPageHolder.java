@@ -97,11 +97,21 @@ public final class TempPageHolder {
    */
   public ByteBuffer setNewPage(PageChannel pageChannel)
     throws IOException
+  {
+    return setNewPage(pageChannel, PageChannel.INVALID_PAGE_NUMBER);
+  }
+
+  /**
+   * Allocates a new buffer in the database (with undefined data), preferably
+   * near the given hint page number, and returns a new empty buffer.
+   */
+  public ByteBuffer setNewPage(PageChannel pageChannel, int hintPageNumber)
+    throws IOException
   {
     // ditch any current data
     clear();
     // allocate a new page in the database
-    _pageNumber = pageChannel.allocateNewPage();
+    _pageNumber = pageChannel.allocateNewPage(hintPageNumber);
     // return a new buffer
     return _buffer.getPageBuffer(pageChannel);
   }
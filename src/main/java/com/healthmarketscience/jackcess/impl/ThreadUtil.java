@@ -0,0 +1,67 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Thread utilities for the background/asynchronous features.  This is the
+ * java 8 implementation, which uses daemon platform threads.  The jackcess
+ * jar is a multi-release jar which includes a java 21+ version of this class
+ * (in src/main/java21) which uses virtual threads (unless disabled using the
+ * {@link com.healthmarketscience.jackcess.Database#VIRTUAL_THREADS_PROPERTY}
+ * system property).
+ *
+ * @author James Ahlborn
+ */
+public final class ThreadUtil
+{
+  private ThreadUtil() {}
+
+  /**
+   * @return {@code true} if the threads created by this class are virtual
+   *         threads, {@code false} otherwise
+   */
+  public static boolean isVirtualThreads() {
+    return false;
+  }
+
+  /**
+   * Returns a ThreadFactory which creates daemon threads with the given
+   * name.
+   */
+  public static ThreadFactory newThreadFactory(final String name) {
+    return new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+      }
+    };
+  }
+
+  /**
+   * Returns the shared Executor for running (possibly blocking) tasks, the
+   * common ForkJoinPool.
+   */
+  public static Executor getTaskExecutor() {
+    return ForkJoinPool.commonPool();
+  }
+}
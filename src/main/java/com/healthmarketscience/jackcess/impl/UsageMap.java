@@ -19,9 +19,10 @@ package com.healthmarketscience.jackcess.impl;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.List;
 
+import com.healthmarketscience.jackcess.RuntimeIOException;
+
 
 /**
  * Describes which database pages a particular table uses
@@ -50,7 +51,7 @@ public class UsageMap
   /** Last page that this usage map applies to */
   private int _endPage;
   /** bits representing page numbers used, offset from _startPage */
-  private BitSet _pageNumbers = new BitSet();
+  private final CompressedBitSet _pageNumbers = new CompressedBitSet();
   /** Buffer that contains the usage map table declaration page */
   private final ByteBuffer _tableBuffer;
   /** modification count on the usage map, used to keep the cursors in
@@ -155,7 +156,8 @@ public class UsageMap
     return new PageCursor();
   }
 
-  public int getPageCount() {
+  public synchronized int getPageCount() {
+    loadAllBits();
     return _pageNumbers.cardinality();
   }
   
@@ -191,7 +193,7 @@ public class UsageMap
     return _endPage;
   }
     
-  protected BitSet getPageNumbers() {
+  protected CompressedBitSet getPageNumbers() {
     return _pageNumbers;
   }
 
@@ -216,12 +218,30 @@ public class UsageMap
         RowIdImpl.LAST_PAGE_NUMBER);
   }    
   
-  protected int getNextBitIndex(int curIndex) {
-    return _pageNumbers.nextSetBit(curIndex + 1);
+  protected synchronized int getNextBitIndex(int curIndex) {
+    int bitIndex = Math.max(curIndex + 1, 0);
+    int blockSize = _handler.getBlockSize();
+    if(blockSize == 0) {
+      return _pageNumbers.nextSetBit(bitIndex);
+    }
+
+    // only trust the bits in the blocks which have been loaded
+    int endIndex = pageNumberToBitIndex(_endPage);
+    while(bitIndex < endIndex) {
+      int blockIndex = bitIndex / blockSize;
+      int blockEnd = (blockIndex + 1) * blockSize;
+      loadBlock(blockIndex);
+      int nextIndex = _pageNumbers.nextSetBit(bitIndex);
+      if((nextIndex >= 0) && (nextIndex < blockEnd)) {
+        return nextIndex;
+      }
+      bitIndex = blockEnd;
+    }
+    return INVALID_BIT_INDEX;
   }    
   
   protected int getLastPageNumber() {
-    return bitIndexToPageNumber(getPrevBitIndex(_pageNumbers.length()),
+    return bitIndexToPageNumber(getPrevBitIndex(pageNumberToBitIndex(_endPage)),
                                 RowIdImpl.FIRST_PAGE_NUMBER);
   }
 
@@ -231,13 +251,55 @@ public class UsageMap
         RowIdImpl.FIRST_PAGE_NUMBER);
   }    
   
-  protected int getPrevBitIndex(int curIndex) {
-    --curIndex;
-    while((curIndex >= 0) && !_pageNumbers.get(curIndex)) {
-      --curIndex;
+  protected synchronized int getPrevBitIndex(int curIndex) {
+    int bitIndex = curIndex - 1;
+    int blockSize = _handler.getBlockSize();
+    if(blockSize == 0) {
+      return _pageNumbers.previousSetBit(bitIndex);
+    }
+
+    // only trust the bits in the blocks which have been loaded
+    bitIndex = Math.min(bitIndex, pageNumberToBitIndex(_endPage) - 1);
+    while(bitIndex >= 0) {
+      int blockIndex = bitIndex / blockSize;
+      int blockStart = blockIndex * blockSize;
+      loadBlock(blockIndex);
+      int prevIndex = _pageNumbers.previousSetBit(bitIndex);
+      if(prevIndex >= blockStart) {
+        return prevIndex;
+      }
+      bitIndex = blockStart - 1;
     }
-    return curIndex;
+    return INVALID_BIT_INDEX;
   }    
+
+  /**
+   * Makes sure the bits for the given block have been read from the
+   * database.  Since this may modify the map even when reading, callers must
+   * hold the map monitor.
+   */
+  private void loadBlock(int blockIndex) {
+    try {
+      _handler.loadBlock(blockIndex);
+    } catch(IOException e) {
+      throw new RuntimeIOException(e);
+    }
+  }
+
+  /**
+   * Makes sure all the bits in this map have been read from the database.
+   */
+  private void loadAllBits() {
+    int blockSize = _handler.getBlockSize();
+    if(blockSize == 0) {
+      return;
+    }
+    int endIndex = pageNumberToBitIndex(_endPage);
+    for(int blockIndex = 0; (blockIndex * blockSize) < endIndex;
+        ++blockIndex) {
+      loadBlock(blockIndex);
+    }
+  }
   
   protected int bitIndexToPageNumber(int bitIndex,
                                      int invalidPageNumber) {
@@ -302,14 +364,29 @@ public class UsageMap
   /**
    * Determines if the given page number is contained in this map.
    */
-  public boolean containsPageNumber(int pageNumber) {
+  public synchronized boolean containsPageNumber(int pageNumber) {
     return _handler.containsPageNumber(pageNumber);
   }
   
+  /**
+   * Returns the first page number in this map which is greater than or equal
+   * to the given startPage and less than the given endPage, or {@link
+   * PageChannel#INVALID_PAGE_NUMBER} if there is no such page.  Only
+   * considers the pages within the current range of this map.
+   */
+  public synchronized int findPageNumber(int startPage, int endPage) {
+    int bitIndex = getNextBitIndex(
+        pageNumberToBitIndex(Math.max(startPage, _startPage)) - 1);
+    int pageNumber = bitIndexToPageNumber(
+        bitIndex, PageChannel.INVALID_PAGE_NUMBER);
+    return((pageNumber < endPage) ? pageNumber :
+           PageChannel.INVALID_PAGE_NUMBER);
+  }
+
   /**
    * Add a page number to this usage map
    */
-  public void addPageNumber(int pageNumber) throws IOException {
+  public synchronized void addPageNumber(int pageNumber) throws IOException {
     ++_modCount;
     _handler.addOrRemovePageNumber(pageNumber, true, false);
   }
@@ -323,7 +400,7 @@ public class UsageMap
     removePageNumber(pageNumber, true);
   }
   
-  private void removePageNumber(int pageNumber, boolean force) 
+  private synchronized void removePageNumber(int pageNumber, boolean force) 
     throws IOException 
   {
     ++_modCount;
@@ -369,7 +446,7 @@ public class UsageMap
   {
     // copy current page number info to new references and then clear old
     int oldStartPage = _startPage;
-    BitSet oldPageNumbers = (BitSet)_pageNumbers.clone();
+    CompressedBitSet oldPageNumbers = _pageNumbers.clone();
 
     // clear out the main table (inline usage map data and start page)
     clearTableAndPages();
@@ -387,7 +464,7 @@ public class UsageMap
     reAddPages(oldStartPage, oldPageNumbers, newPageNumber);
   }
 
-  private void reAddPages(int oldStartPage, BitSet oldPageNumbers,
+  private void reAddPages(int oldStartPage, CompressedBitSet oldPageNumbers,
                           int newPageNumber)
     throws IOException
   {
@@ -451,8 +528,31 @@ public class UsageMap
     }
 
     public boolean containsPageNumber(int pageNumber) {
-      return(isPageWithinRange(pageNumber) &&
-             getPageNumbers().get(pageNumberToBitIndex(pageNumber)));
+      if(!isPageWithinRange(pageNumber)) {
+        return false;
+      }
+      int bitIndex = pageNumberToBitIndex(pageNumber);
+      int blockSize = getBlockSize();
+      if(blockSize > 0) {
+        UsageMap.this.loadBlock(bitIndex / blockSize);
+      }
+      return getPageNumbers().get(bitIndex);
+    }
+
+    /**
+     * Returns the number of bits which are read together when this map is
+     * loaded lazily, or 0 if all the bits are read up front.
+     */
+    protected int getBlockSize() {
+      return 0;
+    }
+
+    /**
+     * Reads the bits for the block with the given index (see {@link
+     * #getBlockSize}) if they have not already been read.
+     */
+    protected void loadBlock(int blockIndex) throws IOException {
+      // base does nothing
     }
     
     /**
@@ -583,7 +683,7 @@ public class UsageMap
       throws IOException
     {
       int oldStartPage = getStartPage();
-      BitSet oldPageNumbers = (BitSet)getPageNumbers().clone();
+      CompressedBitSet oldPageNumbers = getPageNumbers().clone();
 
       // clear out the main table (inline usage map data and start page)
       clearTableAndPages();
@@ -712,39 +812,54 @@ public class UsageMap
     private final TempPageHolder _mapPageHolder =
       TempPageHolder.newHolder(TempBufferHolder.Type.SOFT);
     private final int _maxPagesPerUsageMapPage;
+    /** which of the reference map pages have been read so far (the map
+        pages are only read as needed) */
+    private final boolean[] _loadedMapPages;
   
     private ReferenceHandler() throws IOException
     {
       _maxPagesPerUsageMapPage = ((getFormat().PAGE_SIZE - 
                                    getFormat().OFFSET_USAGE_MAP_PAGE_DATA) * 8);
-      int numUsagePages = (getRowEnd() - getRowStart() - 1) / 4;
-      setStartOffset(getFormat().OFFSET_USAGE_MAP_PAGE_DATA);
-      setPageRange(0, (numUsagePages * _maxPagesPerUsageMapPage));
-      
       // there is no "start page" for a reference usage map, so we get an
       // extra page reference on top of the number of page references that fit
       // in the table
-      for (int i = 0; i < numUsagePages; i++) {
-        int mapPageNum = getTableBuffer().getInt(
-            calculateMapPagePointerOffset(i));
-        if (mapPageNum > 0) {
-          ByteBuffer mapPageBuffer =
-            _mapPageHolder.setPage(getPageChannel(), mapPageNum);
-          byte pageType = mapPageBuffer.get();
-          if (pageType != PageTypes.USAGE_MAP) {
-            throw new IOException("Looking for usage map at page " +
-                                  mapPageNum + ", but page type is " +
-                                  pageType);
-          }
-          mapPageBuffer.position(getFormat().OFFSET_USAGE_MAP_PAGE_DATA);
-          processMap(mapPageBuffer, (_maxPagesPerUsageMapPage * i));
-        }
-      }
+      int numUsagePages = (getRowEnd() - getRowStart() - 1) / 4;
+      _loadedMapPages = new boolean[numUsagePages];
+      setStartOffset(getFormat().OFFSET_USAGE_MAP_PAGE_DATA);
+      setPageRange(0, (numUsagePages * _maxPagesPerUsageMapPage));
     }
 
     protected final int getMaxPagesPerUsagePage() {
       return _maxPagesPerUsageMapPage;
     }
+
+    @Override
+    protected int getBlockSize() {
+      return getMaxPagesPerUsagePage();
+    }
+
+    @Override
+    protected void loadBlock(int pageIndex) throws IOException {
+      if(_loadedMapPages[pageIndex]) {
+        return;
+      }
+
+      int mapPageNum = getTableBuffer().getInt(
+          calculateMapPagePointerOffset(pageIndex));
+      if (mapPageNum > 0) {
+        ByteBuffer mapPageBuffer =
+          _mapPageHolder.setPage(getPageChannel(), mapPageNum);
+        byte pageType = mapPageBuffer.get();
+        if (pageType != PageTypes.USAGE_MAP) {
+          throw new IOException("Looking for usage map at page " +
+                                mapPageNum + ", but page type is " +
+                                pageType);
+        }
+        mapPageBuffer.position(getFormat().OFFSET_USAGE_MAP_PAGE_DATA);
+        processMap(mapPageBuffer, (getMaxPagesPerUsagePage() * pageIndex));
+      }
+      _loadedMapPages[pageIndex] = true;
+    }
         
     @Override
     public void addOrRemovePageNumber(int pageNumber, boolean add,
@@ -759,6 +874,7 @@ public class UsageMap
                               " is out of supported range");
       }
       int pageIndex = (pageNumber / getMaxPagesPerUsagePage());
+      loadBlock(pageIndex);
       int mapPageNum = getTableBuffer().getInt(
           calculateMapPagePointerOffset(pageIndex));
       ByteBuffer mapPageBuffer = null;
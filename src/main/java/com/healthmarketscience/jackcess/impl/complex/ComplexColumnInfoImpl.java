@@ -60,7 +60,6 @@ public abstract class ComplexColumnInfoImpl<V extends ComplexValue>
   private final List<Column> _typeCols;
   private final Column _pkCol;
   private final Column _complexValFkCol;
-  private IndexCursor _complexValIdCursor;
   
   protected ComplexColumnInfoImpl(Column column, int complexTypeId,
                                   Table typeObjTable, Table flatTable)
@@ -140,13 +139,13 @@ public abstract class ComplexColumnInfoImpl<V extends ComplexValue>
       int complexValueFk, Collection<String> columnNames)
     throws IOException
   {
-    if(_complexValIdCursor == null) {
-      _complexValIdCursor = _flatTable.newCursor()
-        .setIndexByColumns(_complexValFkCol)
-        .toIndexCursor();
-    }
+    // note, a new cursor is used for each lookup so that the values may be
+    // read by multiple threads
+    IndexCursor complexValIdCursor = _flatTable.newCursor()
+      .setIndexByColumns(_complexValFkCol)
+      .toIndexCursor();
 
-    return _complexValIdCursor.newEntryIterable(complexValueFk)
+    return complexValIdCursor.newEntryIterable(complexValueFk)
       .setColumnNames(columnNames).iterator();
   }
   
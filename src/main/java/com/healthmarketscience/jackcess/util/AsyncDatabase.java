@@ -0,0 +1,495 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.healthmarketscience.jackcess.BatchUpdateException;
+import com.healthmarketscience.jackcess.CursorBuilder;
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.Index;
+import com.healthmarketscience.jackcess.JackcessException;
+import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.Table;
+import com.healthmarketscience.jackcess.impl.ThreadUtil;
+
+/**
+ * Asynchronous facade for a Database.  All operations are run in order on a
+ * single background thread (so the Database itself is only ever used by one
+ * thread at a time) and return a CompletableFuture for the result.  The
+ * number of queued operations is bounded, operations submitted when the
+ * queue is full fail with a RejectedExecutionException.  Consecutive queued
+ * {@link #addRows} calls for the same table are combined into a single
+ * (larger) batch.
+ * <p>
+ * The wrapped Database (and any Table or Row instances returned by this
+ * class) should not be used directly while wrapped, use {@link #submit} to
+ * run arbitrary operations on the background thread.  Closing this facade
+ * closes the wrapped Database.
+ *
+ * @author James Ahlborn
+ * @usage _intermediate_class_
+ */
+public class AsyncDatabase implements Closeable
+{
+  /** default max number of queued operations */
+  public static final int DEFAULT_MAX_QUEUED = 1024;
+  /** default max number of rows combined into a single addRows batch */
+  public static final int DEFAULT_MAX_BATCH_ROWS = 1000;
+
+  private final Database _db;
+  private final int _maxBatchRows;
+  private final ThreadPoolExecutor _executor;
+  /** the most recently queued operation (if it has not started yet) */
+  private QueuedTask _lastQueued;
+  private boolean _closed;
+
+  public AsyncDatabase(Database db) {
+    this(db, DEFAULT_MAX_QUEUED, DEFAULT_MAX_BATCH_ROWS);
+  }
+
+  public AsyncDatabase(Database db, int maxQueued, int maxBatchRows) {
+    if(maxQueued <= 0) {
+      throw new IllegalArgumentException("Invalid max queued " + maxQueued);
+    }
+    if(maxBatchRows <= 0) {
+      throw new IllegalArgumentException(
+          "Invalid max batch rows " + maxBatchRows);
+    }
+    _db = db;
+    _maxBatchRows = maxBatchRows;
+    _executor = new ThreadPoolExecutor(
+        1, 1, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(maxQueued),
+        ThreadUtil.newThreadFactory("jackcess-async"));
+  }
+
+  /**
+   * Returns the wrapped Database.
+   */
+  public Database getDatabase() {
+    return _db;
+  }
+
+  /**
+   * Runs the given operation on the background thread.
+   */
+  public <T> CompletableFuture<T> submit(Task<T> task) {
+    SingleTask<T> queued = new SingleTask<T>(task);
+    enqueue(queued);
+    return queued._future;
+  }
+
+  /**
+   * Returns the Table with the given name (or {@code null} if there is no
+   * such table).
+   * @see Database#getTable
+   */
+  public CompletableFuture<Table> getTable(final String tableName) {
+    return submit(new Task<Table>() {
+      @Override
+      public Table run(Database db) throws IOException {
+        return db.getTable(tableName);
+      }
+    });
+  }
+
+  /**
+   * Adds the given rows to the given table.  If the previously queued
+   * operation is an addRows call for the same table, the rows are added as
+   * part of that batch.  If a row of another call in the same batch fails,
+   * that call fails (with a {@link BatchUpdateException}) and the rows of the
+   * subsequent calls are added as a new batch.
+   * @return the added rows (as returned by {@link Table#addRows}), which
+   *         include any auto-generated values
+   * @see Table#addRows
+   */
+  public CompletableFuture<List<? extends Object[]>> addRows(
+      String tableName, List<? extends Object[]> rows)
+  {
+    CompletableFuture<List<? extends Object[]>> future =
+      new CompletableFuture<List<? extends Object[]>>();
+    synchronized(this) {
+      if(_lastQueued instanceof AddRowsTask) {
+        AddRowsTask batch = (AddRowsTask)_lastQueued;
+        if(batch._tableName.equals(tableName) &&
+           ((batch._numRows + rows.size()) <= _maxBatchRows)) {
+          batch.add(rows, future);
+          return future;
+        }
+      }
+    }
+    AddRowsTask batch = new AddRowsTask(tableName);
+    batch.add(rows, future);
+    enqueue(batch);
+    return future;
+  }
+
+  /**
+   * Returns the first row in the given index of the given table which
+   * matches the given entry values (or {@code null} if there is no such
+   * row).
+   * @param indexName the name of the index, if {@code null}, the table's
+   *                  primary key is used
+   * @see CursorBuilder#findRowByEntry
+   */
+  public CompletableFuture<Row> findRowByEntry(
+      final String tableName, final String indexName,
+      final Object... entryValues)
+  {
+    return submit(new Task<Row>() {
+      @Override
+      public Row run(Database db) throws IOException {
+        Table table = getRequiredTable(db, tableName);
+        Index index = ((indexName != null) ? table.getIndex(indexName) :
+                       table.getPrimaryKeyIndex());
+        return CursorBuilder.findRowByEntry(index, entryValues);
+      }
+    });
+  }
+
+  /**
+   * Passes each row of the given table to the given handler (on the
+   * background thread).
+   * @return the number of rows scanned
+   */
+  public CompletableFuture<Integer> scan(
+      final String tableName, final Consumer<? super Row> handler)
+  {
+    return submit(new Task<Integer>() {
+      @Override
+      public Integer run(Database db) throws IOException {
+        int numRows = 0;
+        for(Row row : getRequiredTable(db, tableName)) {
+          handler.accept(row);
+          ++numRows;
+        }
+        return numRows;
+      }
+    });
+  }
+
+  /**
+   * Returns all the rows of the given table which match the given filter
+   * (all rows if {@code null}).
+   */
+  public CompletableFuture<List<Row>> findRows(
+      final String tableName, final Predicate<? super Row> filter)
+  {
+    return submit(new Task<List<Row>>() {
+      @Override
+      public List<Row> run(Database db) throws IOException {
+        List<Row> rows = new ArrayList<Row>();
+        for(Row row : getRequiredTable(db, tableName)) {
+          if((filter == null) || filter.test(row)) {
+            rows.add(row);
+          }
+        }
+        return rows;
+      }
+    });
+  }
+
+  /**
+   * Completes all queued operations and then closes the wrapped Database.
+   */
+  @Override
+  public void close() throws IOException {
+    close(false);
+  }
+
+  /**
+   * Closes the wrapped Database after completing the current operation.
+   * Queued operations are completed first if cancelPending is {@code
+   * false}, otherwise they are cancelled.
+   */
+  public void close(boolean cancelPending) throws IOException {
+    List<Runnable> pending = new ArrayList<Runnable>();
+    synchronized(this) {
+      if(_closed) {
+        return;
+      }
+      _closed = true;
+      _lastQueued = null;
+      if(cancelPending) {
+        _executor.getQueue().drainTo(pending);
+      }
+      _executor.shutdown();
+    }
+    for(Runnable task : pending) {
+      ((QueuedTask)task).cancel();
+    }
+
+    try {
+      _executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(
+          "Interrupted waiting for pending operations");
+    }
+    _db.close();
+  }
+
+  private void enqueue(QueuedTask task) {
+    synchronized(this) {
+      if(!_closed) {
+        try {
+          _executor.execute(task);
+          _lastQueued = task;
+          return;
+        } catch(RejectedExecutionException e) {
+          task.fail(e);
+          return;
+        }
+      }
+    }
+    task.fail(new RejectedExecutionException("AsyncDatabase is closed"));
+  }
+
+  /**
+   * Notes that the given task is starting (so that nothing more may be added
+   * to it).
+   */
+  private synchronized void started(QueuedTask task) {
+    if(_lastQueued == task) {
+      _lastQueued = null;
+    }
+  }
+
+  private static Table getRequiredTable(Database db, String tableName)
+    throws IOException
+  {
+    Table table = db.getTable(tableName);
+    if(table == null) {
+      throw new IllegalArgumentException("Unknown table " + tableName);
+    }
+    return table;
+  }
+
+  /**
+   * Returns {@code true} if the given failure was caused by a failed write
+   * (rather than invalid row data), {@code false} otherwise.
+   */
+  private static boolean isWriteFailure(Throwable t) {
+    for(t = t.getCause(); t != null; t = t.getCause()) {
+      if((t instanceof IOException) && !(t instanceof JackcessException)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * An operation which is run on the background thread.
+   */
+  public interface Task<T>
+  {
+    public T run(Database db) throws IOException;
+  }
+
+  /**
+   * Base class for the queued operations.
+   */
+  private abstract class QueuedTask implements Runnable
+  {
+    @Override
+    public void run() {
+      started(this);
+      execute();
+    }
+
+    protected abstract void execute();
+
+    /**
+     * Completes the task with the given error.
+     */
+    protected abstract void fail(Throwable t);
+
+    protected void cancel() {
+      fail(new CancellationException("AsyncDatabase was closed"));
+    }
+  }
+
+  /**
+   * Queued operation which runs a single Task.
+   */
+  private final class SingleTask<T> extends QueuedTask
+  {
+    private final Task<T> _task;
+    private final CompletableFuture<T> _future = new CompletableFuture<T>();
+
+    private SingleTask(Task<T> task) {
+      _task = task;
+    }
+
+    @Override
+    protected void execute() {
+      if(_future.isDone()) {
+        // cancelled by the caller
+        return;
+      }
+      try {
+        _future.complete(_task.run(_db));
+      } catch(Throwable t) {
+        _future.completeExceptionally(t);
+      }
+    }
+
+    @Override
+    protected void fail(Throwable t) {
+      _future.completeExceptionally(t);
+    }
+  }
+
+  /**
+   * Queued operation which adds a batch of rows from one or more addRows
+   * calls to a table.
+   */
+  private final class AddRowsTask extends QueuedTask
+  {
+    private final String _tableName;
+    private final List<List<? extends Object[]>> _rows =
+      new ArrayList<List<? extends Object[]>>();
+    private final List<CompletableFuture<List<? extends Object[]>>> _futures =
+      new ArrayList<CompletableFuture<List<? extends Object[]>>>();
+    private int _numRows;
+
+    private AddRowsTask(String tableName) {
+      _tableName = tableName;
+    }
+
+    private void add(List<? extends Object[]> rows,
+                     CompletableFuture<List<? extends Object[]>> future) {
+      _rows.add(rows);
+      _futures.add(future);
+      _numRows += rows.size();
+    }
+
+    @Override
+    protected void execute() {
+      // skip any rows whose callers have cancelled
+      List<Integer> callers = new ArrayList<Integer>();
+      for(int i = 0; i < _futures.size(); ++i) {
+        if(!_futures.get(i).isDone()) {
+          callers.add(i);
+        }
+      }
+
+      Table table = null;
+      try {
+        table = getRequiredTable(_db, _tableName);
+      } catch(Throwable t) {
+        fail(t);
+        return;
+      }
+
+      while(!callers.isEmpty()) {
+        callers = addRows(table, callers);
+      }
+    }
+
+    /**
+     * Adds the rows of the given callers as a single batch.  If one caller's
+     * row fails, the callers whose rows were all added succeed, the caller
+     * owning the failed row fails and the remaining callers are returned (so
+     * that their rows can be added as another batch).
+     */
+    private List<Integer> addRows(Table table, List<Integer> callers) {
+      // the rows are copied if necessary so that the generated values are
+      // put into rows which belong to the batch (the original caller rows
+      // are returned otherwise)
+      int numCols = table.getColumnCount();
+      List<Object[]> batch = new ArrayList<Object[]>();
+      for(int i : callers) {
+        for(Object[] row : _rows.get(i)) {
+          if((row.length < numCols) || (row.getClass() != Object[].class)) {
+            row = Arrays.copyOf(row, Math.max(row.length, numCols),
+                                Object[].class);
+          }
+          batch.add(row);
+        }
+      }
+
+      List<? extends Object[]> added = batch;
+      BatchUpdateException error = null;
+      try {
+        added = table.addRows(batch);
+      } catch(BatchUpdateException e) {
+        if(isWriteFailure(e)) {
+          // the status of the rows is unknown
+          failAll(callers, e);
+          return Collections.emptyList();
+        }
+        error = e;
+      } catch(Throwable t) {
+        failAll(callers, t);
+        return Collections.emptyList();
+      }
+
+      int updateCount = ((error != null) ? error.getUpdateCount() :
+                         batch.size());
+      int startRow = 0;
+      for(int c = 0; c < callers.size(); ++c) {
+        int i = callers.get(c);
+        int endRow = startRow + _rows.get(i).size();
+        if(endRow <= updateCount) {
+          _futures.get(i).complete(new ArrayList<Object[]>(
+                                       added.subList(startRow, endRow)));
+        } else {
+          // this caller owns the failed row
+          _futures.get(i).completeExceptionally(
+              (startRow == 0) ? error :
+              new BatchUpdateException(
+                  updateCount - startRow,
+                  "Failed adding rows to table " + _tableName,
+                  error.getCause()));
+          return new ArrayList<Integer>(callers.subList(c + 1,
+                                                        callers.size()));
+        }
+        startRow = endRow;
+      }
+      return Collections.emptyList();
+    }
+
+    private void failAll(List<Integer> callers, Throwable t) {
+      for(int i : callers) {
+        _futures.get(i).completeExceptionally(t);
+      }
+    }
+
+    @Override
+    protected void fail(Throwable t) {
+      for(CompletableFuture<List<? extends Object[]>> future : _futures) {
+        future.completeExceptionally(t);
+      }
+    }
+  }
+}
@@ -0,0 +1,446 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.DatabaseBuilder;
+import com.healthmarketscience.jackcess.impl.ByteUtil;
+import com.healthmarketscience.jackcess.impl.CodecProvider;
+import com.healthmarketscience.jackcess.impl.DatabaseImpl;
+
+/**
+ * Pool of read-only Database instances, useful for services which would
+ * otherwise open the same database files repeatedly (opening a Database
+ * involves reading and parsing a fair amount of metadata).  A Database is
+ * retrieved from the pool using one of the {@code checkout} methods and must
+ * be returned using {@link #checkin} (instead of being closed) when the
+ * caller is done with it.  A checked out Database is used exclusively by the
+ * caller.
+ * <p>
+ * Databases are keyed by the file path and the options used to open them.
+ * Up to a maximum number of idle Databases are retained (the least recently
+ * used are closed first), and Databases which have been idle longer than
+ * the idle timeout are closed.  When an idle Database is checked out, the
+ * file is checked for changes (based on the size and modification time), and
+ * the Database metadata is reloaded if necessary.  If the file has been
+ * replaced, a new Database is opened.
+ * <p>
+ * The total number of open Databases (idle and checked out) may be limited.
+ * When the limit is reached, a checkout closes the least recently used idle
+ * Database (if any), otherwise it waits up to the max wait time for a
+ * Database to be checked in (and then fails with an {@link
+ * IllegalStateException}).
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author James Ahlborn
+ * @usage _intermediate_class_
+ */
+public class DatabasePool implements Closeable
+{
+  /** default max number of idle Databases */
+  public static final int DEFAULT_MAX_IDLE = 8;
+  /** default time after which an idle Database is closed (5 minutes) */
+  public static final long DEFAULT_IDLE_TIMEOUT_MILLIS =
+    TimeUnit.MINUTES.toMillis(5L);
+  /** default max number of open Databases (unlimited) */
+  public static final int DEFAULT_MAX_TOTAL = Integer.MAX_VALUE;
+  /** default time to wait for a Database when the max total has been reached
+      (30 seconds) */
+  public static final long DEFAULT_MAX_WAIT_MILLIS =
+    TimeUnit.SECONDS.toMillis(30L);
+
+  private final int _maxIdle;
+  private final int _maxTotal;
+  private final long _idleTimeoutNanos;
+  private final long _maxWaitNanos;
+  /** idle Databases, least recently used first */
+  private final LinkedList<PooledDatabase> _idle =
+    new LinkedList<PooledDatabase>();
+  /** checked out Databases */
+  private final Map<Database,PooledDatabase> _checkedOut =
+    new IdentityHashMap<Database,PooledDatabase>();
+  /** number of Databases being opened (or validated) for a checkout */
+  private int _numPending;
+  private boolean _closed;
+
+  public DatabasePool() {
+    this(DEFAULT_MAX_IDLE, DEFAULT_IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  public DatabasePool(int maxIdle, long idleTimeout, TimeUnit unit) {
+    this(maxIdle, DEFAULT_MAX_TOTAL, idleTimeout,
+         unit.convert(DEFAULT_MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS), unit);
+  }
+
+  /**
+   * @param maxIdle max number of idle Databases
+   * @param maxTotal max number of open (idle and checked out) Databases
+   * @param idleTimeout time after which an idle Database is closed
+   * @param maxWait max time a checkout waits for a Database to be checked in
+   *                when the max total has been reached
+   * @param unit the unit of the given times
+   */
+  public DatabasePool(int maxIdle, int maxTotal, long idleTimeout,
+                      long maxWait, TimeUnit unit) {
+    if(maxIdle < 0) {
+      throw new IllegalArgumentException("Invalid max idle " + maxIdle);
+    }
+    if(maxTotal <= 0) {
+      throw new IllegalArgumentException("Invalid max total " + maxTotal);
+    }
+    if(maxWait < 0L) {
+      throw new IllegalArgumentException("Invalid max wait " + maxWait);
+    }
+    _maxIdle = maxIdle;
+    _maxTotal = maxTotal;
+    _idleTimeoutNanos = unit.toNanos(idleTimeout);
+    _maxWaitNanos = unit.toNanos(maxWait);
+  }
+
+  public int getMaxIdle() {
+    return _maxIdle;
+  }
+
+  public int getMaxTotal() {
+    return _maxTotal;
+  }
+
+  public synchronized int getIdleCount() {
+    return _idle.size();
+  }
+
+  public synchronized int getCheckedOutCount() {
+    return _checkedOut.size();
+  }
+
+  /**
+   * Checks out a read-only Database for the given file using the default
+   * options.
+   */
+  public Database checkout(Path path) throws IOException {
+    return checkout(path, null, null, null);
+  }
+
+  /**
+   * Checks out a read-only Database for the given file using the given
+   * options (see {@link DatabaseBuilder} for details).
+   *
+   * @param path the database file
+   * @param charset Charset to use, if {@code null}, uses default
+   * @param timeZone TimeZone to use, if {@code null}, uses default
+   * @param provider CodecProvider for handling page encoding/decoding, may be
+   *                 {@code null} if no special encoding is necessary
+   * @throws IllegalStateException if the pool is closed, or the max total
+   *         has been reached and no Database was checked in within the max
+   *         wait time
+   */
+  public Database checkout(Path path, Charset charset, TimeZone timeZone,
+                           CodecProvider provider)
+    throws IOException
+  {
+    Key key = new Key(path.toAbsolutePath().normalize(), charset, timeZone,
+                      provider);
+
+    PooledDatabase pooled = null;
+    List<PooledDatabase> evicted = new ArrayList<PooledDatabase>();
+    synchronized(this) {
+      long remaining = _maxWaitNanos;
+      while(true) {
+        if(_closed) {
+          throw new IllegalStateException("DatabasePool is closed");
+        }
+        evicted.addAll(removeExpired());
+        pooled = removeIdle(key);
+        if(pooled != null) {
+          break;
+        }
+        if(getTotalCount() < _maxTotal) {
+          break;
+        }
+        if(!_idle.isEmpty()) {
+          // make room by closing the least recently used idle Database
+          evicted.add(_idle.removeFirst());
+          break;
+        }
+        if(remaining <= 0L) {
+          throw new IllegalStateException(
+              "DatabasePool has reached the max total " + _maxTotal +
+              " Databases");
+        }
+        remaining = await(remaining);
+      }
+      // reserve the slot while opening (or validating) outside the lock
+      ++_numPending;
+    }
+    closeAll(evicted);
+
+    boolean success = false;
+    try {
+      if((pooled != null) && !pooled.validate()) {
+        // the file was replaced
+        pooled.close();
+        pooled = null;
+      }
+      if(pooled == null) {
+        pooled = new PooledDatabase(key);
+      }
+      success = true;
+    } finally {
+      synchronized(this) {
+        --_numPending;
+        if(success) {
+          _checkedOut.put(pooled._db, pooled);
+        } else {
+          // the reserved slot is available again
+          notifyAll();
+        }
+      }
+    }
+    return pooled._db;
+  }
+
+  /**
+   * Returns a Database retrieved from {@link #checkout} to this pool.  Any
+   * Table (or Cursor) instances retrieved from the Database should no longer
+   * be used.
+   * @throws IllegalArgumentException if the given Database is not currently
+   *         checked out from this pool
+   */
+  public void checkin(Database db) {
+    PooledDatabase toClose = null;
+    List<PooledDatabase> evicted = null;
+    synchronized(this) {
+      PooledDatabase pooled = _checkedOut.remove(db);
+      if(pooled == null) {
+        throw new IllegalArgumentException(
+            "Database " + db + " is not checked out from this pool");
+      }
+      if(_closed) {
+        toClose = pooled;
+      } else {
+        pooled._idleTime = System.nanoTime();
+        _idle.addLast(pooled);
+        evicted = removeExpired();
+        while(_idle.size() > _maxIdle) {
+          evicted.add(_idle.removeFirst());
+        }
+      }
+      // a waiting checkout may be able to proceed
+      notifyAll();
+    }
+    closeAll(evicted);
+    if(toClose != null) {
+      toClose.close();
+    }
+  }
+
+  /**
+   * Closes any Databases which have been idle longer than the idle timeout.
+   * This is done automatically whenever a Database is checked out or in, but
+   * may be called periodically to release idle resources sooner.
+   */
+  public void evictIdle() {
+    List<PooledDatabase> evicted = null;
+    synchronized(this) {
+      evicted = removeExpired();
+    }
+    closeAll(evicted);
+  }
+
+  /**
+   * Closes all idle Databases.  Any Databases which are currently checked out
+   * will be closed when they are checked in.
+   */
+  @Override
+  public void close() {
+    List<PooledDatabase> idle = null;
+    synchronized(this) {
+      _closed = true;
+      idle = new ArrayList<PooledDatabase>(_idle);
+      _idle.clear();
+      notifyAll();
+    }
+    closeAll(idle);
+  }
+
+  /**
+   * Removes and returns the most recently used idle Database with the given
+   * key, if any.
+   */
+  private PooledDatabase removeIdle(Key key) {
+    for(Iterator<PooledDatabase> iter = _idle.descendingIterator();
+        iter.hasNext(); ) {
+      PooledDatabase cur = iter.next();
+      if(cur._key.equals(key)) {
+        iter.remove();
+        return cur;
+      }
+    }
+    return null;
+  }
+
+  private int getTotalCount() {
+    return _idle.size() + _checkedOut.size() + _numPending;
+  }
+
+  /**
+   * Waits on this pool's monitor for at most the given time.
+   * @return the remaining time
+   */
+  private long await(long nanos) throws InterruptedIOException {
+    long start = System.nanoTime();
+    try {
+      TimeUnit.NANOSECONDS.timedWait(this, nanos);
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(
+          "Interrupted waiting for a pooled Database");
+    }
+    return nanos - (System.nanoTime() - start);
+  }
+
+  private List<PooledDatabase> removeExpired() {
+    List<PooledDatabase> expired = new ArrayList<PooledDatabase>();
+    long now = System.nanoTime();
+    while(!_idle.isEmpty() &&
+          ((now - _idle.getFirst()._idleTime) >= _idleTimeoutNanos)) {
+      expired.add(_idle.removeFirst());
+    }
+    return expired;
+  }
+
+  private static void closeAll(List<PooledDatabase> dbs) {
+    if(dbs != null) {
+      for(PooledDatabase pooled : dbs) {
+        pooled.close();
+      }
+    }
+  }
+
+  /**
+   * Identifies a database file and the options used to open it.
+   */
+  private static final class Key
+  {
+    private final Path _path;
+    private final Charset _charset;
+    private final TimeZone _timeZone;
+    private final CodecProvider _provider;
+
+    private Key(Path path, Charset charset, TimeZone timeZone,
+                CodecProvider provider) {
+      _path = path;
+      _charset = charset;
+      _timeZone = timeZone;
+      _provider = provider;
+    }
+
+    @Override
+    public int hashCode() {
+      return _path.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if(this == o) {
+        return true;
+      }
+      if(!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key)o;
+      return (_path.equals(other._path) &&
+              Objects.equals(_charset, other._charset) &&
+              Objects.equals(_timeZone, other._timeZone) &&
+              (_provider == other._provider));
+    }
+  }
+
+  /**
+   * A pooled Database and the state of the file when it was last loaded.
+   */
+  private static final class PooledDatabase
+  {
+    private final Key _key;
+    private final Database _db;
+    private BasicFileAttributes _attrs;
+    /** the time (in nanos) at which the Database was last checked in */
+    private long _idleTime;
+
+    private PooledDatabase(Key key) throws IOException {
+      _key = key;
+      // read the file info first so that concurrent changes are detected
+      _attrs = readAttributes();
+      _db = new DatabaseBuilder(key._path)
+        .setReadOnly(true)
+        .setCharset(key._charset)
+        .setTimeZone(key._timeZone)
+        .setCodecProvider(key._provider)
+        .open();
+    }
+
+    private BasicFileAttributes readAttributes() throws IOException {
+      return Files.readAttributes(_key._path, BasicFileAttributes.class);
+    }
+
+    /**
+     * Reloads the Database metadata if the file has changed since it was
+     * last loaded.
+     * @return {@code false} if the Database is no longer usable (the file has
+     *         been replaced or removed), {@code true} otherwise
+     */
+    private boolean validate() {
+      try {
+        BasicFileAttributes attrs = readAttributes();
+        Object fileKey = attrs.fileKey();
+        if((fileKey != null) && !fileKey.equals(_attrs.fileKey())) {
+          return false;
+        }
+        if((attrs.size() != _attrs.size()) ||
+           !attrs.lastModifiedTime().equals(_attrs.lastModifiedTime())) {
+          ((DatabaseImpl)_db).reloadMetadata();
+          _attrs = attrs;
+        }
+        return true;
+      } catch(IOException | RuntimeException e) {
+        return false;
+      }
+    }
+
+    private void close() {
+      ByteUtil.closeQuietly(_db);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SyncPolicy which syncs on a background thread no later than a given
+ * interval after a write completes (bounding the window of writes which may
+ * be lost on failure).
+ *
+ * @author James Ahlborn
+ * @usage _general_class_
+ */
+public class IntervalSyncPolicy implements SyncPolicy
+{
+  private final long _intervalMillis;
+
+  public IntervalSyncPolicy(long interval, TimeUnit unit) {
+    if(interval < 0L) {
+      throw new IllegalArgumentException("Invalid interval " + interval);
+    }
+    _intervalMillis = unit.toMillis(interval);
+  }
+
+  public long getIntervalMillis() {
+    return _intervalMillis;
+  }
+
+  @Override
+  public void writeCompleted(Syncer syncer) {
+    syncer.syncLater(_intervalMillis, TimeUnit.MILLISECONDS);
+  }
+}
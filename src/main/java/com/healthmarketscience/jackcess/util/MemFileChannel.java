@@ -23,7 +23,6 @@ import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
-import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.channels.NonWritableChannelException;
@@ -179,7 +178,12 @@ public class MemFileChannel extends FileChannel
   public static MemFileChannel newChannel(InputStream in, String mode)
     throws IOException
   {
-    return newChannel(Channels.newChannel(in), mode);
+    MemFileChannel channel = new MemFileChannel();
+    channel.transferFrom(in);
+    if(!mode.contains("w")) {
+      channel = new ReadOnlyChannel(channel);
+    }
+    return channel;
   }
 
   /**
@@ -376,7 +380,30 @@ public class MemFileChannel extends FileChannel
   public long transferTo(long position, long count, OutputStream dst)
     throws IOException
   {
-    return transferTo(position, count, Channels.newChannel(dst));
+    if(position >= _size) {
+      return 0L;
+    }
+
+    count = Math.min(count, _size - position);
+
+    int chunkIndex = getChunkIndex(position);
+    int chunkOffset = getChunkOffset(position);
+
+    // write the chunks directly (avoids the intermediate copy done by a
+    // stream backed channel)
+    long numBytes = 0L;
+    while(count > 0L) {
+
+      int chunkBytes = (int)Math.min(count, CHUNK_SIZE - chunkOffset);
+      dst.write(_data[chunkIndex], chunkOffset, chunkBytes);
+      numBytes += chunkBytes;
+      count -= chunkBytes;
+
+      ++chunkIndex;
+      chunkOffset = 0;
+    }
+
+    return numBytes;
   }
 
   @Override
@@ -413,6 +440,27 @@ public class MemFileChannel extends FileChannel
     return numBytes;
   }
 
+  /**
+   * Reads the entire contents of the given stream directly into the chunks
+   * of this (empty) channel.
+   */
+  private void transferFrom(InputStream src) throws IOException
+  {
+    while(true) {
+
+      ensureCapacity(_size + 1);
+
+      byte[] chunk = _data[getChunkIndex(_size)];
+      int chunkOffset = getChunkOffset(_size);
+      int bytesRead = src.read(chunk, chunkOffset, CHUNK_SIZE - chunkOffset);
+      if(bytesRead < 0) {
+        // src empty
+        return;
+      }
+      _size += bytesRead;
+    }
+  }
+
   @Override
   protected void implCloseChannel() throws IOException {
     // release data
@@ -0,0 +1,95 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.util;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Policy which determines when the writes to a Database are synced to disk.
+ * A Database is always synced when it is flushed or closed.  Syncing after
+ * every write leaves the database in a (fairly) consistent state on each
+ * write, but can be very inefficient for many updates.  Syncing in the
+ * background (see {@link WriteCountSyncPolicy} and {@link
+ * IntervalSyncPolicy}) bounds the amount of work which may be lost on
+ * failure without adding the sync latency to each write.  {@link
+ * com.healthmarketscience.jackcess.Database#awaitDurable} may be used to wait
+ * for the current writes to be synced.
+ * <p>
+ * Note, the policy is not used if the Database has a journal (which is
+ * synced as each write completes).
+ *
+ * @author James Ahlborn
+ * @usage _intermediate_class_
+ */
+public interface SyncPolicy
+{
+  /**
+   * syncs each write as it completes (the same as "auto-sync")
+   * @usage _general_field_
+   */
+  public static final SyncPolicy EVERY_WRITE = new SyncPolicy() {
+      @Override
+      public void writeCompleted(Syncer syncer) throws IOException {
+        syncer.sync();
+      }
+    };
+
+  /**
+   * only syncs when the Database is flushed or closed
+   * @usage _general_field_
+   */
+  public static final SyncPolicy ON_CLOSE = new SyncPolicy() {
+      @Override
+      public void writeCompleted(Syncer syncer) {
+        // nothing to do
+      }
+    };
+
+  /**
+   * Called when a (logical) write operation on a Database completes.  Note,
+   * this may be called while holding the Database write lock, so any
+   * synchronous work will delay other writers.
+   *
+   * @param syncer the syncer for the relevant Database
+   */
+  public void writeCompleted(Syncer syncer) throws IOException;
+
+  /**
+   * Provides sync operations for a Database.
+   */
+  public interface Syncer
+  {
+    /**
+     * Returns the number of write operations which have completed since the
+     * last sync began.
+     */
+    public long getUnsyncedWriteCount();
+
+    /**
+     * Syncs all completed writes to disk in the current thread.
+     */
+    public void sync() throws IOException;
+
+    /**
+     * Schedules a sync of all completed writes to run on a background thread
+     * no later than the given delay from now.  If a background sync is
+     * already scheduled to run within that delay, this call has no effect.
+     */
+    public void syncLater(long delay, TimeUnit unit);
+  }
+}
@@ -0,0 +1,50 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SyncPolicy which syncs on a background thread once a given number of
+ * writes have completed since the last sync.
+ *
+ * @author James Ahlborn
+ * @usage _general_class_
+ */
+public class WriteCountSyncPolicy implements SyncPolicy
+{
+  private final int _numWrites;
+
+  public WriteCountSyncPolicy(int numWrites) {
+    if(numWrites <= 0) {
+      throw new IllegalArgumentException(
+          "Invalid number of writes " + numWrites);
+    }
+    _numWrites = numWrites;
+  }
+
+  public int getNumWrites() {
+    return _numWrites;
+  }
+
+  @Override
+  public void writeCompleted(Syncer syncer) {
+    if(syncer.getUnsyncedWriteCount() >= _numWrites) {
+      syncer.syncLater(0L, TimeUnit.MILLISECONDS);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+
+import com.healthmarketscience.jackcess.Database;
+
+/**
+ * Thread utilities for the background/asynchronous features, java 21+
+ * version (see the java 8 version in src/main/java).  The threads used by
+ * these features are virtual threads, unless disabled using the {@link
+ * Database#VIRTUAL_THREADS_PROPERTY} system property, in which case they are
+ * daemon platform threads.
+ *
+ * @author James Ahlborn
+ */
+public final class ThreadUtil
+{
+  /** whether or not virtual threads are enabled */
+  private static final boolean VIRTUAL_THREADS = checkVirtualThreads();
+
+  private ThreadUtil() {}
+
+  /**
+   * @return {@code true} if the threads created by this class are virtual
+   *         threads, {@code false} otherwise
+   */
+  public static boolean isVirtualThreads() {
+    return VIRTUAL_THREADS;
+  }
+
+  /**
+   * Returns a ThreadFactory which creates virtual threads (or daemon
+   * threads, if disabled) with the given name.
+   */
+  public static ThreadFactory newThreadFactory(String name) {
+    if(VIRTUAL_THREADS) {
+      return Thread.ofVirtual().name(name).factory();
+    }
+    return Thread.ofPlatform().name(name).daemon(true).factory();
+  }
+
+  /**
+   * Returns the shared Executor for running (possibly blocking) tasks.  This
+   * is a virtual thread per task executor (or the common ForkJoinPool, if
+   * virtual threads are disabled).
+   */
+  public static Executor getTaskExecutor() {
+    return TaskExecutorHolder.EXECUTOR;
+  }
+
+  private static boolean checkVirtualThreads() {
+    String prop = System.getProperty(Database.VIRTUAL_THREADS_PROPERTY);
+    return ((prop == null) || Boolean.parseBoolean(prop.trim()));
+  }
+
+  private static final class TaskExecutorHolder
+  {
+    private static final Executor EXECUTOR = createTaskExecutor();
+
+    private static Executor createTaskExecutor() {
+      if(VIRTUAL_THREADS) {
+        return Executors.newVirtualThreadPerTaskExecutor();
+      }
+      return ForkJoinPool.commonPool();
+    }
+  }
+}
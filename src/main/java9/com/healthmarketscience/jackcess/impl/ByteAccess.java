@@ -0,0 +1,119 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Low-level byte operations used by {@link ByteUtil}, java 9+ version (see
+ * the java 8 version in src/main/java).  Uses the vectorized Arrays
+ * comparison methods and VarHandle views for multi-byte reads and swaps.
+ *
+ * @author James Ahlborn
+ */
+final class ByteAccess
+{
+  private static final VarHandle SHORT_LE_BUFFER =
+    MethodHandles.byteBufferViewVarHandle(short[].class,
+                                          ByteOrder.LITTLE_ENDIAN);
+  private static final VarHandle SHORT_BE_BUFFER =
+    MethodHandles.byteBufferViewVarHandle(short[].class,
+                                          ByteOrder.BIG_ENDIAN);
+  // the byte order of these doesn't matter, the bytes are just reversed
+  private static final VarHandle LONG_ARRAY =
+    MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.nativeOrder());
+  private static final VarHandle INT_ARRAY =
+    MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.nativeOrder());
+  private static final VarHandle SHORT_ARRAY =
+    MethodHandles.byteArrayViewVarHandle(short[].class,
+                                         ByteOrder.nativeOrder());
+
+  private ByteAccess() {}
+
+  /**
+   * Compares the given byte arrays lexicographically, treating the bytes as
+   * unsigned values (a shorter array which is a prefix of a longer array
+   * sorts first).
+   * @return -1, 0 or 1 as left is less than, equal to or greater than right
+   */
+  static int compareUnsigned(byte[] left, byte[] right) {
+    return Integer.signum(Arrays.compareUnsigned(left, right));
+  }
+
+  /**
+   * @return {@code true} if the bytes of the given buffer starting at the
+   *         given offset match the given pattern, {@code false} otherwise
+   */
+  static boolean matchesRange(ByteBuffer buffer, int start, byte[] pattern) {
+    if(buffer.hasArray() && (start >= 0) &&
+       (pattern.length <= (buffer.limit() - start))) {
+      int from = buffer.arrayOffset() + start;
+      return (Arrays.mismatch(buffer.array(), from, from + pattern.length,
+                              pattern, 0, pattern.length) < 0);
+    }
+
+    // out of bounds accesses throw as in the basic implementation
+    for(int i = 0; i < pattern.length; ++i) {
+      if(pattern[i] != buffer.get(start + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads a 3 byte int with the given byte order from the given buffer.
+   */
+  static int get3ByteInt(ByteBuffer buffer, int offset, ByteOrder order) {
+    if(order == ByteOrder.BIG_ENDIAN) {
+      return ((ByteUtil.getUnsignedByte(buffer, offset) << 16) |
+              ByteUtil.asUnsignedShort(
+                  (short)SHORT_BE_BUFFER.get(buffer, offset + 1)));
+    }
+    return (ByteUtil.asUnsignedShort(
+                (short)SHORT_LE_BUFFER.get(buffer, offset)) |
+            (ByteUtil.getUnsignedByte(buffer, offset + 2) << 16));
+  }
+
+  /**
+   * Reverses the 8 bytes at the given offset.
+   */
+  static void swap8Bytes(byte[] bytes, int offset) {
+    LONG_ARRAY.set(bytes, offset,
+                   Long.reverseBytes((long)LONG_ARRAY.get(bytes, offset)));
+  }
+
+  /**
+   * Reverses the 4 bytes at the given offset.
+   */
+  static void swap4Bytes(byte[] bytes, int offset) {
+    INT_ARRAY.set(bytes, offset,
+                  Integer.reverseBytes((int)INT_ARRAY.get(bytes, offset)));
+  }
+
+  /**
+   * Reverses the 2 bytes at the given offset.
+   */
+  static void swap2Bytes(byte[] bytes, int offset) {
+    short val = (short)SHORT_ARRAY.get(bytes, offset);
+    SHORT_ARRAY.set(bytes, offset, Short.reverseBytes(val));
+  }
+}
@@ -0,0 +1,223 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+import com.healthmarketscience.jackcess.Cursor;
+import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.impl.CursorImpl;
+
+/**
+ * Publisher which reads the remaining rows of a cursor as they are requested
+ * (see {@link PublisherUtil#toPublisher(Cursor,int,Executor)}).  Rows are
+ * read and published on the given executor, at most batchSize rows at a time
+ * (after which the task is resubmitted to the executor so that other tasks
+ * get a chance to run).  Only one task is ever running for a given
+ * subscription, so the cursor is only used by one thread at a time.
+ *
+ * @author James Ahlborn
+ */
+final class CursorPublisher implements Flow.Publisher<Row>
+{
+  /** what the publishing task should do next */
+  private enum Action {
+    PUBLISH, IDLE, YIELD, CANCEL;
+  }
+
+  private static final Flow.Subscription NOOP_SUBSCRIPTION =
+    new Flow.Subscription() {
+      @Override
+      public void request(long n) {}
+      @Override
+      public void cancel() {}
+    };
+
+  private final Cursor _cursor;
+  private final int _batchSize;
+  private final Executor _executor;
+  private boolean _subscribed;
+
+  CursorPublisher(Cursor cursor, int batchSize, Executor executor) {
+    if(batchSize <= 0) {
+      throw new IllegalArgumentException("Invalid batch size " + batchSize);
+    }
+    _cursor = cursor;
+    _batchSize = batchSize;
+    _executor = executor;
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super Row> subscriber) {
+    if(subscriber == null) {
+      throw new NullPointerException("Subscriber may not be null");
+    }
+    boolean first = false;
+    synchronized(this) {
+      first = !_subscribed;
+      _subscribed = true;
+    }
+    if(!first) {
+      subscriber.onSubscribe(NOOP_SUBSCRIPTION);
+      subscriber.onError(new IllegalStateException(
+                             "Publisher already has a subscriber"));
+      return;
+    }
+    subscriber.onSubscribe(new RowSubscription(subscriber));
+  }
+
+  /**
+   * Subscription which is also the task which publishes rows.
+   */
+  private final class RowSubscription implements Flow.Subscription, Runnable
+  {
+    private final Flow.Subscriber<? super Row> _subscriber;
+    /** number of requested rows not yet published */
+    private long _demand;
+    /** whether the publishing task is currently scheduled (or running) */
+    private boolean _scheduled;
+    private boolean _cancelled;
+    /** whether onComplete/onError has been (or is being) called */
+    private boolean _done;
+    /** error to publish on cancellation (invalid request) */
+    private Throwable _error;
+
+    private RowSubscription(Flow.Subscriber<? super Row> subscriber) {
+      _subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      synchronized(this) {
+        if(_done) {
+          return;
+        }
+        if(n <= 0L) {
+          _cancelled = true;
+          _error = new IllegalArgumentException(
+              "Invalid number of rows requested " + n);
+        } else {
+          _demand += n;
+          if(_demand < 0L) {
+            // overflow, treat as unbounded
+            _demand = Long.MAX_VALUE;
+          }
+        }
+      }
+      schedule();
+    }
+
+    @Override
+    public void cancel() {
+      synchronized(this) {
+        if(_done) {
+          return;
+        }
+        _cancelled = true;
+      }
+      schedule();
+    }
+
+    private void schedule() {
+      synchronized(this) {
+        if(_scheduled || _done) {
+          return;
+        }
+        _scheduled = true;
+      }
+      try {
+        _executor.execute(this);
+      } catch(RuntimeException e) {
+        // we "own" the task, so we can safely finish it here
+        finish(e);
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        for(int numRows = 0; ; ++numRows) {
+          switch(nextAction(numRows)) {
+          case IDLE:
+            return;
+          case YIELD:
+            _executor.execute(this);
+            return;
+          case CANCEL:
+            release();
+            if(_error != null) {
+              _subscriber.onError(_error);
+            }
+            return;
+          default:
+            // publish the next row
+          }
+
+          Row row = _cursor.getNextRow();
+          if(row == null) {
+            finish(null);
+            return;
+          }
+          _subscriber.onNext(row);
+        }
+      } catch(Throwable t) {
+        finish(t);
+      }
+    }
+
+    private synchronized Action nextAction(int numRows) {
+      if(_cancelled) {
+        _done = true;
+        return Action.CANCEL;
+      }
+      if(_demand == 0L) {
+        _scheduled = false;
+        return Action.IDLE;
+      }
+      if(numRows >= _batchSize) {
+        return Action.YIELD;
+      }
+      if(_demand != Long.MAX_VALUE) {
+        --_demand;
+      }
+      return Action.PUBLISH;
+    }
+
+    private void finish(Throwable error) {
+      synchronized(this) {
+        if(_done) {
+          // already finished (a subscriber callback threw)
+          return;
+        }
+        _done = true;
+      }
+      release();
+      if(error != null) {
+        _subscriber.onError(error);
+      } else {
+        _subscriber.onComplete();
+      }
+    }
+
+    private void release() {
+      if(_cursor instanceof CursorImpl) {
+        ((CursorImpl)_cursor).getRowState().clear();
+      }
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+import com.healthmarketscience.jackcess.Cursor;
+import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.impl.ThreadUtil;
+
+/**
+ * Utility methods for publishing the rows of a {@link Cursor} as a {@link
+ * Flow.Publisher}.  Only available on java 9+ (this class is only included
+ * in the java 9+ section of the multi-release jackcess jar).
+ *
+ * @author James Ahlborn
+ * @usage _intermediate_class_
+ */
+public class PublisherUtil
+{
+  private PublisherUtil() {}
+
+  /**
+   * Returns a Publisher which publishes the rows of the given cursor
+   * (starting after the current row, as by {@link Cursor#getNextRow}) using a
+   * shared executor (virtual threads if supported by the jvm, otherwise the
+   * common {@link java.util.concurrent.ForkJoinPool}).  See {@link
+   * #toPublisher(Cursor,int,Executor)} for details.
+   * @usage _intermediate_method_
+   */
+  public static Flow.Publisher<Row> toPublisher(Cursor cursor, int batchSize) {
+    return toPublisher(cursor, batchSize, ThreadUtil.getTaskExecutor());
+  }
+
+  /**
+   * Returns a Publisher which publishes the rows of the given cursor
+   * (starting after the current row, as by {@link Cursor#getNextRow}).  Rows
+   * are only read as the subscriber requests them, and are read and published
+   * on the given executor, at most batchSize rows per task.  The cursor's row
+   * buffers are released when the publisher completes or is cancelled.  The
+   * Publisher supports only a single Subscriber, any additional Subscribers
+   * will receive an {@link IllegalStateException}.
+   * <p>
+   * The cursor (and the Database) should not be used by any other thread
+   * while the publisher is active.
+   * @usage _intermediate_method_
+   */
+  public static Flow.Publisher<Row> toPublisher(Cursor cursor, int batchSize,
+                                                Executor executor) {
+    return new CursorPublisher(cursor, batchSize, executor);
+  }
+}
@@ -1117,6 +1117,113 @@ public class CursorTest {
     }
   }
 
+  @Test
+  public void testFindRowsByEntries() throws Exception
+  {
+    for (final FileFormat fileFormat : JetFormatTest.SUPPORTED_FILEFORMATS) {
+
+      Database db = createMem(fileFormat);
+
+      Table t = new TableBuilder("Test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("value", DataType.TEXT))
+        .addIndex(new IndexBuilder("idx").addColumns("value"))
+        .toTable(db);
+
+      // enough rows to span multiple index pages (with dupes)
+      for(int i = 0; i < 2000; ++i) {
+        t.addRow(i, "val" + ((i * 7) % 1000));
+      }
+
+      IndexCursor c = CursorBuilder.createCursor(t.getIndex("idx"));
+
+      List<Object[]> entries = new ArrayList<Object[]>();
+      for(int i = 990; i >= 0; i -= 33) {
+        entries.add(new Object[]{"val" + i});
+      }
+      entries.add(new Object[]{"val5000"});
+      entries.add(new Object[]{"val33"});
+      entries.add(new Object[]{"aaa"});
+
+      List<String> sortedValues = new ArrayList<String>();
+      for(Object[] entry : entries) {
+        sortedValues.add((String)entry[0]);
+      }
+      Collections.sort(sortedValues);
+
+      List<Integer> expectedIds = new ArrayList<Integer>();
+      for(String val : sortedValues) {
+        for(Row row : c.newEntryIterable(val)) {
+          expectedIds.add(row.getInt("id"));
+        }
+      }
+
+      List<Integer> foundIds = new ArrayList<Integer>();
+      for(Row row : c.findRowsByEntries(entries)) {
+        foundIds.add(row.getInt("id"));
+      }
+
+      Assert.assertEquals(64, foundIds.size());
+      Assert.assertEquals(expectedIds, foundIds);
+
+      Assert.assertFalse(c.findRowsByEntries(
+                             Collections.singletonList(new Object[]{"zzz"}))
+                         .iterator().hasNext());
+
+      db.close();
+    }
+  }
+
+  @Test
+  public void testSequentialFindByEntry() throws Exception
+  {
+    for (final FileFormat fileFormat : JetFormatTest.SUPPORTED_FILEFORMATS) {
+
+      Database db = createMem(fileFormat);
+
+      Table t = new TableBuilder("Test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("value", DataType.TEXT))
+        .addIndex(new IndexBuilder(IndexBuilder.PRIMARY_KEY_NAME)
+                  .addColumns("id").setPrimaryKey())
+        .toTable(db);
+
+      // only even ids, enough rows to span multiple index pages
+      for(int i = 0; i < 4000; i += 2) {
+        t.addRow(i, "val" + i);
+      }
+
+      IndexCursor c = CursorBuilder.createCursor(t.getPrimaryKeyIndex());
+
+      // mostly increasing lookups (nearby and far away), with a few jumps
+      // backwards
+      int[] ids = {0, 1, 2, 10, 12, 400, 402, 3998, 3999, 100, 101, 2000};
+      for(int id : ids) {
+        boolean expectFound = ((id % 2) == 0);
+        Assert.assertEquals(expectFound, c.findFirstRowByEntry(id));
+        if(expectFound) {
+          Assert.assertEquals(id, (int)c.getCurrentRow().getInt("id"));
+        }
+        if(expectFound && (id < 3998)) {
+          Assert.assertTrue(c.moveToNextRow());
+          Assert.assertEquals(id + 2, (int)c.getCurrentRow().getInt("id"));
+          Assert.assertTrue(c.moveToPreviousRow());
+          Assert.assertTrue(c.moveToPreviousRow() || (id == 0));
+        }
+
+        c.findClosestRowByEntry(id);
+        if(id < 3998) {
+          int expectedId = (expectFound ? id : (id + 1));
+          Assert.assertEquals(expectedId, (int)c.getCurrentRow().getInt("id"));
+        } else if(id > 3998) {
+          Assert.assertTrue(c.isAfterLast());
+        }
+      }
+
+      db.close();
+    }
+  }
+
   @Test
   public void testIndexCursorDelete() throws Exception
   {
@@ -26,6 +26,7 @@ import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -35,6 +36,12 @@ import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -46,8 +53,12 @@ import static com.healthmarketscience.jackcess.impl.JetFormatTest.*;
 import com.healthmarketscience.jackcess.impl.RowIdImpl;
 import com.healthmarketscience.jackcess.impl.RowImpl;
 import com.healthmarketscience.jackcess.impl.TableImpl;
+import com.healthmarketscience.jackcess.util.ColumnValidator;
+import com.healthmarketscience.jackcess.util.IntervalSyncPolicy;
 import com.healthmarketscience.jackcess.util.LinkResolver;
 import com.healthmarketscience.jackcess.util.RowFilterTest;
+import com.healthmarketscience.jackcess.util.SyncPolicy;
+import com.healthmarketscience.jackcess.util.WriteCountSyncPolicy;
 import static com.healthmarketscience.jackcess.TestUtil.*;
 
 
@@ -1102,6 +1113,581 @@ public class DatabaseTest
     }
   }
 
+  @Test
+  public void testCompactTo() throws Exception {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = create(fileFormat);
+
+      Table parent = new TableBuilder("Parent")
+        .addColumn(new ColumnBuilder("id", DataType.LONG).setAutoNumber(true))
+        .addColumn(new ColumnBuilder("name", DataType.TEXT))
+        .addColumn(new ColumnBuilder("notes", DataType.MEMO))
+        .setPrimaryKey("id")
+        .addIndex(new IndexBuilder("NameIdx").addColumns("name"))
+        .putProperty("Description", "the parent table")
+        .toTable(db);
+      Table child = new TableBuilder("Child")
+        .addColumn(new ColumnBuilder("parentId", DataType.LONG))
+        .addColumn(new ColumnBuilder("value", DataType.TEXT))
+        .toTable(db);
+      new RelationshipBuilder(parent, child)
+        .addColumns("id", "parentId")
+        .setReferentialIntegrity()
+        .toRelationship(db);
+
+      String notes = createString(1000);
+      for(int i = 0; i < 100; ++i) {
+        parent.addRow(Column.AUTO_NUMBER, "name" + (99 - i), notes + i);
+        child.addRow(i + 1, "value" + i);
+      }
+      Cursor c = CursorBuilder.createCursor(parent);
+      for(Row row : c) {
+        if((row.getInt("id") % 2) == 0) {
+          Cursor childCursor = CursorBuilder.createCursor(child);
+          while(childCursor.findNextRow(
+                    Collections.singletonMap("parentId", row.get("id")))) {
+            childCursor.deleteCurrentRow();
+          }
+          c.deleteCurrentRow();
+        }
+      }
+
+      File compactFile = createTempFile(false);
+      db.compactTo(compactFile.toPath());
+
+      Database compactDb = DatabaseBuilder.open(compactFile);
+      Assert.assertEquals(((fileFormat == FileFormat.GENERIC_JET4) ?
+                           FileFormat.V2000 : fileFormat),
+                          compactDb.getFileFormat());
+      Assert.assertEquals(db.getTableNames(), compactDb.getTableNames());
+
+      Table compactParent = compactDb.getTable("Parent");
+      Assert.assertEquals(50, compactParent.getRowCount());
+      Assert.assertEquals("the parent table", compactParent.getProperties()
+                          .getValue("Description"));
+      int id = 1;
+      for(Row row : CursorBuilder.createPrimaryKeyCursor(compactParent)) {
+        Assert.assertEquals(id, row.getInt("id").intValue());
+        Assert.assertEquals("name" + (100 - id), row.getString("name"));
+        Assert.assertEquals(notes + (id - 1), row.getString("notes"));
+        id += 2;
+      }
+      Row row = CursorBuilder.findRow(compactParent.getIndex("NameIdx"),
+                                      Collections.singletonMap(
+                                          "name", (Object)"name9"));
+      Assert.assertEquals(91, row.getInt("id").intValue());
+      Assert.assertEquals(50, compactDb.getTable("Child").getRowCount());
+
+      List<Relationship> rels = compactDb.getRelationships(
+          compactParent, compactDb.getTable("Child"));
+      Assert.assertEquals(1, rels.size());
+      Assert.assertTrue(rels.get(0).hasReferentialIntegrity());
+
+      // new autonumbers continue after the copied values (the deleted last
+      // value is reclaimed, same as access)
+      compactParent.addRow(Column.AUTO_NUMBER, "new", null);
+      Assert.assertEquals(100, CursorBuilder.findRow(
+          compactParent, Collections.singletonMap("name", (Object)"new"))
+                          .getInt("id").intValue());
+
+      compactDb.close();
+      db.close();
+    }
+  }
+
+  @Test
+  public void testSharedReadOnly() throws Exception {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createFile(fileFormat);
+      Table t = new TableBuilder("Test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("name", DataType.TEXT))
+        .addColumn(new ColumnBuilder("notes", DataType.MEMO))
+        .setPrimaryKey("id")
+        .addIndex(new IndexBuilder("NameIdx").addColumns("name"))
+        .toTable(db);
+      String notes = createString(3000);
+      for(int i = 0; i < 500; ++i) {
+        t.addRow(i, "name" + i, notes + i);
+      }
+      File dbFile = db.getFile();
+      db.close();
+
+      final Database roDb = new DatabaseBuilder(dbFile)
+        .setReadOnly(true).open();
+      ExecutorService exec = Executors.newFixedThreadPool(8);
+      List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+      for(int i = 0; i < 16; ++i) {
+        final int offset = i;
+        results.add(exec.submit(new Callable<Integer>() {
+          @Override
+          public Integer call() throws Exception {
+            Table table = roDb.getTable("Test");
+            int count = 0;
+            for(Row row : CursorBuilder.createCursor(table)) {
+              Assert.assertEquals(notes + row.getInt("id"),
+                                  row.getString("notes"));
+              ++count;
+            }
+            IndexCursor idxCursor = CursorBuilder.createCursor(
+                table.getIndex("NameIdx"));
+            for(int j = offset; j < 500; j += 7) {
+              Assert.assertTrue(idxCursor.findFirstRowByEntry("name" + j));
+              Assert.assertEquals(j, ((Integer)idxCursor.getCurrentRowValue(
+                                          table.getColumn("id"))).intValue());
+            }
+            return count;
+          }
+        }));
+      }
+      exec.shutdown();
+
+      for(Future<Integer> result : results) {
+        Assert.assertEquals(500, result.get().intValue());
+      }
+      roDb.close();
+    }
+  }
+
+  @Test
+  public void testSingleWriterConcurrency() throws Exception {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createFile(fileFormat);
+      new TableBuilder("Test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("name", DataType.TEXT))
+        .setPrimaryKey("id")
+        .addIndex(new IndexBuilder("NameIdx").addColumns("name"))
+        .toTable(db);
+      File dbFile = db.getFile();
+      db.close();
+
+      final Database sharedDb = new DatabaseBuilder(dbFile)
+        .setConcurrencyMode(ConcurrencyMode.SINGLE_WRITER)
+        .setAutoSync(false).open();
+      Assert.assertEquals(ConcurrencyMode.SINGLE_WRITER,
+                          sharedDb.getConcurrencyMode());
+      final Table table = sharedDb.getTable("Test");
+
+      ExecutorService exec = Executors.newFixedThreadPool(6);
+      List<Future<?>> results = new ArrayList<Future<?>>();
+      for(int i = 0; i < 2; ++i) {
+        final int offset = i;
+        results.add(exec.submit(new Callable<Object>() {
+          @Override
+          public Object call() throws Exception {
+            for(int j = offset; j < 400; j += 2) {
+              table.addRow(j, "name" + j);
+            }
+            return null;
+          }
+        }));
+      }
+      for(int i = 0; i < 4; ++i) {
+        results.add(exec.submit(new Callable<Object>() {
+          @Override
+          public Object call() throws Exception {
+            for(int j = 0; j < 20; ++j) {
+              Integer prevId = null;
+              for(Row row : CursorBuilder.createPrimaryKeyCursor(table)) {
+                Integer id = row.getInt("id");
+                Assert.assertEquals("name" + id, row.getString("name"));
+                Assert.assertTrue((prevId == null) || (prevId < id));
+                prevId = id;
+              }
+              for(Row row : CursorBuilder.createCursor(
+                      table.getIndex("NameIdx"))) {
+                Assert.assertEquals("name" + row.getInt("id"),
+                                    row.getString("name"));
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      exec.shutdown();
+
+      for(Future<?> result : results) {
+        result.get();
+      }
+
+      Assert.assertEquals(400, table.getRowCount());
+      int id = 0;
+      for(Row row : CursorBuilder.createPrimaryKeyCursor(table)) {
+        Assert.assertEquals(id++, row.getInt("id").intValue());
+      }
+      Assert.assertEquals(400, id);
+      sharedDb.close();
+    }
+  }
+
+  @Test
+  public void testMultiWriterConcurrency() throws Exception {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createFile(fileFormat);
+      Table parent = new TableBuilder("Parent")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .setPrimaryKey("id")
+        .toTable(db);
+      Table child = new TableBuilder("Child")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("parentId", DataType.LONG))
+        .setPrimaryKey("id")
+        .toTable(db);
+      new RelationshipBuilder(parent, child)
+        .addColumns("id", "parentId")
+        .setReferentialIntegrity()
+        .setCascadeDeletes()
+        .toRelationship(db);
+      new TableBuilder("Other")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("name", DataType.TEXT))
+        .setPrimaryKey("id")
+        .addIndex(new IndexBuilder("NameIdx").addColumns("name"))
+        .toTable(db);
+      for(int i = 0; i < 10; ++i) {
+        parent.addRow(i);
+      }
+      File dbFile = db.getFile();
+      db.close();
+
+      final Database sharedDb = new DatabaseBuilder(dbFile)
+        .setConcurrencyMode(ConcurrencyMode.MULTI_WRITER)
+        .setAutoSync(false).open();
+      final Table sharedParent = sharedDb.getTable("Parent");
+      final Table sharedChild = sharedDb.getTable("Child");
+      final Table sharedOther = sharedDb.getTable("Other");
+
+      // a write to "Other" blocks until a write to the unrelated "Child"
+      // table completes (which would never happen with a single writer)
+      final CountDownLatch childWritten = new CountDownLatch(1);
+      sharedOther.getColumn("name").setColumnValidator(new ColumnValidator() {
+        @Override
+        public Object validate(Column col, Object val) throws IOException {
+          try {
+            if(!childWritten.await(10, TimeUnit.SECONDS)) {
+              throw new IOException("Child write blocked");
+            }
+          } catch(InterruptedException e) {
+            throw new IOException(e);
+          }
+          return val;
+        }
+      });
+
+      ExecutorService exec = Executors.newFixedThreadPool(4);
+      try {
+        Future<?> otherResult = exec.submit(new Callable<Object>() {
+          @Override
+          public Object call() throws Exception {
+            sharedOther.addRow(-1, "blocked");
+            return null;
+          }
+        });
+        sharedChild.addRow(1000, 0);
+        childWritten.countDown();
+        otherResult.get();
+        sharedOther.getColumn("name").setColumnValidator(null);
+
+        List<Future<?>> results = new ArrayList<Future<?>>();
+        for(int i = 0; i < 2; ++i) {
+          final int offset = i;
+          results.add(exec.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+              for(int j = offset; j < 300; j += 2) {
+                sharedChild.addRow(j, j % 10);
+              }
+              return null;
+            }
+          }));
+        }
+        results.add(exec.submit(new Callable<Object>() {
+          @Override
+          public Object call() throws Exception {
+            for(int j = 0; j < 300; ++j) {
+              sharedOther.addRow(j, "name" + j);
+            }
+            return null;
+          }
+        }));
+        results.add(exec.submit(new Callable<Object>() {
+          @Override
+          public Object call() throws Exception {
+            for(int j = 0; j < 20; ++j) {
+              for(Row row : CursorBuilder.createPrimaryKeyCursor(sharedChild)) {
+                Assert.assertEquals(row.getInt("id") % 10,
+                                    row.getInt("parentId").intValue());
+              }
+            }
+            return null;
+          }
+        }));
+
+        for(Future<?> result : results) {
+          result.get();
+        }
+      } finally {
+        exec.shutdown();
+      }
+
+      Assert.assertEquals(301, sharedChild.getRowCount());
+      Assert.assertEquals(301, sharedOther.getRowCount());
+
+      try {
+        sharedChild.addRow(1001, 10);
+        Assert.fail("ConstraintViolationException should have been thrown");
+      } catch(ConstraintViolationException ignored) {
+        // success
+      }
+
+      // cascade to the child table
+      Cursor cursor = CursorBuilder.createCursor(sharedParent);
+      Assert.assertTrue(cursor.findFirstRow(sharedParent.getColumn("id"), 0));
+      cursor.deleteCurrentRow();
+      Assert.assertEquals(270, sharedChild.getRowCount());
+
+      sharedDb.close();
+    }
+  }
+
+  @Test
+  public void testTransaction() throws Exception {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createFile(fileFormat);
+      Table table = new TableBuilder("Test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("data", DataType.MEMO))
+        .setPrimaryKey("id")
+        .toTable(db);
+      for(int i = 0; i < 10; ++i) {
+        table.addRow(i, "row" + i);
+      }
+      db.flush();
+      File dbFile = db.getFile();
+      long origLen = dbFile.length();
+
+      // enough long values to spill the dirty pages to a temp file
+      String data = createString(4000);
+      db.beginTransaction();
+      for(int i = 10; i < 1200; ++i) {
+        table.addRow(i, data + i);
+      }
+      Assert.assertEquals(1200, table.getRowCount());
+      Cursor cursor = CursorBuilder.createPrimaryKeyCursor(table);
+      Assert.assertTrue(cursor.findFirstRow(table.getColumn("id"), 1100));
+      Assert.assertEquals(data + 1100, cursor.getCurrentRowValue(
+                              table.getColumn("data")));
+
+      try {
+        db.beginTransaction();
+        Assert.fail("IllegalStateException should have been thrown");
+      } catch(IllegalStateException ignored) {
+        // success
+      }
+
+      db.rollback();
+      Assert.assertEquals(origLen, dbFile.length());
+
+      table = db.getTable("Test");
+      Assert.assertEquals(10, table.getRowCount());
+      Assert.assertEquals(10, countRows(table));
+
+      db.beginTransaction();
+      table.addRow(10, "row10");
+      new TableBuilder("Test2")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .toTable(db).addRow(1);
+      db.commit();
+
+      try {
+        db.commit();
+        Assert.fail("IllegalStateException should have been thrown");
+      } catch(IllegalStateException ignored) {
+        // success
+      }
+
+      // uncommitted changes are discarded on close
+      db.beginTransaction();
+      table.addRow(11, "row11");
+      db.close();
+
+      db = new DatabaseBuilder(dbFile).open();
+      table = db.getTable("Test");
+      Assert.assertEquals(11, table.getRowCount());
+      Assert.assertEquals(11, countRows(table));
+      Assert.assertEquals(1, countRows(db.getTable("Test2")));
+      db.close();
+    }
+  }
+
+  @Test
+  public void testJournal() throws Exception {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createFile(fileFormat);
+      for(String name : new String[]{"Test1", "Test2"}) {
+        new TableBuilder(name)
+          .addColumn(new ColumnBuilder("id", DataType.LONG))
+          .addColumn(new ColumnBuilder("data", DataType.MEMO))
+          .setPrimaryKey("id")
+          .toTable(db);
+      }
+      File dbFile = db.getFile();
+      File journalFile = new File(dbFile.getPath() + "-journal");
+      db.close();
+
+      final Database journalDb = new DatabaseBuilder(dbFile)
+        .setConcurrencyMode(ConcurrencyMode.MULTI_WRITER)
+        .setJournal(true).open();
+      Assert.assertTrue(journalFile.exists());
+
+      // concurrent writers share journal syncs
+      ExecutorService exec = Executors.newFixedThreadPool(2);
+      try {
+        List<Future<?>> results = new ArrayList<Future<?>>();
+        for(final String name : new String[]{"Test1", "Test2"}) {
+          results.add(exec.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+              Table table = journalDb.getTable(name);
+              for(int i = 0; i < 200; ++i) {
+                table.addRow(i, "row" + i);
+              }
+              return null;
+            }
+          }));
+        }
+        for(Future<?> result : results) {
+          result.get();
+        }
+      } finally {
+        exec.shutdown();
+      }
+
+      Table table = journalDb.getTable("Test1");
+      journalDb.beginTransaction();
+      table.addRow(200, "row200");
+      journalDb.commit();
+      Assert.assertTrue(journalFile.length() > 8L);
+
+      // simulate a crash by copying the current database and journal files
+      File crashFile = createTempFile(false);
+      File crashJournalFile = new File(crashFile.getPath() + "-journal");
+      crashJournalFile.deleteOnExit();
+      copyFile(dbFile, crashFile);
+      copyFile(journalFile, crashJournalFile);
+
+      // enough pages to trigger background checkpoints
+      String data = createString(4000);
+      for(int i = 201; i < 1300; ++i) {
+        table.addRow(i, data + i);
+      }
+      journalDb.close();
+      Assert.assertFalse(journalFile.exists());
+
+      db = new DatabaseBuilder(dbFile).open();
+      Assert.assertEquals(1300, countRows(db.getTable("Test1")));
+      Assert.assertEquals(200, countRows(db.getTable("Test2")));
+      Table check = db.getTable("Test1");
+      Cursor cursor = CursorBuilder.createPrimaryKeyCursor(check);
+      Assert.assertTrue(cursor.findFirstRow(check.getColumn("id"), 1299));
+      Assert.assertEquals(data + 1299, cursor.getCurrentRowValue(
+                              check.getColumn("data")));
+      db.close();
+
+      // a read-only open reads the journaled pages, but leaves the journal
+      db = new DatabaseBuilder(crashFile).setReadOnly(true).open();
+      Assert.assertEquals(201, countRows(db.getTable("Test1")));
+      Assert.assertEquals(200, countRows(db.getTable("Test2")));
+      db.close();
+      Assert.assertTrue(crashJournalFile.exists());
+
+      // the journal is replayed when the crashed file is opened
+      db = new DatabaseBuilder(crashFile).open();
+      Assert.assertFalse(crashJournalFile.exists());
+      Assert.assertEquals(201, countRows(db.getTable("Test1")));
+      Assert.assertEquals(200, countRows(db.getTable("Test2")));
+      db.close();
+    }
+  }
+
+  @Test
+  public void testSyncPolicy() throws Exception {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createFile(fileFormat);
+      new TableBuilder("Test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .toTable(db);
+      File dbFile = db.getFile();
+      db.close();
+
+      final SyncPolicy.Syncer[] syncer = new SyncPolicy.Syncer[1];
+      db = new DatabaseBuilder(dbFile)
+        .setSyncPolicy(captureSyncer(new WriteCountSyncPolicy(5), syncer))
+        .open();
+      Table table = db.getTable("Test");
+      for(int i = 0; i < 4; ++i) {
+        table.addRow(i);
+      }
+      Assert.assertEquals(4, syncer[0].getUnsyncedWriteCount());
+      table.addRow(4);
+      awaitSynced(syncer[0]);
+      table.addRow(5);
+      Assert.assertEquals(1, syncer[0].getUnsyncedWriteCount());
+      db.awaitDurable();
+      Assert.assertEquals(0, syncer[0].getUnsyncedWriteCount());
+      db.close();
+
+      db = new DatabaseBuilder(dbFile)
+        .setSyncPolicy(captureSyncer(
+                           new IntervalSyncPolicy(100L, TimeUnit.MILLISECONDS),
+                           syncer))
+        .open();
+      table = db.getTable("Test");
+      for(int i = 6; i < 20; ++i) {
+        table.addRow(i);
+      }
+      awaitSynced(syncer[0]);
+      db.close();
+
+      db = new DatabaseBuilder(dbFile).open();
+      Assert.assertEquals(20, countRows(db.getTable("Test")));
+      db.close();
+
+      // the legacy auto-sync flag maps to a sync policy
+      db = DatabaseImpl.open(dbFile.toPath(), false, null, false, null, null,
+                             null);
+      db.getTable("Test").addRow(20);
+      db.close();
+      db = DatabaseImpl.open(dbFile.toPath(), true, null, true, null, null,
+                             null);
+      Assert.assertEquals(21, countRows(db.getTable("Test")));
+      db.close();
+    }
+  }
+
+  private static SyncPolicy captureSyncer(final SyncPolicy policy,
+                                          final SyncPolicy.Syncer[] syncer)
+  {
+    return new SyncPolicy() {
+      @Override
+      public void writeCompleted(Syncer curSyncer) throws IOException {
+        syncer[0] = curSyncer;
+        policy.writeCompleted(curSyncer);
+      }
+    };
+  }
+
+  private static void awaitSynced(SyncPolicy.Syncer syncer) throws Exception
+  {
+    // background syncs should complete promptly
+    long deadline = System.currentTimeMillis() + 10000L;
+    while(syncer.getUnsyncedWriteCount() > 0) {
+      Assert.assertTrue(System.currentTimeMillis() < deadline);
+      Thread.sleep(10L);
+    }
+  }
+
   private static void checkRawValue(String expected, Object val)
   {
     if(expected != null) {
@@ -22,6 +22,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -86,6 +87,32 @@ public class IndexTest {
     sortedSet.addAll(expectedList);
     Assert.assertEquals(expectedList, new ArrayList<byte[]>(sortedSet));
 
+    // the (possibly jdk provided) comparison matches a basic unsigned
+    // comparison
+    Random rand = new Random(42L);
+    for(int i = 0; i < 1000; ++i) {
+      byte[] left = new byte[rand.nextInt(20)];
+      rand.nextBytes(left);
+      byte[] right = Arrays.copyOf(left, rand.nextInt(20));
+      if((right.length > 0) && rand.nextBoolean()) {
+        right[rand.nextInt(right.length)] = (byte)rand.nextInt();
+      }
+      int expected = 0;
+      for(int j = 0; j < Math.min(left.length, right.length); ++j) {
+        expected = Integer.compare(ByteUtil.asUnsignedByte(left[j]),
+                                   ByteUtil.asUnsignedByte(right[j]));
+        if(expected != 0) {
+          break;
+        }
+      }
+      if(expected == 0) {
+        expected = Integer.compare(left.length, right.length);
+      }
+      Assert.assertEquals(expected, ByteUtil.compareUnsigned(left, right));
+      Assert.assertEquals(expected,
+                          IndexData.BYTE_CODE_COMPARATOR.compare(left, right));
+    }
+
   }
 
   @Test
@@ -468,6 +495,57 @@ public class IndexTest {
     }
   }
 
+  @Test
+  public void testIndexStatistics() throws Exception {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      final Database db = create(fileFormat);
+
+      final Table t = new TableBuilder("TestTable").addColumn(new ColumnBuilder("grp", DataType.LONG))
+          .addColumn(new ColumnBuilder("data", DataType.TEXT))
+          .addIndex(new IndexBuilder("GrpIdx").addColumns("grp", "data")).toTable(db);
+
+      final Index idx = t.getIndex("GrpIdx");
+      Index.Statistics stats = idx.getStatistics();
+      Assert.assertEquals(0, stats.getEntryCount());
+      Assert.assertEquals(0, stats.getDistinctCount(2));
+      Assert.assertTrue(stats.getHistogramBounds().isEmpty());
+
+      for (int i = 0; i < 2000; ++i) {
+        t.addRow(i % 20, "row" + (i % 100));
+      }
+
+      stats = idx.getStatistics();
+      Assert.assertSame(stats, idx.getStatistics());
+      Assert.assertEquals(2000, stats.getEntryCount());
+      Assert.assertEquals(100, stats.getDistinctCount(2));
+      final int grpCount = stats.getDistinctCount(1);
+      Assert.assertTrue("" + grpCount, (grpCount >= 20) && (grpCount <= 25));
+
+      final List<? extends Row> bounds = stats.getHistogramBounds();
+      Assert.assertEquals(101, bounds.size());
+      Assert.assertEquals(0, bounds.get(0).get("grp"));
+      Assert.assertEquals("row0", bounds.get(0).get("data"));
+      Assert.assertEquals(19, bounds.get(100).get("grp"));
+      Assert.assertEquals("row99", bounds.get(100).get("data"));
+
+      final IndexCursor c = CursorBuilder.createCursor(idx);
+      final int total = c.estimateRangeCount(null, null);
+      Assert.assertTrue("" + total, (total >= 1800) && (total <= 2200));
+      final int grpRange = c.estimateRangeCount(new Object[] {5}, new Object[] {5});
+      Assert.assertTrue("" + grpRange, (grpRange >= 80) && (grpRange <= 120));
+      final int grpsRange = c.estimateRangeCount(new Object[] {5}, new Object[] {14});
+      Assert.assertTrue("" + grpsRange, (grpsRange >= 900) && (grpsRange <= 1100));
+      Assert.assertEquals(0, c.estimateRangeCount(new Object[] {50}, null));
+
+      t.addRow(20, "row100");
+      Assert.assertNotSame(stats, idx.getStatistics());
+      Assert.assertEquals(2001, idx.getStatistics().getEntryCount());
+      Assert.assertEquals(101, idx.getStatistics().getDistinctCount(2));
+
+      db.close();
+    }
+  }
+
   @Test
   public void testGetForeignKeyIndex() throws Exception {
     for (final TestDB testDB : TestDB.getSupportedForBasename(Basename.INDEX, true)) {
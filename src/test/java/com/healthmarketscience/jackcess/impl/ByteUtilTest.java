@@ -0,0 +1,131 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the ByteUtil methods which have jdk specific implementations.
+ *
+ * @author James Ahlborn
+ */
+public class ByteUtilTest
+{
+  @Test
+  public void test3ByteInt() throws Exception
+  {
+    byte[] bytes = new byte[]{(byte)0xFF, 0x01, (byte)0x82, (byte)0xF3,
+                              0x04};
+    ByteBuffer bb = ByteBuffer.wrap(bytes);
+
+    Assert.assertEquals(0xF38201,
+                        ByteUtil.get3ByteInt(bb, 1, ByteOrder.LITTLE_ENDIAN));
+    Assert.assertEquals(0x0182F3,
+                        ByteUtil.get3ByteInt(bb, 1, ByteOrder.BIG_ENDIAN));
+    Assert.assertEquals(0x8201FF,
+                        ByteUtil.get3ByteInt(bb, 0, ByteOrder.LITTLE_ENDIAN));
+    Assert.assertEquals(0x04F382,
+                        ByteUtil.get3ByteInt(bb, 2, ByteOrder.LITTLE_ENDIAN));
+
+    // buffer order and position are unchanged
+    bb.order(ByteOrder.LITTLE_ENDIAN).position(2);
+    Assert.assertEquals(0x04F382, ByteUtil.get3ByteInt(bb));
+    Assert.assertEquals(5, bb.position());
+
+    ByteBuffer out = ByteBuffer.allocate(6);
+    ByteUtil.put3ByteInt(out, 0xABCDEF, 1, ByteOrder.BIG_ENDIAN);
+    Assert.assertEquals(0xABCDEF,
+                        ByteUtil.get3ByteInt(out, 1, ByteOrder.BIG_ENDIAN));
+    Assert.assertEquals(ByteOrder.BIG_ENDIAN, out.order());
+
+    try {
+      ByteUtil.get3ByteInt(bb, 3, ByteOrder.LITTLE_ENDIAN);
+      Assert.fail("IndexOutOfBoundsException should have been thrown");
+    } catch(IndexOutOfBoundsException e) {
+      // success
+    }
+  }
+
+  @Test
+  public void testSwapBytes() throws Exception
+  {
+    byte[] bytes = new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+
+    ByteUtil.swap8Bytes(bytes, 1);
+    Assert.assertArrayEquals(new byte[]{0, 8, 7, 6, 5, 4, 3, 2, 1, 9}, bytes);
+    ByteUtil.swap4Bytes(bytes, 5);
+    Assert.assertArrayEquals(new byte[]{0, 8, 7, 6, 5, 1, 2, 3, 4, 9}, bytes);
+    ByteUtil.swap2Bytes(bytes, 8);
+    Assert.assertArrayEquals(new byte[]{0, 8, 7, 6, 5, 1, 2, 3, 9, 4}, bytes);
+  }
+
+  @Test
+  public void testMatchesRange() throws Exception
+  {
+    byte[] pattern = new byte[]{3, 4, 5};
+    byte[] bytes = new byte[]{0, 1, 2, 3, 4, 5, 6};
+
+    ByteBuffer bb = ByteBuffer.wrap(bytes);
+    Assert.assertTrue(ByteUtil.matchesRange(bb, 3, pattern));
+    Assert.assertFalse(ByteUtil.matchesRange(bb, 2, pattern));
+
+    // offset array
+    bb.position(2);
+    ByteBuffer slice = bb.slice();
+    Assert.assertTrue(ByteUtil.matchesRange(slice, 1, pattern));
+    Assert.assertFalse(ByteUtil.matchesRange(slice, 3, pattern));
+
+    // no accessible array
+    ByteBuffer ro = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    Assert.assertTrue(ByteUtil.matchesRange(ro, 3, pattern));
+    Assert.assertFalse(ByteUtil.matchesRange(ro, 4, pattern));
+
+    ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+    direct.put(bytes);
+    Assert.assertTrue(ByteUtil.matchesRange(direct, 3, pattern));
+
+    // the limit applies
+    bb.clear().limit(5);
+    try {
+      ByteUtil.matchesRange(bb, 3, pattern);
+      Assert.fail("IndexOutOfBoundsException should have been thrown");
+    } catch(IndexOutOfBoundsException e) {
+      // success
+    }
+  }
+
+  @Test
+  public void testCompareUnsigned() throws Exception
+  {
+    Assert.assertEquals(0, ByteUtil.compareUnsigned(
+                            new byte[]{1, 2}, new byte[]{1, 2}));
+    Assert.assertEquals(-1, ByteUtil.compareUnsigned(
+                            new byte[]{1, 2}, new byte[]{1, (byte)0x80}));
+    Assert.assertEquals(1, ByteUtil.compareUnsigned(
+                            new byte[]{(byte)0xFF}, new byte[]{1, 2}));
+    Assert.assertEquals(-1, ByteUtil.compareUnsigned(
+                            new byte[]{1}, new byte[]{1, 0}));
+    Assert.assertEquals(1, ByteUtil.compareUnsigned(
+                            new byte[]{1, 0}, new byte[]{1}));
+    Assert.assertEquals(0, ByteUtil.compareUnsigned(
+                            new byte[0], new byte[0]));
+  }
+}
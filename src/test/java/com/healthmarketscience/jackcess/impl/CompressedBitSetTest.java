@@ -0,0 +1,114 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author James Ahlborn
+ */
+public class CompressedBitSetTest
+{
+  @Test
+  public void testSparseAndDense() throws Exception
+  {
+    CompressedBitSet bits = new CompressedBitSet();
+    Assert.assertEquals(-1, bits.nextSetBit(0));
+    Assert.assertEquals(-1, bits.previousSetBit(Integer.MAX_VALUE));
+
+    bits.set(5);
+    bits.set(500000);
+    Assert.assertTrue(bits.get(5));
+    Assert.assertFalse(bits.get(6));
+    Assert.assertEquals(500000, bits.nextSetBit(6));
+    Assert.assertEquals(5, bits.previousSetBit(499999));
+    Assert.assertEquals(500000, bits.previousSetBit(Integer.MAX_VALUE));
+
+    // fill a range spanning multiple chunks
+    bits.set(60000, 200000);
+    Assert.assertEquals(140002, bits.cardinality());
+    Assert.assertEquals(60000, bits.nextSetBit(6));
+    Assert.assertEquals(199999, bits.previousSetBit(499999));
+
+    CompressedBitSet copy = bits.clone();
+    for(int i = 60000; i < 199999; ++i) {
+      bits.clear(i);
+    }
+    Assert.assertEquals(3, bits.cardinality());
+    Assert.assertEquals(199999, bits.nextSetBit(6));
+    Assert.assertEquals(140002, copy.cardinality());
+
+    bits.clear();
+    Assert.assertEquals(0, bits.cardinality());
+    Assert.assertEquals(-1, bits.nextSetBit(0));
+  }
+
+  @Test
+  public void testCompareToBitSet() throws Exception
+  {
+    Random rand = new Random(42L);
+    for(int range : new int[]{5000, 70000, 300000}) {
+      BitSet expected = new BitSet();
+      CompressedBitSet bits = new CompressedBitSet();
+
+      for(int i = 0; i < 50000; ++i) {
+        int bitIdx = rand.nextInt(range);
+        switch(rand.nextInt(8)) {
+        case 0:
+        case 1:
+          expected.set(bitIdx);
+          bits.set(bitIdx);
+          break;
+        case 2:
+        case 3:
+        case 4:
+          expected.clear(bitIdx);
+          bits.clear(bitIdx);
+          break;
+        case 5:
+          int toIdx = Math.min(bitIdx + rand.nextInt(5000), range);
+          expected.set(bitIdx, toIdx);
+          bits.set(bitIdx, toIdx);
+          break;
+        case 6:
+          Assert.assertEquals(expected.nextSetBit(bitIdx),
+                              bits.nextSetBit(bitIdx));
+          break;
+        default:
+          Assert.assertEquals(expected.previousSetBit(bitIdx),
+                              bits.previousSetBit(bitIdx));
+        }
+        Assert.assertEquals(expected.get(bitIdx), bits.get(bitIdx));
+      }
+
+      Assert.assertEquals(expected.cardinality(), bits.cardinality());
+      int expectedIdx = expected.nextSetBit(0);
+      int bitIdx = bits.nextSetBit(0);
+      while(expectedIdx >= 0) {
+        Assert.assertEquals(expectedIdx, bitIdx);
+        expectedIdx = expected.nextSetBit(expectedIdx + 1);
+        bitIdx = bits.nextSetBit(bitIdx + 1);
+      }
+      Assert.assertEquals(-1, bitIdx);
+    }
+  }
+}
@@ -16,24 +16,32 @@ limitations under the License.
 
 package com.healthmarketscience.jackcess.impl;
 
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.healthmarketscience.jackcess.BatchUpdateException;
 import com.healthmarketscience.jackcess.Column;
 import com.healthmarketscience.jackcess.ColumnBuilder;
+import com.healthmarketscience.jackcess.ConstraintViolationException;
 import com.healthmarketscience.jackcess.Cursor;
 import com.healthmarketscience.jackcess.CursorBuilder;
 import com.healthmarketscience.jackcess.DataType;
 import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.IndexBuilder;
+import com.healthmarketscience.jackcess.RelationshipBuilder;
 import static com.healthmarketscience.jackcess.Database.*;
 import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.RowId;
 import com.healthmarketscience.jackcess.Table;
 import com.healthmarketscience.jackcess.TableBuilder;
 import static com.healthmarketscience.jackcess.TestUtil.*;
@@ -120,6 +128,524 @@ public class DatabaseReadWriteTest
     }
   }
 
+  @Test
+  public void testReuseFreeSpace() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = create(fileFormat);
+
+      TableBuilder tb = new TableBuilder("Test");
+      for(int i = 0; i < 4; ++i) {
+        tb.addColumn(new ColumnBuilder("data" + i, DataType.TEXT)
+                     .setLengthInUnits(255));
+      }
+      Table t = tb.toTable(db);
+
+      // big rows only fit one per page, leaving lots of space on each page
+      String bigStr = createString(255);
+      for(int i = 0; i < 10; ++i) {
+        t.addRow(bigStr, bigStr, bigStr, bigStr);
+      }
+      int numPages = ((TableImpl)t).getApproximateOwnedPageCount();
+
+      // small rows should fill in the space left on all the pages, not just
+      // the last one
+      for(int i = 0; i < 200; ++i) {
+        t.addRow("row" + i, "a", "b", "c");
+      }
+      Assert.assertEquals(numPages, ((TableImpl)t).getApproximateOwnedPageCount());
+      Assert.assertEquals(210, t.getRowCount());
+
+      int numSmall = 0;
+      for(Row row : t) {
+        if(!bigStr.equals(row.getString("data0"))) {
+          Assert.assertEquals("c", row.getString("data3"));
+          ++numSmall;
+        }
+      }
+      Assert.assertEquals(200, numSmall);
+
+      db.close();
+    }
+  }
+
+  @Test
+  public void testCompact() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = create(fileFormat);
+
+      Table t = new TableBuilder("Test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("data", DataType.TEXT)
+                   .setLengthInUnits(255))
+        .addIndex(new IndexBuilder(IndexBuilder.PRIMARY_KEY_NAME)
+                  .addColumns("id").setPrimaryKey())
+        .toTable(db);
+
+      for(int i = 0; i < 300; ++i) {
+        t.addRow(i, "row" + i);
+      }
+
+      // delete most rows and grow some others (which forces them onto
+      // overflow rows)
+      String bigStr = createString(200);
+      Cursor c = CursorBuilder.createCursor(t);
+      for(Row row : c) {
+        int id = row.getInt("id");
+        if((id % 3) != 0) {
+          c.deleteCurrentRow();
+        } else if((id % 2) == 0) {
+          row.put("data", bigStr + id);
+          t.updateRow(row);
+        }
+      }
+      Assert.assertEquals(100, t.getRowCount());
+      int numPages = ((TableImpl)t).getApproximateOwnedPageCount();
+
+      Table.CompactResult result = t.compact();
+      Assert.assertTrue(result.getReclaimedPageCount() > 0);
+      Assert.assertTrue(result.getReclaimedBytes() > 0L);
+      Assert.assertEquals(numPages - result.getReclaimedPageCount(),
+                          ((TableImpl)t).getApproximateOwnedPageCount());
+      Assert.assertEquals(100, t.getRowCount());
+
+      // rows and index still agree
+      Cursor idxCursor = CursorBuilder.createPrimaryKeyCursor(t);
+      int numRows = 0;
+      for(Row row : idxCursor) {
+        int id = row.getInt("id");
+        Assert.assertEquals(numRows * 3, id);
+        Assert.assertEquals((((id % 2) == 0) ? bigStr + id : "row" + id),
+                            row.getString("data"));
+        ++numRows;
+      }
+      Assert.assertEquals(100, numRows);
+      Assert.assertEquals("row3", CursorBuilder.findRowByPrimaryKey(t, 3)
+                          .getString("data"));
+      Assert.assertNull(CursorBuilder.findRowByPrimaryKey(t, 4));
+
+      // table is still usable
+      t.addRow(1000, "row1000");
+      Assert.assertEquals(101, t.getRowCount());
+      Assert.assertEquals("row1000", CursorBuilder.findRowByPrimaryKey(t, 1000)
+                          .getString("data"));
+
+      db.close();
+    }
+  }
+
+  @Test
+  public void testTruncate() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = create(fileFormat);
+
+      Table parent = new TableBuilder("Parent")
+        .addColumn(new ColumnBuilder("id", DataType.LONG).setAutoNumber(true))
+        .addColumn(new ColumnBuilder("name", DataType.TEXT))
+        .addColumn(new ColumnBuilder("notes", DataType.MEMO))
+        .setPrimaryKey("id")
+        .addIndex(new IndexBuilder("NameIdx").addColumns("name"))
+        .toTable(db);
+      Table child = new TableBuilder("Child")
+        .addColumn(new ColumnBuilder("parentId", DataType.LONG))
+        .toTable(db);
+      new RelationshipBuilder(parent, child)
+        .addColumns("id", "parentId")
+        .setReferentialIntegrity()
+        .toRelationship(db);
+
+      String notes = createString(3000);
+      for(int i = 0; i < 500; ++i) {
+        parent.addRow(Column.AUTO_NUMBER, "name" + i, notes);
+      }
+      child.addRow(1);
+      child.addRow((Object)null);
+      int minPages = ((TableImpl)parent).getApproximateOwnedPageCount();
+
+      try {
+        parent.truncate();
+        Assert.fail("ConstraintViolationException should have been thrown");
+      } catch(ConstraintViolationException e) {
+        // success
+      }
+      Assert.assertEquals(500, parent.getRowCount());
+
+      // null fk values do not reference the parent
+      child.deleteRow(CursorBuilder.findRow(
+                          child, Collections.singletonMap("parentId", 1)));
+      parent.truncate();
+
+      Assert.assertEquals(0, parent.getRowCount());
+      Assert.assertNull(parent.getNextRow());
+      Assert.assertTrue(((TableImpl)parent).getApproximateOwnedPageCount() <
+                        minPages);
+      Assert.assertEquals(0, parent.getIndex("NameIdx").getStatistics()
+                          .getEntryCount());
+
+      // auto-numbers start over
+      for(int i = 0; i < 500; ++i) {
+        parent.addRow(Column.AUTO_NUMBER, "name" + i, notes);
+      }
+      Assert.assertEquals(500, parent.getRowCount());
+      Assert.assertEquals("name0", CursorBuilder.findRowByPrimaryKey(parent, 1)
+                          .getString("name"));
+      Assert.assertEquals(500, CursorBuilder.findRow(
+          parent.getIndex("NameIdx"), Collections.singletonMap(
+              "name", "name499")).getInt("id").intValue());
+
+      // auto-numbers can also continue where they left off
+      parent.truncate(false);
+      parent.addRow(Column.AUTO_NUMBER, "next", notes);
+      Assert.assertEquals(501, CursorBuilder.findRow(
+          parent.getIndex("NameIdx"), Collections.singletonMap(
+              "name", "next")).getInt("id").intValue());
+
+      db.close();
+    }
+  }
+
+  @Test
+  public void testTruncateStaleOwnedPages() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = create(fileFormat);
+
+      TableImpl t1 = (TableImpl)new TableBuilder("Test1")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .toTable(db);
+      Table t2 = new TableBuilder("Test2")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("data", DataType.TEXT))
+        .toTable(db);
+      t1.addRow(1);
+      t2.addRow(1, "row1");
+
+      // a stale owned page entry for a page owned by another table should
+      // not be released
+      int otherPageNumber = ((RowIdImpl)t2.getNextRow().getId())
+        .getPageNumber();
+      PageChannel pageChannel = ((DatabaseImpl)db).getPageChannel();
+      pageChannel.startWrite();
+      try {
+        t1.getOwnedPagesUsageMap().addPageNumber(otherPageNumber);
+      } finally {
+        pageChannel.finishWrite();
+      }
+
+      t1.truncate();
+      Assert.assertEquals(0, t1.getRowCount());
+      Assert.assertFalse(t1.getOwnedPagesUsageMap().containsPageNumber(
+                             otherPageNumber));
+
+      ByteBuffer page = pageChannel.createPageBuffer();
+      pageChannel.readPage(page, otherPageNumber);
+      Assert.assertEquals(PageTypes.DATA, page.get(0));
+
+      for(int i = 0; i < 100; ++i) {
+        t1.addRow(i);
+      }
+      t2.reset();
+      Assert.assertEquals("row1", t2.getNextRow().getString("data"));
+      Assert.assertEquals(1, t2.getRowCount());
+
+      db.close();
+    }
+  }
+
+  @Test
+  public void testReuseFreedPages() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createFile(fileFormat);
+
+      Table t = new TableBuilder("Test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("name", DataType.TEXT))
+        .addColumn(new ColumnBuilder("notes", DataType.MEMO))
+        .addIndex(new IndexBuilder("NameIdx").addColumns("name"))
+        .toTable(db);
+
+      String notes = createString(3000);
+      for(int i = 0; i < 50; ++i) {
+        t.addRow(i, "name" + i, notes);
+      }
+      long fileLen = db.getFile().length();
+
+      // the pages released by the truncate should be re-used instead of
+      // growing the file
+      t.truncate();
+      for(int i = 0; i < 50; ++i) {
+        t.addRow(i, "other" + i, notes);
+      }
+      Assert.assertEquals(fileLen, db.getFile().length());
+
+      Assert.assertEquals(50, t.getRowCount());
+      int numRows = 0;
+      for(Row row : t) {
+        Assert.assertEquals(notes, row.getString("notes"));
+        ++numRows;
+      }
+      Assert.assertEquals(50, numRows);
+      Assert.assertEquals(49, CursorBuilder.findRow(
+                              t.getIndex("NameIdx"),
+                              Collections.singletonMap("name", "other49"))
+                          .get("id"));
+
+      db.close();
+    }
+  }
+
+  @Test
+  public void testSkipUnreleasedFreePages() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createFile(fileFormat);
+
+      Table t1 = new TableBuilder("Test1")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("data", DataType.TEXT))
+        .toTable(db);
+      t1.addRow(1, "row1");
+      int pageNumber = ((RowIdImpl)t1.getNextRow().getId()).getPageNumber();
+
+      // mark the page free in the global usage map without releasing it (as
+      // if freed by another program)
+      PageChannel pageChannel = ((DatabaseImpl)db).getPageChannel();
+      UsageMap globalUsageMap = pageChannel.getGlobalUsageMap();
+      pageChannel.startWrite();
+      try {
+        globalUsageMap.addPageNumber(pageNumber);
+      } finally {
+        pageChannel.finishWrite();
+      }
+
+      // the page is not reused and the usage map is left alone
+      Table t2 = new TableBuilder("Test2")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("data", DataType.TEXT))
+        .toTable(db);
+      for(int i = 0; i < 500; ++i) {
+        t2.addRow(i, createString(100));
+      }
+      Assert.assertEquals(pageNumber, globalUsageMap.findPageNumber(
+                              pageNumber, pageNumber + 1));
+      t1.reset();
+      Assert.assertEquals("row1", t1.getNextRow().getString("data"));
+
+      db.close();
+    }
+  }
+
+  @Test
+  public void testDeleteRows() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = create(fileFormat);
+
+      Table t = new TableBuilder("Test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("data", DataType.TEXT))
+        .setPrimaryKey("id")
+        .addIndex(new IndexBuilder("DataIdx").addColumns("data"))
+        .toTable(db);
+
+      for(int i = 0; i < 1000; ++i) {
+        t.addRow(i, "row" + (i % 50));
+      }
+
+      List<RowId> rowIds = new ArrayList<RowId>();
+      RowId alreadyDeleted = null;
+      for(Row row : t) {
+        int id = row.getInt("id");
+        if(id == 0) {
+          alreadyDeleted = row.getId();
+        } else if((id % 3) != 0) {
+          rowIds.add(row.getId());
+        }
+      }
+      ((TableImpl)t).deleteRow(alreadyDeleted);
+      rowIds.add(alreadyDeleted);
+      rowIds.add(rowIds.get(0));
+
+      Assert.assertEquals(666, t.deleteRows(rowIds));
+      Assert.assertEquals(333, t.getRowCount());
+
+      int numRows = 0;
+      for(Row row : CursorBuilder.createPrimaryKeyCursor(t)) {
+        Assert.assertEquals(0, row.getInt("id") % 3);
+        ++numRows;
+      }
+      Assert.assertEquals(333, numRows);
+
+      numRows = 0;
+      for(Row row : CursorBuilder.createCursor(t.getIndex("DataIdx"))
+            .newEntryIterable("row9")) {
+        Assert.assertEquals(0, row.getInt("id") % 3);
+        ++numRows;
+      }
+      Assert.assertEquals(7, numRows);
+
+      Assert.assertEquals(0, t.deleteRows(rowIds));
+
+      db.close();
+    }
+  }
+
+  @Test
+  public void testUpdateRows() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = create(fileFormat);
+
+      Table t = new TableBuilder("Test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("status", DataType.INT))
+        .addColumn(new ColumnBuilder("data", DataType.TEXT))
+        .setPrimaryKey("id")
+        .addIndex(new IndexBuilder("DataIdx").addColumns("data"))
+        .toTable(db);
+
+      for(int i = 0; i < 1000; ++i) {
+        t.addRow(i, 0, "row" + (i % 50));
+      }
+
+      Map<RowId,Object[]> updates = new HashMap<RowId,Object[]>();
+      for(Row row : t) {
+        int id = row.getInt("id");
+        Object[] update = new Object[] {Column.KEEP_VALUE, 1,
+                                        Column.KEEP_VALUE};
+        if((id % 10) == 0) {
+          // change an indexed value
+          update[2] = "changed";
+        } else if((id % 10) == 1) {
+          // grow the row
+          update[2] = "row" + (id % 50) + "_is_now_much_longer";
+        }
+        updates.put(row.getId(), update);
+      }
+
+      t.updateRows(updates);
+      Assert.assertEquals(1000, t.getRowCount());
+
+      for(Object[] update : updates.values()) {
+        Assert.assertEquals(1, ((Number)update[1]).intValue());
+        Assert.assertTrue(update[2] instanceof String);
+      }
+
+      int numRows = 0;
+      for(Row row : CursorBuilder.createPrimaryKeyCursor(t)) {
+        int id = row.getInt("id");
+        Assert.assertEquals(numRows, id);
+        Assert.assertEquals(1, row.getShort("status").intValue());
+        String expected = "row" + (id % 50);
+        if((id % 10) == 0) {
+          expected = "changed";
+        } else if((id % 10) == 1) {
+          expected += "_is_now_much_longer";
+        }
+        Assert.assertEquals(expected, row.get("data"));
+        ++numRows;
+      }
+      Assert.assertEquals(1000, numRows);
+
+      numRows = 0;
+      for(Row row : CursorBuilder.createCursor(t.getIndex("DataIdx"))
+            .newEntryIterable("changed")) {
+        Assert.assertEquals(0, row.getInt("id") % 10);
+        ++numRows;
+      }
+      Assert.assertEquals(100, numRows);
+
+      numRows = 0;
+      for(Row row : CursorBuilder.createCursor(t.getIndex("DataIdx"))
+            .newEntryIterable("row3")) {
+        Assert.assertEquals(3, row.getInt("id") % 50);
+        ++numRows;
+      }
+      Assert.assertEquals(20, numRows);
+
+      // a failure part way through keeps the updates before the failure,
+      // including the in place updates on the failing row's page
+      updates.clear();
+      RowId failId = null;
+      for(Row row : t) {
+        int id = row.getInt("id");
+        Object status = 2;
+        if(id == 500) {
+          status = "not a number";
+          failId = row.getId();
+        }
+        updates.put(row.getId(), new Object[] {Column.KEEP_VALUE, status,
+                                               Column.KEEP_VALUE});
+      }
+      int expectedCount = 0;
+      for(RowId rowId : updates.keySet()) {
+        if(rowId.compareTo(failId) < 0) {
+          ++expectedCount;
+        }
+      }
+      try {
+        t.updateRows(updates);
+        Assert.fail("BatchUpdateException should have been thrown");
+      } catch(BatchUpdateException e) {
+        Assert.assertEquals(expectedCount, e.getUpdateCount());
+      }
+      for(Row row : t) {
+        int expected = ((row.getId().compareTo(failId) < 0) ? 2 : 1);
+        Assert.assertEquals(expected, row.getShort("status").intValue());
+      }
+
+      db.close();
+    }
+  }
+
+  @Test
+  public void testDeferredTableDefinition() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = create(fileFormat);
+
+      Table t = new TableBuilder("Test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("data", DataType.TEXT))
+        .setPrimaryKey("id")
+        .toTable(db);
+      int tdefPageNum = ((TableImpl)t).getTableDefPageNumber();
+
+      PageChannel pageChannel = ((DatabaseImpl)db).getPageChannel();
+      ByteBuffer tdefPage = pageChannel.createPageBuffer();
+      JetFormat format = pageChannel.getFormat();
+
+      pageChannel.startWrite();
+      try {
+        for(int i = 0; i < 100; ++i) {
+          t.addRow(i, "row" + i);
+        }
+
+        // table definition is not written until the write completes
+        Assert.assertEquals(100, t.getRowCount());
+        pageChannel.readPage(tdefPage, tdefPageNum);
+        Assert.assertEquals(0, tdefPage.getInt(format.OFFSET_NUM_ROWS));
+      } finally {
+        pageChannel.finishWrite();
+      }
+
+      pageChannel.readPage(tdefPage, tdefPageNum);
+      Assert.assertEquals(100, tdefPage.getInt(format.OFFSET_NUM_ROWS));
+
+      // reload the table from the database
+      clearTableCache(db);
+      t = db.getTable("Test");
+      Assert.assertEquals(100, t.getRowCount());
+      Assert.assertEquals("row42", CursorBuilder.findRowByPrimaryKey(t, 42)
+                          .getString("data"));
+
+      db.close();
+    }
+  }
+
   @Test
   public void testUpdateRow() throws Exception
   {
@@ -212,6 +212,72 @@ public class LongValueTest
     }
   }
 
+  @Test
+  public void testLongValuePageRuns() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createMem(fileFormat);
+      JetFormat format = ((DatabaseImpl)db).getFormat();
+      PageChannel pageChannel = ((DatabaseImpl)db).getPageChannel();
+
+      Table t1 = new TableBuilder("Test1")
+        .addColumn(new ColumnBuilder("data", DataType.OLE))
+        .toTable(db);
+      Table t2 = new TableBuilder("Test2")
+        .addColumn(new ColumnBuilder("data", DataType.OLE))
+        .toTable(db);
+
+      // interleave single page values, then free the pages of one table so
+      // that the free pages are fragmented
+      byte[] pageValue = new byte[format.MAX_LONG_VALUE_ROW_SIZE - 100];
+      for(int i = 0; i < 20; ++i) {
+        t1.addRow(pageValue);
+        t2.addRow(pageValue);
+      }
+      t2.truncate();
+
+      ColumnImpl col = (ColumnImpl)t1.getColumn("data");
+      byte[] value = new byte[format.MAX_LONG_VALUE_ROW_SIZE * 5];
+      for(int i = 0; i < value.length; ++i) {
+        value[i] = (byte)i;
+      }
+
+      pageChannel.startWrite();
+      try {
+        for(int i = 0; i < 3; ++i) {
+          ByteBuffer lvalDef = col.write(value, 0);
+
+          // all but the last page of the value should be contiguous
+          List<Integer> pageNums = new ArrayList<Integer>();
+          ByteBuffer lvalPage = pageChannel.createPageBuffer();
+          int rowNum = lvalDef.get(4);
+          int pageNum = ByteUtil.get3ByteInt(lvalDef, 5);
+          while(pageNum != 0) {
+            pageNums.add(pageNum);
+            pageChannel.readPage(lvalPage, pageNum);
+            int rowStart = TableImpl.findRowStart(lvalPage, rowNum, format);
+            rowNum = lvalPage.get(rowStart);
+            pageNum = ByteUtil.get3ByteInt(lvalPage, rowStart + 1);
+          }
+
+          Assert.assertEquals(6, pageNums.size());
+          for(int j = 1; j < pageNums.size() - 1; ++j) {
+            Assert.assertEquals(pageNums.get(j - 1) + 1,
+                                (int)pageNums.get(j));
+          }
+
+          byte[] bytes = new byte[lvalDef.remaining()];
+          lvalDef.get(bytes);
+          Assert.assertTrue(Arrays.equals(value, (byte[])col.read(bytes)));
+        }
+      } finally {
+        pageChannel.finishWrite();
+      }
+
+      db.close();
+    }
+  }
+
   @Test
   public void testUnicodeCompression() throws Exception
   {
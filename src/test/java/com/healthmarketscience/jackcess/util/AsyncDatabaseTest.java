@@ -0,0 +1,246 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.healthmarketscience.jackcess.BatchUpdateException;
+import com.healthmarketscience.jackcess.ColumnBuilder;
+import com.healthmarketscience.jackcess.DataType;
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.DatabaseBuilder;
+import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.Table;
+import com.healthmarketscience.jackcess.TableBuilder;
+import static com.healthmarketscience.jackcess.TestUtil.*;
+import static com.healthmarketscience.jackcess.impl.JetFormatTest.*;
+
+/**
+ *
+ * @author James Ahlborn
+ */
+public class AsyncDatabaseTest
+{
+  @Test
+  public void testAsyncOperations() throws Exception
+  {
+    for (final Database.FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createFile(fileFormat);
+      new TableBuilder("Test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("data", DataType.TEXT))
+        .setPrimaryKey("id")
+        .toTable(db);
+
+      AsyncDatabase async = new AsyncDatabase(db, 4, 100);
+      final CountDownLatch blocked = new CountDownLatch(1);
+      CompletableFuture<Void> blocker = blockUntil(async, blocked);
+
+      // queued addRows calls for the same table are combined (and only use a
+      // single queue slot)
+      List<CompletableFuture<List<? extends Object[]>>> adds =
+        new ArrayList<CompletableFuture<List<? extends Object[]>>>();
+      for(int i = 0; i < 10; ++i) {
+        adds.add(async.addRows("Test", Arrays.asList(
+                                   new Object[]{i * 2, "row" + (i * 2)},
+                                   new Object[]{i * 2 + 1, "row" + (i * 2 + 1)})));
+      }
+      // duplicate primary key fails only the offending caller
+      CompletableFuture<List<? extends Object[]>> dupe = async.addRows(
+          "Test", Collections.singletonList(new Object[]{0, "dupe"}));
+      CompletableFuture<Row> found = async.findRowByEntry("Test", null, 7);
+      final AtomicInteger numScanned = new AtomicInteger();
+      CompletableFuture<Integer> scanned = async.scan(
+          "Test", new Consumer<Row>() {
+            @Override
+            public void accept(Row row) {
+              numScanned.incrementAndGet();
+            }
+          });
+      CompletableFuture<Table> table = async.getTable("Test");
+
+      // the queue is now full
+      CompletableFuture<Table> rejected = async.getTable("Test");
+      assertFailure(rejected, RejectedExecutionException.class);
+
+      blocked.countDown();
+      blocker.get();
+
+      for(CompletableFuture<List<? extends Object[]>> add : adds) {
+        Assert.assertEquals(2, add.get().size());
+      }
+      assertFailure(dupe, IOException.class);
+      Assert.assertEquals("row7", found.get().get("data"));
+      Assert.assertEquals(20, (int)scanned.get());
+      Assert.assertEquals(20, numScanned.get());
+      Assert.assertEquals("Test", table.get().getName());
+
+      List<Row> odd = async.findRows("Test", new Predicate<Row>() {
+        @Override
+        public boolean test(Row row) {
+          return ((Integer)row.get("id") % 2) == 1;
+        }
+      }).get();
+      Assert.assertEquals(10, odd.size());
+      Assert.assertNull(async.getTable("Missing").get());
+      assertFailure(async.findRows("Missing", null),
+                    IllegalArgumentException.class);
+
+      // pending work is cancelled on close(true)
+      final CountDownLatch blocked2 = new CountDownLatch(1);
+      blocker = blockUntil(async, blocked2);
+      CompletableFuture<List<? extends Object[]>> cancelled = async.addRows(
+          "Test", Collections.singletonList(new Object[]{100, "row100"}));
+      // unblock once the queued work has been cancelled
+      cancelled.whenComplete(new BiConsumer<Object,Throwable>() {
+        @Override
+        public void accept(Object result, Throwable error) {
+          blocked2.countDown();
+        }
+      });
+      async.close(true);
+      blocker.get();
+      assertFailure(cancelled, CancellationException.class);
+      assertFailure(async.getTable("Test"), RejectedExecutionException.class);
+
+      // queued work is completed on close()
+      db = new DatabaseBuilder(db.getFile()).open();
+      async = new AsyncDatabase(db);
+      final CountDownLatch blocked3 = new CountDownLatch(1);
+      blocker = blockUntil(async, blocked3);
+      CompletableFuture<List<? extends Object[]>> completed = async.addRows(
+          "Test", Collections.singletonList(new Object[]{100, "row100"}));
+      blocked3.countDown();
+      async.close();
+      completed.get();
+
+      db = open(fileFormat, db.getFile());
+      Assert.assertEquals(21, countRows(db.getTable("Test")));
+      db.close();
+    }
+  }
+
+  @Test
+  public void testAddRowsBatchFailure() throws Exception
+  {
+    for (final Database.FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createFile(fileFormat);
+      new TableBuilder("Test")
+        .addColumn(new ColumnBuilder("code", DataType.LONG))
+        .addColumn(new ColumnBuilder("id", DataType.LONG)
+                   .setAutoNumber(true))
+        .setPrimaryKey("code")
+        .toTable(db);
+
+      AsyncDatabase async = new AsyncDatabase(db);
+      CountDownLatch blocked = new CountDownLatch(1);
+      CompletableFuture<Void> blocker = blockUntil(async, blocked);
+
+      // all three calls are combined into one batch
+      CompletableFuture<List<? extends Object[]>> first = async.addRows(
+          "Test", Arrays.asList(new Object[]{1}, new Object[]{2}));
+      CompletableFuture<List<? extends Object[]>> dupe = async.addRows(
+          "Test", Arrays.asList(new Object[]{3}, new Object[]{1}));
+      CompletableFuture<List<? extends Object[]>> last = async.addRows(
+          "Test", Arrays.asList(new Object[]{4}, new Object[]{5}));
+      blocked.countDown();
+      blocker.get();
+
+      // the returned rows include the generated values
+      List<Object[]> rows = new ArrayList<Object[]>(first.get());
+      Assert.assertEquals(2, rows.size());
+      Assert.assertEquals(1, rows.get(0)[1]);
+      Assert.assertEquals(2, rows.get(1)[1]);
+
+      // only the caller with the failed row fails, the later caller's rows
+      // are still added
+      try {
+        dupe.get();
+        Assert.fail("BatchUpdateException should have been thrown");
+      } catch(ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof BatchUpdateException);
+        Assert.assertEquals(
+            1, ((BatchUpdateException)e.getCause()).getUpdateCount());
+      }
+      rows = new ArrayList<Object[]>(last.get());
+      Assert.assertEquals(2, rows.size());
+      Assert.assertEquals(4, rows.get(0)[0]);
+      Assert.assertNotNull(rows.get(0)[1]);
+      Assert.assertNotNull(rows.get(1)[1]);
+
+      async.close();
+
+      db = open(fileFormat, db.getFile());
+      Assert.assertEquals(5, countRows(db.getTable("Test")));
+      db.close();
+    }
+  }
+
+  private static CompletableFuture<Void> blockUntil(
+      AsyncDatabase async, final CountDownLatch latch)
+    throws Exception
+  {
+    // wait for the background thread to start the task
+    final CountDownLatch started = new CountDownLatch(1);
+    CompletableFuture<Void> future = async.submit(
+        new AsyncDatabase.Task<Void>() {
+          @Override
+          public Void run(Database db) throws IOException {
+            started.countDown();
+            try {
+              latch.await();
+            } catch(InterruptedException e) {
+              throw new IOException(e);
+            }
+            return null;
+          }
+        });
+    started.await();
+    return future;
+  }
+
+  private static void assertFailure(CompletableFuture<?> future,
+                                    Class<? extends Throwable> expected)
+    throws Exception
+  {
+    try {
+      future.get();
+      Assert.fail(expected.getSimpleName() + " should have been thrown");
+    } catch(ExecutionException e) {
+      Assert.assertTrue(e.getCause().toString(),
+                        expected.isInstance(e.getCause()));
+    } catch(CancellationException e) {
+      Assert.assertTrue(expected.isInstance(e));
+    }
+  }
+}
@@ -0,0 +1,191 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.util;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.healthmarketscience.jackcess.ColumnBuilder;
+import com.healthmarketscience.jackcess.DataType;
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.DatabaseBuilder;
+import com.healthmarketscience.jackcess.Table;
+import com.healthmarketscience.jackcess.TableBuilder;
+import static com.healthmarketscience.jackcess.TestUtil.*;
+import static com.healthmarketscience.jackcess.impl.JetFormatTest.*;
+
+/**
+ *
+ * @author James Ahlborn
+ */
+public class DatabasePoolTest
+{
+  @Test
+  public void testCheckoutCheckin() throws Exception
+  {
+    for (final Database.FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createFile(fileFormat);
+      Table table = new TableBuilder("Test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .toTable(db);
+      table.addRow(0);
+      Path path = db.getPath();
+      db.close();
+
+      DatabasePool pool = new DatabasePool(2, 1L, TimeUnit.HOURS);
+
+      Database db1 = pool.checkout(path);
+      Assert.assertEquals(1, countRows(db1.getTable("Test")));
+      Database db2 = pool.checkout(path);
+      Assert.assertNotSame(db1, db2);
+      Assert.assertEquals(2, pool.getCheckedOutCount());
+      pool.checkin(db1);
+      pool.checkin(db2);
+      Assert.assertEquals(2, pool.getIdleCount());
+
+      try {
+        pool.checkin(db1);
+        Assert.fail("IllegalArgumentException should have been thrown");
+      } catch(IllegalArgumentException ignored) {
+        // success
+      }
+
+      // most recently used instance is re-used
+      Database db3 = pool.checkout(path);
+      Assert.assertSame(db2, db3);
+      Assert.assertNull(db3.getTable("Test2"));
+      pool.checkin(db3);
+
+      // modify the file in place, metadata is reloaded on checkout
+      db = new DatabaseBuilder(path).open();
+      new TableBuilder("Test2")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .toTable(db);
+      db.getTable("Test").addRow(1);
+      db.close();
+      Files.setLastModifiedTime(path, FileTime.fromMillis(
+              Files.getLastModifiedTime(path).toMillis() + 10000L));
+
+      db3 = pool.checkout(path);
+      Assert.assertSame(db2, db3);
+      Assert.assertNotNull(db3.getTable("Test2"));
+      Assert.assertEquals(2, countRows(db3.getTable("Test")));
+      pool.checkin(db3);
+
+      // replace the file, a new instance is opened on checkout
+      Path copy = Paths.get(path.toString() + ".copy");
+      Files.copy(path, copy);
+      Files.move(copy, path, StandardCopyOption.REPLACE_EXISTING);
+      db3 = pool.checkout(path);
+      Assert.assertNotSame(db2, db3);
+      Assert.assertEquals(2, countRows(db3.getTable("Test")));
+      Database db4 = pool.checkout(path);
+      Database db5 = pool.checkout(path);
+      pool.checkin(db3);
+      pool.checkin(db4);
+      pool.checkin(db5);
+      Assert.assertEquals(2, pool.getIdleCount());
+      pool.close();
+      Assert.assertEquals(0, pool.getIdleCount());
+
+      // idle instances expire
+      pool = new DatabasePool(2, 0L, TimeUnit.MILLISECONDS);
+      pool.checkin(pool.checkout(path));
+      pool.evictIdle();
+      Assert.assertEquals(0, pool.getIdleCount());
+      pool.close();
+    }
+  }
+
+  @Test
+  public void testMaxTotal() throws Exception
+  {
+    for (final Database.FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      final Path path1 = createPoolFile(fileFormat);
+      Path path2 = createPoolFile(fileFormat);
+
+      DatabasePool pool = new DatabasePool(2, 2, 3600000L, 50L,
+                                           TimeUnit.MILLISECONDS);
+      Database db1 = pool.checkout(path1);
+      Database db2 = pool.checkout(path1);
+
+      // no instances available, fails after the max wait
+      try {
+        pool.checkout(path1);
+        Assert.fail("IllegalStateException should have been thrown");
+      } catch(IllegalStateException ignored) {
+        // success
+      }
+      Assert.assertEquals(2, pool.getCheckedOutCount());
+
+      // an idle instance for another file is closed to make room
+      pool.checkin(db2);
+      Database db3 = pool.checkout(path2);
+      Assert.assertEquals(0, pool.getIdleCount());
+      Assert.assertEquals(1, countRows(db3.getTable("Test")));
+      pool.close();
+      pool.checkin(db1);
+      pool.checkin(db3);
+
+      // a waiting checkout gets the next checked in instance
+      final DatabasePool waitPool = new DatabasePool(
+          2, 1, 3600000L, 3600000L, TimeUnit.MILLISECONDS);
+      db1 = waitPool.checkout(path1);
+      ExecutorService exec = Executors.newSingleThreadExecutor();
+      try {
+        Future<Database> waiting = exec.submit(new Callable<Database>() {
+          @Override
+          public Database call() throws Exception {
+            return waitPool.checkout(path1);
+          }
+        });
+        Thread.sleep(50L);
+        Assert.assertFalse(waiting.isDone());
+        waitPool.checkin(db1);
+        Assert.assertSame(db1, waiting.get());
+        waitPool.checkin(db1);
+      } finally {
+        exec.shutdown();
+      }
+      waitPool.close();
+    }
+  }
+
+  private static Path createPoolFile(Database.FileFormat fileFormat)
+    throws Exception
+  {
+    Database db = createFile(fileFormat);
+    new TableBuilder("Test")
+      .addColumn(new ColumnBuilder("id", DataType.LONG))
+      .toTable(db)
+      .addRow(0);
+    Path path = db.getPath();
+    db.close();
+    return path;
+  }
+}
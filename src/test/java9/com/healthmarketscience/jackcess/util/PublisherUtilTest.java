@@ -0,0 +1,190 @@
+/*
+Copyright (c) 2026 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.healthmarketscience.jackcess.ColumnBuilder;
+import com.healthmarketscience.jackcess.Cursor;
+import com.healthmarketscience.jackcess.CursorBuilder;
+import com.healthmarketscience.jackcess.DataType;
+import com.healthmarketscience.jackcess.Database;
+import static com.healthmarketscience.jackcess.Database.*;
+import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.Table;
+import com.healthmarketscience.jackcess.TableBuilder;
+import static com.healthmarketscience.jackcess.TestUtil.*;
+import com.healthmarketscience.jackcess.impl.JetFormatTest;
+
+/**
+ * Tests the java 9+ {@link PublisherUtil} methods.
+ *
+ * @author James Ahlborn
+ */
+public class PublisherUtilTest
+{
+  private static List<Map<String,Object>> createTestTableData()
+    throws Exception
+  {
+    List<Map<String,Object>> expectedRows =
+      new ArrayList<Map<String,Object>>();
+    for(int i = 0; i < 10; ++i) {
+      expectedRows.add(createExpectedRow("id", i, "value", "data" + i));
+    }
+    return expectedRows;
+  }
+
+  private static Database createTestTable(FileFormat fileFormat)
+    throws Exception
+  {
+    Database db = createMem(fileFormat);
+
+    Table table = new TableBuilder("test")
+      .addColumn(new ColumnBuilder("id", DataType.LONG))
+      .addColumn(new ColumnBuilder("value", DataType.TEXT))
+      .toTable(db);
+
+    for(Map<String,Object> row : createTestTableData()) {
+      table.addRow(row.get("id"), row.get("value"));
+    }
+
+    return db;
+  }
+
+  @Test
+  public void testPublisher() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      for (final FileFormat fileFormat : JetFormatTest.SUPPORTED_FILEFORMATS) {
+        Database db = createTestTable(fileFormat);
+        Table table = db.getTable("test");
+
+        // rows are only read as requested
+        Cursor cursor = CursorBuilder.createCursor(table);
+        TestSubscriber sub = new TestSubscriber();
+        PublisherUtil.toPublisher(cursor, 2, executor).subscribe(sub);
+        sub._subscription.request(3);
+        sub.awaitRows(3);
+        Assert.assertEquals(3, sub.awaitIdle(executor).size());
+        Assert.assertEquals(2, cursor.getCurrentRow().get("id"));
+
+        sub._subscription.request(4);
+        sub.awaitRows(7);
+        sub._subscription.cancel();
+        sub._subscription.request(10);
+        Assert.assertEquals(7, sub.awaitIdle(executor).size());
+        Assert.assertFalse(sub._complete);
+        Assert.assertNull(sub._error);
+
+        // the cursor is still usable after cancellation
+        Assert.assertEquals(7, cursor.getNextRow().get("id"));
+
+        cursor = CursorBuilder.createCursor(table);
+        Flow.Publisher<Row> publisher =
+          PublisherUtil.toPublisher(cursor, 3, executor);
+        sub = new TestSubscriber();
+        publisher.subscribe(sub);
+        sub._subscription.request(Long.MAX_VALUE);
+        sub._subscription.request(Long.MAX_VALUE);
+        sub.awaitDone();
+        Assert.assertTrue(sub._complete);
+        Assert.assertEquals(createTestTableData(), sub._rows);
+
+        // only one subscriber allowed
+        TestSubscriber sub2 = new TestSubscriber();
+        publisher.subscribe(sub2);
+        Assert.assertTrue(sub2._error instanceof IllegalStateException);
+
+        sub = new TestSubscriber();
+        PublisherUtil.toPublisher(CursorBuilder.createCursor(table), 3,
+                                  executor).subscribe(sub);
+        sub._subscription.request(0);
+        sub.awaitDone();
+        Assert.assertTrue(sub._error instanceof IllegalArgumentException);
+        Assert.assertTrue(sub._rows.isEmpty());
+
+        db.close();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static final class TestSubscriber
+    implements Flow.Subscriber<Row>
+  {
+    private final List<Row> _rows = new ArrayList<Row>();
+    private Flow.Subscription _subscription;
+    private boolean _complete;
+    private Throwable _error;
+
+    @Override
+    public synchronized void onSubscribe(
+        Flow.Subscription subscription) {
+      _subscription = subscription;
+    }
+
+    @Override
+    public synchronized void onNext(Row row) {
+      _rows.add(row);
+      notifyAll();
+    }
+
+    @Override
+    public synchronized void onError(Throwable error) {
+      _error = error;
+      notifyAll();
+    }
+
+    @Override
+    public synchronized void onComplete() {
+      _complete = true;
+      notifyAll();
+    }
+
+    private synchronized void awaitRows(int numRows) throws Exception {
+      while(_rows.size() < numRows) {
+        wait(5000L);
+      }
+    }
+
+    private synchronized void awaitDone() throws Exception {
+      while(!_complete && (_error == null)) {
+        wait(5000L);
+      }
+    }
+
+    private List<Row> awaitIdle(ExecutorService executor) throws Exception {
+      // any pending publishing task will have finished after this
+      executor.submit(new Runnable() {
+        @Override
+        public void run() {}
+      }).get();
+      synchronized(this) {
+        return new ArrayList<Row>(_rows);
+      }
+    }
+  }
+}